@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.dal.AuditDAO;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.audit.internal.AuditServiceInternalImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_UPDATE;
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_CONTENT_ITEM;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_SYSTEM_SITE;
+
+/**
+ * Benchmark for the time an operation spends recording its audit log entry, with the entries written in the caller
+ * thread and with the background writer. The writer is torn down at the end of every iteration, so the time to drain
+ * the queue is not hidden from the results of the next iteration.
+ * <p>
+ * Also measures reading a page of the audit log at increasing depths of a large table, skipping the previous rows with
+ * an offset and starting after the cursor of the previous page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class AuditLogBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class AuditState {
+
+        @Param({ "false", "true" })
+        public boolean async;
+
+        public AuditServiceInternalImpl auditService;
+        public long siteId;
+
+        private final AtomicLong counter = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUpSite() throws Exception {
+            ApplicationContext context = StudioBenchmarkContext.get();
+            StudioConfiguration studioConfiguration = context.getBean("studioConfiguration",
+                    StudioConfiguration.class);
+            siteId = context.getBean("cstudioSiteServiceSimple", SiteService.class)
+                    .getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE)).getId();
+        }
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            ApplicationContext context = StudioBenchmarkContext.get();
+            auditService = new AuditServiceInternalImpl();
+            auditService.setAuditDao(context.getBean("auditDao", AuditDAO.class));
+            auditService.setStudioConfiguration(context.getBean("studioConfiguration", StudioConfiguration.class));
+            auditService.setTransactionManager(context.getBean("transactionManager",
+                    PlatformTransactionManager.class));
+            auditService.setWriterEnabled(async);
+            auditService.setWriterQueueSize(10000);
+            auditService.setWriterBatchSize(500);
+            auditService.setWriterFlushInterval(1000);
+            auditService.setWriterJournalFolder(StudioBenchmarkContext.getDataDir().resolve("audit").toString());
+            auditService.setSynchronousOperations(Collections.emptyList());
+            auditService.init();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            auditService.destroy();
+        }
+
+        public String nextPath() {
+            return "/site/website/audit/page-" + counter.incrementAndGet() + "/index.xml";
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PagingState {
+
+        private static final String PAGING_OPERATION = "BENCHMARK_PAGE";
+        private static final int SEED_BATCH_SIZE = 5000;
+
+        @Param({ "500000" })
+        public int rows;
+
+        @Param({ "0", "10000", "250000", "490000" })
+        public int depth;
+
+        @Param({ "offset", "cursor" })
+        public String paging;
+
+        @Param({ "50" })
+        public int pageSize;
+
+        public AuditServiceInternalImpl auditService;
+        public AuditLogCursor cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            ApplicationContext context = StudioBenchmarkContext.get();
+            auditService = new AuditServiceInternalImpl();
+            auditService.setAuditDao(context.getBean("auditDao", AuditDAO.class));
+            auditService.setStudioConfiguration(context.getBean("studioConfiguration", StudioConfiguration.class));
+
+            DataSource dataSource = context.getBean("dataSource", DataSource.class);
+            seed(context, dataSource);
+            if (depth > 0 && "cursor".equals(paging)) {
+                // the last entry of the previous page, as a client paging from the start would have it
+                List<AuditLog> previous = auditService.getAuditLog(null, null, depth - 1, 1, null,
+                        Collections.singletonList(PAGING_OPERATION), false, null, null, null, null, null, "date",
+                        "DESC", null);
+                cursor = AuditLogCursor.after(previous.get(0));
+            }
+        }
+
+        /**
+         * Insert the missing rows, the rows are kept between runs when the data folder is reused
+         */
+        private void seed(ApplicationContext context, DataSource dataSource) throws SQLException {
+            StudioConfiguration studioConfiguration = context.getBean("studioConfiguration",
+                    StudioConfiguration.class);
+            long siteId = context.getBean("cstudioSiteServiceSimple", SiteService.class)
+                    .getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE)).getId();
+            try (Connection connection = dataSource.getConnection()) {
+                int existing;
+                try (PreparedStatement statement =
+                             connection.prepareStatement("SELECT COUNT(*) FROM audit WHERE operation = ?")) {
+                    statement.setString(1, PAGING_OPERATION);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        existing = resultSet.getInt(1);
+                    }
+                }
+                LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO audit (organization_id, site_id, operation, operation_timestamp, origin, " +
+                        "primary_target_id, primary_target_type, primary_target_value, actor_id) " +
+                        "VALUES (1, ?, ?, ?, 'API', ?, 'content item', ?, 'admin')")) {
+                    for (int i = existing; i < rows; i++) {
+                        String path = "/site/website/paging/page-" + i + "/index.xml";
+                        statement.setLong(1, siteId);
+                        statement.setString(2, PAGING_OPERATION);
+                        // several entries per second, the id breaks the ties as in a busy site
+                        statement.setTimestamp(3, Timestamp.valueOf(start.plusSeconds(i / 4)));
+                        statement.setString(4, path);
+                        statement.setString(5, path);
+                        statement.addBatch();
+                        if ((i - existing + 1) % SEED_BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<AuditLog> getAuditLogPage(PagingState state) {
+        boolean offset = "offset".equals(state.paging);
+        return state.auditService.getAuditLog(null, null, offset ? state.depth : 0, state.pageSize, null,
+                Collections.singletonList(PagingState.PAGING_OPERATION), false, null, null, null, null, null, "date",
+                "DESC", offset ? null : state.cursor);
+    }
+
+    @Benchmark
+    public boolean insertAuditLog(AuditState state) {
+        AuditLog auditLog = state.auditService.createAuditLogEntry();
+        auditLog.setOperation(OPERATION_UPDATE);
+        auditLog.setSiteId(state.siteId);
+        auditLog.setActorId(StudioBenchmarkContext.ADMIN_USER);
+        auditLog.setPrimaryTargetId(state.nextPath());
+        auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+        auditLog.setPrimaryTargetValue(auditLog.getPrimaryTargetId());
+        return state.auditService.insertAuditLog(auditLog);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.ItemIterable;
+import org.apache.chemistry.opencmis.client.api.Repository;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.client.api.SessionFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v2.dal.CmisContentItem;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.cmis.CmisServiceImpl;
+import org.dom4j.DocumentHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.apache.chemistry.opencmis.commons.enums.BaseTypeId.CMIS_DOCUMENT;
+import static org.apache.chemistry.opencmis.commons.enums.BaseTypeId.CMIS_FOLDER;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_DATA_SOURCES_CONFIG_LOCATION;
+
+/**
+ * Benchmark for the listing of a CMIS folder, with a new session for every list or with the session kept by the
+ * service. The repository is a stand-in for the AtomPub binding where every request waits for a fixed round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CmisListBenchmark {
+
+    private static final String SITE = "benchmark";
+    private static final String REPO = "alfresco";
+    private static final String CONFIG_PATH = "/config/studio/data-sources/cmis-config.xml";
+    private static final String BASE_PATH = "/Sites/benchmark";
+    private static final String FOLDER_PATH = BASE_PATH + "/docs";
+
+    @State(Scope.Benchmark)
+    public static class CmisState {
+
+        @Param({ "250" })
+        public int children;
+
+        @Param({ "100" })
+        public int pageSize;
+
+        @Param({ "20" })
+        public long roundTripMillis;
+
+        @Param({ "false", "true" })
+        public boolean reuseSession;
+
+        public BenchmarkCmisService service;
+
+        private List<CmisObject> items;
+
+        @Setup
+        public void setUp() throws Exception {
+            items = new ArrayList<>();
+            for (int i = 0; i < children; i++) {
+                items.add(i % 10 == 0 ? folder(FOLDER_PATH + "/folder" + i) : document("doc" + i));
+            }
+            Map<String, Function<Object[], Object>> folderAnswers = folderAnswers(FOLDER_PATH);
+            folderAnswers.put("getChildren", args -> page(0));
+            Folder folder = stub(Folder.class, folderAnswers);
+
+            Map<String, Function<Object[], Object>> sessionAnswers = new HashMap<>();
+            sessionAnswers.put("getObjectByPath", args -> roundTrip(folder));
+            Session session = stub(Session.class, sessionAnswers);
+
+            Map<String, Function<Object[], Object>> repositoryAnswers = new HashMap<>();
+            repositoryAnswers.put("getId", args -> "-default-");
+            Repository repository = stub(Repository.class, repositoryAnswers);
+
+            Map<String, Function<Object[], Object>> factoryAnswers = new HashMap<>();
+            factoryAnswers.put("getRepositories", args -> roundTrip(Collections.singletonList(repository)));
+            factoryAnswers.put("createSession", args -> roundTrip(session));
+
+            org.dom4j.Document config = DocumentHelper.parseText("<cmis><repositories><repository>" +
+                    "<id>" + REPO + "</id><type>alfresco</type><url>http://localhost:8080/cmis/atom</url>" +
+                    "<username>admin</username><password>admin</password><base-path>" + BASE_PATH +
+                    "</base-path><download-url-regex>/download/{item_id}</download-url-regex>" +
+                    "<use-ssl>false</use-ssl></repository></repositories></cmis>");
+            Map<String, Function<Object[], Object>> contentAnswers = new HashMap<>();
+            contentAnswers.put("getContentAsDocument", args -> config);
+
+            Map<String, Function<Object[], Object>> repoAnswers = new HashMap<>();
+            repoAnswers.put("getRepoLastCommitId", args -> "benchmark");
+
+            Map<String, Function<Object[], Object>> configurationAnswers = new HashMap<>();
+            configurationAnswers.put("getProperty", args ->
+                    CONFIGURATION_SITE_DATA_SOURCES_CONFIG_LOCATION.equals(args[0]) ? CONFIG_PATH : null);
+
+            service = new BenchmarkCmisService();
+            service.setStudioConfiguration(stub(StudioConfiguration.class, configurationAnswers));
+            service.setContentService(stub(ContentService.class, contentAnswers));
+            service.setContentRepository(stub(ContentRepository.class, repoAnswers));
+            service.setSessionFactory(stub(SessionFactory.class, factoryAnswers));
+            service.setListPageSize(pageSize);
+        }
+
+        /**
+         * Page of children as returned by the AtomPub binding, fetching it costs a round trip
+         */
+        @SuppressWarnings("unchecked")
+        private ItemIterable<CmisObject> page(long skip) {
+            List<CmisObject> pageItems = items.subList((int) Math.min(skip, children),
+                    (int) Math.min(skip + pageSize, children));
+            Map<String, Function<Object[], Object>> answers = new HashMap<>();
+            ItemIterable<CmisObject>[] page = new ItemIterable[1];
+            answers.put("skipTo", args -> page((Long) args[0]));
+            answers.put("getPage", args -> roundTrip(page[0]));
+            answers.put("iterator", args -> pageItems.iterator());
+            answers.put("getHasMoreItems", args -> skip + pageSize < children);
+            page[0] = stub(ItemIterable.class, answers);
+            return page[0];
+        }
+
+        private <T> T roundTrip(T result) {
+            try {
+                Thread.sleep(roundTripMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Service that can drop its sessions, to measure the lists that have to open a new one
+     */
+    public static class BenchmarkCmisService extends CmisServiceImpl {
+
+        public void clearSessions() {
+            sessions.clear();
+        }
+    }
+
+    @Benchmark
+    public List<CmisContentItem> list(CmisState state) throws Exception {
+        if (!state.reuseSession) {
+            state.service.clearSessions();
+        }
+        return state.service.list(SITE, REPO, "/docs");
+    }
+
+    private static Folder folder(String path) {
+        return stub(Folder.class, folderAnswers(path));
+    }
+
+    private static Map<String, Function<Object[], Object>> folderAnswers(String path) {
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getBaseTypeId", args -> CMIS_FOLDER);
+        answers.put("getId", args -> path);
+        answers.put("getName", args -> path.substring(path.lastIndexOf('/') + 1));
+        answers.put("getPath", args -> path);
+        return answers;
+    }
+
+    private static Document document(String name) {
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getBaseTypeId", args -> CMIS_DOCUMENT);
+        answers.put("getId", args -> name + ";1.0");
+        answers.put("getName", args -> name);
+        answers.put("getContentStreamMimeType", args -> "application/pdf");
+        answers.put("getContentStreamLength", args -> 1024L);
+        return stub(Document.class, answers);
+    }
+
+    /**
+     * Implement an interface with the given answers by method name, other methods return the default value
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    Class<?> returnType = method.getReturnType();
+                    return returnType.isPrimitive() && returnType != void.class ?
+                            Array.get(Array.newInstance(returnType, 1), 0) : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the JSON serialization of the result of the v1 REST scripts, a tree of 20,000 content items written
+ * to the response stream like the JSON view does, with and without the generated accessors of the Afterburner
+ * module. Run it with {@code -prof gc} to compare the memory allocated by each serialization
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContentItemSerializationBenchmark {
+
+    private static final int SECTIONS = 20;
+    private static final int PAGES_PER_SECTION = 1000;
+
+    @State(Scope.Benchmark)
+    public static class TreeState {
+
+        @Param({ "false", "true" })
+        public boolean afterburner;
+
+        public ObjectMapper objectMapper;
+        public Map<String, Object> result;
+
+        @Setup
+        public void setUp() {
+            // same date handling as crafter.coreObjectMapper
+            objectMapper = new ObjectMapper();
+            objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX"));
+            objectMapper.registerModule(new JavaTimeModule());
+            if (afterburner) {
+                objectMapper.registerModule(new AfterburnerModule());
+            }
+
+            ZonedDateTime lastEditDate = ZonedDateTime.now(ZoneOffset.UTC);
+            ContentItemTO root = item("/site/website/index.xml", lastEditDate);
+            root.setChildren(new ArrayList<>(SECTIONS));
+            for (int i = 0; i < SECTIONS; i++) {
+                ContentItemTO section = item("/site/website/section-" + i + "/index.xml", lastEditDate);
+                section.setChildren(new ArrayList<>(PAGES_PER_SECTION));
+                for (int j = 0; j < PAGES_PER_SECTION; j++) {
+                    section.getChildren().add(item("/site/website/section-" + i + "/page-" + j + "/index.xml",
+                            lastEditDate));
+                }
+                section.setNumOfChildren(PAGES_PER_SECTION);
+                root.getChildren().add(section);
+            }
+            root.setNumOfChildren(SECTIONS);
+            result = Collections.singletonMap("item", root);
+        }
+
+        private ContentItemTO item(String uri, ZonedDateTime lastEditDate) {
+            ContentItemTO item = new ContentItemTO();
+            item.setUri(uri);
+            item.setPath(uri.substring(0, uri.lastIndexOf('/')));
+            item.setName("index.xml");
+            item.setInternalName(uri);
+            item.setBrowserUri(uri.replace("/site/website", "").replace("/index.xml", ""));
+            item.setContentType("/page/article");
+            item.setPage(true);
+            item.setPreviewable(true);
+            item.setContainer(true);
+            item.setLive(true);
+            item.setUser(StudioBenchmarkContext.ADMIN_USER);
+            item.setLastEditDate(lastEditDate);
+            item.setEventDate(lastEditDate);
+            return item;
+        }
+    }
+
+    @Benchmark
+    public long writeTree(TreeState state) throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        state.objectMapper.writeValue(output, state.result);
+        return output.count;
+    }
+
+    /**
+     * Discards the output, only its size is kept so the serialization can't be optimized away
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.content.DmContentLifeCycleService;
+import org.craftercms.studio.api.v1.service.content.DmContentLifeCycleService.ContentLifeCycleOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the content lifecycle step of 1,000 saves of pages whose content type has a lifecycle script, the
+ * time of each measurement is the time of the whole batch
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1000)
+@Measurement(iterations = 5, batchSize = 1000)
+@Fork(1)
+public class ContentLifeCycleBenchmark {
+
+    public static final String CONTENT_TYPE = "/page/entry";
+    public static final String SCRIPT_PATH = "/config/studio/content-types" + CONTENT_TYPE + "/controller.groovy";
+    public static final String SCRIPT =
+            "import org.apache.commons.lang3.StringUtils\n" +
+            "\n" +
+            "def name = StringUtils.substringAfterLast(StringUtils.removeEnd(path, '/index.xml'), '/')\n" +
+            "if (!name) {\n" +
+            "    throw new IllegalStateException(\"Unexpected path ${path} for ${contentType} in ${site}\")\n" +
+            "}\n";
+
+    @State(Scope.Benchmark)
+    public static class ScriptState {
+
+        @Setup(Level.Trial)
+        public void setUp(SiteState state) throws Exception {
+            if (!state.getContentRepository().contentExists(state.siteId, SCRIPT_PATH)) {
+                state.getContentRepository().writeContent(state.siteId, SCRIPT_PATH,
+                        new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void save(SiteState state, ScriptState scriptState) {
+        state.getBean("cstudioContentLifeCycleService", DmContentLifeCycleService.class)
+                .process(state.siteId, StudioBenchmarkContext.ADMIN_USER, state.nextPage(), CONTENT_TYPE,
+                        ContentLifeCycleOperation.UPDATE, null);
+    }
+}
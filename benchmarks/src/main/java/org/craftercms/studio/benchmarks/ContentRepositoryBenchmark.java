@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the git repository operations, every write creates a new revision of a page and a commit
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContentRepositoryBenchmark {
+
+    @Benchmark
+    public String writeContent(SiteState state, AdminState admin) throws ServiceLayerException {
+        int index = state.nextPageIndex();
+        byte[] content = state.site.renderPage(index, (int) System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+        return state.getContentRepository().writeContent(state.siteId, state.site.getPagePaths().get(index),
+                new ByteArrayInputStream(content));
+    }
+
+    @Benchmark
+    public RepositoryItem[] getContentChildren(SiteState state) {
+        return state.getContentRepository().getContentChildren(state.siteId, state.nextSection());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the content item lookups used by the dashboards and the sidebar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContentServiceBenchmark {
+
+    private static final int TREE_DEPTH = 2;
+
+    @Benchmark
+    public ContentItemTO getContentItem(SiteState state) {
+        return getContentService(state).getContentItem(state.siteId, state.nextPage());
+    }
+
+    @Benchmark
+    public ContentItemTO getContentItemTree(SiteState state) {
+        return getContentService(state).getContentItemTree(state.siteId, SyntheticSite.WEBSITE_ROOT, TREE_DEPTH);
+    }
+
+    private ContentService getContentService(SiteState state) {
+        return state.getBean("cstudioContentService", ContentService.class);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.service.configuration.ContentTypesConfigImpl;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_FILE_NAME;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_PATH;
+
+/**
+ * Benchmark for the content type lookups done while listing, saving and publishing content, on a site with hundreds
+ * of content types. It does not need a running Studio, the repository and the content service are stand-ins that
+ * return the folders and the configuration of every content type, so only the cached lookups are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class ContentTypesBenchmark {
+
+    private static final String SITE = "benchmark";
+    private static final String ROOT_PATH = "/config/studio/content-types";
+    private static final String CONFIG_FILE_NAME = "config.xml";
+    private static final String[] GROUPS = { "page", "component" };
+
+    @State(Scope.Benchmark)
+    public static class ContentTypesState {
+
+        @Param({ "300" })
+        public int types;
+
+        public ContentTypesConfigImpl contentTypesConfig;
+        public String[] names;
+
+        @Setup
+        public void setUp() {
+            names = new String[types];
+            for (int i = 0; i < types; i++) {
+                names[i] = "/" + GROUPS[i % GROUPS.length] + "/type-" + i;
+            }
+
+            Map<String, Function<Object[], Object>> configuration = new HashMap<>();
+            configuration.put("getProperty", args -> {
+                switch ((String) args[0]) {
+                    case CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_BASE_PATH:
+                        return ROOT_PATH;
+                    case CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_PATH:
+                        return ROOT_PATH + "/{content-type}";
+                    case CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_FILE_NAME:
+                        return CONFIG_FILE_NAME;
+                    default:
+                        return null;
+                }
+            });
+
+            Map<String, Function<Object[], Object>> repository = new HashMap<>();
+            repository.put("getRepoLastCommitId", args -> "commit1");
+            repository.put("getContentChildren", args -> getChildren((String) args[1]));
+
+            Map<String, Function<Object[], Object>> content = new HashMap<>();
+            content.put("contentExists", args -> ((String) args[1]).contains("/type-"));
+            content.put("getContentAsDocument", args -> getConfig((String) args[1]));
+
+            contentTypesConfig = new ContentTypesConfigImpl();
+            contentTypesConfig.setStudioConfiguration(stub(StudioConfiguration.class, configuration));
+            contentTypesConfig.setContentRepository(stub(ContentRepository.class, repository));
+            contentTypesConfig.setContentService(stub(ContentService.class, content));
+            contentTypesConfig.getAllContentTypes(SITE);
+        }
+
+        private RepositoryItem[] getChildren(String path) {
+            if (path.equals(ROOT_PATH)) {
+                RepositoryItem[] children = new RepositoryItem[GROUPS.length];
+                for (int i = 0; i < GROUPS.length; i++) {
+                    children[i] = folder(ROOT_PATH, GROUPS[i]);
+                }
+                return children;
+            }
+            if (path.contains("/type-")) {
+                return new RepositoryItem[0];
+            }
+            String group = path.substring(path.lastIndexOf('/') + 1);
+            int index = group.equals(GROUPS[0]) ? 0 : 1;
+            RepositoryItem[] children = new RepositoryItem[(types - index + 1) / GROUPS.length];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = folder(path, "type-" + (i * GROUPS.length + index));
+            }
+            return children;
+        }
+
+        private Document getConfig(String path) {
+            String name = path.substring(ROOT_PATH.length(), path.lastIndexOf('/'));
+            String section = "section-" + (name.hashCode() & 63);
+            try {
+                return DocumentHelper.parseText("<content-type name=\"" + name + "\"><label>" + name +
+                        "</label><form>" + name + "</form><previewable>true</previewable><paths><includes>" +
+                        "<pattern>^/site/website/" + section + "/.*</pattern></includes><excludes>" +
+                        "<pattern>^/site/website/" + section + "/private/.*</pattern></excludes></paths>" +
+                        "<allowed-roles><role>author</role><role>publisher</role></allowed-roles>" +
+                        "<delete-dependencies><delete-dependency><pattern>^/static-assets/" + section +
+                        "/.*</pattern><remove-empty-folder>true</remove-empty-folder></delete-dependency>" +
+                        "</delete-dependencies><copy-dependencies><copy-dependency><pattern>^/static-assets/" +
+                        section + "/.*</pattern><target>/static-assets/" + section + "</target>" +
+                        "</copy-dependency></copy-dependencies></content-type>");
+            } catch (DocumentException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public ContentTypeConfigTO getContentTypeConfig(ContentTypesState state) {
+        String name = state.names[ThreadLocalRandom.current().nextInt(state.names.length)];
+        return state.contentTypesConfig.getContentTypeConfig(SITE, name);
+    }
+
+    @Benchmark
+    public List<ContentTypeConfigTO> getAllContentTypes(ContentTypesState state) {
+        return state.contentTypesConfig.getAllContentTypes(SITE);
+    }
+
+    @Benchmark
+    public List<ContentTypeConfigTO> getContentTypesForPath(ContentTypesState state) {
+        int section = ThreadLocalRandom.current().nextInt(64);
+        return state.contentTypesConfig.getContentTypesForPath(SITE,
+                "/site/website/section-" + section + "/page-" + section + "/index.xml");
+    }
+
+    private static RepositoryItem folder(String path, String name) {
+        RepositoryItem folder = new RepositoryItem();
+        folder.path = path;
+        folder.name = name;
+        folder.isFolder = true;
+        return folder;
+    }
+
+    /**
+     * Implement an interface with the given answers by method name, other methods return the default value
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    Class<?> returnType = method.getReturnType();
+                    return returnType.isPrimitive() && returnType != void.class ?
+                            Array.get(Array.newInstance(returnType, 1), 0) : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for pasting a copied tree of pages: the first page of the site with up to 3000 other pages as its
+ * children is pasted in a new folder on every invocation, either item by item like the clipboard used to do or as
+ * a single tree.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyContentBenchmark {
+
+    private static final int MAX_COPIED_ITEMS = 3000;
+
+    @State(Scope.Thread)
+    public static class CopyState {
+
+        public String root;
+        public List<String> children;
+        public String destination;
+
+        @Setup(Level.Trial)
+        public void setUpTree(SiteState state) {
+            List<String> pages = state.site.getPagePaths();
+            root = pages.get(0);
+            children = new ArrayList<>(pages.subList(1, Math.min(MAX_COPIED_ITEMS, pages.size())));
+        }
+
+        @Setup(Level.Invocation)
+        public void nextDestination() {
+            destination = SyntheticSite.WEBSITE_ROOT + "/copies/copy-" + System.nanoTime();
+        }
+    }
+
+    @Benchmark
+    public int copyItemByItem(SiteState state, CopyState copy, AdminState admin) {
+        ContentService contentService = getContentService(state);
+        String newPath = contentService.copyContent(state.siteId, copy.root, copy.destination);
+        int copied = 1;
+        for (String child : copy.children) {
+            if (contentService.copyContent(state.siteId, child, newPath) != null) {
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    @Benchmark
+    public int copyTree(SiteState state, CopyState copy, AdminState admin) {
+        Map<String, String> copiedPaths = getContentService(state).copyContentTree(state.siteId, copy.root,
+                copy.destination, Collections.singletonMap(copy.root, copy.children));
+        return copiedPaths.size();
+    }
+
+    private ContentService getContentService(SiteState state) {
+        return state.getBean("cstudioContentService", ContentService.class);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+import org.craftercms.studio.api.v1.dal.DependencyMapper;
+import org.craftercms.studio.api.v2.service.content.internal.ItemPathServiceInternal;
+import org.craftercms.studio.api.v2.service.dependency.internal.DependencyServiceInternal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_ASSET;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_COMPONENT;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.JSON_PROPERTY_DEPENDENCIES;
+import static org.craftercms.studio.api.v1.dal.DependencyMapper.PATHS_PARAM;
+import static org.craftercms.studio.api.v1.dal.DependencyMapper.SITE_PARAM;
+
+/**
+ * Benchmark for the dependency lookups on a site with hundreds of thousands of items: the dependencies of a page, the
+ * pages using a shared component and the pages using any asset of a folder, resolved through the path dictionary.
+ * Every page depends on one of {@link #COMPONENTS} components and on one image, the images are spread over
+ * {@link #SECTIONS} folders.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class DependencyLookupBenchmark {
+
+    public static final int SECTIONS = 100;
+    public static final int COMPONENTS = 10000;
+    public static final int IMAGES = 50000;
+
+    @State(Scope.Benchmark)
+    public static class DependenciesState {
+
+        private static final int SEED_BATCH_SIZE = 5000;
+
+        @Param({ "500000" })
+        public int items;
+
+        public String site;
+        public DependencyMapper dependencyMapper;
+        public DependencyServiceInternal dependencyServiceInternal;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            ApplicationContext context = StudioBenchmarkContext.get();
+            site = "benchmark-dependencies-" + items;
+            dependencyMapper = context.getBean("dependencyMapper", DependencyMapper.class);
+            dependencyServiceInternal = context.getBean("dependencyServiceInternal",
+                    DependencyServiceInternal.class);
+            seed(context.getBean("itemPathServiceInternal", ItemPathServiceInternal.class),
+                    context.getBean("dataSource", DataSource.class));
+        }
+
+        /**
+         * Insert the dependencies of the missing pages, the rows are kept between runs when the data folder is reused
+         */
+        private void seed(ItemPathServiceInternal itemPathService, DataSource dataSource) throws SQLException {
+            int existing;
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement =
+                         connection.prepareStatement("SELECT COUNT(*) FROM dependency WHERE site = ?")) {
+                statement.setString(1, site);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    existing = resultSet.getInt(1) / 2;
+                }
+            }
+            for (int start = existing; start < items; start += SEED_BATCH_SIZE) {
+                List<DependencyEntity> dependencies = new ArrayList<>();
+                for (int i = start; i < Math.min(start + SEED_BATCH_SIZE, items); i++) {
+                    dependencies.add(dependency(getPagePath(i), getComponentPath(i % COMPONENTS),
+                            CONTENT_TYPE_COMPONENT));
+                    dependencies.add(dependency(getPagePath(i), getImagePath(i % IMAGES), CONTENT_TYPE_ASSET));
+                }
+                Set<String> paths = new HashSet<>();
+                for (DependencyEntity dependency : dependencies) {
+                    paths.add(dependency.getSourcePath());
+                    paths.add(dependency.getTargetPath());
+                }
+                Map<String, Long> pathIds = itemPathService.internPaths(site, paths);
+                for (DependencyEntity dependency : dependencies) {
+                    dependency.setSourcePathId(pathIds.get(dependency.getSourcePath()));
+                    dependency.setTargetPathId(pathIds.get(dependency.getTargetPath()));
+                }
+                Map<String, Object> params = new HashMap<>();
+                params.put(JSON_PROPERTY_DEPENDENCIES, dependencies);
+                dependencyMapper.insertList(params);
+            }
+        }
+
+        private DependencyEntity dependency(String sourcePath, String targetPath, String type) {
+            DependencyEntity dependency = new DependencyEntity();
+            dependency.setSite(site);
+            dependency.setSourcePath(sourcePath);
+            dependency.setTargetPath(targetPath);
+            dependency.setType(type);
+            return dependency;
+        }
+
+        public String getPagePath(int page) {
+            return "/site/website/section-" + (page % SECTIONS) + "/page-" + page + "/index.xml";
+        }
+
+        public String getComponentPath(int component) {
+            return "/site/components/component-" + component + ".xml";
+        }
+
+        public String getImagePath(int image) {
+            return getImageFolder(image % SECTIONS) + "/image-" + image + ".png";
+        }
+
+        public String getImageFolder(int section) {
+            return "/static-assets/images/section-" + section;
+        }
+    }
+
+    @Benchmark
+    public List<String> getDependenciesForList(DependenciesState state) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(SITE_PARAM, state.site);
+        params.put(PATHS_PARAM, Collections.singleton(
+                state.getPagePath(ThreadLocalRandom.current().nextInt(state.items))));
+        return state.dependencyMapper.getDependenciesForList(params);
+    }
+
+    @Benchmark
+    public List<String> getItemsDependingOn(DependenciesState state) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(SITE_PARAM, state.site);
+        params.put(PATHS_PARAM, Collections.singleton(
+                state.getComponentPath(ThreadLocalRandom.current().nextInt(COMPONENTS))));
+        return state.dependencyMapper.getItemsDependingOn(params);
+    }
+
+    @Benchmark
+    public List<String> getDependentItems(DependenciesState state) {
+        return state.dependencyServiceInternal.getDependentItems(state.site, Collections.singletonList(
+                state.getImageFolder(ThreadLocalRandom.current().nextInt(SECTIONS))));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.studio.api.v2.service.security.AuthenticationChain;
+import org.craftercms.studio.impl.v2.service.security.HeadersAuthenticationProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark for the authentication of requests coming from an SSO proxy. Every request carries the user details and
+ * groups in the headers, the same for all the requests of a user. With {@code identityCacheTimeToLive} set to 0 every
+ * request updates the user and groups in the database.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class HeadersAuthenticationBenchmark {
+
+    private static final String SECURE_KEY_HEADER = "secure_key";
+    private static final String SECURE_KEY = "benchmark";
+
+    @State(Scope.Benchmark)
+    public static class HeadersState {
+
+        @Param({ "1000" })
+        public int users;
+
+        @Param({ "10" })
+        public int groupsPerUser;
+
+        @Param({ "0", "300" })
+        public int identityCacheTimeToLive;
+
+        public AuthenticationChain authenticationChain;
+        public HeadersAuthenticationProvider provider;
+        public List<String> usernames = new ArrayList<>();
+
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            authenticationChain = StudioBenchmarkContext.get()
+                    .getBean("crafter.studioAuthenticationChain", AuthenticationChain.class);
+
+            provider = new HeadersAuthenticationProvider();
+            provider.setEnabled(true);
+            provider.setSecureKeyHeader(SECURE_KEY_HEADER);
+            provider.setSecureKeyHeaderValue(SECURE_KEY);
+            provider.setUsernameHeader("username");
+            provider.setFirstNameHeader("firstname");
+            provider.setLastNameHeader("lastname");
+            provider.setEmailHeader("email");
+            provider.setGroupsHeader("groups");
+            provider.setIdentityCacheTimeToLive(identityCacheTimeToLive);
+
+            for (int i = 0; i < users; i++) {
+                usernames.add("sso-user-" + i);
+            }
+        }
+
+        public MockHttpServletRequest nextRequest() {
+            int index = Math.floorMod(cursor.getAndIncrement(), usernames.size());
+            String username = usernames.get(index);
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/studio/api/2/users/me");
+            request.addHeader(SECURE_KEY_HEADER, SECURE_KEY);
+            request.addHeader("username", username);
+            request.addHeader("firstname", "SSO");
+            request.addHeader("lastname", String.valueOf(index));
+            request.addHeader("email", username + "@example.com");
+            StringBuilder groups = new StringBuilder();
+            for (int i = 0; i < groupsPerUser; i++) {
+                if (i > 0) {
+                    groups.append(',');
+                }
+                groups.append("sso_group_").append((index + i) % (groupsPerUser * 4));
+            }
+            request.addHeader("groups", groups.toString());
+            return request;
+        }
+    }
+
+    @Benchmark
+    public boolean authenticate(HeadersState state) throws Exception {
+        MockHttpServletRequest request = state.nextRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContext.setCurrent(new RequestContext(request, response, request.getServletContext()));
+        try {
+            return state.provider.doAuthenticate(request, response, state.authenticationChain,
+                    request.getHeader("username"), null);
+        } finally {
+            RequestContext.clear();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.content.ImportService;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.craftercms.studio.benchmarks.SiteState.BLUEPRINT;
+import static org.craftercms.studio.benchmarks.SiteState.SANDBOX_BRANCH;
+
+/**
+ * Benchmark for a bulk import through {@link ImportService#importSite}. The files of a synthetic site (pages,
+ * components and assets) are generated once and imported into a new site on every iteration
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ImportBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ImportState {
+
+        @Param({ "50000" })
+        public int files;
+
+        public ImportService importService;
+        public SiteService siteService;
+        public String siteId;
+        public Path configFile;
+
+        private Path sourceDir;
+        private int iteration;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            ApplicationContext context = StudioBenchmarkContext.get();
+            StudioBenchmarkContext.runAsAdmin();
+            importService = context.getBean("cstudioImportService", ImportService.class);
+            siteService = context.getBean("cstudioSiteServiceSimple", SiteService.class);
+
+            // a synthetic site has one component and one asset for every ten pages
+            sourceDir = StudioBenchmarkContext.getDataDir().resolve("import-" + files);
+            if (!Files.exists(sourceDir)) {
+                new SyntheticSite(files * 10 / 12).generate(sourceDir);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void createSite() throws Exception {
+            siteId = "benchmark-import-" + files + "-" + (++iteration);
+            if (siteService.exists(siteId)) {
+                siteService.deleteSite(siteId);
+            }
+            siteService.createSiteFromBlueprint(BLUEPRINT, siteId, siteId, SANDBOX_BRANCH, "Import benchmark site",
+                    new HashMap<>(), false);
+
+            // the import reads the files from a folder named after the site
+            Path buildDir = Files.createTempDirectory("studio-import");
+            Files.createSymbolicLink(buildDir.resolve(siteId), sourceDir);
+            configFile = buildDir.resolve("import-config.xml");
+            String config = "<import>\n" +
+                    "  <site>\n" +
+                    "    <name>" + siteId + "</name>\n" +
+                    "    <build-data-location>" + buildDir + "</build-data-location>\n" +
+                    "    <folders over-write=\"true\">\n" +
+                    "      <folder name=\"site\" import-all=\"true\"/>\n" +
+                    "      <folder name=\"static-assets\" import-all=\"true\"/>\n" +
+                    "    </folders>\n" +
+                    "  </site>\n" +
+                    "</import>\n";
+            Files.write(configFile, config.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteSite() {
+            siteService.deleteSite(siteId);
+        }
+    }
+
+    @Benchmark
+    public void importSite(ImportState state, AdminState admin) throws Exception {
+        state.importService.importSite(state.configFile.toString());
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v2.deployment.Deployer;
+
+/**
+ * Deployer used by the benchmarks, there is no Crafter Deployer running so the targets are not created. Publishing
+ * still writes to the local published repository.
+ */
+public class LocalDeployer implements Deployer {
+
+    @Override
+    public void createTargets(String site, String searchEngine) {
+        // Nothing to create
+    }
+
+    @Override
+    public void deleteTargets(String site) {
+        // Nothing to delete
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for moving a large section: a copy of the first page of the site with up to 4999 other pages as its
+ * children is created once, and moved to a new folder on every invocation. Sites with less than 5000 pages move a
+ * section with all of their pages.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MoveContentBenchmark {
+
+    private static final int SECTION_SIZE = 5000;
+
+    @State(Scope.Thread)
+    public static class SectionState {
+
+        public String section;
+        public String destination;
+
+        @Setup(Level.Trial)
+        public void createSection(SiteState state, AdminState admin) {
+            List<String> pages = state.site.getPagePaths();
+            String root = pages.get(0);
+            List<String> children = new ArrayList<>(pages.subList(1, Math.min(SECTION_SIZE, pages.size())));
+            section = getContentService(state).copyContentTree(state.siteId, root,
+                    SyntheticSite.WEBSITE_ROOT + "/moves/move-" + System.nanoTime(),
+                    Collections.singletonMap(root, children)).get(root);
+        }
+
+        @Setup(Level.Invocation)
+        public void nextDestination() {
+            destination = SyntheticSite.WEBSITE_ROOT + "/moves/move-" + System.nanoTime();
+        }
+    }
+
+    @Benchmark
+    public String moveSection(SiteState state, SectionState section, AdminState admin) {
+        section.section = getContentService(state).moveContent(state.siteId, section.section, section.destination);
+        return section.section;
+    }
+
+    private static ContentService getContentService(SiteState state) {
+        return state.getBean("cstudioContentService", ContentService.class);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.impl.v1.service.content.ContentNameIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the name given to duplicated content in a folder with many siblings, with the folder already in
+ * the name index and with the index rebuilt on every call
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NextAvailableNameBenchmark {
+
+    @State(Scope.Thread)
+    public static class FolderState {
+
+        @Param({ "10000" })
+        public int siblings;
+
+        public String folder;
+        public String item;
+
+        @Setup(Level.Trial)
+        public void createSiblings(SiteState state, AdminState admin) {
+            folder = SyntheticSite.WEBSITE_ROOT + "/siblings-" + siblings;
+            item = folder + "/item-0";
+            if (!state.getContentRepository().contentExists(state.siteId, item)) {
+                List<String> folders = new ArrayList<>(siblings);
+                for (int i = 0; i < siblings; i++) {
+                    folders.add(folder + "/item-" + i);
+                }
+                state.getContentRepository().writeCopiedContent(state.siteId, folder, folder,
+                        Collections.<String, InputStream>emptyMap(), folders);
+            }
+        }
+    }
+
+    @Benchmark
+    public String getNextAvailableName(SiteState state, FolderState folder) {
+        return getContentService(state).getNextAvailableName(state.siteId, folder.item);
+    }
+
+    @Benchmark
+    public String getNextAvailableNameColdIndex(SiteState state, FolderState folder) {
+        state.getBean("cstudioContentNameIndex", ContentNameIndex.class).invalidate(state.siteId);
+        return getContentService(state).getNextAvailableName(state.siteId, folder.item);
+    }
+
+    private ContentService getContentService(SiteState state) {
+        return state.getBean("cstudioContentService", ContentService.class);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.dal.PublishRequest;
+import org.craftercms.studio.api.v1.dal.PublishRequestMapper;
+import org.craftercms.studio.api.v1.service.deployment.PublishingManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.PROCESSING;
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.READY_FOR_LIVE;
+
+/**
+ * Benchmark for claiming a large publishing package, moving every request to processing with one statement per
+ * request like the publisher used to do and with the set based transition of the {@link PublishingManager}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PublishRequestStateBenchmark {
+
+    public static final String SITE = "benchmark-publish-requests";
+    public static final String ENVIRONMENT = "live";
+
+    @State(Scope.Benchmark)
+    public static class PackageState {
+
+        @Param({ "10000" })
+        public int packageSize;
+
+        public PublishingManager publishingManager;
+        public PublishRequestMapper publishRequestMapper;
+        public List<PublishRequest> items;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            ApplicationContext context = StudioBenchmarkContext.get();
+            publishingManager = context.getBean("cstudioPublishingManager", PublishingManager.class);
+            publishRequestMapper = context.getBean("publishRequestMapper", PublishRequestMapper.class);
+            deleteRequests();
+            ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+            for (int i = 0; i < packageSize; i++) {
+                PublishRequest request = new PublishRequest();
+                request.setSite(SITE);
+                request.setEnvironment(ENVIRONMENT);
+                request.setPath("/site/website/page-" + i + "/index.xml");
+                request.setUser(StudioBenchmarkContext.ADMIN_USER);
+                request.setScheduledDate(now);
+                request.setState(READY_FOR_LIVE);
+                request.setAction(PublishRequest.Action.NEW);
+                request.setPackageId(SITE);
+                publishRequestMapper.insertItemForDeployment(request);
+            }
+            items = publishingManager.getItemsReadyForDeployment(SITE, ENVIRONMENT);
+        }
+
+        @Setup(Level.Invocation)
+        public void resetQueue() throws Exception {
+            publishingManager.markItemsReady(SITE, ENVIRONMENT, items);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteRequests() {
+            publishRequestMapper.deleteDeploymentDataForSite(Collections.singletonMap("site", SITE));
+        }
+    }
+
+    @Benchmark
+    public void perItem(PackageState state) {
+        for (PublishRequest item : state.items) {
+            item.setState(PROCESSING);
+            state.publishRequestMapper.updateItemDeploymentState(item);
+        }
+    }
+
+    @Benchmark
+    public void setBased(PackageState state) throws Exception {
+        state.publishingManager.markItemsProcessing(SITE, ENVIRONMENT, state.items);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
+import org.craftercms.studio.api.v1.service.deployment.DeploymentService;
+import org.craftercms.studio.api.v1.service.deployment.PublishingManager;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.service.notification.NotificationService;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.service.deployment.job.PublisherTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for a publishing cycle: every invocation edits a batch of pages, queues them for the live environment
+ * and runs the publisher task that the scheduled job would run, which goes through the {@link PublishingManager}
+ * and publishes to the local published repository.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PublishingBenchmark {
+
+    @State(Scope.Thread)
+    public static class PublishState {
+
+        @Param({ "10", "100" })
+        public int publishBatchSize;
+
+        private int revision;
+
+        @Setup(Level.Invocation)
+        public void queueItems(SiteState state, AdminState admin) throws Exception {
+            ContentRepository contentRepository = state.getContentRepository();
+            List<String> paths = new ArrayList<>(publishBatchSize);
+            revision++;
+            for (int i = 0; i < publishBatchSize; i++) {
+                int index = state.nextPageIndex();
+                String path = state.site.getPagePaths().get(index);
+                byte[] content = state.site.renderPage(index, revision).getBytes(StandardCharsets.UTF_8);
+                contentRepository.writeContent(state.siteId, path, new ByteArrayInputStream(content));
+                paths.add(path);
+            }
+            String environment = state.getBean("cstudioServicesConfig", ServicesConfig.class)
+                    .getLiveEnvironment(state.siteId);
+            state.getBean("cstudioDeploymentService", DeploymentService.class)
+                    .deploy(state.siteId, environment, paths, ZonedDateTime.now(ZoneOffset.UTC),
+                            StudioBenchmarkContext.ADMIN_USER, "Benchmark", true);
+        }
+    }
+
+    @Benchmark
+    public void publish(SiteState state, PublishState publish, AdminState admin) {
+        new PublisherTask(state.siteId,
+                state.getBean("studioConfiguration", StudioConfiguration.class),
+                state.getSiteService(),
+                state.getBean("cstudioPublishingManager", PublishingManager.class),
+                state.getBean("cstudioServicesConfig", ServicesConfig.class),
+                state.getBean("contentRepository", ContentRepository.class),
+                state.getBean("cstudioNotificationService", NotificationService.class),
+                state.getBean("auditServiceInternal", AuditServiceInternal.class)).run();
+    }
+}
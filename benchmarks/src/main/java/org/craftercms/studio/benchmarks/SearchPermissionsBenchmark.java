@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.impl.v2.service.search.internal.PathQueryCompiler;
+import org.craftercms.studio.model.search.SearchPermissions;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the construction of the search filter of a user with many path rules, done on every search. It does
+ * not need a running Studio, the rules mix folders, nested folders, single files and alternatives like the
+ * permission mappings of large sites.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchPermissionsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PermissionsState {
+
+        @Param({ "100", "500" })
+        public int rules;
+
+        public PathQueryCompiler compiler;
+        public SearchPermissions permissions;
+
+        @Setup
+        public void setUp() {
+            compiler = new PathQueryCompiler("localId", "hierarchy", "ngram");
+            permissions = new SearchPermissions();
+            for (int i = 0; i < rules; i++) {
+                String section = "/site/website/section-" + (i % 50);
+                switch (i % 4) {
+                    case 0:
+                        permissions.addAllowedPattern(section + "/.*");
+                        break;
+                    case 1:
+                        permissions.addAllowedPattern(section + "/page-" + i + "/.*");
+                        break;
+                    case 2:
+                        permissions.addAllowedPattern("/static-assets/files/file-" + i + "\\.pdf");
+                        break;
+                    default:
+                        permissions.addAllowedPattern("/site/components/group-" + i + "|/site/components/group-" +
+                                i + "/.*");
+                        break;
+                }
+            }
+            permissions.addDeniedContentType("/page/restricted");
+        }
+    }
+
+    @Benchmark
+    public QueryBuilder buildFilter(PermissionsState state) {
+        return state.compiler.permissions(state.permissions, "content-type", true);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.search.internal.SearchServiceInternalImpl;
+import org.craftercms.studio.model.search.SearchResultItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the mapping of 10,000 Elasticsearch hits to search result items, including the type mapping from the
+ * global configuration
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchResultMappingBenchmark {
+
+    private static final int HITS = 10000;
+
+    private static final String[][] CONTENT_TYPES = {
+            { "application/xml", "/page/article" },
+            { "application/xml", "/component/header" },
+            { "image/png", null },
+            { "text/css", null },
+            { "application/pdf", null },
+            { "application/octet-stream", null }
+    };
+
+    @State(Scope.Benchmark)
+    public static class MappingState {
+
+        public ResultMapper mapper;
+        public List<Map<String, Object>> hits;
+
+        @Setup
+        public void setUp() {
+            StudioConfiguration studioConfiguration = StudioBenchmarkContext.get()
+                    .getBean("studioConfiguration", StudioConfiguration.class);
+            String pathField = studioConfiguration.getProperty("studio.search.field.path");
+            String nameField = studioConfiguration.getProperty("studio.search.field.name");
+            String editField = studioConfiguration.getProperty("studio.search.field.edit");
+            String editorField = studioConfiguration.getProperty("studio.search.field.editor");
+            String sizeField = studioConfiguration.getProperty("studio.search.field.size");
+            String mimeTypeField = studioConfiguration.getProperty("studio.search.field.mimeType");
+
+            mapper = new ResultMapper();
+            mapper.setPathFieldName(pathField);
+            mapper.setInternalNameFieldName(nameField);
+            mapper.setLastEditFieldName(editField);
+            mapper.setLastEditorFieldName(editorField);
+            mapper.setSizeFieldName(sizeField);
+            mapper.setMimeTypeName(mimeTypeField);
+            mapper.setDefaultType(studioConfiguration.getProperty("studio.search.default.type"));
+            mapper.setStudioConfiguration(studioConfiguration);
+            // without an index suffix the index template is not updated
+            mapper.init();
+
+            String lastEdit = Instant.now().toString();
+            hits = new ArrayList<>(HITS);
+            for (int i = 0; i < HITS; i++) {
+                String[] contentType = CONTENT_TYPES[i % CONTENT_TYPES.length];
+                Map<String, Object> source = new HashMap<>();
+                source.put(pathField, "/site/website/section-" + (i % 100) + "/page-" + i + "/index.xml");
+                source.put(nameField, "Page " + i);
+                source.put(editField, lastEdit);
+                source.put(editorField, StudioBenchmarkContext.ADMIN_USER);
+                source.put(sizeField, 1024 + i);
+                source.put(mimeTypeField, contentType[0]);
+                if (contentType[1] != null) {
+                    source.put("content-type", contentType[1]);
+                }
+                hits.add(source);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<SearchResultItem> mapHits(MappingState state) {
+        return state.mapper.mapHits(state.hits);
+    }
+
+    /**
+     * Exposes the mapping of a single hit used by {@code processResults}
+     */
+    public static class ResultMapper extends SearchServiceInternalImpl {
+
+        public List<SearchResultItem> mapHits(List<Map<String, Object>> hits) {
+            List<SearchResultItem> items = new ArrayList<>(hits.size());
+            for (Map<String, Object> hit : hits) {
+                items.add(processSearchHit(hit, Collections.emptyMap()));
+            }
+            return items;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.dal.Group;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.security.UserService;
+import org.craftercms.studio.api.v2.service.security.internal.GroupServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.model.Site;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.DEFAULT_ORGANIZATION_ID;
+
+/**
+ * Benchmark for the site membership and role resolution done by the UI on every page load. Every site maps its own
+ * group to the author role and every user belongs to the groups of a few sites. The cold variants invalidate the
+ * cache before every call, which is the cost of resolving the membership from the database and the repositories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SiteMembershipBenchmark {
+
+    private static final String ROLE_MAPPINGS_PATH = "/config/studio/role-mappings-config.xml";
+    private static final int SITES_PER_USER = 3;
+
+    @State(Scope.Benchmark)
+    public static class MembershipState {
+
+        @Param({ "1000" })
+        public int sites;
+
+        @Param({ "10000" })
+        public int users;
+
+        public ApplicationContext context;
+        public List<String> siteIds = new ArrayList<>();
+        public List<String> usernames = new ArrayList<>();
+
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            context = StudioBenchmarkContext.get();
+            StudioBenchmarkContext.runAsAdmin();
+            for (int i = 0; i < sites; i++) {
+                siteIds.add("membership-" + i);
+            }
+            for (int i = 0; i < users; i++) {
+                usernames.add("member-" + i);
+            }
+
+            Path marker = StudioBenchmarkContext.getDataDir().resolve("membership-" + sites + "-" + users);
+            if (Files.exists(marker)) {
+                return;
+            }
+
+            SiteService siteService = context.getBean("cstudioSiteServiceSimple", SiteService.class);
+            GroupServiceInternal groupServiceInternal =
+                    context.getBean("groupServiceInternal", GroupServiceInternal.class);
+            UserServiceInternal userServiceInternal =
+                    context.getBean("userServiceInternal", UserServiceInternal.class);
+
+            List<Long> groupIds = new ArrayList<>();
+            for (String siteId : siteIds) {
+                if (!siteService.exists(siteId)) {
+                    siteService.createSiteFromBlueprint(SiteState.BLUEPRINT, siteId, siteId,
+                            SiteState.SANDBOX_BRANCH, "Membership benchmark site", new HashMap<>(), false);
+                    siteService.writeConfiguration(siteId, ROLE_MAPPINGS_PATH,
+                            new ByteArrayInputStream(renderRoleMappings(siteId).getBytes(StandardCharsets.UTF_8)));
+                }
+                String groupName = getGroupName(siteId);
+                Group group = groupServiceInternal.groupExists(-1, groupName) ?
+                        groupServiceInternal.getGroupByName(groupName) :
+                        groupServiceInternal.createGroup(DEFAULT_ORGANIZATION_ID, groupName, groupName);
+                groupIds.add(group.getId());
+            }
+
+            List<List<Long>> members = new ArrayList<>();
+            for (int i = 0; i < sites; i++) {
+                members.add(new ArrayList<>());
+            }
+            for (int i = 0; i < users; i++) {
+                String username = usernames.get(i);
+                User user;
+                if (userServiceInternal.userExists(-1, username)) {
+                    user = userServiceInternal.getUserByIdOrUsername(-1, username);
+                } else {
+                    user = new User();
+                    user.setUsername(username);
+                    user.setPassword(username);
+                    user.setFirstName("Member");
+                    user.setLastName(String.valueOf(i));
+                    user.setEmail(username + "@example.com");
+                    user.setEnabled(true);
+                    user.setExternallyManaged(true);
+                    user = userServiceInternal.createUser(user);
+                }
+                for (int j = 0; j < SITES_PER_USER; j++) {
+                    members.get((i * 7 + j * 331) % sites).add(user.getId());
+                }
+            }
+            for (int i = 0; i < sites; i++) {
+                if (!members.get(i).isEmpty()) {
+                    groupServiceInternal.addGroupMembers(groupIds.get(i), members.get(i), new ArrayList<>());
+                }
+            }
+
+            Files.createFile(marker);
+        }
+
+        public String nextUser() {
+            return usernames.get(Math.floorMod(cursor.getAndIncrement(), usernames.size()));
+        }
+
+        public String nextSite() {
+            return siteIds.get(Math.floorMod(cursor.getAndIncrement(), siteIds.size()));
+        }
+
+        public UserService getUserService() {
+            return context.getBean("userService", UserService.class);
+        }
+
+        public SiteMembershipCache getSiteMembershipCache() {
+            return context.getBean("siteMembershipCache", SiteMembershipCache.class);
+        }
+
+        private static String getGroupName(String siteId) {
+            return siteId + "_author";
+        }
+
+        private static String renderRoleMappings(String siteId) {
+            return "<role-mappings>\n" +
+                    "\t<version>2</version>\n" +
+                    "\t<groups>\n" +
+                    "\t\t<group name=\"site_admin\">\n\t\t\t<role>admin</role>\n\t\t</group>\n" +
+                    "\t\t<group name=\"" + getGroupName(siteId) + "\">\n\t\t\t<role>author</role>\n\t\t</group>\n" +
+                    "\t</groups>\n" +
+                    "</role-mappings>\n";
+        }
+    }
+
+    @Benchmark
+    public List<Site> getUserSites(MembershipState state, AdminState admin) throws Exception {
+        return state.getUserService().getUserSites(-1, state.nextUser());
+    }
+
+    @Benchmark
+    public List<String> getUserSiteRoles(MembershipState state, AdminState admin) throws Exception {
+        return state.getUserService().getUserSiteRoles(-1, state.nextUser(), state.nextSite());
+    }
+
+    @Benchmark
+    public List<Site> getUserSitesCold(MembershipState state, AdminState admin) throws Exception {
+        SiteMembershipCache cache = state.getSiteMembershipCache();
+        cache.invalidateMembership();
+        state.siteIds.forEach(cache::invalidateSite);
+        return state.getUserService().getUserSites(-1, state.nextUser());
+    }
+
+    @Benchmark
+    public List<String> getUserSiteRolesCold(MembershipState state, AdminState admin) throws Exception {
+        String siteId = state.nextSite();
+        SiteMembershipCache cache = state.getSiteMembershipCache();
+        cache.invalidateMembership();
+        cache.invalidateSite(siteId);
+        return state.getUserService().getUserSiteRoles(-1, state.nextUser(), siteId);
+    }
+}
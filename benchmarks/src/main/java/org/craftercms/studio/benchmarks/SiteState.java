@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.eclipse.jgit.api.Git;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.context.ApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SANDBOX_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SITES_REPOS_PATH;
+
+/**
+ * Synthetic site shared by all the benchmarks of a trial. The site is created from the empty blueprint, the generated
+ * content is committed directly to the sandbox repository (like a bulk import through git would) and the database is
+ * synced with it. The size is given by the {@code siteSize} parameter, which is the number of pages.
+ */
+@State(Scope.Benchmark)
+public class SiteState {
+
+    public static final String BLUEPRINT = "org.craftercms.blueprint.empty";
+    public static final String SANDBOX_BRANCH = "master";
+
+    @Param({ "100", "1000", "10000" })
+    public int siteSize;
+
+    public ApplicationContext context;
+    public String siteId;
+    public SyntheticSite site;
+
+    /**
+     * Commit before the generated content, syncing from it processes the whole generated site
+     */
+    public String baselineCommitId;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = StudioBenchmarkContext.get();
+        StudioBenchmarkContext.runAsAdmin();
+        siteId = "benchmark-" + siteSize;
+        site = new SyntheticSite(siteSize);
+
+        SiteService siteService = getSiteService();
+        Path baselineFile = StudioBenchmarkContext.getDataDir().resolve(siteId + ".baseline");
+        if (siteService.exists(siteId) && Files.exists(baselineFile)) {
+            baselineCommitId = new String(Files.readAllBytes(baselineFile), StandardCharsets.UTF_8).trim();
+            return;
+        }
+
+        siteService.createSiteFromBlueprint(BLUEPRINT, siteId, siteId, SANDBOX_BRANCH, "Benchmark site",
+                new HashMap<>(), false);
+        baselineCommitId = getContentRepository().getRepoLastCommitId(siteId);
+
+        Path sandbox = getSandboxPath();
+        site.generate(sandbox);
+        try (Git git = Git.open(sandbox.toFile())) {
+            git.add().addFilepattern(".").call();
+            git.commit().setAuthor(StudioBenchmarkContext.ADMIN_USER, "admin@example.com")
+                    .setMessage("Generate synthetic site with " + siteSize + " pages").call();
+        }
+        siteService.syncDatabaseWithRepo(siteId, baselineCommitId, false);
+
+        Files.write(baselineFile, baselineCommitId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the next page, cycling through all the pages of the site
+     *
+     * @return page path
+     */
+    public String nextPage() {
+        return next(site.getPagePaths());
+    }
+
+    /**
+     * Get the next section folder, cycling through all the sections of the site
+     *
+     * @return folder path
+     */
+    public String nextSection() {
+        return next(site.getSectionPaths());
+    }
+
+    public int nextPageIndex() {
+        return Math.floorMod(cursor.getAndIncrement(), site.getPages());
+    }
+
+    public SiteService getSiteService() {
+        return context.getBean("cstudioSiteServiceSimple", SiteService.class);
+    }
+
+    public ContentRepository getContentRepository() {
+        return context.getBean("gitContentRepository", ContentRepository.class);
+    }
+
+    public <T> T getBean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    private String next(List<String> paths) {
+        return paths.get(Math.floorMod(cursor.getAndIncrement(), paths.size()));
+    }
+
+    private Path getSandboxPath() {
+        StudioConfiguration studioConfiguration = getBean("studioConfiguration", StudioConfiguration.class);
+        return Paths.get(studioConfiguration.getProperty(REPO_BASE_PATH),
+                studioConfiguration.getProperty(SITES_REPOS_PATH), siteId,
+                studioConfiguration.getProperty(SANDBOX_PATH));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.job.CronJobContext;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.XmlWebApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Boots the Studio services once per benchmark JVM, the same way the web application does: the Engine services
+ * context with the Studio overlay on top, a {@link MockServletContext} in place of the container and an embedded
+ * MariaDB. All the data (repositories and database) goes under the folder given by {@code studio.benchmark.dataDir},
+ * a new temporary folder by default. Reusing the folder between runs skips the site generation.
+ */
+public final class StudioBenchmarkContext {
+
+    public static final String DATA_DIR_PROPERTY = "studio.benchmark.dataDir";
+    public static final String WEBAPP_DIR_PROPERTY = "studio.benchmark.webappDir";
+    public static final String DEFAULT_WEBAPP_DIR = "../src/main/webapp";
+    public static final String CONFIG_LOCATION = "classpath:crafter/engine/services/main-services-context.xml";
+    public static final String ADMIN_USER = "admin";
+
+    private static XmlWebApplicationContext context;
+
+    private StudioBenchmarkContext() { }
+
+    /**
+     * Get the application context, starting it the first time
+     *
+     * @return Studio application context
+     */
+    public static synchronized ApplicationContext get() {
+        if (context == null) {
+            context = start();
+            Runtime.getRuntime().addShutdownHook(new Thread(StudioBenchmarkContext::close));
+        }
+        return context;
+    }
+
+    /**
+     * Get the folder where the repositories and the database of the benchmarks are stored
+     *
+     * @return data folder
+     */
+    public static Path getDataDir() {
+        String dataDir = System.getProperty(DATA_DIR_PROPERTY);
+        if (dataDir == null) {
+            try {
+                dataDir = Files.createTempDirectory("studio-benchmarks").toAbsolutePath().toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to create the benchmark data folder", e);
+            }
+            System.setProperty(DATA_DIR_PROPERTY, dataDir);
+        }
+        return Paths.get(dataDir);
+    }
+
+    /**
+     * Run the calls made by the current thread as the admin user, like the Studio jobs do
+     */
+    public static void runAsAdmin() {
+        CronJobContext.setCurrent(new CronJobContext(null, ADMIN_USER));
+    }
+
+    private static XmlWebApplicationContext start() {
+        Path dataDir = getDataDir();
+        setPropertyIfMissing("crafter.bin.dir", dataDir.resolve("bin").toString());
+        setPropertyIfMissing("application.logs", dataDir.resolve("logs").toString());
+        setPropertyIfMissing("crafter.engine.extension.base", "classpath*:crafter/studio/extension");
+
+        String webappDir = Paths.get(System.getProperty(WEBAPP_DIR_PROPERTY, DEFAULT_WEBAPP_DIR))
+                .toAbsolutePath().normalize().toString();
+        // The global repository and the blueprints are bootstrapped from the web application folder
+        MockServletContext servletContext = new MockServletContext("file:" + webappDir,
+                new FileSystemResourceLoader());
+
+        XmlWebApplicationContext applicationContext = new XmlWebApplicationContext();
+        applicationContext.setServletContext(servletContext);
+        applicationContext.setConfigLocation(CONFIG_LOCATION);
+        applicationContext.addBeanFactoryPostProcessor(beanFactory ->
+                ((BeanDefinitionRegistry) beanFactory).registerBeanDefinition("allDeployers",
+                        new RootBeanDefinition(LocalDeployer.class)));
+        servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE,
+                applicationContext);
+        applicationContext.refresh();
+
+        return applicationContext;
+    }
+
+    private static synchronized void close() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    private static void setPropertyIfMissing(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.benchmarks;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates the content of a synthetic site with a given number of pages. Pages are grouped in sections, every page
+ * includes a few shared components and references a few static assets so the dependency graph looks like a real
+ * site. The generation is deterministic, the same size always produces the same content.
+ */
+public class SyntheticSite {
+
+    public static final String WEBSITE_ROOT = "/site/website";
+    public static final String COMPONENTS_ROOT = "/site/components/benchmark";
+    public static final String ASSETS_ROOT = "/static-assets/images/benchmark";
+
+    private static final int PAGES_PER_SECTION = 50;
+    private static final int COMPONENTS_PER_PAGE = 3;
+    private static final int ASSETS_PER_PAGE = 2;
+    private static final int ASSET_SIZE = 1024;
+    private static final long SEED = 42;
+
+    private final int pages;
+    private final int components;
+    private final int assets;
+    private final List<String> sectionPaths = new ArrayList<>();
+    private final List<String> pagePaths = new ArrayList<>();
+    private final List<String> componentPaths = new ArrayList<>();
+    private final List<String> assetPaths = new ArrayList<>();
+
+    public SyntheticSite(int pages) {
+        this.pages = pages;
+        this.components = Math.max(10, pages / 10);
+        this.assets = Math.max(10, pages / 10);
+        for (int i = 0; i < pages; i++) {
+            String section = WEBSITE_ROOT + "/section-" + (i / PAGES_PER_SECTION);
+            if (i % PAGES_PER_SECTION == 0) {
+                sectionPaths.add(section);
+            }
+            pagePaths.add(section + "/page-" + i + "/index.xml");
+        }
+        for (int i = 0; i < components; i++) {
+            componentPaths.add(COMPONENTS_ROOT + "/component-" + i + ".xml");
+        }
+        for (int i = 0; i < assets; i++) {
+            assetPaths.add(ASSETS_ROOT + "/asset-" + i + ".png");
+        }
+    }
+
+    /**
+     * Write all the files of the site
+     *
+     * @param sandbox root folder of the site sandbox repository
+     * @throws IOException if a file can't be written
+     */
+    public void generate(Path sandbox) throws IOException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < assets; i++) {
+            byte[] content = new byte[ASSET_SIZE];
+            random.nextBytes(content);
+            write(sandbox, assetPaths.get(i), content);
+        }
+        for (int i = 0; i < components; i++) {
+            write(sandbox, componentPaths.get(i), renderComponent(i, random).getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < pages; i++) {
+            write(sandbox, pagePaths.get(i), renderPage(i, 0, random).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Render a new revision of a page, keeping its references
+     *
+     * @param index page index
+     * @param revision revision number, written in the page so every revision has different content
+     * @return page XML
+     */
+    public String renderPage(int index, int revision) {
+        return renderPage(index, revision, new Random(SEED + index));
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public List<String> getSectionPaths() {
+        return Collections.unmodifiableList(sectionPaths);
+    }
+
+    public List<String> getPagePaths() {
+        return Collections.unmodifiableList(pagePaths);
+    }
+
+    public List<String> getComponentPaths() {
+        return Collections.unmodifiableList(componentPaths);
+    }
+
+    public List<String> getAssetPaths() {
+        return Collections.unmodifiableList(assetPaths);
+    }
+
+    private String renderPage(int index, int revision, Random random) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<page>\n");
+        xml.append("\t<content-type>/page/entry</content-type>\n");
+        xml.append("\t<display-template>/templates/web/entry.ftl</display-template>\n");
+        xml.append("\t<merge-strategy>inherit-levels</merge-strategy>\n");
+        xml.append("\t<file-name>index.xml</file-name>\n");
+        xml.append("\t<folder-name>page-").append(index).append("</folder-name>\n");
+        xml.append("\t<internal-name>Page ").append(index).append("</internal-name>\n");
+        xml.append("\t<objectId>").append(uuid(random)).append("</objectId>\n");
+        xml.append("\t<placeInNav>true</placeInNav>\n");
+        xml.append("\t<navLabel>Page ").append(index).append("</navLabel>\n");
+        xml.append("\t<orderDefault_f>").append((index % PAGES_PER_SECTION + 1) * 1000).append("</orderDefault_f>\n");
+        xml.append("\t<title_t>Page ").append(index).append(" revision ").append(revision).append("</title_t>\n");
+        xml.append("\t<components item-list=\"true\">\n");
+        for (int i = 0; i < COMPONENTS_PER_PAGE; i++) {
+            String component = componentPaths.get(random.nextInt(components));
+            xml.append("\t\t<item><key>").append(component).append("</key><value>")
+                    .append(StringUtils.substringAfterLast(component, "/")).append("</value><include>")
+                    .append(component).append("</include><disableFlattening>false</disableFlattening></item>\n");
+        }
+        xml.append("\t</components>\n");
+        xml.append("\t<body_html>");
+        for (int i = 0; i < ASSETS_PER_PAGE; i++) {
+            xml.append("&lt;img src=&quot;").append(assetPaths.get(random.nextInt(assets))).append("&quot;/&gt;");
+        }
+        xml.append("</body_html>\n");
+        xml.append("\t<disabled>false</disabled>\n");
+        xml.append("</page>\n");
+        return xml.toString();
+    }
+
+    private String renderComponent(int index, Random random) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<component>\n" +
+                "\t<content-type>/component/benchmark</content-type>\n" +
+                "\t<file-name>component-" + index + ".xml</file-name>\n" +
+                "\t<internal-name>Component " + index + "</internal-name>\n" +
+                "\t<objectId>" + uuid(random) + "</objectId>\n" +
+                "\t<image_s>" + assetPaths.get(random.nextInt(assets)) + "</image_s>\n" +
+                "\t<disabled>false</disabled>\n" +
+                "</component>\n";
+    }
+
+    private String uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private void write(Path sandbox, String path, byte[] content) throws IOException {
+        Path file = sandbox.resolve(StringUtils.removeStart(path, "/"));
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.impl.v1.repository.git.GitVersionHistoryIndex;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+
+/**
+ * Benchmark for the version history of a content item in a repository with a long history. It does not need a
+ * running Studio, the repository is generated with one commit per change of a single page and kept in the data
+ * folder, so it's reused by later runs.
+ * <p>
+ * Measures a lookup served by the index, the walk of the commits done while the index is not ready, and the full
+ * build of the index that runs in the background after a restart.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VersionHistoryBenchmark {
+
+    private static final String KEY = "benchmark";
+
+    @State(Scope.Benchmark)
+    public static class HistoryState {
+
+        private static final int PAGES_PER_SECTION = 100;
+
+        @Param({ "100000" })
+        public int commits;
+
+        @Param({ "1000" })
+        public int pages;
+
+        public Repository repository;
+        public ObjectId head;
+        public GitVersionHistoryIndex index;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            File folder = StudioBenchmarkContext.getDataDir()
+                    .resolve("version-history-" + commits + "-" + pages).toFile();
+            File marker = new File(folder, "generated");
+            if (!marker.exists()) {
+                FileUtils.deleteDirectory(folder);
+                generate(folder);
+                FileUtils.touch(marker);
+            }
+            repository = new FileRepositoryBuilder().setGitDir(folder).setMustExist(true).build();
+            head = repository.resolve(HEAD);
+            index = new GitVersionHistoryIndex(false, 1, Runnable::run);
+            index.getHistory(KEY, repository, head, getPagePath(0));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            repository.close();
+        }
+
+        /**
+         * Create a bare repository where every commit changes one page, going through all the pages in turn
+         */
+        private void generate(File folder) throws Exception {
+            try (Git git = Git.init().setBare(true).setDirectory(folder).call();
+                 ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+                int sections = (pages + PAGES_PER_SECTION - 1) / PAGES_PER_SECTION;
+                ObjectId[][] blobs = new ObjectId[sections][PAGES_PER_SECTION];
+                ObjectId[] sectionTrees = new ObjectId[sections];
+                PersonIdent author = new PersonIdent("admin", "admin@example.com");
+                ObjectId parent = null;
+                for (int i = 0; i < commits; i++) {
+                    int page = i % pages;
+                    int section = page / PAGES_PER_SECTION;
+                    blobs[section][page % PAGES_PER_SECTION] = inserter.insert(Constants.OBJ_BLOB,
+                            ("<page><version>" + i + "</version></page>").getBytes(StandardCharsets.UTF_8));
+
+                    TreeFormatter sectionTree = new TreeFormatter();
+                    for (int j = 0; j < PAGES_PER_SECTION; j++) {
+                        if (blobs[section][j] != null) {
+                            sectionTree.append(getPageName(section * PAGES_PER_SECTION + j), FileMode.REGULAR_FILE,
+                                    blobs[section][j]);
+                        }
+                    }
+                    sectionTrees[section] = inserter.insert(sectionTree);
+
+                    TreeFormatter websiteTree = new TreeFormatter();
+                    for (int j = 0; j < sections; j++) {
+                        if (sectionTrees[j] != null) {
+                            websiteTree.append(getSectionName(j), FileMode.TREE, sectionTrees[j]);
+                        }
+                    }
+                    TreeFormatter siteTree = new TreeFormatter();
+                    siteTree.append("website", FileMode.TREE, inserter.insert(websiteTree));
+                    TreeFormatter rootTree = new TreeFormatter();
+                    rootTree.append("site", FileMode.TREE, inserter.insert(siteTree));
+
+                    CommitBuilder commit = new CommitBuilder();
+                    commit.setTreeId(inserter.insert(rootTree));
+                    if (parent != null) {
+                        commit.setParentId(parent);
+                    }
+                    commit.setAuthor(author);
+                    commit.setCommitter(author);
+                    commit.setMessage("Update " + getPagePath(page));
+                    parent = inserter.insert(commit);
+                }
+                inserter.flush();
+
+                RefUpdate update = git.getRepository().updateRef(Constants.R_HEADS + Constants.MASTER);
+                update.setNewObjectId(parent);
+                update.forceUpdate();
+                git.gc().call();
+            }
+        }
+
+        public String getRandomPagePath() {
+            return getPagePath(ThreadLocalRandom.current().nextInt(pages));
+        }
+
+        public String getPagePath(int page) {
+            return "site/website/" + getSectionName(page / PAGES_PER_SECTION) + "/" + getPageName(page);
+        }
+
+        private String getSectionName(int section) {
+            return String.format("section-%03d", section);
+        }
+
+        private String getPageName(int page) {
+            return String.format("page-%05d.xml", page);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<ObjectId> getIndexedHistory(HistoryState state) throws Exception {
+        return state.index.getHistory(KEY, state.repository, state.head, state.getRandomPagePath());
+    }
+
+    @Benchmark
+    public List<ObjectId> getWalkedHistory(HistoryState state) throws Exception {
+        List<ObjectId> history = new ArrayList<>();
+        try (Git git = new Git(state.repository)) {
+            for (RevCommit commit : git.log().add(state.head).addPath(state.getRandomPagePath()).call()) {
+                history.add(commit.getId());
+            }
+        }
+        return history;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public List<ObjectId> buildIndex(HistoryState state) throws Exception {
+        GitVersionHistoryIndex index = new GitVersionHistoryIndex(false, 1, Runnable::run);
+        return index.getHistory(KEY, state.repository, state.head, state.getRandomPagePath());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.benchmarks;
+
+import org.craftercms.studio.api.v1.service.workflow.WorkflowService;
+import org.craftercms.studio.api.v1.to.GoLiveQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.craftercms.studio.api.v1.service.objectstate.State.NEW_SUBMITTED_WITH_WF_UNSCHEDULED;
+import static org.craftercms.studio.api.v1.service.objectstate.State.NEW_UNPUBLISHED_UNLOCKED;
+
+/**
+ * Benchmark for the go live queue of the dashboard, filled by {@link WorkflowService#fillQueue} from every submitted
+ * item of the site. Run it with a site of at least as many pages as submitted items, e.g. {@code -p siteSize=10000}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WorkflowQueueBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SubmittedState {
+
+        @Param({ "5000" })
+        public int submitted;
+
+        public WorkflowService workflowService;
+
+        private DataSource dataSource;
+        private String siteId;
+
+        @Setup(Level.Trial)
+        public void setUp(SiteState site) throws Exception {
+            workflowService = site.getBean("cstudioWorkflowService", WorkflowService.class);
+            dataSource = site.getBean("dataSource", DataSource.class);
+            siteId = site.siteId;
+
+            List<String> pages = site.site.getPagePaths();
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         "UPDATE item_state SET state = ? WHERE site = ? AND path = ?")) {
+                for (String page : pages.subList(0, Math.min(submitted, pages.size()))) {
+                    statement.setString(1, NEW_SUBMITTED_WITH_WF_UNSCHEDULED.name());
+                    statement.setString(2, siteId);
+                    statement.setString(3, page);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+
+        /**
+         * Take the items back out of the workflow, the site is kept between runs when the data folder is reused
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         "UPDATE item_state SET state = ? WHERE site = ? AND state = ?")) {
+                statement.setString(1, NEW_UNPUBLISHED_UNLOCKED.name());
+                statement.setString(2, siteId);
+                statement.setString(3, NEW_SUBMITTED_WITH_WF_UNSCHEDULED.name());
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    @Benchmark
+    public GoLiveQueue fillQueue(SubmittedState state, AdminState admin) throws Exception {
+        GoLiveQueue queue = new GoLiveQueue();
+        state.workflowService.fillQueue(state.siteId, queue, new GoLiveQueue());
+        return queue;
+    }
+}
@@ -34,15 +34,23 @@ public class DependencyEntity implements Serializable {
     public String getSourcePath() { return sourcePath; }
     public void setSourcePath(String sourcePath) { this.sourcePath = sourcePath; }
 
+    public Long getSourcePathId() { return sourcePathId; }
+    public void setSourcePathId(Long sourcePathId) { this.sourcePathId = sourcePathId; }
+
     public String getTargetPath() { return targetPath; }
     public void setTargetPath(String targetPath) { this.targetPath = targetPath;}
 
+    public Long getTargetPathId() { return targetPathId; }
+    public void setTargetPathId(Long targetPathId) { this.targetPathId = targetPathId; }
+
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
 
     private long id;
     private String site;
     private String sourcePath;
+    private Long sourcePathId;
     private String targetPath;
+    private Long targetPathId;
     private String type;
 }
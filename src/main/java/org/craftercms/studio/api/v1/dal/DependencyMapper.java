@@ -30,6 +30,8 @@ public interface DependencyMapper {
     String PATHS_PARAM = "paths";
     String OLD_PATH_PARAM = "oldPath";
     String NEW_PATH_PARAM = "newPath";
+    String OLD_PATH_ID_PARAM = "oldPathId";
+    String NEW_PATH_ID_PARAM = "newPathId";
     String REGEX_PARAM = "regex";
     String EDITED_STATES_PARAM = "editedStates";
     String NEW_STATES_PARAM = "newStates";
@@ -62,4 +64,10 @@ public interface DependencyMapper {
     List<Map<String, String>> calculatePublishingDependenciesForList(Map params);
 
     void moveDependency(Map params);
+
+    List<String> getSubtreeSources(Map params);
+
+    void moveSubtreeSources(Map params);
+
+    List<String> getSubtreeSourcesWithSubtreeTargets(Map params);
 }
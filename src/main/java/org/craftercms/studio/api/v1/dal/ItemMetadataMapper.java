@@ -23,10 +23,14 @@ public interface ItemMetadataMapper {
 
     ItemMetadata getProperties(Map params);
 
+    List<ItemMetadata> getPropertiesForPaths(Map params);
+
     void setProperties(Map params);
 
     void insertEntry(Map params);
 
+    void insertEntries(List<ItemMetadata> entries);
+
     int countEntries(Map params);
 
     int countAllItems();
@@ -41,10 +45,16 @@ public interface ItemMetadataMapper {
 
     void updateObjectPath(Map params);
 
+    void updateSubtreePath(Map params);
+
     void updateObjectMetadata(ItemMetadata itemMetadata);
 
     void updateCommitId(Map params);
 
+    void updateCommitIdForPaths(Map params);
+
+    void setRenamedForPaths(Map params);
+
     int movedPathExists(Map params);
 
     List<String> getSameCommitItems(Map params);
@@ -41,6 +41,8 @@ public interface ItemStateMapper {
 
     void insertEntry(ItemState itemState);
 
+    void insertEntries(List<ItemState> itemStates);
+
     void setObjectState(ItemState itemState);
 
     List<ItemState> getObjectStateForSiteAndPaths(Map params);
@@ -49,6 +51,8 @@ public interface ItemStateMapper {
 
     void updateObjectPath(Map params);
 
+    void updateSubtreePath(Map params);
+
     void deleteObjectStatesForSite(Map params);
 
     void deleteObjectStateForSiteAndPath(Map params);
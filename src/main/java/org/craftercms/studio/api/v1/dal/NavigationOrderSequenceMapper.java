@@ -26,5 +26,9 @@ public interface NavigationOrderSequenceMapper {
 
     NavigationOrderSequence getPageNavigationOrderForSiteAndPath(Map params);
 
+    int incrementMaxCount(Map params);
+
+    Double getMaxCountForSiteAndPath(Map params);
+
     void deleteSequencesForSite(Map params);
 }
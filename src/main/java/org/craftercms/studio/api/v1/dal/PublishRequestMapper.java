@@ -36,6 +36,15 @@ public interface PublishRequestMapper {
 
     void updateItemDeploymentState(PublishRequest item);
 
+    /**
+     * Move a set of publishing requests to a new state, only the requests still in one of the expected states
+     * are updated
+     *
+     * @param params SQL query parameters
+     * @return number of requests updated
+     */
+    int updateItemsDeploymentState(Map params);
+
     void deleteDeploymentDataForSite(Map params);
 
     PublishRequest checkPublishingStatus(Map params);
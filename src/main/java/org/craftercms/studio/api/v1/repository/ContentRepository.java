@@ -132,6 +132,28 @@ public interface ContentRepository {
      */
     String copyContent(String site, String fromPath, String toPath);
 
+    /**
+     * write the result of copying a tree of content: all files and folders are created in a single commit
+     *
+     * @param site     site id where the operation will be executed
+     * @param fromPath source path of the copy, used for the commit message
+     * @param toPath   target path of the copy, used for the commit message
+     * @param contents content of the files to write by path, written in iteration order
+     * @param folders  paths of the folders to create
+     * @return Commit ID if successful, null otherwise
+     */
+    String writeCopiedContent(String site, String fromPath, String toPath, Map<String, InputStream> contents,
+                              List<String> folders);
+
+    /**
+     * write a batch of imported files in a single commit
+     *
+     * @param site     site id where the operation will be executed
+     * @param contents content of the files to write by path, written in iteration order
+     * @return Commit ID if successful, null otherwise
+     */
+    String writeImportedContent(String site, Map<String, InputStream> contents);
+
     /**
      * get immediate children for path
      *
@@ -22,4 +22,21 @@ import java.util.Map;
 public interface ScriptExecutor {
 
     void executeScriptString(String script, Map<String, Object> model) throws ScriptException;
+
+    /**
+     * Execute a script that is only compiled again when its source changes
+     *
+     * @param key key of the script, like its site and path
+     * @param script source of the script
+     * @param model variables available to the script
+     * @throws ScriptException if the script fails to compile or to run
+     */
+    void executeScript(String key, String script, Map<String, Object> model) throws ScriptException;
+
+    /**
+     * Discard the compiled scripts whose key starts with the given prefix
+     *
+     * @param keyPrefix prefix of the keys
+     */
+    void evictScripts(String keyPrefix);
 }
@@ -17,8 +17,11 @@ package org.craftercms.studio.api.v1.service.configuration;
 
 import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
 
+import java.util.List;
+
 /**
- * provides content type configuration
+ * provides content type configuration, the configurations returned are copies that callers can change without
+ * affecting other callers
  * 
  * @author hyanghee
  *
@@ -44,4 +47,21 @@ public interface ContentTypesConfig {
 
     ContentTypeConfigTO reloadConfiguration(String site, String contentType);
 
+	/**
+	 * get the configuration of all content types of the given site
+	 *
+	 * @param site
+	 * @return content type configurations
+	 */
+	List<ContentTypeConfigTO> getAllContentTypes(String site);
+
+	/**
+	 * get the content types whose path patterns match the given path
+	 *
+	 * @param site
+	 * @param path
+	 * @return content type configurations
+	 */
+	List<ContentTypeConfigTO> getContentTypesForPath(String site, String path);
+
 }
@@ -139,6 +139,29 @@ public interface ContentService {
      */
     String copyContent(String site, String fromPath, String toPath);
 
+    /**
+     * copy a tree of content fromPath to toPath, all the items are written in a single commit
+     *
+     * @param site     - the project ID
+     * @param fromPath the source path of the root of the tree
+     * @param toPath   the target path to copy the tree to
+     * @param children source paths of the children to copy for each source path, each child is copied to the
+     *                 final path of its parent
+     * @return final path for each source path copied from the tree, empty if nothing was copied
+     */
+    Map<String, String> copyContentTree(String site, String fromPath, String toPath,
+                                        Map<String, List<String>> children);
+
+    /**
+     * write a batch of imported files in a single commit, the database is updated in batches
+     *
+     * @param site     - the project ID
+     * @param contents content of the files to write by path, the streams are closed once written
+     * @param user     user recorded as the creator of new files and the modifier of all of them
+     * @return paths written, empty if nothing was written
+     */
+    List<String> writeImportedContent(String site, Map<String, InputStream> contents, String user);
+
     /**
      * move content fromPath to toPath
      *
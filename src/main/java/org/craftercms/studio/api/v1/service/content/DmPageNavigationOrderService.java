@@ -18,6 +18,8 @@ package org.craftercms.studio.api.v1.service.content;
 
 import org.dom4j.Document;
 
+import java.util.List;
+
 /**
  *
  * Order Service for Navigation Pages
@@ -36,6 +38,17 @@ public interface DmPageNavigationOrderService {
 
     double getNewNavOrder(String site, String path, double currentMaxNavOrder);
 
+    /**
+     * Reserve a block of new navigation orders for the children of a folder, used by bulk operations to get the
+     * orders of all the new items in a single round trip
+     *
+     * @param site site id
+     * @param path folder path
+     * @param count number of orders to reserve
+     * @return the reserved orders in ascending order
+     */
+    List<Double> getNewNavOrders(String site, String path, int count);
+
     /**
      * Always adds/overwrites the Document element with new unique nav order
      *
@@ -44,6 +57,15 @@ public interface DmPageNavigationOrderService {
      */
     boolean addNavOrder(String site, String path, Document doc);
 
+    /**
+     * Always adds/overwrites the Document elements of several new children of the same folder, the orders of all
+     * the documents are reserved at once
+     *
+     * @param documents documents to update
+     * @return number of documents updated with a new nav order
+     */
+    int addNavOrders(String site, String path, List<Document> documents);
+
     /**
      * Updates the Document element with new unique nav order if one does not exist
      *
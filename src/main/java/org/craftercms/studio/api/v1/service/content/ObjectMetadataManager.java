@@ -26,10 +26,20 @@ public interface ObjectMetadataManager {
 
     void insertNewObjectMetadata(String site, String path);
 
+    /**
+     * Insert the metadata of multiple new items, all the items must belong to the given site
+     *
+     * @param site site identifier
+     * @param metadata metadata of the new items
+     */
+    void insertNewObjectMetadata(String site, List<ItemMetadata> metadata);
+
     void setObjectMetadata(String site, String path, Map<String, Object> properties);
 
     ItemMetadata getProperties(String site, String path);
 
+    List<ItemMetadata> getProperties(String site, List<String> paths);
+
     boolean metadataExist(String site, String path);
 
     boolean isRenamed(String site, String path);
@@ -48,12 +58,39 @@ public interface ObjectMetadataManager {
 
     void updateObjectPath(String site, String oldUri, String relativePath);
 
+    /**
+     * Change the path of an item and of all the items under it with a single update
+     *
+     * @param site site identifier
+     * @param oldPath path of the subtree root before the move
+     * @param newPath path of the subtree root after the move
+     */
+    void updateObjectPathForSubtree(String site, String oldPath, String newPath);
+
     void clearRenamed(String site, String path);
 
     void updateObjectMetadata(ItemMetadata itemMetadata);
 
     void updateCommitId(String site, String path, String commitId);
 
+    /**
+     * Set the same commit id for multiple items
+     *
+     * @param site site identifier
+     * @param paths paths of the items
+     * @param commitId commit id
+     */
+    void updateCommitId(String site, List<String> paths, String commitId);
+
+    /**
+     * Mark multiple items as renamed, using their current path as the old URL. Items already marked keep their old
+     * URL, as it always has to be the oldest deployed path
+     *
+     * @param site site identifier
+     * @param paths paths of the items
+     */
+    void setRenamed(String site, List<String> paths);
+
     boolean movedPathExists(String site, String path);
 
     List<String> getSameCommitItems(String site, String path);
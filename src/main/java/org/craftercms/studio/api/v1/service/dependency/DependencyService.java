@@ -148,6 +148,21 @@ public interface DependencyService {
 	Set<String> moveDependencies(String site, String oldPath, String newPath)
             throws SiteNotFoundException, ContentNotFoundException, ServiceLayerException;
 
+	/**
+	 * Update the dependencies of all the items of a moved subtree with their new paths. Only the rows where the
+	 * moved items are the source are updated, the items referencing the subtree still point to the old paths.
+	 * 
+	 * @param site Site to operate on
+	 * @param oldPath Path of the subtree root before the move
+	 * @param newPath Path of the subtree root after the move
+	 * @return New paths of the moved items that reference items of the subtree by their old path, their
+	 * dependencies need to be resolved again
+	 * @throws SiteNotFoundException Site doesn't exist
+	 * @throws ServiceLayerException Internal error, see exception details
+	 */
+	Set<String> moveSubtreeDependencies(String site, String oldPath, String newPath)
+            throws SiteNotFoundException, ServiceLayerException;
+
 	/**
 	 * Delete an item dependencies from the database.
 	 * 
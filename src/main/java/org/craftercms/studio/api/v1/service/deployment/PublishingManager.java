@@ -48,6 +48,17 @@ public interface PublishingManager {
                                                         Set<String> missingDependenciesPaths)
             throws DeploymentException, ServiceLayerException;
 
+    /**
+     * Resolve the mandatory dependencies (new or renamed parents and dependencies) of a whole publishing package
+     * @param items items of the package
+     * @param pathsToDeploy paths already being deployed
+     * @param missingDependenciesPaths paths already added as mandatory dependencies, updated with the new ones
+     * @return processed mandatory dependencies, ordered by distance to the package items
+     */
+    List<DeploymentItemTO> processMandatoryDependencies(List<PublishRequest> items, Set<String> pathsToDeploy,
+                                                        Set<String> missingDependenciesPaths)
+            throws DeploymentException, ServiceLayerException;
+
     boolean isPublishingBlocked(String site);
 
     String getPublishingStatus(String site);
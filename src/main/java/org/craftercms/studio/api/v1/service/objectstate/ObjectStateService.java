@@ -33,6 +33,11 @@ public interface ObjectStateService {
 
     void insertNewEntry(String site, String path);
 
+    /**
+     * insert a new state entry for each of the given paths that doesn't have one yet
+     */
+    void insertNewEntries(String site, List<String> paths);
+
     List<ItemState> getSubmittedItems(String site);
 
     ItemState getObjectState(String site, String path, boolean insert);
@@ -43,6 +48,11 @@ public interface ObjectStateService {
 
     void updateObjectPath(String site, String oldPath, String newPath);
 
+    /**
+     * change the path of an object and of all the objects under it with a single update
+     */
+    void updateObjectPathForSubtree(String site, String oldPath, String newPath);
+
     boolean isUpdated(String site, String path);
 
     boolean isUpdatedOrNew(String site, String path);
@@ -61,11 +71,23 @@ public interface ObjectStateService {
 
     void transitionBulk(String site, List<String> paths, org.craftercms.studio.api.v1.service.objectstate.TransitionEvent event, org.craftercms.studio.api.v1.service.objectstate.State defaultTargetState);
 
+    /**
+     * apply a transition to the paths written by an import, each path moves from its own current state and the
+     * paths without a state are inserted with the default target state. Only the import uses it, other writers
+     * create the state of their items when they write them
+     */
+    void transitionImportedBulk(String site, List<String> paths, TransitionEvent event, State defaultTargetState);
+
     /**
      * get the object for a given set of states
      */
     List<ItemState> getObjectStateByStates(String site, List<String> states);
 
+    /**
+     * get the object states for a given set of paths, paths without a state are not returned
+     */
+    List<ItemState> getObjectStateByPaths(String site, List<String> paths);
+
     boolean isScheduled(String site, String path);
 
     boolean isInWorkflow(String site,String path);
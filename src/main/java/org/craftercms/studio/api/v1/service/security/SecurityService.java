@@ -21,9 +21,12 @@ import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.exception.security.PasswordDoesNotMatchException;
 import org.craftercms.studio.api.v1.exception.security.UserExternallyManagedException;
 import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.impl.v2.service.security.Authentication;
+import org.craftercms.studio.model.search.SearchPermissions;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.Map;
@@ -60,6 +63,31 @@ public interface SecurityService {
 
     Set<String> getUserPermissions(String site, String path, String user, List<String> groups);
 
+    /**
+     * Get the permissions of a user for several items, resolving the user roles and the permission configuration
+     * only once. The content type already loaded in each item is used for the allowed roles check, so the items are
+     * not loaded again.
+     *
+     * @param site site identifier
+     * @param items items to check, each path is validated like the path of the single item version
+     * @param user username
+     * @param groups groups of the user
+     * @return map of item uri to the permissions of the user for that item
+     */
+    Map<String, Set<String>> getUserPermissions(String site, Collection<ContentItemTO> items, String user,
+                                                List<String> groups);
+
+    /**
+     * Get the paths and content types a user can read in a site, so search results can be filtered by Elasticsearch
+     * instead of checking the permissions of every result
+     *
+     * @param site site identifier
+     * @param user username
+     * @param groups groups of the user
+     * @return read permissions of the user
+     */
+    SearchPermissions getSearchPermissions(String site, String user, List<String> groups);
+
     boolean validateTicket(String token);
 
     void reloadConfiguration(String site);
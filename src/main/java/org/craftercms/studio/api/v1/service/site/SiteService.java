@@ -89,6 +89,13 @@ public interface SiteService {
 
     Set<String> getAllAvailableSites();
 
+    /**
+     * Get all available sites with a single query
+     *
+     * @return list of sites, excluding the system site
+     */
+    List<SiteFeed> getAllAvailableSiteFeeds();
+
     int countSites();
 
     /**
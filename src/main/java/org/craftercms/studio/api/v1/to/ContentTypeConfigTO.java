@@ -17,6 +17,8 @@ package org.craftercms.studio.api.v1.to;
 
 import java.io.Serializable;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -108,6 +110,55 @@ public class ContentTypeConfigTO implements TimeStamped, Serializable {
 
 	protected String quickCreatePath;
 	
+	public ContentTypeConfigTO() {
+	}
+
+	/**
+	 * Create a copy of the given configuration, its collections and dependency patterns are copied too
+	 *
+	 * @param source configuration to copy
+	 */
+	public ContentTypeConfigTO(ContentTypeConfigTO source) {
+		this.name = source.name;
+		this.label = source.label;
+		this.form = source.form;
+		this.formPath = source.formPath;
+		this.type = source.type;
+		this.contentAsFolder = source.contentAsFolder;
+		this.useRoundedFolder = source.useRoundedFolder;
+		this.modelInstancePath = source.modelInstancePath;
+		if (source.allowedRoles != null) {
+			this.allowedRoles = new HashSet<>(source.allowedRoles);
+		}
+		this.lastUpdated = source.lastUpdated;
+		if (source.deleteDependencies != null) {
+			this.deleteDependencies = new ArrayList<>(source.deleteDependencies.size());
+			for (DeleteDependencyConfigTO dependency : source.deleteDependencies) {
+				this.deleteDependencies.add(new DeleteDependencyConfigTO(dependency.getPattern(),
+						dependency.isRemoveEmptyFolder()));
+			}
+		}
+		if (source.copyDepedencyPattern != null) {
+			this.copyDepedencyPattern = new ArrayList<>(source.copyDepedencyPattern.size());
+			for (CopyDependencyConfigTO dependency : source.copyDepedencyPattern) {
+				this.copyDepedencyPattern.add(new CopyDependencyConfigTO(dependency.getPattern(),
+						dependency.getTarget()));
+			}
+		}
+		this.isPreviewable = source.isPreviewable;
+		this.imageThumbnail = source.imageThumbnail;
+		this.noThumbnail = source.noThumbnail;
+		if (source.pathIncludes != null) {
+			this.pathIncludes = new ArrayList<>(source.pathIncludes);
+		}
+		if (source.pathExcludes != null) {
+			this.pathExcludes = new ArrayList<>(source.pathExcludes);
+		}
+		this.nodeRef = source.nodeRef;
+		this.quickCreate = source.quickCreate;
+		this.quickCreatePath = source.quickCreatePath;
+	}
+
 	public String getImageThumbnail() {
 		return imageThumbnail;
 	}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.api.v1.to;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read only copy of a content type configuration, shared by all the callers of the content type registry. The
+ * collections can't be changed and all the setters throw {@link UnsupportedOperationException}
+ */
+public class UnmodifiableContentTypeConfigTO extends ContentTypeConfigTO {
+
+    private static final long serialVersionUID = -2093853526408410522L;
+
+    public UnmodifiableContentTypeConfigTO(ContentTypeConfigTO source) {
+        super(source);
+        if (allowedRoles != null) {
+            allowedRoles = Collections.unmodifiableSet(allowedRoles);
+        }
+        if (deleteDependencies != null) {
+            List<DeleteDependencyConfigTO> dependencies = new ArrayList<>(deleteDependencies.size());
+            for (DeleteDependencyConfigTO dependency : deleteDependencies) {
+                dependencies.add(new UnmodifiableDeleteDependency(dependency));
+            }
+            deleteDependencies = Collections.unmodifiableList(dependencies);
+        }
+        if (copyDepedencyPattern != null) {
+            List<CopyDependencyConfigTO> dependencies = new ArrayList<>(copyDepedencyPattern.size());
+            for (CopyDependencyConfigTO dependency : copyDepedencyPattern) {
+                dependencies.add(new UnmodifiableCopyDependency(dependency));
+            }
+            copyDepedencyPattern = Collections.unmodifiableList(dependencies);
+        }
+        if (pathIncludes != null) {
+            pathIncludes = Collections.unmodifiableList(pathIncludes);
+        }
+        if (pathExcludes != null) {
+            pathExcludes = Collections.unmodifiableList(pathExcludes);
+        }
+    }
+
+    @Override
+    public void setImageThumbnail(String imageThumbnail) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setLabel(String label) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setForm(String form) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setAllowedRoles(Set<String> allowedRoles) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setFormPath(String formPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setName(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setModelInstancePath(String modelInstancePath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setDeleteDependencies(List<DeleteDependencyConfigTO> deleteDependencies) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setLastUpdated(ZonedDateTime lastUpdated) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setContentAsFolder(boolean contentAsFolder) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPreviewable(boolean isPreviewable) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setUseRoundedFolder(boolean useRoundedFolder) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setCopyDepedencyPattern(List<CopyDependencyConfigTO> copyDepedencyPattern) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPathIncludes(List<String> pathIncludes) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPathExcludes(List<String> pathExcludes) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setNoThumbnail(boolean noThumbnail) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setNodeRef(String nodeRef) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setType(String type) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setQuickCreate(boolean quickCreate) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setQuickCreatePath(String quickCreatePath) {
+        throw new UnsupportedOperationException();
+    }
+
+    private static class UnmodifiableDeleteDependency extends DeleteDependencyConfigTO {
+
+        private static final long serialVersionUID = 4163595474416226095L;
+
+        UnmodifiableDeleteDependency(DeleteDependencyConfigTO source) {
+            super(source.getPattern(), source.isRemoveEmptyFolder());
+        }
+
+        @Override
+        public void setPattern(String pattern) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setRemoveEmptyFolder(boolean removeEmptyFolder) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class UnmodifiableCopyDependency extends CopyDependencyConfigTO {
+
+        private static final long serialVersionUID = -5585734373640622390L;
+
+        UnmodifiableCopyDependency(CopyDependencyConfigTO source) {
+            super(source.getPattern(), source.getTarget());
+        }
+
+        @Override
+        public void setPattern(String pattern) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setTarget(String target) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -35,6 +35,12 @@ public interface AuditDAO {
 
     void insertAuditLogParams(Map params);
 
+    /**
+     * Insert audit log entries without parameters with a single statement
+     * @param params SQL query parameters
+     */
+    void insertAuditLogs(Map params);
+
     List<AuditLog> selectUserFeedEntriesHideLive(Map params);
 
     List<AuditLog> selectUserFeedEntries(Map params);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+/**
+ * Position of an audit log entry in the (operation_timestamp, id) ordering, used for keyset pagination.
+ * Cursors are exchanged with clients as opaque strings.
+ */
+public class AuditLogCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final ZonedDateTime operationTimestamp;
+    private final long id;
+
+    public AuditLogCursor(ZonedDateTime operationTimestamp, long id) {
+        this.operationTimestamp = operationTimestamp;
+        this.id = id;
+    }
+
+    /**
+     * Create the cursor pointing after the given audit log entry
+     *
+     * @param auditLog last entry of a page
+     * @return cursor for the next page
+     */
+    public static AuditLogCursor after(AuditLog auditLog) {
+        return new AuditLogCursor(auditLog.getOperationTimestamp(), auditLog.getId());
+    }
+
+    /**
+     * Decode an opaque cursor string
+     *
+     * @param value encoded cursor
+     * @return the cursor, or null if the value is empty
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static AuditLogCursor decode(String value) {
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid audit log cursor " + value, e);
+        }
+        String[] parts = StringUtils.split(decoded, SEPARATOR);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid audit log cursor " + value);
+        }
+        try {
+            Instant timestamp = Instant.ofEpochMilli(Long.parseLong(parts[0]));
+            return new AuditLogCursor(ZonedDateTime.ofInstant(timestamp, ZoneOffset.UTC), Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid audit log cursor " + value, e);
+        }
+    }
+
+    /**
+     * Encode this cursor as an opaque, URL safe string
+     *
+     * @return encoded cursor
+     */
+    public String encode() {
+        String value = operationTimestamp.toInstant().toEpochMilli() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ZonedDateTime getOperationTimestamp() {
+        return operationTimestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -116,6 +116,22 @@ public interface GroupDAO {
      */
     Integer addGroupMembers(Map params);
 
+    /**
+     * Create the groups that don't exist yet
+     *
+     * @param params SQL query parameters
+     * @return Number of rows affected in DB
+     */
+    Integer createGroups(Map params);
+
+    /**
+     * Add a user to the given groups, skipping the groups the user is already a member of
+     *
+     * @param params SQL query parameters
+     * @return Number of rows affected in DB
+     */
+    Integer addUserToGroups(Map params);
+
     /**
      * Get User ids for usernames
      *
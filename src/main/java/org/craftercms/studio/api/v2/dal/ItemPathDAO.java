@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DAO for the path dictionary (item_path) and its closure table (item_path_closure). Entries are unique by site and
+ * the MD5 hash of the path, matching is exact and case sensitive.
+ */
+public interface ItemPathDAO {
+
+    String ANCESTOR_ID = "ancestorId";
+    String DESCENDANT_ID = "descendantId";
+    String DISTANCE = "distance";
+
+    /**
+     * Get the dictionary entries for the given paths
+     *
+     * @param site site identifier
+     * @param paths paths to look up
+     * @return entries found, paths not in the dictionary are skipped
+     */
+    List<ItemPath> getPaths(@Param("site") String site, @Param("paths") Collection<String> paths);
+
+    /**
+     * Insert dictionary entries, entries already present are kept as they are
+     *
+     * @param site site identifier
+     * @param paths entries to insert
+     */
+    void insertPaths(@Param("site") String site, @Param("paths") List<ItemPath> paths);
+
+    /**
+     * Insert closure rows, rows already present are kept as they are
+     *
+     * @param rows list of rows with the keys {@link #ANCESTOR_ID}, {@link #DESCENDANT_ID} and {@link #DISTANCE}
+     */
+    void insertClosure(@Param("rows") List<Map<String, Long>> rows);
+
+    /**
+     * Delete the closure rows for all paths of a site
+     *
+     * @param site site identifier
+     */
+    void deleteClosureForSite(@Param("site") String site);
+
+    /**
+     * Delete all paths of a site
+     *
+     * @param site site identifier
+     */
+    void deletePathsForSite(@Param("site") String site);
+}
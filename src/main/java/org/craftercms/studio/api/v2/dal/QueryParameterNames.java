@@ -100,6 +100,12 @@ public abstract class QueryParameterNames {
     public static final String PROCESSING_STATE = "processingState";
     // Ready state
     public static final String READY_STATE = "readyState";
+    // New state
+    public static final String NEW_STATE = "newState";
+    // States the requests must be in to be updated
+    public static final String EXPECTED_STATES = "expectedStates";
+    // Publish request ids
+    public static final String PUBLISH_REQUEST_IDS = "publishRequestIds";
 
     /* Audit */
     public static final String ACTIONS = "actions";
@@ -112,6 +118,16 @@ public abstract class QueryParameterNames {
 
     public static final String TARGET = "target";
 
+    public static final String TARGET_VALUE = "targetValue";
+
+    public static final String TARGET_PREFIX = "targetPrefix";
+
+    public static final String TARGET_SUBSTRING = "targetSubstring";
+
+    public static final String CURSOR_TIMESTAMP = "cursorTimestamp";
+
+    public static final String CURSOR_ID = "cursorId";
+
     public static final String ORIGIN = "origin";
 
     public static final String CLUSTER_NODE_ID = "clusterNodeId";
@@ -39,6 +39,19 @@ public interface StudioBlobStoreAdapter extends StudioBlobStore {
     // TODO: Remove when the API is split
 
     // Start API 1
+    @Override
+    default String writeCopiedContent(String site, String fromPath, String toPath, Map<String, InputStream> contents,
+                                      List<String> folders) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    default String writeImportedContent(String site, Map<String, InputStream> contents) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     default RepositoryItem[] getContentChildren(String site, String path) {
         // This should be handled by the local repository
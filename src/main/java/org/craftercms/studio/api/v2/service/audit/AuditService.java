@@ -20,6 +20,7 @@ import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
 
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -71,12 +72,13 @@ public interface AuditService {
      * @param clusterNodeId filter logs by given cluster node id
      * @param sort sort logs by given sort type
      * @param order order logs
+     * @param cursor if not null, return the logs following this position (offset and sort are ignored)
      * @return audit log result set
      */
     List<AuditLog> getAuditLog(String siteId, String siteName, int offset, int limit, String user,
                                List<String> operations, boolean includeParameters, ZonedDateTime dateFrom,
                                ZonedDateTime dateTo, String target, String origin, String clusterNodeId, String sort,
-                               String order);
+                               String order, AuditLogCursor cursor);
 
     /**
      * Get total number of audit log entries for given filters
@@ -18,6 +18,7 @@ package org.craftercms.studio.api.v2.service.audit.internal;
 
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
 
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -52,12 +53,13 @@ public interface AuditServiceInternal {
     /**
      * Get audit log filtered by parameters
      *
+     * @param cursor if not null, return the entries following this position (offset and sort are ignored)
      * @return List of audit log entries
      */
     List<AuditLog> getAuditLog(String siteId, String siteName, int offset, int limit, String user,
                                List<String> operations, boolean includeParameters, ZonedDateTime dateFrom,
                                ZonedDateTime dateTo, String target, String origin, String clusterNodeId, String sort,
-                               String order);
+                               String order, AuditLogCursor cursor);
 
     int getAuditLogTotal(String siteId, String siteName, String user, List<String> operations,
                                     boolean includeParameters, ZonedDateTime dateFrom, ZonedDateTime dateTo,
@@ -90,11 +92,12 @@ public interface AuditServiceInternal {
      * @param target filter logs by target
      * @param sort sort for records
      * @param order order for records
+     * @param cursor if not null, return the records following this position (offset and sort are ignored)
      * @return list of records for audit dashboard
      */
     List<AuditLog> getAuditDashboard(String siteId, int offset, int limit, String user, List<String> operations,
                                      ZonedDateTime dateFrom, ZonedDateTime dateTo, String target, String sort,
-                                     String order);
+                                     String order, AuditLogCursor cursor);
 
     /**
      * Get audit log entry by id
@@ -112,6 +115,23 @@ public interface AuditServiceInternal {
      */
     boolean insertAuditLog(AuditLog auditLog);
 
+    /**
+     * Insert log audit entry
+     *
+     * @param auditLog Audit log to insert
+     * @param synchronous if true the entry is written before returning, otherwise it can be written later by a
+     *                    background writer, only after the current transaction commits
+     * @return true if successful, otherwise false
+     */
+    boolean insertAuditLog(AuditLog auditLog, boolean synchronous);
+
+    /**
+     * Get the number of entries queued for the background writer and not inserted yet
+     *
+     * @return number of queued entries, 0 if entries are always inserted synchronously
+     */
+    int getPendingAuditLogs();
+
     /**
      * Create Audit log entry and populate common properties
      *
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.service.content.internal;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Maintains the path dictionary: integer ids for the paths of a site, with parent, depth and the ancestor closure
+ * so that tables referencing the ids can run subtree and ancestor queries as integer lookups.
+ * <p>
+ * Paths are looked up by the MD5 hash of the exact path, so unlike comparisons on the path columns, that use the
+ * case insensitive collation of the database, the lookups are case sensitive like the paths in the repository.
+ * {@code /site/website/About.xml} and {@code /site/website/about.xml} are different entries.
+ */
+public interface ItemPathServiceInternal {
+
+    /**
+     * Get the ids for the given paths, adding the paths (and their ancestors) to the dictionary if needed
+     *
+     * @param site site identifier
+     * @param paths paths to intern
+     * @return map of path to id, including the ancestors of the given paths
+     */
+    Map<String, Long> internPaths(String site, Collection<String> paths);
+
+    /**
+     * Remove all paths of a site from the dictionary
+     *
+     * @param site site identifier
+     */
+    void deleteSitePaths(String site);
+}
@@ -17,6 +17,7 @@
 package org.craftercms.studio.api.v2.service.dashboard;
 
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
 import org.craftercms.studio.model.rest.dashboard.ContentDashboardItem;
 import org.craftercms.studio.model.rest.dashboard.PublishingDashboardItem;
 
@@ -55,11 +56,13 @@ public interface DashboardService {
      * @param target filter logs by given operation target
      * @param sort sort logs by given sort type
      * @param order order logs
+     * @param cursor if not null, return the logs following this position (offset and sort are ignored)
      *
      * @return audit log result set
      */
     List<AuditLog> getAuditDashboard(String siteId, int offset, int limit, String user, List<String> operations,
-                               ZonedDateTime dateFrom, ZonedDateTime dateTo, String target, String sort, String order);
+                               ZonedDateTime dateFrom, ZonedDateTime dateTo, String target, String sort, String order,
+                               AuditLogCursor cursor);
 
     /**
      * Get total number of records for content dashboard
@@ -20,6 +20,7 @@ import java.util.List;
 
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.model.search.SearchParams;
+import org.craftercms.studio.model.search.SearchPermissions;
 import org.craftercms.studio.model.search.SearchResult;
 
 /**
@@ -38,4 +39,15 @@ public interface SearchServiceInternal {
      */
     SearchResult search(String siteId, List<String> allowedPaths, SearchParams params) throws ServiceLayerException;
 
+    /**
+     * Performs a search operation for a given site, only returning the items the user can read
+     * @param siteId the site id
+     * @param permissions the read permissions of the user
+     * @param params the search parameters
+     * @return the search results
+     * @throws ServiceLayerException if there is any error executing the search in Elasticsearch
+     */
+    SearchResult search(String siteId, SearchPermissions permissions, SearchParams params)
+        throws ServiceLayerException;
+
 }
@@ -20,6 +20,7 @@ import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v2.dal.GroupDAO;
 import org.craftercms.studio.api.v2.dal.UserDAO;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 
@@ -85,4 +86,11 @@ public interface AuthenticationChain {
      * @return Site Service
      */
     SiteService getSiteService();
+
+    /**
+     * Expose Site Membership Cache to authentication providers
+     *
+     * @return Site Membership Cache
+     */
+    SiteMembershipCache getSiteMembershipCache();
 }
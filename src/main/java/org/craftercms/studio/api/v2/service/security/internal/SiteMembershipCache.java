@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.api.v2.service.security.internal;
+
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache for the data needed to resolve which sites a user belongs to and which roles it has on them
+ */
+public interface SiteMembershipCache {
+
+    /**
+     * Get the names of the groups a user belongs to
+     *
+     * @param userId user id, used if the username is empty
+     * @param username username
+     * @return set of group names
+     * @throws UserNotFoundException if the user doesn't exist
+     * @throws ServiceLayerException if there is any error loading the groups
+     */
+    Set<String> getUserGroups(long userId, String username) throws UserNotFoundException, ServiceLayerException;
+
+    /**
+     * Get the role mappings of a site
+     *
+     * @param siteId site id
+     * @return roles by group name
+     * @throws ServiceLayerException if there is any error reading the role mappings configuration
+     */
+    Map<String, List<String>> getRoleMappings(String siteId) throws ServiceLayerException;
+
+    /**
+     * Invalidate the groups of all users, needs to be called after any change to groups or group members
+     */
+    void invalidateMembership();
+
+    /**
+     * Invalidate the role mappings of a site, needs to be called after any change to the site configuration
+     *
+     * @param siteId site id
+     */
+    void invalidateSite(String siteId);
+}
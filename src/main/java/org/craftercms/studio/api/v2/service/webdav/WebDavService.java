@@ -18,9 +18,11 @@ package org.craftercms.studio.api.v2.service.webdav;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 import org.craftercms.studio.api.v1.exception.WebDavException;
 import org.craftercms.studio.api.v1.webdav.WebDavItem;
+import org.springframework.core.io.InputStreamSource;
 
 /**
  * Defines the operations available for a WebDAV server.
@@ -53,4 +55,16 @@ public interface WebDavService {
     WebDavItem upload(String siteId, String profileId, String path, String filename, InputStream content) throws
         WebDavException;
 
+    /**
+     * Uploads several files in the specified path, the files are sent to the server concurrently.
+     * @param siteId the id of the site
+     * @param profileId the id of the profile
+     * @param path the relative path to upload the files
+     * @param files the source of the content of each file, by file name
+     * @return the uploaded items, in the same order as the files
+     * @throws WebDavException if there is an error connecting to the server or uploading any of the files
+     */
+    List<WebDavItem> upload(String siteId, String profileId, String path,
+                            Map<String, ? extends InputStreamSource> files) throws WebDavException;
+
 }
@@ -46,6 +46,11 @@ public interface StudioConfiguration {
     String REPO_PUBLISHED_STAGING = "studio.repo.published.staging";
     String REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING = "studio.repo.syncDB.commitMessage.noProcessing";
     String REPO_CLEANUP_CRON = "studio.repo.cleanup.cron";
+    String REPO_CLEANUP_POOL_SIZE = "studio.repo.cleanup.poolSize";
+    String REPO_CLEANUP_LOOSE_OBJECTS_THRESHOLD = "studio.repo.cleanup.looseObjectsThreshold";
+    String REPO_CLEANUP_PACK_FILES_THRESHOLD = "studio.repo.cleanup.packFilesThreshold";
+    String REPO_CLEANUP_LOOSE_REFS_THRESHOLD = "studio.repo.cleanup.looseRefsThreshold";
+    String REPO_CLEANUP_PRUNE_GRACE_PERIOD = "studio.repo.cleanup.pruneGracePeriod";
     String REPO_CREATE_REPOSITORY_COMMIT_MESSAGE = "studio.repo.createRepository.commitMessage";
     String REPO_CREATE_SANDBOX_BRANCH_COMMIT_MESSAGE = "studio.repo.createSandboxBranch.commitMessage";
     String REPO_INITIAL_COMMIT_COMMIT_MESSAGE = "studio.repo.initialCommit.commitMessage";
@@ -55,9 +60,12 @@ public interface StudioConfiguration {
     String REPO_DELETE_CONTENT_COMMIT_MESSAGE = "studio.repo.deleteContent.commitMessage";
     String REPO_MOVE_CONTENT_COMMIT_MESSAGE = "studio.repo.moveContent.commitMessage";
     String REPO_COPY_CONTENT_COMMIT_MESSAGE = "studio.repo.copyContent.commitMessage";
+    String REPO_IMPORT_CONTENT_COMMIT_MESSAGE = "studio.repo.importContent.commitMessage";
     String REPO_PULL_FROM_REMOTE_CONFLICT_NOTIFICATION_ENABLED =
             "studio.repo.pullFromRemote.conflict.notificationEnabled";
     String REPO_DEFAULT_IGNORE_FILE = "studio.repo.defaultIgnoreFile";
+    String REPO_HISTORY_FOLLOW_RENAMES = "studio.repo.history.followRenames";
+    String REPO_HISTORY_MAX_INDEXED_SITES = "studio.repo.history.maxIndexedSites";
 
     /** Database */
     String DB_DRIVER = "studio.db.driver";
@@ -136,8 +144,10 @@ public interface StudioConfiguration {
 
     /** Import Service */
     String IMPORT_ASSIGNEE = "studio.import.assignee";
-    String IMPORT_XML_CHAIN_NAME = "studio.import.xmlChainName";
-    String IMPORT_ASSET_CHAIN_NAME = "studio.import.assetChainName";
+    String IMPORT_BATCH_SIZE = "studio.import.batchSize";
+    String IMPORT_MAX_BACKOFF = "studio.import.maxBackoff";
+    String IMPORT_MAX_PENDING_AUDIT_LOGS = "studio.import.maxPendingAuditLogs";
+    String IMPORT_MAX_CONNECTION_USAGE = "studio.import.maxConnectionUsage";
 
     /** Notification Service */
     String NOTIFICATION_CONFIGURATION_FILE = "studio.notification.configurationFile";
@@ -167,6 +177,15 @@ public interface StudioConfiguration {
     String SECURITY_RESET_PASSWORD_SERVICE_URL = "studio.security.resetPassword.serviceUrl";
     String SECURITY_PASSWORD_REQUIREMENTS_VALIDATION_REGEX = "studio.security.passwordRequirements.validationRegex";
     String SECURITY_SET_PASSWORD_DELAY = "studio.security.setPasswordDelay";
+    String SECURITY_MEMBERSHIP_CACHE_TIME_TO_LIVE = "studio.security.membershipCache.timeToLive";
+
+    /** Audit Log Writer **/
+    String AUDIT_WRITER_ENABLED = "studio.audit.writer.enabled";
+    String AUDIT_WRITER_QUEUE_SIZE = "studio.audit.writer.queueSize";
+    String AUDIT_WRITER_BATCH_SIZE = "studio.audit.writer.batchSize";
+    String AUDIT_WRITER_FLUSH_INTERVAL = "studio.audit.writer.flushInterval";
+    String AUDIT_WRITER_JOURNAL_FOLDER = "studio.audit.writer.journalFolder";
+    String AUDIT_WRITER_SYNCHRONOUS_OPERATIONS = "studio.audit.writer.synchronousOperations";
 
     /** Authentication headers **/
     String AUTHENTICATION_HEADERS_LOGOUT_ENABLED = "studio.authentication.headers.logout.enabled";
@@ -174,6 +193,12 @@ public interface StudioConfiguration {
     /** Page Navigation Order Service */
     String PAGE_NAVIGATION_ORDER_INCREMENT = "studio.pageNavigationOrder.increment";
 
+    /** Content Service */
+    String CONTENT_COPY_BATCH_SIZE = "studio.content.copy.batchSize";
+    String CONTENT_NAME_INDEX_MAX_FOLDERS = "studio.content.nameIndex.maxFolders";
+    String CONTENT_NAME_INDEX_RESERVATION_TIMEOUT = "studio.content.nameIndex.reservationTimeout";
+    String CONTENT_MOVE_BATCH_SIZE = "studio.content.move.batchSize";
+
     /** Content Processors */
     String CONTENT_PROCESSOR_CONTENT_LIFE_CYCLE_SCRIPT_LOCATION =
             "studio.contentProcessor.contentLifeCycle.scriptLocation";
@@ -238,6 +263,8 @@ public interface StudioConfiguration {
     String PUBLISHING_MANAGER_INDEX_FILE = "studio.publishingManager.indexFile";
     String PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED =
             "studio.publishingManager.publishingWithoutDependencies.enabled";
+    String PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE = "studio.publishingManager.stateUpdateBatchSize";
+    String PUBLISHING_MANAGER_DEPENDENCY_LOOKUP_BATCH_SIZE = "studio.publishingManager.dependencyLookupBatchSize";
 
     /** Authentication Chain properties **/
     String AUTHENTICATION_CHAIN_PROVIDER_TYPE = "provider";
@@ -257,6 +284,8 @@ public interface StudioConfiguration {
     String AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_LDAP_ATTRIBUTE = "groupNameLdapAttribute";
     String AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_REGEX_LDAP_ATTRIBUTE = "groupNameLdapAttributeRegex";
     String AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_MATCH_INDEX_LDAP_ATTRIBUTE = "groupNameLdapAttributeMatchIndex";
+    String AUTHENTICATION_CHAIN_PROVIDER_LDAP_POOL_MAX_ACTIVE = "ldapPoolMaxActive";
+    String AUTHENTICATION_CHAIN_PROVIDER_LDAP_POOL_TEST_ON_BORROW = "ldapPoolTestOnBorrow";
     /** HEADERS **/
     String AUTHENTICATION_CHAIN_PROVIDER_TYPE_HEADERS = "HEADERS";
     String AUTHENTICATION_CHAIN_PROVIDER_SECURE_KEY_HEADER = "secureKeyHeader";
@@ -268,6 +297,7 @@ public interface StudioConfiguration {
     String AUTHENTICATION_CHAIN_PROVIDER_GROUPS_HEADER = "groupsHeader";
     String AUTHENTICATION_CHAIN_PROVIDER_LOGOUT_ENABLED = "logoutEnabled";
     String AUTHENTICATION_CHAIN_PROVIDER_LOGOUT_URL = "logoutUrl";
+    String AUTHENTICATION_CHAIN_PROVIDER_IDENTITY_CACHE_TIME_TO_LIVE = "identityCacheTimeToLive";
 
     /** Publishing Thread Pool **/
     String PUBLISHING_THREAD_POOL_NAME_PREFIX = "studio.publishing.threadPool.namePrefix";
@@ -311,6 +341,7 @@ public interface StudioConfiguration {
     String UPGRADE_PIPELINE_BLUEPRINT = "studio.upgrade.pipeline.blueprint";
     String UPGRADE_PIPELINE_CONFIGURATIONS = "studio.upgrade.pipeline.configurations";
     String UPGRADE_SCRIPT_FOLDER = "studio.upgrade.scriptFolder";
+    String UPGRADE_SITE_POOL_SIZE = "studio.upgrade.site.poolSize";
 
     /** Serverless Delivery Configuration **/
     String SERVERLESS_DELIVERY_ENABLED = "studio.serverless.delivery.enabled";
@@ -322,6 +353,11 @@ public interface StudioConfiguration {
     String SERVERLESS_DELIVERY_DEPLOYER_TARGET_REPO_URL = "studio.serverless.delivery.deployer.target.repoUrl";
     String SERVERLESS_DELIVERY_DEPLOYER_TARGET_TEMPLATE_PARAMS = "studio.serverless.delivery.deployer.target.template.params";
 
+    /** CMIS **/
+    String CMIS_SESSION_CACHE_SIZE = "studio.cmis.session.cache.size";
+    String CMIS_SESSION_CACHE_TTL = "studio.cmis.session.cache.ttl";
+    String CMIS_LIST_PAGE_SIZE = "studio.cmis.list.pageSize";
+
     /** Cache Configuration  **/
     String CACHE_TEMPLATES = "studio.cache.templates";
 
@@ -20,9 +20,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
+import org.craftercms.studio.api.v2.exception.InvalidParametersException;
 import org.craftercms.studio.api.v2.service.audit.AuditService;
 import org.craftercms.studio.model.rest.ApiResponse;
-import org.craftercms.studio.model.rest.PaginatedResultList;
+import org.craftercms.studio.model.rest.CursorPaginatedResultList;
 import org.craftercms.studio.model.rest.ResponseBody;
 import org.craftercms.studio.model.rest.ResultOne;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -36,6 +38,7 @@ import java.time.ZonedDateTime;
 import java.util.List;
 
 import static org.craftercms.studio.controller.rest.v2.RequestConstants.REQUEST_PARAM_CLUSTER_NODE_ID;
+import static org.craftercms.studio.controller.rest.v2.RequestConstants.REQUEST_PARAM_CURSOR;
 import static org.craftercms.studio.controller.rest.v2.RequestConstants.REQUEST_PARAM_DATE_FROM;
 import static org.craftercms.studio.controller.rest.v2.RequestConstants.REQUEST_PARAM_DATE_TO;
 import static org.craftercms.studio.controller.rest.v2.RequestConstants.REQUEST_PARAM_ID;
@@ -64,6 +67,7 @@ public class AuditController {
             @RequestParam(value = REQUEST_PARAM_SITE_NAME, required = false) String siteName,
             @RequestParam(value = REQUEST_PARAM_OFFSET, required = false, defaultValue = "0") int offset,
             @RequestParam(value = REQUEST_PARAM_LIMIT, required = false, defaultValue = "10") int limit,
+            @RequestParam(value = REQUEST_PARAM_CURSOR, required = false) String cursor,
             @RequestParam(value = REQUEST_PARAM_USER, required = false, defaultValue = "") String user,
             @RequestParam(value = REQUEST_PARAM_OPERATIONS, required = false) List<String> operations,
             @RequestParam(value = REQUEST_PARAM_INCLUDE_PARAMETERS, required = false) boolean includeParameters,
@@ -75,7 +79,8 @@ public class AuditController {
             @RequestParam(value = REQUEST_PARAM_ORIGIN, required = false) String origin,
             @RequestParam(value = REQUEST_PARAM_CLUSTER_NODE_ID, required = false) String clusterNodeId,
             @RequestParam(value = REQUEST_PARAM_SORT, required = false) String sort,
-            @RequestParam(value = REQUEST_PARAM_ORDER, required = false) String order) throws SiteNotFoundException {
+            @RequestParam(value = REQUEST_PARAM_ORDER, required = false) String order)
+            throws SiteNotFoundException, InvalidParametersException {
 
         if (StringUtils.isNotEmpty(siteId) && !siteService.existsById(siteId)) {
             throw new SiteNotFoundException("Site " + siteId + " not found.");
@@ -85,17 +90,32 @@ public class AuditController {
             throw new SiteNotFoundException("Site " + siteName + " not found.");
         }
 
+        // Cursors follow the operation timestamp order, they only work when the pages are sorted that way
+        boolean sortedByDate = StringUtils.isEmpty(sort) || StringUtils.equalsIgnoreCase(sort, "date");
+        AuditLogCursor auditLogCursor;
+        try {
+            auditLogCursor = AuditLogCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParametersException(e.getMessage());
+        }
+        if (auditLogCursor != null && !sortedByDate) {
+            throw new InvalidParametersException("Cursors can only be used when sorting by date");
+        }
+
         int total = auditService.getAuditLogTotal(siteId, siteName, user, operations, includeParameters, dateFrom,
                 dateTo, target, origin, clusterNodeId);
 
         List<AuditLog> auditLog = auditService.getAuditLog(siteId, siteName, offset, limit, user, operations,
-                includeParameters, dateFrom, dateTo, target, origin, clusterNodeId, sort, order);
+                includeParameters, dateFrom, dateTo, target, origin, clusterNodeId, sort, order, auditLogCursor);
 
         ResponseBody responseBody = new ResponseBody();
-        PaginatedResultList<AuditLog> result = new PaginatedResultList<>();
+        CursorPaginatedResultList<AuditLog> result = new CursorPaginatedResultList<>();
         result.setTotal(total);
         result.setLimit(CollectionUtils.isEmpty(auditLog) ? 0 : auditLog.size());
         result.setOffset(offset);
+        if (sortedByDate && !CollectionUtils.isEmpty(auditLog) && auditLog.size() >= limit) {
+            result.setNextCursor(AuditLogCursor.after(auditLog.get(auditLog.size() - 1)).encode());
+        }
         result.setEntities(RESULT_KEY_AUDIT_LOG, auditLog);
         result.setResponse(ApiResponse.OK);
         responseBody.setResult(result);
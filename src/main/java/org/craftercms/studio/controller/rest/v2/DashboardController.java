@@ -17,8 +17,12 @@
 package org.craftercms.studio.controller.rest.v2;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
+import org.craftercms.studio.api.v2.exception.InvalidParametersException;
 import org.craftercms.studio.api.v2.service.dashboard.DashboardService;
+import org.craftercms.studio.model.rest.CursorPaginatedResultList;
 import org.craftercms.studio.model.rest.PaginatedResultList;
 import org.craftercms.studio.model.rest.ResponseBody;
 import org.craftercms.studio.model.rest.dashboard.AuditDashboardItem;
@@ -52,7 +56,8 @@ public class DashboardController {
     private DashboardService dashboardService;
 
     @GetMapping(value = AUDIT_DASHBOARD, produces = APPLICATION_JSON_VALUE)
-    public ResponseBody getAuditDashboard(@Valid AuditDashboardRequestParameters requestParameters) {
+    public ResponseBody getAuditDashboard(@Valid AuditDashboardRequestParameters requestParameters)
+            throws InvalidParametersException {
 
         String user = null;
         List<String> operations = null;
@@ -68,18 +73,34 @@ public class DashboardController {
             target = requestParameters.getFilters().getTarget();
         }
 
+        // Cursors follow the operation timestamp order, they only work when the pages are sorted that way
+        boolean sortedByDate = StringUtils.isEmpty(requestParameters.getSortBy()) ||
+                StringUtils.equals(requestParameters.getSortBy(), "operationTimestamp");
+        AuditLogCursor cursor;
+        try {
+            cursor = AuditLogCursor.decode(requestParameters.getCursor());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParametersException(e.getMessage());
+        }
+        if (cursor != null && !sortedByDate) {
+            throw new InvalidParametersException("Cursors can only be used when sorting by date");
+        }
+
         int total = dashboardService.getAuditDashboardTotal(requestParameters.getSiteId(), user, operations, dateFrom,
                 dateTo, target);
 
         List<AuditLog> auditLog = dashboardService.getAuditDashboard(requestParameters.getSiteId(),
                 requestParameters.getOffset(), requestParameters.getLimit(), user, operations, dateFrom, dateTo, target,
-                requestParameters.getSortBy(), requestParameters.getOrder());
+                requestParameters.getSortBy(), requestParameters.getOrder(), cursor);
 
         ResponseBody responseBody = new ResponseBody();
-        PaginatedResultList<AuditDashboardItem> result = new PaginatedResultList<AuditDashboardItem>();
+        CursorPaginatedResultList<AuditDashboardItem> result = new CursorPaginatedResultList<AuditDashboardItem>();
         result.setTotal(total);
         result.setLimit(CollectionUtils.isEmpty(auditLog) ? 0 : auditLog.size());
         result.setOffset(requestParameters.getOffset());
+        if (sortedByDate && CollectionUtils.isNotEmpty(auditLog) && auditLog.size() >= requestParameters.getLimit()) {
+            result.setNextCursor(AuditLogCursor.after(auditLog.get(auditLog.size() - 1)).encode());
+        }
         result.setEntities(RESULT_KEY_ITEMS, prepareAuditResult(auditLog));
         result.setResponse(OK);
         responseBody.setResult(result);
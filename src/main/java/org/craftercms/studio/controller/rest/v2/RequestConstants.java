@@ -22,6 +22,8 @@ public interface RequestConstants {
 
     String REQUEST_PARAM_LIMIT = "limit";
 
+    String REQUEST_PARAM_CURSOR = "cursor";
+
     String REQUEST_PARAM_SORT = "sort";
 
     String REQUEST_PARAM_ID = "id";
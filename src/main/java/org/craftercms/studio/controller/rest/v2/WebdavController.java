@@ -18,11 +18,17 @@ package org.craftercms.studio.controller.rest.v2;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.FilenameUtils;
@@ -34,6 +40,7 @@ import org.craftercms.studio.api.v2.service.webdav.WebDavService;
 import org.craftercms.studio.model.rest.ApiResponse;
 import org.craftercms.studio.model.rest.ResultList;
 import org.craftercms.studio.model.rest.ResultOne;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -149,4 +156,64 @@ public class WebdavController {
         }
     }
 
+    /**
+     * Uploads several files to the same folder of a WebDAV server
+     * @param request the request
+     * @return the uploaded items
+     * @throws IOException if there is any error reading the parameters of the request
+     * @throws WebDavException if there is any error uploading the files to the WebDAV server
+     * @throws InvalidParametersException if there is any error parsing the request
+     */
+    @PostMapping("/upload_multiple")
+    public ResultList<WebDavItem> uploadItems(HttpServletRequest request) throws IOException, WebDavException,
+        InvalidParametersException {
+        if (!ServletFileUpload.isMultipartContent(request)) {
+            throw new InvalidParametersException("The request is not multipart");
+        }
+        // the files are stored (in memory or temporary files) so they can be sent to the server concurrently
+        List<FileItem> items;
+        try {
+            items = new ServletFileUpload(new DiskFileItemFactory()).parseRequest(request);
+        } catch (FileUploadException e) {
+            throw new InvalidParametersException("The request body is invalid");
+        }
+        try {
+            String siteId = null;
+            String profileId = null;
+            String path = null;
+            Map<String, InputStreamSource> files = new LinkedHashMap<>();
+            for (FileItem item : items) {
+                if (item.isFormField()) {
+                    switch (item.getFieldName()) {
+                        case REQUEST_PARAM_SITEID:
+                            siteId = item.getString(StandardCharsets.UTF_8.name());
+                            break;
+                        case REQUEST_PARAM_PROFILE_ID:
+                            profileId = item.getString(StandardCharsets.UTF_8.name());
+                            break;
+                        case REQUEST_PARAM_PATH:
+                            path = item.getString(StandardCharsets.UTF_8.name());
+                            break;
+                        default:
+                            // Unknown parameter, just skip it...
+                    }
+                } else if (StringUtils.isNotEmpty(item.getName())) {
+                    files.put(FilenameUtils.getName(item.getName()), item::getInputStream);
+                }
+            }
+            if (files.isEmpty()) {
+                throw new InvalidParametersException("Request body is empty");
+            }
+
+            ResultList<WebDavItem> result = new ResultList<>();
+            result.setEntities(RESULT_KEY_ITEMS, webDavService.upload(siteId, profileId, path, files));
+            result.setResponse(ApiResponse.OK);
+
+            return result;
+        } finally {
+            // the upload doesn't return while any file is still being sent, even when one of them fails
+            items.forEach(FileItem::delete);
+        }
+    }
+
 }
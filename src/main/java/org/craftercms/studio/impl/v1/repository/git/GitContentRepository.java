@@ -24,6 +24,7 @@ import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -33,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -43,7 +45,10 @@ import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.servlet.ServletContext;
 
 import com.jcraft.jsch.JSch;
@@ -88,6 +93,7 @@ import org.craftercms.studio.api.v2.service.security.internal.UserServiceInterna
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
+import org.eclipse.jgit.api.CommitCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LsRemoteCommand;
 import org.eclipse.jgit.api.PullCommand;
@@ -132,6 +138,7 @@ import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.util.FS;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.context.ServletContextAware;
 
 import static java.lang.Integer.MAX_VALUE;
@@ -144,6 +151,7 @@ import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.BOOTSTRAP_REPO_GLOBAL_PATH;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.BOOTSTRAP_REPO_PATH;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_COUNT;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_FROM_PATH;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_PATH;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
@@ -157,11 +165,18 @@ import static org.craftercms.studio.api.v2.dal.RemoteRepository.AuthenticationTy
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.BLUE_PRINTS_PATH;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.BOOTSTRAP_REPO;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CLEANUP_LOOSE_OBJECTS_THRESHOLD;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CLEANUP_LOOSE_REFS_THRESHOLD;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CLEANUP_PACK_FILES_THRESHOLD;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CLEANUP_PRUNE_GRACE_PERIOD;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_COMMIT_MESSAGE_POSTSCRIPT;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_COMMIT_MESSAGE_PROLOGUE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_COPY_CONTENT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CREATE_FOLDER_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_DELETE_CONTENT_COMMIT_MESSAGE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_HISTORY_FOLLOW_RENAMES;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_HISTORY_MAX_INDEXED_SITES;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_IMPORT_CONTENT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_INITIAL_COMMIT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_MOVE_CONTENT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_PUBLISHED_COMMIT_MESSAGE;
@@ -193,8 +208,12 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     private static final Logger logger = LoggerFactory.getLogger(GitContentRepository.class);
     private GitContentRepositoryHelper helper = null;
     private TextEncryptor encryptor;
+    private GitVersionHistoryIndex versionHistoryIndex;
+    private ExecutorService versionHistoryExecutor;
+    private GitRepositoryMaintenance repositoryMaintenance;
 
     private static final String IN_PROGRESS_BRANCH_NAME_SUFIX = "_in_progress";
+    private static final String VERSION_HISTORY_THREAD_PREFIX = "version-history-index-";
     private static final String STUDIO_MANIFEST_LOCATION = "/META-INF/MANIFEST.MF";
 
     protected ServletContext ctx;
@@ -492,11 +511,11 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                 Status gitStatus = git.status().addPath(gitToPath).call();
                 Set<String> changeSet = gitStatus.getAdded();
 
-                for (String pathToCommit : changeSet) {
-                    String pathRemoved = pathToCommit.replace(gitToPath, gitFromPath);
+                if (!changeSet.isEmpty()) {
+                    // The whole subtree goes in a single commit, the removals are picked up from the source path
                     RevCommit commit = git.commit()
-                            .setOnly(pathToCommit)
-                            .setOnly(pathRemoved)
+                            .setOnly(gitToPath)
+                            .setOnly(gitFromPath)
                             .setAuthor(helper.getCurrentUserIdent())
                             .setCommitter(helper.getCurrentUserIdent())
                             .setMessage(helper.getCommitMessage(REPO_MOVE_CONTENT_COMMIT_MESSAGE)
@@ -505,7 +524,9 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                                             (StringUtils.isNotEmpty(newName) ? newName : EMPTY)))
                             .call();
                     commitId = commit.getName();
-                    toRet.put(pathToCommit, commitId);
+                    for (String pathToCommit : changeSet) {
+                        toRet.put(pathToCommit, commitId);
+                    }
                 }
             } catch (IOException | GitAPIException | ServiceLayerException | UserNotFoundException e) {
                 logger.error("Error while moving content for site: " + site + " fromPath: " + fromPath +
@@ -556,6 +577,104 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         return commitId;
     }
 
+    @Override
+    public String writeCopiedContent(String site, String fromPath, String toPath, Map<String, InputStream> contents,
+                                     List<String> folders) {
+        try {
+            return writeContents(site, contents, folders, helper.getCommitMessage(REPO_COPY_CONTENT_COMMIT_MESSAGE)
+                    .replaceAll(PATTERN_FROM_PATH, fromPath).replaceAll(PATTERN_TO_PATH, toPath));
+        } catch (IOException | GitAPIException | ServiceLayerException | UserNotFoundException e) {
+            logger.error("Error while writing copied content for site: " + site + " fromPath: " + fromPath +
+                    " toPath: " + toPath, e);
+            return null;
+        }
+    }
+
+    @Override
+    public String writeImportedContent(String site, Map<String, InputStream> contents) {
+        String commitId;
+        try {
+            commitId = writeContents(site, contents, Collections.<String>emptyList(),
+                    helper.getCommitMessage(REPO_IMPORT_CONTENT_COMMIT_MESSAGE)
+                            .replaceAll(PATTERN_COUNT, Integer.toString(contents.size()))
+                            .replaceAll(PATTERN_SITE, site));
+        } catch (IOException | GitAPIException | ServiceLayerException | UserNotFoundException e) {
+            logger.error("Error while writing imported content for site: " + site, e);
+            return null;
+        }
+        // Every batch leaves thousands of loose objects behind, pack them as soon as there are too many (like
+        // git gc --auto) instead of waiting for the scheduled cleanup. The import waits for it before the next batch
+        if (commitId != null) {
+            try {
+                GitRepositoryMaintenance.Report report = repositoryMaintenance.maintain(site + ":" + SANDBOX,
+                        helper.getRepository(site, SANDBOX));
+                if (!report.isSkipped()) {
+                    logger.info(report.toString());
+                }
+            } catch (Exception e) {
+                logger.warn("Error cleaning up repository for site " + site, e);
+            }
+        }
+        return commitId;
+    }
+
+    /**
+     * write files and folders to the repository in a single commit
+     */
+    private String writeContents(String site, Map<String, InputStream> contents, List<String> folders,
+                                 String message)
+            throws IOException, GitAPIException, ServiceLayerException, UserNotFoundException {
+        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX)) {
+            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+
+            // Git paths of everything written, sorted so every path comes right after its parent folders
+            TreeSet<String> gitPaths = new TreeSet<String>();
+            try (Git git = new Git(repo)) {
+                for (String folder : folders) {
+                    String emptyFilePath = Paths.get(folder, EMPTY_FILE).toString();
+                    File file = new File(repo.getDirectory().getParent(), emptyFilePath);
+                    file.getParentFile().mkdirs();
+                    if (!file.exists() && !file.createNewFile()) {
+                        logger.error("error writing file: site: " + site + " path: " + emptyFilePath);
+                        return null;
+                    }
+                    gitPaths.add(helper.getGitPath(emptyFilePath));
+                }
+                for (Map.Entry<String, InputStream> entry : contents.entrySet()) {
+                    File file = new File(repo.getDirectory().getParent(), entry.getKey());
+                    file.getParentFile().mkdirs();
+                    try (InputStream content = entry.getValue()) {
+                        Files.copy(content, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    gitPaths.add(helper.getGitPath(entry.getKey()));
+                }
+                if (gitPaths.isEmpty()) {
+                    return null;
+                }
+
+                // Stage and commit the whole tree at once, limiting the commit to the top most written paths
+                AddCommand addCommand = git.add();
+                CommitCommand commitCommand = git.commit();
+                String root = null;
+                for (String gitPath : gitPaths) {
+                    addCommand.addFilepattern(gitPath);
+                    if (root == null || !gitPath.startsWith(root + FILE_SEPARATOR)) {
+                        root = gitPath.endsWith(FILE_SEPARATOR + EMPTY_FILE) ?
+                                gitPath.substring(0, gitPath.length() - EMPTY_FILE.length() - 1) : gitPath;
+                        commitCommand.setOnly(root);
+                    }
+                }
+                addCommand.call();
+                RevCommit commit = commitCommand
+                        .setAuthor(helper.getCurrentUserIdent())
+                        .setCommitter(helper.getCurrentUserIdent())
+                        .setMessage(message)
+                        .call();
+                return commit.getName();
+            }
+        }
+    }
+
     @Override
     public RepositoryItem[] getContentChildren(String site, String path) {
         // TODO: SJ: Rethink this API call for 3.1+
@@ -647,39 +766,46 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     public VersionTO[] getContentVersionHistory(String site, String path) {
         List<VersionTO> versionHistory = new ArrayList<VersionTO>();
 
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX)) {
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
-
-            try {
-                ObjectId head = repo.resolve(HEAD);
+        // No repository lock needed, commits are immutable and the history is read from a resolved head
+        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+        try {
+            ObjectId head = repo.resolve(HEAD);
+            if (head != null) {
                 String gitPath = helper.getGitPath(path);
-                try (Git git = new Git(repo)) {
-                    Iterable<RevCommit> commits = git.log().add(head).addPath(gitPath).call();
-                    Iterator<RevCommit> iterator = commits.iterator();
-                    while (iterator.hasNext()) {
-                        RevCommit revCommit = iterator.next();
-                        VersionTO versionTO = new VersionTO();
-                        versionTO.setVersionNumber(revCommit.getName());
-                        versionTO.setLastModifier(revCommit.getAuthorIdent().getName());
-                        versionTO.setLastModifiedDate(
-                                Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(UTC));
-                        versionTO.setComment(revCommit.getFullMessage());
-                        versionHistory.add(versionTO);
+                List<ObjectId> commitIds =
+                        versionHistoryIndex.getHistory(StringUtils.defaultString(site), repo, head, gitPath);
+                if (commitIds != null) {
+                    try (RevWalk revWalk = new RevWalk(repo)) {
+                        for (ObjectId commitId : commitIds) {
+                            versionHistory.add(createVersionTO(revWalk.parseCommit(commitId)));
+                        }
+                    }
+                } else {
+                    // The index is still being built or updated, walk the commits of the resolved head
+                    try (Git git = new Git(repo)) {
+                        for (RevCommit revCommit : git.log().add(head).addPath(gitPath).call()) {
+                            versionHistory.add(createVersionTO(revCommit));
+                        }
                     }
-
-                    git.close();
-                } catch (IOException e) {
-                    logger.error("error while getting history for content item " + path);
                 }
-            } catch (IOException | GitAPIException e) {
-                logger.error("Failed to create Git repo for site: " + site + " path: " + path, e);
             }
+        } catch (IOException | GitAPIException e) {
+            logger.error("Failed to get history for site: " + site + " path: " + path, e);
         }
 
         VersionTO[] toRet = new VersionTO[versionHistory.size()];
         return versionHistory.toArray(toRet);
     }
 
+    private VersionTO createVersionTO(RevCommit revCommit) {
+        VersionTO versionTO = new VersionTO();
+        versionTO.setVersionNumber(revCommit.getName());
+        versionTO.setLastModifier(revCommit.getAuthorIdent().getName());
+        versionTO.setLastModifiedDate(Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(UTC));
+        versionTO.setComment(revCommit.getFullMessage());
+        return versionTO;
+    }
+
     @Override
     public String createVersion(String site, String path, boolean majorVersion) {
         return createVersion(site, path, EMPTY, majorVersion);
@@ -885,6 +1011,15 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         }
     }
 
+    /**
+     * Stop the background builds of the version history index
+     */
+    public void destroy() {
+        if (versionHistoryExecutor != null) {
+            versionHistoryExecutor.shutdownNow();
+        }
+    }
+
     /**
      * bootstrap the repository
      */
@@ -892,6 +1027,19 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         // Initialize the helper
         helper = new GitContentRepositoryHelper(studioConfiguration, servicesConfig, userServiceInternal,
                 securityService);
+        boolean followRenames = Boolean.parseBoolean(studioConfiguration.getProperty(REPO_HISTORY_FOLLOW_RENAMES));
+        CustomizableThreadFactory versionHistoryThreadFactory =
+                new CustomizableThreadFactory(VERSION_HISTORY_THREAD_PREFIX);
+        versionHistoryThreadFactory.setDaemon(true);
+        versionHistoryExecutor = Executors.newSingleThreadExecutor(versionHistoryThreadFactory);
+        versionHistoryIndex = new GitVersionHistoryIndex(followRenames,
+                Integer.parseInt(studioConfiguration.getProperty(REPO_HISTORY_MAX_INDEXED_SITES)),
+                versionHistoryExecutor);
+        repositoryMaintenance = new GitRepositoryMaintenance(
+                Long.parseLong(studioConfiguration.getProperty(REPO_CLEANUP_LOOSE_OBJECTS_THRESHOLD)),
+                Long.parseLong(studioConfiguration.getProperty(REPO_CLEANUP_PACK_FILES_THRESHOLD)),
+                Long.parseLong(studioConfiguration.getProperty(REPO_CLEANUP_LOOSE_REFS_THRESHOLD)),
+                Long.parseLong(studioConfiguration.getProperty(REPO_CLEANUP_PRUNE_GRACE_PERIOD)));
 
         encryptor = new PbkAesTextEncryptor(studioConfiguration.getProperty(SECURITY_CIPHER_KEY),
                 studioConfiguration.getProperty(SECURITY_CIPHER_SALT));
@@ -1004,6 +1152,7 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                 toReturn = false;
             }
         }
+        versionHistoryIndex.invalidate(site);
 
         return toReturn;
     }
@@ -1327,16 +1476,14 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         Repository repository =
                 helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
         if (repository != null) {
-            synchronized (repository) {
-                Repository repo = helper.getRepository(site, SANDBOX);
-                try {
-                    ObjectId commitId = repo.resolve(HEAD);
-                    if (commitId != null) {
-                        toReturn = commitId.getName();
-                    }
-                } catch (IOException e) {
-                    logger.error("Error getting last commit ID for site " + site, e);
+            // Refs are updated atomically, reading HEAD doesn't need to wait for a commit in progress
+            try {
+                ObjectId commitId = repository.resolve(HEAD);
+                if (commitId != null) {
+                    toReturn = commitId.getName();
                 }
+            } catch (IOException e) {
+                logger.error("Error getting last commit ID for site " + site, e);
             }
         }
         return toReturn;
@@ -2216,9 +2363,9 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     }
 
     protected void cleanup(String siteId, GitRepositories repository) {
-        Repository sandbox = helper.getRepository(siteId, repository);
-        try (Git git = new Git(sandbox)) {
-            git.gc().call();
+        Repository repo = helper.getRepository(siteId, repository);
+        try {
+            logger.info(repositoryMaintenance.maintain(siteId + ":" + repository, repo).toString());
         } catch (Exception e) {
             logger.warn("Error cleaning up repository for site " + siteId, e);
         }
@@ -91,11 +91,11 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
@@ -127,10 +127,11 @@ import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryC
 public class GitContentRepositoryHelper {
     private static final Logger logger = LoggerFactory.getLogger(GitContentRepositoryHelper.class);
 
-    protected Map<String, Repository> sandboxes = new HashMap<>();
-    protected Map<String, Repository> published = new HashMap<>();
+    // sites are upgraded and accessed from several threads, the repositories can be opened concurrently
+    protected Map<String, Repository> sandboxes = new ConcurrentHashMap<>();
+    protected Map<String, Repository> published = new ConcurrentHashMap<>();
 
-    protected Repository globalRepo = null;
+    protected volatile Repository globalRepo = null;
 
     protected StudioConfiguration studioConfiguration;
     protected ServicesConfig servicesConfig;
@@ -180,7 +181,7 @@ public class GitContentRepositoryHelper {
             if (Files.exists(siteSandboxRepoPath)) {
                 // Build and put in cache
                 sandboxRepo = openRepository(siteSandboxRepoPath);
-                sandboxes.put(site, sandboxRepo);
+                cacheRepository(sandboxes, site, sandboxRepo);
                 toReturn = true;
             }
         } catch (IOException e) {
@@ -192,7 +193,7 @@ public class GitContentRepositoryHelper {
             if (toReturn && Files.exists(sitePublishedRepoPath)) {
                 // Build and put in cache
                 publishedRepo = openRepository(sitePublishedRepoPath);
-                published.put(site, publishedRepo);
+                cacheRepository(published, site, publishedRepo);
 
                 toReturn = true;
             }
@@ -204,6 +205,40 @@ public class GitContentRepositoryHelper {
         return toReturn;
     }
 
+    /**
+     * Cache a repository opened for a site, unless another thread already cached one for it
+     */
+    private void cacheRepository(Map<String, Repository> repositories, String site, Repository repository) {
+        Repository existing = repositories.putIfAbsent(site, repository);
+        if (existing != null) {
+            repository.close();
+        }
+    }
+
+    /**
+     * Get the global repository, opening it the first time
+     *
+     * @return the global repository, null if it can't be opened
+     */
+    protected Repository getGlobalRepository() {
+        Repository repo = globalRepo;
+        if (repo == null) {
+            synchronized (this) {
+                repo = globalRepo;
+                if (repo == null) {
+                    Path globalConfigRepoPath = buildRepoPath(GitRepositories.GLOBAL).resolve(GIT_ROOT);
+                    try {
+                        repo = openRepository(globalConfigRepoPath);
+                        globalRepo = repo;
+                    } catch (IOException e) {
+                        logger.error("Error getting the global repository.", e);
+                    }
+                }
+            }
+        }
+        return repo;
+    }
+
     /**
      * Opens a git repository
      *
@@ -639,15 +674,7 @@ public class GitContentRepositoryHelper {
                 }
                 break;
             case GLOBAL:
-                if (globalRepo == null) {
-                    Path globalConfigRepoPath = buildRepoPath(GitRepositories.GLOBAL).resolve(GIT_ROOT);
-                    try {
-                        globalRepo = openRepository(globalConfigRepoPath);
-                    } catch (IOException e) {
-                        logger.error("Error getting the global repository.", e);
-                    }
-                }
-                repo = globalRepo;
+                repo = getGlobalRepository();
                 break;
             default:
                 repo = null;
@@ -690,15 +717,7 @@ public class GitContentRepositoryHelper {
                 }
                 break;
             case GLOBAL:
-                if (globalRepo == null) {
-                    Path globalConfigRepoPath = buildRepoPath(GitRepositories.GLOBAL).resolve(GIT_ROOT);
-                    try {
-                        globalRepo = openRepository(globalConfigRepoPath);
-                    } catch (IOException e) {
-                        logger.error("error getting the global repository.", e);
-                    }
-                }
-                repo = globalRepo;
+                repo = getGlobalRepository();
                 break;
             default:
                 repo = null;
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Maintenance for a single repository that only does the work the repository needs. The repository is measured
+ * first and each step runs only when its threshold is exceeded: loose refs are packed, loose objects and small packs
+ * are repacked (which also drops the loose objects that end up in the new pack), and unreachable loose objects older
+ * than the grace period are pruned. Repositories below every threshold are left untouched.
+ *
+ * <p>Only packing the refs holds the repository lock, since it rewrites files that a commit in progress could be
+ * updating. Repacking and pruning are safe to run while content is being written: objects created after the repack
+ * started stay loose, and the grace period keeps objects that are not referenced yet from being pruned.</p>
+ */
+public class GitRepositoryMaintenance {
+
+    public static final String ACTION_PACK_REFS = "pack-refs";
+    public static final String ACTION_REPACK = "repack";
+    public static final String ACTION_PRUNE = "prune";
+
+    /**
+     * Number of loose objects that triggers a repack
+     */
+    private long looseObjectsThreshold;
+
+    /**
+     * Number of pack files that triggers a repack
+     */
+    private long packFilesThreshold;
+
+    /**
+     * Number of loose refs that triggers packing the refs
+     */
+    private long looseRefsThreshold;
+
+    /**
+     * Unreachable objects newer than this are never pruned
+     */
+    private long pruneGracePeriodMillis;
+
+    public GitRepositoryMaintenance(long looseObjectsThreshold, long packFilesThreshold, long looseRefsThreshold,
+                                    long pruneGracePeriodHours) {
+        this.looseObjectsThreshold = looseObjectsThreshold;
+        this.packFilesThreshold = packFilesThreshold;
+        this.looseRefsThreshold = looseRefsThreshold;
+        this.pruneGracePeriodMillis = TimeUnit.HOURS.toMillis(pruneGracePeriodHours);
+    }
+
+    /**
+     * Measure the repository and run the maintenance steps it needs
+     *
+     * @param name name of the repository, used only for the report
+     * @param repository the repository
+     * @return report with the statistics before and after the maintenance
+     * @throws IOException if there is any error reading or writing the repository
+     * @throws ParseException if the grace period can't be applied
+     */
+    public Report maintain(String name, Repository repository) throws IOException, ParseException {
+        if (!(repository instanceof FileRepository)) {
+            throw new IllegalArgumentException("Repository " + name + " is not stored in the file system");
+        }
+        long start = System.currentTimeMillis();
+        GC gc = new GC((FileRepository) repository);
+        gc.setExpireAgeMillis(pruneGracePeriodMillis);
+        RepoStatistics before = gc.getStatistics();
+        List<String> actions = new ArrayList<>();
+
+        if (before.numberOfLooseRefs > looseRefsThreshold) {
+            synchronized (repository) {
+                gc.packRefs();
+            }
+            actions.add(ACTION_PACK_REFS);
+        }
+        if (before.numberOfLooseObjects > looseObjectsThreshold || before.numberOfPackFiles > packFilesThreshold) {
+            gc.repack();
+            actions.add(ACTION_REPACK);
+            // Whatever is still loose after the repack is not reachable from any ref
+            if (gc.getStatistics().numberOfLooseObjects > looseObjectsThreshold) {
+                gc.prune(Collections.emptySet());
+                actions.add(ACTION_PRUNE);
+            }
+        }
+
+        RepoStatistics after = actions.isEmpty() ? before : gc.getStatistics();
+        return new Report(name, before, after, actions, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Result of the maintenance of a single repository
+     */
+    public static class Report {
+
+        private final String name;
+        private final RepoStatistics before;
+        private final RepoStatistics after;
+        private final List<String> actions;
+        private final long elapsed;
+
+        public Report(String name, RepoStatistics before, RepoStatistics after, List<String> actions,
+                      long elapsed) {
+            this.name = name;
+            this.before = before;
+            this.after = after;
+            this.actions = Collections.unmodifiableList(actions);
+            this.elapsed = elapsed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public RepoStatistics getBefore() {
+            return before;
+        }
+
+        public RepoStatistics getAfter() {
+            return after;
+        }
+
+        public List<String> getActions() {
+            return actions;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public boolean isSkipped() {
+            return actions.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            if (isSkipped()) {
+                return "Repository " + name + " skipped: " + summary(before);
+            }
+            return "Repository " + name + " " + String.join(", ", actions) + " in " + elapsed + " ms, before: " +
+                    summary(before) + ", after: " + summary(after);
+        }
+
+        private static String summary(RepoStatistics stats) {
+            return stats.numberOfLooseObjects + " loose objects, " + stats.numberOfPackFiles + " packs, " +
+                    stats.numberOfLooseRefs + " loose refs";
+        }
+    }
+}
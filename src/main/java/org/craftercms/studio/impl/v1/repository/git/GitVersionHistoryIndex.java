@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Index from path to the commits that changed it, kept per repository and updated incrementally from the last
+ * indexed head. Lookups never take the repository lock and never wait for the index: the full index of a repository
+ * is built in the background, and until it's ready, or when the indexed head is behind the requested one while
+ * another thread is already updating it, {@link #getHistory} returns null so the caller can walk the commits itself.
+ * Only the most recently used repositories are indexed, the index of the least recently used one is dropped when the
+ * limit is reached and rebuilt the next time it's needed.
+ */
+public class GitVersionHistoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitVersionHistoryIndex.class);
+
+    private final Map<String, RepositoryHistory> histories;
+
+    /**
+     * Runs the full builds of the index
+     */
+    private final Executor executor;
+
+    /**
+     * Indicates if the history of a path created by a rename continues with the history of the original path
+     */
+    private boolean followRenames;
+
+    public GitVersionHistoryIndex(boolean followRenames, int maxRepositories, Executor executor) {
+        this.followRenames = followRenames;
+        this.executor = executor;
+        this.histories = new LinkedHashMap<String, RepositoryHistory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RepositoryHistory> eldest) {
+                return size() > maxRepositories;
+            }
+        };
+    }
+
+    /**
+     * Get the commits that changed a path, newest first
+     *
+     * @param key identifier of the repository
+     * @param repo the repository
+     * @param head commit to read the history from
+     * @param gitPath path relative to the root of the repository
+     * @return list of commit ids, or null if the index can't serve the request without waiting
+     * @throws IOException if there is any error reading the repository
+     */
+    public List<ObjectId> getHistory(String key, Repository repo, ObjectId head, String gitPath)
+            throws IOException {
+        RepositoryHistory history;
+        synchronized (histories) {
+            history = histories.get(key);
+            if (history == null || history.repo != repo) {
+                // The repository is not indexed yet or it was recreated, drop the old index
+                history = new RepositoryHistory(key, repo);
+                histories.put(key, history);
+            }
+        }
+        Snapshot snapshot = history.snapshot;
+        if (snapshot == null) {
+            history.scheduleBuild(head);
+        } else if (!snapshot.head.equals(head)) {
+            if (!history.updateLock.tryLock()) {
+                return null;
+            }
+            try {
+                history.update(head);
+            } finally {
+                history.updateLock.unlock();
+            }
+        }
+        snapshot = history.snapshot;
+        if (snapshot == null || !snapshot.head.equals(head)) {
+            // The index is still being built, or HEAD moved while updating
+            return null;
+        }
+        return snapshot.getHistory(gitPath);
+    }
+
+    /**
+     * Remove the index of a repository
+     *
+     * @param key identifier of the repository
+     */
+    public void invalidate(String key) {
+        synchronized (histories) {
+            histories.remove(key);
+        }
+    }
+
+    /**
+     * Indicates if the index of a repository is currently kept
+     *
+     * @param key identifier of the repository
+     * @return true if the repository is indexed
+     */
+    boolean isIndexed(String key) {
+        synchronized (histories) {
+            return histories.containsKey(key);
+        }
+    }
+
+    /**
+     * Commit that changed a path, tagged with the version of the index that added it
+     */
+    private static final class Change {
+
+        private final ObjectId commit;
+        private final long version;
+
+        /**
+         * Original path if the commit created the path by renaming another one
+         */
+        private final String renamedFrom;
+
+        private Change(ObjectId commit, long version, String renamedFrom) {
+            this.commit = commit;
+            this.version = version;
+            this.renamedFrom = renamedFrom;
+        }
+    }
+
+    /**
+     * History of a single path, commits are stored oldest first. Only the update thread appends to it, readers see
+     * the changes up to the size they read and skip the ones newer than their snapshot.
+     */
+    private static final class PathHistory {
+
+        private volatile Change[] changes = new Change[4];
+        private volatile int size;
+
+        private void append(Change change) {
+            Change[] current = changes;
+            if (size == current.length) {
+                Change[] grown = new Change[current.length * 2];
+                System.arraycopy(current, 0, grown, 0, size);
+                changes = grown;
+                current = grown;
+            }
+            current[size] = change;
+            size = size + 1;
+        }
+    }
+
+    /**
+     * State of the index for a given head. The path histories are shared by all the snapshots built on the same full
+     * index, each snapshot only sees the changes up to its version.
+     */
+    private final class Snapshot {
+
+        private final ObjectId head;
+        private final long version;
+        private final Map<String, PathHistory> paths;
+
+        private Snapshot(ObjectId head, long version, Map<String, PathHistory> paths) {
+            this.head = head;
+            this.version = version;
+            this.paths = paths;
+        }
+
+        private List<ObjectId> getHistory(String gitPath) {
+            List<ObjectId> result = new ArrayList<>();
+            Set<String> visited = new HashSet<>();
+            String path = gitPath;
+            ObjectId resumeAfter = null;
+            while (path != null && visited.add(path)) {
+                PathHistory history = paths.get(path);
+                if (history == null) {
+                    break;
+                }
+                int size = history.size;
+                Change[] changes = history.changes;
+                int start = size - 1;
+                if (resumeAfter != null) {
+                    while (start >= 0 && !changes[start].commit.equals(resumeAfter)) {
+                        start--;
+                    }
+                    start--;
+                }
+                String nextPath = null;
+                ObjectId renameCommit = null;
+                for (int i = start; i >= 0; i--) {
+                    Change change = changes[i];
+                    if (change.version > version) {
+                        continue;
+                    }
+                    result.add(change.commit);
+                    if (followRenames && change.renamedFrom != null) {
+                        nextPath = change.renamedFrom;
+                        renameCommit = change.commit;
+                        break;
+                    }
+                }
+                path = nextPath;
+                resumeAfter = renameCommit;
+            }
+            return result;
+        }
+    }
+
+    private final class RepositoryHistory {
+
+        private final String key;
+        private final Repository repo;
+        private final ReentrantLock updateLock = new ReentrantLock();
+        private final AtomicBoolean building = new AtomicBoolean();
+        private volatile Snapshot snapshot;
+
+        private RepositoryHistory(String key, Repository repo) {
+            this.key = key;
+            this.repo = repo;
+        }
+
+        /**
+         * Build the full index for the given head in the background, unless a build is already running
+         */
+        private void scheduleBuild(ObjectId head) {
+            if (building.compareAndSet(false, true)) {
+                executor.execute(() -> {
+                    updateLock.lock();
+                    try {
+                        Snapshot current = snapshot;
+                        if (current == null || !current.head.equals(head)) {
+                            index(head, null);
+                        }
+                    } catch (IOException e) {
+                        logger.error("Error building the version history index of " + key, e);
+                    } finally {
+                        updateLock.unlock();
+                        building.set(false);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Index the commits between the current snapshot and the given head. Must be called holding the update lock.
+         * If the given head doesn't descend from the indexed one, the history was rewritten and a full build is
+         * scheduled instead.
+         */
+        private void update(ObjectId head) throws IOException {
+            Snapshot current = snapshot;
+            if (current == null || current.head.equals(head)) {
+                return;
+            }
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit headCommit = walk.parseCommit(head);
+                RevCommit indexedHead = walk.parseCommit(current.head);
+                if (walk.isMergedInto(headCommit, indexedHead)) {
+                    // The requested head is behind the index (concurrent reader), let it walk by itself
+                    return;
+                }
+                walk.reset();
+                boolean incremental = walk.isMergedInto(indexedHead, headCommit);
+                if (!incremental) {
+                    scheduleBuild(head);
+                    return;
+                }
+            }
+            index(head, current);
+        }
+
+        /**
+         * Walk the commits from the given head, stopping at the head of the current snapshot if there's one, and
+         * publish a new snapshot. Must be called holding the update lock.
+         */
+        private void index(ObjectId head, Snapshot current) throws IOException {
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit headCommit = walk.parseCommit(head);
+                if (current != null) {
+                    walk.markUninteresting(walk.parseCommit(current.head));
+                }
+                walk.markStart(headCommit);
+
+                // The walk returns the newest commits first
+                Map<String, List<ObjectId>> newCommits = new HashMap<>();
+                Map<String, Map<ObjectId, String>> newRenames = new HashMap<>();
+                for (RevCommit commit : walk) {
+                    for (DiffEntry entry : getChanges(walk, commit)) {
+                        String path = entry.getChangeType() == DiffEntry.ChangeType.DELETE ?
+                                entry.getOldPath() : entry.getNewPath();
+                        newCommits.computeIfAbsent(path, p -> new ArrayList<>()).add(commit.copy());
+                        if (entry.getChangeType() == DiffEntry.ChangeType.RENAME) {
+                            // The original path was also changed by this commit
+                            newCommits.computeIfAbsent(entry.getOldPath(), p -> new ArrayList<>())
+                                    .add(commit.copy());
+                            newRenames.computeIfAbsent(path, p -> new HashMap<>())
+                                    .put(commit.copy(), entry.getOldPath());
+                        }
+                    }
+                }
+
+                // Readers of the current snapshot skip the changes of the new version
+                Map<String, PathHistory> paths = current != null ? current.paths : new ConcurrentHashMap<>();
+                long version = current != null ? current.version + 1 : 1;
+                for (Map.Entry<String, List<ObjectId>> entry : newCommits.entrySet()) {
+                    PathHistory history = paths.computeIfAbsent(entry.getKey(), p -> new PathHistory());
+                    Map<ObjectId, String> renames = newRenames.get(entry.getKey());
+                    List<ObjectId> commits = entry.getValue();
+                    for (int i = commits.size() - 1; i >= 0; i--) {
+                        ObjectId commit = commits.get(i);
+                        history.append(new Change(commit, version, renames != null ? renames.get(commit) : null));
+                    }
+                }
+                snapshot = new Snapshot(headCommit.copy(), version, paths);
+            }
+        }
+
+        /**
+         * Get the paths changed by a commit. For merges only the paths that differ from every parent are included,
+         * the same simplification used by git log when filtering by path.
+         */
+        private List<DiffEntry> getChanges(RevWalk walk, RevCommit commit) throws IOException {
+            if (commit.getParentCount() == 0) {
+                return diff(walk, null, commit);
+            }
+            List<DiffEntry> changes = diff(walk, commit.getParent(0), commit);
+            for (int i = 1; i < commit.getParentCount() && !changes.isEmpty(); i++) {
+                Set<String> changedFromParent = new HashSet<>();
+                for (DiffEntry entry : diff(walk, commit.getParent(i), commit)) {
+                    changedFromParent.add(entry.getOldPath());
+                    changedFromParent.add(entry.getNewPath());
+                }
+                changes.removeIf(entry -> !changedFromParent.contains(entry.getNewPath()) &&
+                        !changedFromParent.contains(entry.getOldPath()));
+            }
+            return changes;
+        }
+
+        private List<DiffEntry> diff(RevWalk walk, RevCommit parent, RevCommit commit) throws IOException {
+            try (TreeWalk treeWalk = new TreeWalk(repo)) {
+                treeWalk.setRecursive(true);
+                if (parent == null) {
+                    treeWalk.addTree(new EmptyTreeIterator());
+                } else {
+                    walk.parseHeaders(parent);
+                    treeWalk.addTree(parent.getTree());
+                }
+                treeWalk.addTree(commit.getTree());
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                List<DiffEntry> entries = DiffEntry.scan(treeWalk);
+                if (followRenames && parent != null) {
+                    RenameDetector renameDetector = new RenameDetector(repo);
+                    renameDetector.addAll(entries);
+                    entries = renameDetector.compute();
+                }
+                return new ArrayList<>(entries);
+            }
+        }
+    }
+}
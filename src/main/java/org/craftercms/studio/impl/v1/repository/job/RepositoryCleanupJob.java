@@ -16,32 +16,80 @@
 
 package org.craftercms.studio.impl.v1.repository.job;
 
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
- * Triggers a cleanup for all repositories on all existing sites.
+ * Triggers a cleanup for all repositories on all existing sites. Sites are cleaned up in parallel using a bounded
+ * pool, so the job doesn't take longer than needed but also doesn't compete with authoring for every core.
  * @author joseross
  */
 public class RepositoryCleanupJob {
 
     protected static final Logger logger = LoggerFactory.getLogger(RepositoryCleanupJob.class);
 
+    private static final String CLEANUP_THREAD_PREFIX = "repository-cleanup-";
+
     protected SiteService siteService;
     protected ContentRepository contentRepository;
 
+    /**
+     * Maximum number of sites cleaned up at the same time
+     */
+    protected int poolSize = 1;
+
     /**
      * Performs a cleanup for all repositories on all existing sites.
      */
     public void cleanupAllRepositories() {
         logger.info("Starting cleanup for global repo");
         contentRepository.cleanupRepositories(StringUtils.EMPTY);
-        logger.info("Starting cleanup for all sites");
-        siteService.getAllAvailableSites().forEach(contentRepository::cleanupRepositories);
+        Set<String> sites = siteService.getAllAvailableSites();
+        if (sites.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(poolSize, sites.size()));
+        logger.info("Starting cleanup for {0} sites using {1} threads", sites.size(), threads);
+        ExecutorService executor =
+                Executors.newFixedThreadPool(threads, new CustomizableThreadFactory(CLEANUP_THREAD_PREFIX));
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            for (String site : sites) {
+                executor.execute(() -> {
+                    try {
+                        contentRepository.cleanupRepositories(site);
+                    } catch (Exception e) {
+                        logger.error("Unexpected error during cleanup for site " + site, e);
+                    } finally {
+                        completed.incrementAndGet();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for repository cleanup, {0} of {1} sites finished", completed.get(),
+                        sites.size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while cleaning up repositories");
+        }
+        logger.info("Finished cleanup for all sites");
     }
 
     @Required
@@ -53,5 +101,9 @@ public class RepositoryCleanupJob {
     public void setContentRepository(final ContentRepository contentRepository) {
         this.contentRepository = contentRepository;
     }
+
+    public void setPoolSize(final int poolSize) {
+        this.poolSize = poolSize;
+    }
     
 }
@@ -16,7 +16,14 @@
 
 package org.craftercms.studio.impl.v1.script;
 
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.script.ScriptExecutor;
 
 import javax.script.ScriptEngine;
@@ -25,9 +32,13 @@ import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GroovyScriptExecutor implements ScriptExecutor {
 
+    private static final Logger logger = LoggerFactory.getLogger(GroovyScriptExecutor.class);
+
     @Override
     public void executeScriptString(String script, Map<String, Object> model) throws ScriptException {
         ScriptEngineManager factory = new ScriptEngineManager();
@@ -40,8 +51,116 @@ public class GroovyScriptExecutor implements ScriptExecutor {
         engine.eval(script);
     }
 
+    @Override
+    public void executeScript(String key, String script, Map<String, Object> model) throws ScriptException {
+        Class<? extends Script> scriptClass = getScriptClass(key, script);
+        try {
+            // the class is shared, every execution gets its own instance with its own bindings
+            Script instance = InvokerHelper.createScript(scriptClass, new Binding(model));
+            instance.run();
+        } catch (RuntimeException e) {
+            throw new ScriptException(e);
+        }
+    }
+
+    @Override
+    public void evictScripts(String keyPrefix) {
+        compiledScripts.entrySet().removeIf(entry -> {
+            if (entry.getKey().startsWith(keyPrefix)) {
+                entry.getValue().release();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Get the compiled class of the script, the source is only compiled again when it changes
+     *
+     * @param key key of the script
+     * @param script source of the script
+     * @return compiled class
+     * @throws ScriptException if the source doesn't compile to a script
+     */
+    protected Class<? extends Script> getScriptClass(String key, String script) throws ScriptException {
+        CompiledScript compiled = compiledScripts.get(key);
+        if (compiled != null && compiled.source.equals(script)) {
+            return compiled.scriptClass;
+        }
+        try {
+            compiled = compiledScripts.compute(key, (k, current) -> {
+                if (current != null && current.source.equals(script)) {
+                    return current;
+                }
+                if (current != null) {
+                    current.release();
+                }
+                logger.debug("Compiling script " + k);
+                // each script gets its own loader, parseClass caches the classes in the loader that compiles them
+                GroovyClassLoader scriptClassLoader = new GroovyClassLoader(getClassLoader());
+                return new CompiledScript(script, scriptClassLoader, scriptClassLoader.parseClass(script,
+                        "Script" + scriptCounter.incrementAndGet() + ".groovy"));
+            });
+        } catch (CompilationFailedException | IllegalArgumentException e) {
+            throw new ScriptException(e);
+        }
+        return compiled.scriptClass;
+    }
+
+    /**
+     * Get the class loader with the scripts class path. It is the parent of the loaders that compile each script, so
+     * it never holds a compiled script class.
+     *
+     * @return class loader
+     */
+    protected GroovyClassLoader getClassLoader() {
+        if (classLoader == null) {
+            synchronized (this) {
+                if (classLoader == null) {
+                    GroovyClassLoader loader = new GroovyClassLoader(getClass().getClassLoader());
+                    if (scriptsClassPath != null) {
+                        for (String classPath : scriptsClassPath) {
+                            loader.addClasspath(classPath);
+                        }
+                    }
+                    classLoader = loader;
+                }
+            }
+        }
+        return classLoader;
+    }
+
     public List<String> getScriptsClassPath() { return scriptsClassPath; }
     public void setScriptsClassPath(List<String> scriptsClassPath) { this.scriptsClassPath = scriptsClassPath; }
 
     protected List<String> scriptsClassPath;
+    protected volatile GroovyClassLoader classLoader;
+    protected Map<String, CompiledScript> compiledScripts = new ConcurrentHashMap<>();
+    protected AtomicLong scriptCounter = new AtomicLong();
+
+    protected static class CompiledScript {
+
+        protected final String source;
+        protected final GroovyClassLoader classLoader;
+        protected final Class<? extends Script> scriptClass;
+
+        @SuppressWarnings("unchecked")
+        protected CompiledScript(String source, GroovyClassLoader classLoader, Class<?> compiledClass) {
+            if (!Script.class.isAssignableFrom(compiledClass)) {
+                classLoader.clearCache();
+                throw new IllegalArgumentException("The source doesn't define a script: " + compiledClass.getName());
+            }
+            this.source = source;
+            this.classLoader = classLoader;
+            this.scriptClass = (Class<? extends Script>) compiledClass;
+        }
+
+        /**
+         * Drop the references Groovy keeps to the classes of the script, so they can be unloaded with its loader
+         */
+        protected void release() {
+            InvokerHelper.removeClass(scriptClass);
+            classLoader.clearCache();
+        }
+    }
 }
@@ -29,7 +29,12 @@ import org.craftercms.studio.api.v1.service.clipboard.ClipboardService;
 import org.craftercms.studio.api.v1.service.workflow.WorkflowService;
 import org.craftercms.studio.api.v1.to.DmDependencyTO;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -121,12 +126,22 @@ implements ClipboardService {
                     newPath = contentService.moveContent(site, op.path, destinationPath);
                 }
                 else {
-                    // RDTMP_COPYPASTE
-                    // CopyContent inteface is able to send status and new path yet
-                    newPath = contentService.copyContent(site, op.path, destinationPath);
-
-                    // recurse on copied children
-                    pasteItems(site, newPath, op.children, pastedItems);
+                    // copy the whole tree at once, cut children are moved once their parent has been copied
+                    Map<String, List<String>> children = new HashMap<String, List<String>>();
+                    Map<ClipboardItem, String> cutChildren = new LinkedHashMap<ClipboardItem, String>();
+                    collectCopiedChildren(op, children, cutChildren);
+
+                    Map<String, String> copiedPaths =
+                            contentService.copyContentTree(site, op.path, destinationPath, children);
+                    newPath = copiedPaths.get(op.path);
+                    pastedItems.addAll(copiedPaths.values());
+
+                    for (Map.Entry<ClipboardItem, String> cutChild : cutChildren.entrySet()) {
+                        String parentPath = copiedPaths.get(cutChild.getValue());
+                        if (parentPath != null) {
+                            pasteItems(site, parentPath, Collections.singleton(cutChild.getKey()), pastedItems);
+                        }
+                    }
                 }
 
                 pastedItems.add(newPath);                
@@ -137,6 +152,18 @@ implements ClipboardService {
         }
     }
 
+    private void collectCopiedChildren(ClipboardItem op, Map<String, List<String>> children,
+                                       Map<ClipboardItem, String> cutChildren) {
+        for (ClipboardItem child : op.children) {
+            if (child.isCut) {
+                cutChildren.put(child, op.path);
+            } else {
+                children.computeIfAbsent(op.path, path -> new ArrayList<String>()).add(child.path);
+                collectCopiedChildren(child, children, cutChildren);
+            }
+        }
+    }
+
     /**
      * Copy and paste operations on the clipboard are infact simply CLIP operations that are tracked.
      * store the item given into session
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.configuration;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Resolves the content types allowed for a path using the include and exclude patterns of all the content types of
+ * a site. The patterns are compiled once and the include patterns are indexed in a trie by their literal prefix,
+ * so a lookup only evaluates the patterns that can possibly match the path instead of every pattern of every type.
+ */
+public class ContentTypePathMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentTypePathMatcher.class);
+
+    private static final String REGEX_METACHARACTERS = ".[]{}()*+?^$|\\";
+
+    private final List<ContentTypeConfigTO> contentTypes;
+    private final List<List<Pattern>> excludes;
+    private final TrieNode root = new TrieNode();
+
+    public ContentTypePathMatcher(List<ContentTypeConfigTO> contentTypes) {
+        this.contentTypes = new ArrayList<>(contentTypes);
+        this.excludes = new ArrayList<>(contentTypes.size());
+        for (int i = 0; i < this.contentTypes.size(); i++) {
+            ContentTypeConfigTO contentType = this.contentTypes.get(i);
+            excludes.add(compile(contentType.getName(), contentType.getPathExcludes()));
+            List<String> includes = contentType.getPathIncludes();
+            if (CollectionUtils.isEmpty(includes)) {
+                if (CollectionUtils.isEmpty(contentType.getPathExcludes())) {
+                    root.entries.add(new IncludeEntry(i, null));
+                }
+                continue;
+            }
+            for (Pattern include : compile(contentType.getName(), includes)) {
+                add(getLiteralPrefix(include.pattern()), new IncludeEntry(i, include));
+            }
+        }
+    }
+
+    /**
+     * Get the content types whose include patterns match the path and whose exclude patterns don't
+     *
+     * @param path path relative to the site root
+     * @return matching content types, in the order they were given to the matcher
+     */
+    public List<ContentTypeConfigTO> getContentTypes(String path) {
+        BitSet matches = new BitSet(contentTypes.size());
+        TrieNode node = root;
+        int depth = 0;
+        while (node != null) {
+            for (IncludeEntry entry : node.entries) {
+                if (!matches.get(entry.index) && entry.matches(path) && !isExcluded(entry.index, path)) {
+                    matches.set(entry.index);
+                }
+            }
+            node = depth < path.length() ? node.children.get(path.charAt(depth++)) : null;
+        }
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ContentTypeConfigTO> result = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(contentTypes.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Get the literal text every match of the pattern starts with
+     *
+     * @param pattern regular expression
+     * @return literal prefix, empty if there is none
+     */
+    static String getLiteralPrefix(String pattern) {
+        // alternatives can start with different prefixes
+        if (pattern.indexOf('|') >= 0) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = pattern.startsWith("^") ? 1 : 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                if (next >= pattern.length() || Character.isLetterOrDigit(pattern.charAt(next))) {
+                    break;
+                }
+                c = pattern.charAt(next++);
+            } else if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            }
+            // a quantifier makes the previous character optional or repeatable
+            if (next < pattern.length() && "*?{".indexOf(pattern.charAt(next)) >= 0) {
+                break;
+            }
+            prefix.append(c);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    private void add(String prefix, IncludeEntry entry) {
+        TrieNode node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new TrieNode());
+        }
+        node.entries.add(entry);
+    }
+
+    private boolean isExcluded(int index, String path) {
+        for (Pattern exclude : excludes.get(index)) {
+            if (exclude.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Pattern> compile(String contentType, List<String> patterns) {
+        if (CollectionUtils.isEmpty(patterns)) {
+            return Collections.emptyList();
+        }
+        List<Pattern> compiled = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            try {
+                compiled.add(Pattern.compile(pattern));
+            } catch (PatternSyntaxException e) {
+                logger.error("Invalid path pattern " + pattern + " for content type " + contentType, e);
+            }
+        }
+        return compiled;
+    }
+
+    private static class TrieNode {
+
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private final List<IncludeEntry> entries = new ArrayList<>();
+    }
+
+    private static class IncludeEntry {
+
+        private final int index;
+        private final Pattern pattern;
+
+        private IncludeEntry(int index, Pattern pattern) {
+            this.index = index;
+            this.pattern = pattern;
+        }
+
+        private boolean matches(String path) {
+            return pattern == null || pattern.matcher(path).matches();
+        }
+    }
+}
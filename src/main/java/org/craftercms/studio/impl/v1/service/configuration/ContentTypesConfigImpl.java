@@ -18,18 +18,21 @@ package org.craftercms.studio.impl.v1.service.configuration;
 
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
+import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
 import org.craftercms.studio.api.v1.constant.StudioConstants;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
 import org.craftercms.studio.api.v1.service.configuration.ContentTypesConfig;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
 import org.craftercms.studio.api.v1.to.CopyDependencyConfigTO;
 import org.craftercms.studio.api.v1.to.DeleteDependencyConfigTO;
+import org.craftercms.studio.api.v1.to.UnmodifiableContentTypeConfigTO;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
-import org.craftercms.studio.impl.v1.service.StudioCacheContext;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
@@ -39,13 +42,18 @@ import org.dom4j.Node;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_UNKNOWN;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_BASE_PATH;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_FILE_NAME;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_PATH;
 
@@ -60,20 +68,127 @@ public class ContentTypesConfigImpl implements ContentTypesConfig {
     private static final String QUICK_CREATE_PATH = "quickCreatePath";
 
     protected ContentService contentService;
+    protected ContentRepository contentRepository;
     protected GeneralLockService generalLockService;
     protected StudioConfiguration studioConfiguration;
 
+    /**
+     * Parsed content type configurations by site. A registry is valid for the sandbox commit it was created for and
+     * is carried over to newer commits that don't change the content types folder. The cached configurations and
+     * lists are read only, so they are handed out as they are
+     */
+    protected final Map<String, Registry> registries = new ConcurrentHashMap<>();
+
     @Override
     @ValidateParams
     public ContentTypeConfigTO getContentTypeConfig(@ValidateStringParam(name = "site") final String site,
                                                     @ValidateStringParam(name="contentType") final String contentType) {
         if (StringUtils.isNotEmpty(contentType) && !StringUtils.equals(contentType, CONTENT_TYPE_UNKNOWN)) {
-            return loadConfiguration(site, contentType);
+            Registry registry = getRegistry(site);
+            return getCachedConfig(site, contentType, registry).orElse(null);
         } else {
             return null;
         }
     }
 
+    @Override
+    @ValidateParams
+    public List<ContentTypeConfigTO> getAllContentTypes(@ValidateStringParam(name = "site") String site) {
+        return getCachedContentTypes(site);
+    }
+
+    @Override
+    @ValidateParams
+    public List<ContentTypeConfigTO> getContentTypesForPath(@ValidateStringParam(name = "site") String site,
+                                                            @ValidateSecurePathParam(name = "path") String path) {
+        Registry registry = getRegistry(site);
+        ContentTypePathMatcher matcher = registry.matcher;
+        if (matcher == null) {
+            matcher = new ContentTypePathMatcher(getCachedContentTypes(site));
+            registry.matcher = matcher;
+        }
+        return Collections.unmodifiableList(matcher.getContentTypes(path));
+    }
+
+    protected List<ContentTypeConfigTO> getCachedContentTypes(String site) {
+        Registry registry = getRegistry(site);
+        List<ContentTypeConfigTO> contentTypes = registry.contentTypes;
+        if (contentTypes == null) {
+            contentTypes = new ArrayList<>();
+            String contentTypesRootPath = getConfigBasePath().replaceAll(StudioConstants.PATTERN_SITE, site);
+            RepositoryItem[] folders = contentRepository.getContentChildren(site, contentTypesRootPath);
+            if (folders != null) {
+                for (RepositoryItem folder : folders) {
+                    loadContentTypes(site, contentTypesRootPath, folder, registry, contentTypes);
+                }
+            }
+            contentTypes = Collections.unmodifiableList(contentTypes);
+            registry.contentTypes = contentTypes;
+        }
+        return contentTypes;
+    }
+
+    protected Optional<ContentTypeConfigTO> getCachedConfig(String site, String contentType, Registry registry) {
+        Optional<ContentTypeConfigTO> config = registry.configs.get(contentType);
+        if (config == null) {
+            config = Optional.ofNullable(loadConfiguration(site, contentType))
+                    .map(UnmodifiableContentTypeConfigTO::new);
+            registry.configs.put(contentType, config);
+        }
+        return config;
+    }
+
+    protected void loadContentTypes(String site, String contentTypesRootPath, RepositoryItem folder,
+                                    Registry registry, List<ContentTypeConfigTO> contentTypes) {
+        if (!folder.isFolder) {
+            return;
+        }
+        String folderPath = folder.path + FILE_SEPARATOR + folder.name;
+        if (contentService.contentExists(site, folderPath + FILE_SEPARATOR + getConfigFileName())) {
+            String contentType = folderPath.replace(contentTypesRootPath, "");
+            getCachedConfig(site, contentType, registry).ifPresent(contentTypes::add);
+        }
+        RepositoryItem[] children = contentRepository.getContentChildren(site, folderPath);
+        if (children != null) {
+            for (RepositoryItem child : children) {
+                loadContentTypes(site, contentTypesRootPath, child, registry, contentTypes);
+            }
+        }
+    }
+
+    /**
+     * Get the registry for the current sandbox commit of the site
+     *
+     * @param site site id
+     * @return registry of the site
+     */
+    protected Registry getRegistry(String site) {
+        String commitId = contentRepository.getRepoLastCommitId(site);
+        Registry registry = registries.get(site);
+        if (registry != null && !StringUtils.equals(registry.commitId, commitId)) {
+            if (isContentTypesChanged(site, registry.commitId, commitId)) {
+                logger.debug("Content types changed for site " + site + ", clearing content type registry");
+                registry = null;
+            } else {
+                registry.commitId = commitId;
+            }
+        }
+        if (registry == null) {
+            registry = new Registry(commitId);
+            registries.put(site, registry);
+        }
+        return registry;
+    }
+
+    protected boolean isContentTypesChanged(String site, String fromCommitId, String toCommitId) {
+        if (StringUtils.isEmpty(fromCommitId) || StringUtils.isEmpty(toCommitId) ||
+                !contentRepository.commitIdExists(site, fromCommitId)) {
+            return true;
+        }
+        String contentTypesRootPath = getConfigBasePath().replaceAll(StudioConstants.PATTERN_SITE, site);
+        return !contentRepository.getEditCommitIds(site, contentTypesRootPath, fromCommitId, toCommitId).isEmpty();
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     @ValidateParams
@@ -257,17 +372,23 @@ public class ContentTypesConfigImpl implements ContentTypesConfig {
     @ValidateParams
     public ContentTypeConfigTO reloadConfiguration(@ValidateStringParam(name = "site") String site,
                                                    @ValidateStringParam(name = "contentType") String contentType) {
-        StudioCacheContext cacheContext = new StudioCacheContext(site, true);
-        String siteConfigPath = getConfigPath().replaceAll(StudioConstants.PATTERN_SITE, site)
-                .replaceAll(StudioConstants.PATTERN_CONTENT_TYPE, contentType);
-        ContentTypeConfigTO config = loadConfiguration(site, contentType);
-        return config;
+        Optional<ContentTypeConfigTO> config = Optional.ofNullable(loadConfiguration(site, contentType))
+                .map(UnmodifiableContentTypeConfigTO::new);
+        Registry registry = getRegistry(site);
+        registry.configs.put(contentType, config);
+        registry.contentTypes = null;
+        registry.matcher = null;
+        return config.orElse(null);
     }
 
     public String getConfigPath() {
         return studioConfiguration.getProperty(CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_PATH);
     }
 
+    public String getConfigBasePath() {
+        return studioConfiguration.getProperty(CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_BASE_PATH);
+    }
+
     public String getConfigFileName() {
         return studioConfiguration.getProperty(CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_FILE_NAME);
     }
@@ -280,6 +401,14 @@ public class ContentTypesConfigImpl implements ContentTypesConfig {
         this.contentService = contentService;
     }
 
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
     public GeneralLockService getGeneralLockService() {
         return generalLockService;
     }
@@ -295,4 +424,19 @@ public class ContentTypesConfigImpl implements ContentTypesConfig {
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
         this.studioConfiguration = studioConfiguration;
     }
+
+    /**
+     * Content type configurations of a site for a given commit. Missing configurations are cached as empty
+     */
+    protected static class Registry {
+
+        private volatile String commitId;
+        private final Map<String, Optional<ContentTypeConfigTO>> configs = new ConcurrentHashMap<>();
+        private volatile List<ContentTypeConfigTO> contentTypes;
+        private volatile ContentTypePathMatcher matcher;
+
+        protected Registry(String commitId) {
+            this.commitId = commitId;
+        }
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.apache.commons.lang3.StringUtils;
+import org.dom4j.Document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+
+/**
+ * Content to be written by the copy of a tree of content. Paths already planned are taken into account when
+ * checking if content exists, so the names of the whole tree can be resolved before anything is written.
+ */
+class BulkCopyPlan {
+
+    private final Predicate<String> repositoryExists;
+    private final Predicate<String> repositoryIsFolder;
+
+    private final Map<String, Document> documents = new LinkedHashMap<>();
+    private final Map<String, String> assets = new LinkedHashMap<>();
+    private final Map<String, String> contentTypes = new HashMap<>();
+    private final List<String> folders = new ArrayList<>();
+    private final Set<String> plannedFolders = new HashSet<>();
+
+    BulkCopyPlan(Predicate<String> repositoryExists, Predicate<String> repositoryIsFolder) {
+        this.repositoryExists = repositoryExists;
+        this.repositoryIsFolder = repositoryIsFolder;
+    }
+
+    boolean exists(String path) {
+        return isPlanned(path) || plannedFolders.contains(path) || repositoryExists.test(path);
+    }
+
+    boolean isFolder(String path) {
+        if (plannedFolders.contains(path)) {
+            return true;
+        }
+        return !isPlanned(path) && repositoryIsFolder.test(path);
+    }
+
+    boolean isPlanned(String path) {
+        return documents.containsKey(path) || assets.containsKey(path);
+    }
+
+    /**
+     * Plan a folder, including any of its parents that doesn't exist
+     */
+    void addFolder(String path) {
+        Deque<String> missing = new ArrayDeque<>();
+        String folder = StringUtils.removeEnd(path, FILE_SEPARATOR);
+        while (StringUtils.isNotEmpty(folder) && !exists(folder)) {
+            missing.push(folder);
+            folder = StringUtils.substringBeforeLast(folder, FILE_SEPARATOR);
+        }
+        while (!missing.isEmpty()) {
+            folder = missing.pop();
+            plannedFolders.add(folder);
+            folders.add(folder);
+        }
+    }
+
+    /**
+     * Plan an XML document, it is serialized when the plan is written so its navigation order can still be set
+     */
+    void addDocument(String path, Document document, String contentType) {
+        addFolder(StringUtils.substringBeforeLast(path, FILE_SEPARATOR));
+        documents.put(path, document);
+        contentTypes.put(path, contentType);
+    }
+
+    /**
+     * Plan an asset, its content is read from the source path when the plan is written
+     */
+    void addAsset(String path, String sourcePath, String contentType) {
+        addFolder(StringUtils.substringBeforeLast(path, FILE_SEPARATOR));
+        assets.put(path, sourcePath);
+        contentTypes.put(path, contentType);
+    }
+
+    boolean isEmpty() {
+        return documents.isEmpty() && assets.isEmpty() && folders.isEmpty();
+    }
+
+    Map<String, Document> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Planned documents grouped by their folder, in the order they were planned
+     */
+    Map<String, List<Document>> getDocumentsByFolder() {
+        Map<String, List<Document>> documentsByFolder = new LinkedHashMap<>();
+        for (Map.Entry<String, Document> document : documents.entrySet()) {
+            String folder = StringUtils.substringBeforeLast(document.getKey(), FILE_SEPARATOR);
+            documentsByFolder.computeIfAbsent(folder, key -> new ArrayList<>()).add(document.getValue());
+        }
+        return documentsByFolder;
+    }
+
+    Map<String, String> getAssets() {
+        return assets;
+    }
+
+    List<String> getFolders() {
+        return folders;
+    }
+
+    List<String> getFiles() {
+        List<String> files = new ArrayList<>(documents.size() + assets.size());
+        files.addAll(documents.keySet());
+        files.addAll(assets.keySet());
+        return files;
+    }
+
+    String getContentType(String path) {
+        return contentTypes.get(path);
+    }
+}
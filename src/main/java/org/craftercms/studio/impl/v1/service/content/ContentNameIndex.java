@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.constant.DmConstants;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_NAME_INDEX_MAX_FOLDERS;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_NAME_INDEX_RESERVATION_TIMEOUT;
+
+/**
+ * Index of the highest copy suffix ({@code name-N}) used by the children of a folder, to allocate the next
+ * available name of an item without listing and loading all of its siblings. The index of a folder is built from
+ * a single listing of the repository the first time it's needed, and it's kept up to date by the content service
+ * as content is written, moved and deleted. Names are reserved as soon as they are handed out so concurrent
+ * copies into the same folder never get the same name, and every name is checked against the repository before
+ * being returned so changes made outside of the content service can only cause gaps in the numbering.
+ * A reservation lasts until the content is written or the reservation is released, names that are never written
+ * nor released are reserved for a limited time. Folders with live reservations are never removed from the index.
+ */
+public class ContentNameIndex {
+
+    private final Map<String, FolderNames> folders = new LinkedHashMap<String, FolderNames>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FolderNames> eldest) {
+            return size() > getMaxFolders() && !eldest.getValue().hasReservations();
+        }
+    };
+
+    protected ContentRepository contentRepository;
+    protected StudioConfiguration studioConfiguration;
+
+    /**
+     * Reserve the next available copy name for an item of a folder
+     *
+     * @param site site id
+     * @param folder path of the folder
+     * @param baseName name of the item without extension
+     * @param extension extension of the item including the dot, empty for folders
+     * @param isFolder true if the item is a folder or a page folder
+     * @return the reserved name
+     */
+    public String reserveNextName(String site, String folder, String baseName, String extension, boolean isFolder) {
+        FolderNames names = getFolderNames(site, folder, true);
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(getReservationTimeout());
+        String name = names.reserve(baseName, extension, isFolder, expiresAt);
+        while (contentRepository.contentExists(site, folder + FILE_SEPARATOR + name)) {
+            // the name was taken outside of the content service, it doesn't need to be reserved
+            names.add(name, isFolder);
+            name = names.reserve(baseName, extension, isFolder, expiresAt);
+        }
+        return name;
+    }
+
+    /**
+     * Release the reservation of a name that is not going to be written, so it can be handed out again. The name of
+     * the folder of an index file is the one released
+     *
+     * @param site site id
+     * @param path path of the content that was going to be written
+     */
+    public void release(String site, String path) {
+        String cleanPath = StringUtils.removeEnd(StringUtils.removeEnd(path, FILE_SEPARATOR),
+                FILE_SEPARATOR + DmConstants.INDEX_FILE);
+        FolderNames names = getFolderNames(site, StringUtils.substringBeforeLast(cleanPath, FILE_SEPARATOR),
+                false);
+        if (names != null) {
+            names.release(StringUtils.substringAfterLast(cleanPath, FILE_SEPARATOR));
+        }
+    }
+
+    /**
+     * Update the index after content has been created, the parent folders of the path are also considered created
+     *
+     * @param site site id
+     * @param path path of the new content
+     * @param isFolder true if the path is a folder
+     */
+    public void added(String site, String path, boolean isFolder) {
+        String child = StringUtils.removeEnd(path, FILE_SEPARATOR);
+        boolean childIsFolder = isFolder;
+        while (child.lastIndexOf(FILE_SEPARATOR) > 0) {
+            String folder = child.substring(0, child.lastIndexOf(FILE_SEPARATOR));
+            FolderNames names = getFolderNames(site, folder, false);
+            if (names != null) {
+                names.add(child.substring(child.lastIndexOf(FILE_SEPARATOR) + 1), childIsFolder);
+            }
+            child = folder;
+            childIsFolder = true;
+        }
+    }
+
+    /**
+     * Update the index after content has been deleted or moved away, the index of the parent folder and of any
+     * folder inside the path is discarded, only its live reservations are kept
+     *
+     * @param site site id
+     * @param path path of the removed content
+     */
+    public void removed(String site, String path) {
+        String cleanPath = StringUtils.removeEnd(path, FILE_SEPARATOR);
+        String parentKey = getKey(site, StringUtils.substringBeforeLast(cleanPath, FILE_SEPARATOR));
+        String pathKey = getKey(site, cleanPath);
+        discard(key -> key.equals(parentKey) || key.equals(pathKey) || key.startsWith(pathKey + FILE_SEPARATOR));
+    }
+
+    /**
+     * Discard the index of all the folders of a site, only their live reservations are kept
+     *
+     * @param site site id
+     */
+    public void invalidate(String site) {
+        String prefix = getKey(site, StringUtils.EMPTY);
+        discard(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Discard the index of some folders, the folders with live reservations are listed again the next time they
+     * are needed but the reserved names are still taken into account
+     */
+    protected void discard(Predicate<String> keys) {
+        synchronized (folders) {
+            Iterator<Map.Entry<String, FolderNames>> iterator = folders.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, FolderNames> entry = iterator.next();
+                if (keys.test(entry.getKey())) {
+                    if (entry.getValue().hasReservations()) {
+                        entry.setValue(new FolderNames(entry.getValue().reservations));
+                    } else {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    protected FolderNames getFolderNames(String site, String folder, boolean load) {
+        String key = getKey(site, folder);
+        FolderNames names;
+        synchronized (folders) {
+            names = folders.get(key);
+            if (!load) {
+                return names;
+            }
+            if (names == null) {
+                names = new FolderNames(new ConcurrentHashMap<>());
+                folders.put(key, names);
+            }
+        }
+        // list the folder outside of the global lock, concurrent lookups wait for the listing of this folder only
+        synchronized (names) {
+            if (!names.loaded) {
+                for (RepositoryItem item : contentRepository.getContentChildren(site, folder)) {
+                    names.add(item.name, item.isFolder);
+                }
+                names.addReservations();
+                names.loaded = true;
+            }
+        }
+        return names;
+    }
+
+    protected String getKey(String site, String folder) {
+        return site + ":" + folder;
+    }
+
+    protected int getMaxFolders() {
+        return Integer.parseInt(studioConfiguration.getProperty(CONTENT_NAME_INDEX_MAX_FOLDERS));
+    }
+
+    protected long getReservationTimeout() {
+        return Long.parseLong(studioConfiguration.getProperty(CONTENT_NAME_INDEX_RESERVATION_TIMEOUT));
+    }
+
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    public StudioConfiguration getStudioConfiguration() {
+        return studioConfiguration;
+    }
+
+    public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
+        this.studioConfiguration = studioConfiguration;
+    }
+
+    /**
+     * Highest copy suffix of the children of a folder for each name, extension and type, and the names reserved
+     * but not written yet. The reservations are shared with the index that replaces this one when it's discarded
+     */
+    protected static class FolderNames {
+
+        private final Map<String, Integer> maxSuffixes = new HashMap<>();
+        private final Map<String, Reservation> reservations;
+        private boolean loaded;
+
+        protected FolderNames(Map<String, Reservation> reservations) {
+            this.reservations = reservations;
+        }
+
+        protected synchronized void add(String name, boolean isFolder) {
+            reservations.remove(name);
+            Integer suffix = getSuffix(name, isFolder);
+            if (suffix != null) {
+                maxSuffixes.merge(getKey(name, isFolder), suffix, Math::max);
+            }
+        }
+
+        protected synchronized void addReservations() {
+            for (Map.Entry<String, Reservation> reservation : reservations.entrySet()) {
+                Integer suffix = getSuffix(reservation.getKey(), reservation.getValue().isFolder);
+                if (suffix != null) {
+                    maxSuffixes.merge(getKey(reservation.getKey(), reservation.getValue().isFolder), suffix,
+                            Math::max);
+                }
+            }
+        }
+
+        protected synchronized String reserve(String baseName, String extension, boolean isFolder,
+                                              long expiresAt) {
+            Reservation reservation = new Reservation(isFolder, expiresAt);
+            String name;
+            do {
+                name = baseName + "-" + maxSuffixes.merge(getKey(baseName, extension, isFolder), 1,
+                        Integer::sum) + extension;
+            } while (reservations.putIfAbsent(name, reservation) != null);
+            return name;
+        }
+
+        protected synchronized void release(String name) {
+            Reservation reservation = reservations.remove(name);
+            if (reservation != null) {
+                Integer suffix = getSuffix(name, reservation.isFolder);
+                // hand out the same name again if nothing was reserved after it
+                if (suffix != null) {
+                    maxSuffixes.computeIfPresent(getKey(name, reservation.isFolder),
+                            (key, max) -> max.equals(suffix) ? suffix - 1 : max);
+                }
+            }
+        }
+
+        protected boolean hasReservations() {
+            long now = System.currentTimeMillis();
+            reservations.values().removeIf(reservation -> reservation.expiresAt <= now);
+            return !reservations.isEmpty();
+        }
+
+        private Integer getSuffix(String name, boolean isFolder) {
+            String baseName = getBaseName(name, isFolder);
+            int lastDash = baseName.lastIndexOf("-");
+            if (lastDash > 0 && lastDash < baseName.length() - 1 &&
+                    StringUtils.isNumeric(baseName.substring(lastDash + 1))) {
+                try {
+                    return Integer.parseInt(baseName.substring(lastDash + 1));
+                } catch (NumberFormatException e) {
+                    // too big to be a copy suffix
+                }
+            }
+            return null;
+        }
+
+        private String getKey(String name, boolean isFolder) {
+            String baseName = getBaseName(name, isFolder);
+            return getKey(baseName.substring(0, baseName.lastIndexOf("-")),
+                    name.substring(baseName.length()), isFolder);
+        }
+
+        private String getBaseName(String name, boolean isFolder) {
+            int lastDot = name.lastIndexOf(".");
+            return !isFolder && lastDot > 0 ? name.substring(0, lastDot) : name;
+        }
+
+        private String getKey(String baseName, String extension, boolean isFolder) {
+            return (isFolder ? FILE_SEPARATOR : StringUtils.EMPTY) + baseName + "\n" + extension;
+        }
+    }
+
+    /**
+     * Name handed out by the index and not written yet
+     */
+    protected static class Reservation {
+
+        private final boolean isFolder;
+        private final long expiresAt;
+
+        protected Reservation(boolean isFolder, long expiresAt) {
+            this.isFolder = isFolder;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
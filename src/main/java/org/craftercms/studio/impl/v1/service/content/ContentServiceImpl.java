@@ -15,17 +15,22 @@
  */
 package org.craftercms.studio.impl.v1.service.content;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,9 +92,9 @@ import org.craftercms.studio.api.v2.dal.AuditLog;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.security.UserService;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
-import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.craftercms.studio.impl.v1.util.ContentItemOrderComparator;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
+import org.craftercms.studio.impl.v1.util.XmlUtils;
 
 import org.craftercms.studio.impl.v2.utils.spring.ContentResource;
 import org.dom4j.Node;
@@ -100,6 +105,9 @@ import org.dom4j.DocumentException;
 
 import org.apache.commons.io.IOUtils;
 import org.springframework.core.io.Resource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.xml.sax.SAXException;
 
 import javax.activation.MimetypesFileTypeMap;
@@ -132,6 +140,8 @@ import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_CON
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_FOLDER;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_REMOTE_REPOSITORY;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_SYSTEM_SITE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_COPY_BATCH_SIZE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_MOVE_BATCH_SIZE;
 
 /**
  * Content Services that other services may use
@@ -166,6 +176,8 @@ public class ContentServiceImpl implements ContentService {
     protected EntitlementValidator entitlementValidator;
     protected AuditServiceInternal auditServiceInternal;
     protected UserService userService;
+    protected ContentNameIndex contentNameIndex;
+    protected PlatformTransactionManager transactionManager;
 
     /**
      * file and folder name patterns for copied files and folders
@@ -582,6 +594,7 @@ public class ContentServiceImpl implements ContentService {
         result = StringUtils.isNotEmpty(commitId);
 
         if (result) {
+            contentNameIndex.added(site, path, false);
             // Update database with commitId
             if (!objectMetadataManager.metadataExist(site, path)) {
                 objectMetadataManager.insertNewObjectMetadata(site, path);
@@ -602,6 +615,7 @@ public class ContentServiceImpl implements ContentService {
         boolean toRet = false;
         String commitId = _contentRepository.createFolder(site, path, name);
         if (commitId != null) {
+            contentNameIndex.added(site, path + FILE_SEPARATOR + name, true);
             SiteFeed siteFeed = siteService.getSite(site);
             AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
             auditLog.setOperation(OPERATION_CREATE);
@@ -637,6 +651,7 @@ public class ContentServiceImpl implements ContentService {
         }
 
         commitId = _contentRepository.deleteContent(site, path, approver);
+        contentNameIndex.removed(site, path);
 
         objectStateService.deleteObjectStateForPath(site, path);
         objectMetadataManager.deleteObjectMetadata(site, path);
@@ -757,7 +772,7 @@ public class ContentServiceImpl implements ContentService {
                             Map<String, String> copyObjectIds = contentItemIdGenerator.getIds();
 
                             Map<String, String> copyDependencies = getCopyDependencies(site, fromPath,
-                                    fromPath);
+                                    fromPath, contentType);
                             copyDependencies = getItemSpecificDependencies(site, fromPath, fromDocument,
                                     copyDependencies);
 
@@ -857,9 +872,337 @@ public class ContentServiceImpl implements ContentService {
                 eServiceLayerException, site, fromPath, toPath, copyPath);
         }
 
+        if (retNewFileName == null && copyPath != null) {
+            // the new name is not going to be written
+            contentNameIndex.release(site, copyPath);
+        }
         return retNewFileName;
     }
 
+    @Override
+    @ValidateParams
+    public Map<String, String> copyContentTree(@ValidateStringParam(name = "site") String site,
+                                               @ValidateSecurePathParam(name = "fromPath") String fromPath,
+                                               @ValidateSecurePathParam(name = "toPath") String toPath,
+                                               Map<String, List<String>> children) {
+        Map<String, String> copiedPaths = new LinkedHashMap<String, String>();
+        BulkCopyPlan plan = new BulkCopyPlan(path -> contentExists(site, path),
+                path -> _contentRepository.isFolder(site, path));
+        planCopyTree(site, fromPath, toPath, children, plan, copiedPaths);
+        if (plan.isEmpty()) {
+            return copiedPaths;
+        }
+
+        for (Map.Entry<String, List<Document>> folder : plan.getDocumentsByFolder().entrySet()) {
+            dmPageNavigationOrderService.addNavOrders(site, folder.getKey(), folder.getValue());
+        }
+
+        Map<String, InputStream> contents = new LinkedHashMap<String, InputStream>();
+        String commitId = null;
+        try {
+            for (Map.Entry<String, Document> document : plan.getDocuments().entrySet()) {
+                contents.put(document.getKey(), new ByteArrayInputStream(
+                        XmlUtils.convertDocumentToString(document.getValue()).getBytes(CONTENT_ENCODING)));
+            }
+            for (Map.Entry<String, String> asset : plan.getAssets().entrySet()) {
+                contents.put(asset.getKey(), getContent(site, asset.getValue()));
+            }
+            commitId = _contentRepository.writeCopiedContent(site, fromPath, toPath, contents, plan.getFolders());
+        } catch (ContentNotFoundException e) {
+            logger.error("Content not found while copying content for site {0} from {1} to {2}", e, site,
+                    fromPath, toPath);
+        } catch (IOException e) {
+            logger.error("Error serializing copied content for site {0} from {1} to {2}", e, site, fromPath,
+                    toPath);
+        } finally {
+            for (InputStream content : contents.values()) {
+                IOUtils.closeQuietly(content);
+            }
+        }
+        if (StringUtils.isEmpty(commitId)) {
+            for (String path : plan.getFiles()) {
+                contentNameIndex.release(site, path);
+            }
+            for (String folder : plan.getFolders()) {
+                contentNameIndex.release(site, folder);
+            }
+            return Collections.emptyMap();
+        }
+        for (String folder : plan.getFolders()) {
+            contentNameIndex.added(site, folder, true);
+        }
+        for (String file : plan.getFiles()) {
+            contentNameIndex.added(site, file, false);
+        }
+
+        try {
+            recordCopiedContent(site, commitId, plan);
+        } catch (ServiceLayerException e) {
+            logger.error("Error recording copied content for site {0} from {1} to {2}", e, site, fromPath, toPath);
+        }
+        return copiedPaths;
+    }
+
+    protected void planCopyTree(String site, String fromPath, String toPath, Map<String, List<String>> children,
+                                BulkCopyPlan plan, Map<String, String> copiedPaths) {
+        String copyPath = planCopy(site, fromPath, toPath, plan);
+        if (copyPath != null) {
+            copiedPaths.put(fromPath, copyPath);
+            List<String> itemChildren = children.get(fromPath);
+            if (itemChildren != null) {
+                for (String child : itemChildren) {
+                    planCopyTree(site, child, copyPath, children, plan, copiedPaths);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve the final path and content of a copied item, and of its copy dependencies, without writing anything
+     *
+     * @return final path of the item, null if it can't be copied
+     */
+    protected String planCopy(String site, String fromPath, String toPath, BulkCopyPlan plan) {
+        String copyPath = null;
+
+        try {
+            Map<String, String> copyPathMap = constructNewPathforCutCopy(site, fromPath, toPath, true,
+                    plan::exists, plan::isFolder);
+            copyPath = copyPathMap.get("FILE_PATH");
+            if (plan.isPlanned(copyPath)) {
+                // no need to process
+                return copyPath;
+            }
+
+            ContentItemTO fromItem = getContentItem(site, fromPath, 0);
+            if (fromItem.isFolder()) {
+                plan.addFolder(copyPath);
+                return copyPath;
+            }
+
+            String contentType = fromItem.getContentType();
+            if (!fromPath.endsWith(DmConstants.XML_PATTERN)) {
+                plan.addAsset(copyPath, fromPath, contentType);
+                return copyPath;
+            }
+
+            Document fromDocument;
+            try (InputStream fromContent = getContent(site, fromPath)) {
+                fromDocument = ContentUtils.convertStreamToXml(fromContent);
+            }
+            Map<String, String> fromPageIds = getContentIds(fromDocument);
+            Map<String, String> copyObjectIds = contentItemIdGenerator.getIds();
+
+            Map<String, String> copyDependencies = getCopyDependencies(site, fromPath, fromPath, contentType);
+            copyDependencies = getItemSpecificDependencies(site, fromPath, fromDocument, copyDependencies);
+            logger.debug("Calculated copy dependencies: {0}, {1}", fromPath, copyDependencies);
+
+            for (String dependencyKey : copyDependencies.keySet()) {
+                String dependencyPath = copyDependencies.get(dependencyKey);
+                String copyDepPath = StringUtils.replace(dependencyPath, fromPageIds.get(DmConstants.KEY_PAGE_ID),
+                        copyObjectIds.get(DmConstants.KEY_PAGE_ID));
+                copyDepPath = StringUtils.replace(copyDepPath, fromPageIds.get(DmConstants.KEY_PAGE_GROUP_ID),
+                        copyObjectIds.get(DmConstants.KEY_PAGE_GROUP_ID));
+
+                if (plan.isFolder(copyDepPath)) {
+                    copyDepPath = copyDepPath + FILE_SEPARATOR + FilenameUtils.getName(dependencyKey);
+                    copyDepPath = copyDepPath.replaceAll(FILE_SEPARATOR + FILE_SEPARATOR, FILE_SEPARATOR);
+                } else if (!copyDepPath.endsWith(DmConstants.XML_PATTERN)) {
+                    copyDepPath = ContentUtils.getParentUrl(copyDepPath);
+                }
+
+                String newCopyDepPath = planCopy(site, dependencyKey, copyDepPath, plan);
+                if (newCopyDepPath != null) {
+                    fromDocument = replaceCopyDependency(fromDocument, dependencyKey, newCopyDepPath);
+                }
+            }
+
+            Document copyDocument = updateContentOnCopy(fromDocument, copyPathMap.get("FILE_NAME"),
+                    copyPathMap.get("FILE_FOLDER"), copyObjectIds, copyPathMap.get("MODIFIER"));
+            // the navigation order is reserved for the whole folder once the tree is planned
+            plan.addDocument(copyPath, copyDocument, contentType);
+            return copyPath;
+        } catch (ContentNotFoundException e) {
+            logger.debug("Content not found while copying content for site {0} from {1} to {2}, new name is {3}",
+                    e, site, fromPath, toPath, copyPath);
+        } catch (DocumentException | IOException e) {
+            logger.error("General Error while copying content for site {0} from {1} to {2}, new name is {3}",
+                    e, site, fromPath, toPath, copyPath);
+        } catch (ServiceLayerException e) {
+            logger.info("General Error while copying content for site {0} from {1} to {2}, new name is {3}",
+                    e, site, fromPath, toPath, copyPath);
+        }
+        if (copyPath != null) {
+            contentNameIndex.release(site, copyPath);
+        }
+        return null;
+    }
+
+    /**
+     * Update the database for all the items written by a copy, in batches
+     */
+    protected void recordCopiedContent(String site, String commitId, BulkCopyPlan plan) throws ServiceLayerException {
+        String user = securityService.getCurrentUser();
+        SiteFeed siteFeed = siteService.getSite(site);
+        List<String> files = plan.getFiles();
+
+        recordWrittenContent(site, user, commitId, files);
+        objectStateService.insertNewEntries(site, files);
+
+        for (String folder : plan.getFolders()) {
+            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+            auditLog.setOperation(OPERATION_CREATE);
+            auditLog.setSiteId(siteFeed.getId());
+            auditLog.setActorId(user);
+            auditLog.setPrimaryTargetId(site + ":" + folder);
+            auditLog.setPrimaryTargetType(TARGET_TYPE_FOLDER);
+            auditLog.setPrimaryTargetValue(folder);
+            auditServiceInternal.insertAuditLog(auditLog);
+        }
+        for (String path : files) {
+            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+            auditLog.setOperation(OPERATION_UPDATE);
+            auditLog.setSiteId(siteFeed.getId());
+            auditLog.setActorId(user);
+            auditLog.setPrimaryTargetId(site + ":" + path);
+            auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+            auditLog.setPrimaryTargetValue(path);
+            auditLog.setPrimaryTargetSubtype(getContentTypeClass(site, path));
+            auditServiceInternal.insertAuditLog(auditLog);
+        }
+        for (String path : plan.getDocuments().keySet()) {
+            dmContentLifeCycleService.process(site, user, path, plan.getContentType(path),
+                    DmContentLifeCycleService.ContentLifeCycleOperation.COPY, null);
+        }
+    }
+
+    /**
+     * Update the metadata and the dependencies of files written in a single commit, in batches
+     */
+    protected void recordWrittenContent(String site, String user, String commitId, List<String> files)
+            throws ServiceLayerException {
+        int batchSize = getCopyBatchSize();
+
+        for (int i = 0; i < files.size(); i = i + batchSize) {
+            List<String> batch = files.subList(i, Math.min(i + batchSize, files.size()));
+            Set<String> existingPaths = new HashSet<String>();
+            for (ItemMetadata metadata : objectMetadataManager.getProperties(site, batch)) {
+                existingPaths.add(metadata.getPath());
+            }
+            ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+            List<ItemMetadata> newMetadata = new ArrayList<ItemMetadata>(batch.size());
+            for (String path : batch) {
+                String name = FilenameUtils.getName(path);
+                if (existingPaths.contains(path)) {
+                    Map<String, Object> properties = new HashMap<String, Object>();
+                    properties.put(ItemMetadata.PROP_NAME, name);
+                    properties.put(ItemMetadata.PROP_MODIFIED, now);
+                    // overwritten files keep their creator and owner
+                    properties.put(ItemMetadata.PROP_MODIFIER, user);
+                    properties.put(ItemMetadata.PROP_LOCK_OWNER, StringUtils.EMPTY);
+                    objectMetadataManager.setObjectMetadata(site, path, properties);
+                    objectMetadataManager.updateCommitId(site, path, commitId);
+                } else {
+                    ItemMetadata metadata = new ItemMetadata();
+                    metadata.setPath(path);
+                    metadata.setName(name);
+                    metadata.setModified(now);
+                    metadata.setCreator(user);
+                    metadata.setModifier(user);
+                    metadata.setOwner(user);
+                    metadata.setLockOwner(StringUtils.EMPTY);
+                    metadata.setCommitId(commitId);
+                    newMetadata.add(metadata);
+                }
+            }
+            objectMetadataManager.insertNewObjectMetadata(site, newMetadata);
+            dependencyService.upsertDependencies(site, batch);
+        }
+        contentRepository.insertGitLog(site, commitId, 1);
+        siteService.updateLastCommitId(site, commitId);
+    }
+
+    @Override
+    @ValidateParams
+    public List<String> writeImportedContent(@ValidateStringParam(name = "site") String site,
+                                             Map<String, InputStream> contents, String user) {
+        Map<String, InputStream> toWrite = new LinkedHashMap<String, InputStream>();
+        Map<String, String> contentTypes = new HashMap<String, String>();
+        Set<String> existingPaths = new HashSet<String>();
+        String commitId = null;
+        try {
+            for (Map.Entry<String, InputStream> entry : contents.entrySet()) {
+                String path = entry.getKey();
+                if (contentExists(site, path)) {
+                    existingPaths.add(path);
+                }
+                if (!path.endsWith(DmConstants.XML_PATTERN)) {
+                    toWrite.put(path, entry.getValue());
+                    continue;
+                }
+                try (InputStream content = entry.getValue()) {
+                    byte[] bytes = IOUtils.toByteArray(content);
+                    Document document = ContentUtils.convertStreamToXml(new ByteArrayInputStream(bytes));
+                    if (dmPageNavigationOrderService.updateNavOrder(site, ContentUtils.getParentUrl(path),
+                            document)) {
+                        bytes = XmlUtils.convertDocumentToString(document).getBytes(CONTENT_ENCODING);
+                    }
+                    contentTypes.put(path, document.getRootElement().valueOf(DmXmlConstants.ELM_CONTENT_TYPE));
+                    toWrite.put(path, new ByteArrayInputStream(bytes));
+                } catch (DocumentException | IOException e) {
+                    logger.error("Error reading imported content for site {0} path {1}", e, site, path);
+                }
+            }
+            if (!toWrite.isEmpty()) {
+                commitId = _contentRepository.writeImportedContent(site, toWrite);
+            }
+        } finally {
+            for (InputStream content : contents.values()) {
+                IOUtils.closeQuietly(content);
+            }
+            for (InputStream content : toWrite.values()) {
+                IOUtils.closeQuietly(content);
+            }
+        }
+        if (StringUtils.isEmpty(commitId)) {
+            return Collections.emptyList();
+        }
+        List<String> files = new ArrayList<String>(toWrite.keySet());
+        for (String file : files) {
+            contentNameIndex.added(site, file, false);
+        }
+
+        try {
+            recordWrittenContent(site, user, commitId, files);
+            SiteFeed siteFeed = siteService.getSite(site);
+            for (String path : files) {
+                boolean exists = existingPaths.contains(path);
+                AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                auditLog.setOperation(exists ? OPERATION_UPDATE : OPERATION_CREATE);
+                auditLog.setSiteId(siteFeed.getId());
+                auditLog.setActorId(user);
+                auditLog.setPrimaryTargetId(site + ":" + path);
+                auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+                auditLog.setPrimaryTargetValue(path);
+                auditLog.setPrimaryTargetSubtype(getContentTypeClass(site, path));
+                auditServiceInternal.insertAuditLog(auditLog);
+            }
+            for (Map.Entry<String, String> document : contentTypes.entrySet()) {
+                dmContentLifeCycleService.process(site, user, document.getKey(), document.getValue(),
+                        existingPaths.contains(document.getKey()) ?
+                                DmContentLifeCycleService.ContentLifeCycleOperation.UPDATE :
+                                DmContentLifeCycleService.ContentLifeCycleOperation.NEW, null);
+            }
+        } catch (ServiceLayerException e) {
+            logger.error("Error recording imported content for site {0}", e, site);
+        }
+        return files;
+    }
+
+    protected int getCopyBatchSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(CONTENT_COPY_BATCH_SIZE));
+    }
+
     @SuppressWarnings("unchecked")
     protected Document replaceCopyDependency(Document document, String depPath, String copyDepPath) {
         Element root = document.getRootElement();
@@ -876,13 +1219,12 @@ public class ContentServiceImpl implements ContentService {
                                                     @ValidateSecurePathParam(name = "sourceContentPath")
                                                             String sourceContentPath,
                                                     @ValidateSecurePathParam(name = "dependencyPath")
-                                                            String dependencyPath)
+                                                            String dependencyPath,
+                                                    String contentType)
             throws ServiceLayerException {
         Map<String,String> copyDependency = new HashMap<String,String>();
         if(sourceContentPath.endsWith(DmConstants.XML_PATTERN) && dependencyPath.endsWith(DmConstants.XML_PATTERN)){
-            ContentItemTO dependencyItem = getContentItem(site, sourceContentPath);
-            if (dependencyItem != null) {
-                String contentType = dependencyItem.getContentType();
+            if (contentType != null) {
                 List<CopyDependencyConfigTO> copyDependencyPatterns =
                         servicesConfig.getCopyDependencyPatterns(site, contentType);
                 if (copyDependencyPatterns != null && copyDependencyPatterns.size() > 0) {
@@ -949,17 +1291,16 @@ public class ContentServiceImpl implements ContentService {
             Map<String, String> commitIds = _contentRepository.moveContent(site, sourcePath, targetPath);
 
             if (commitIds != null) {
+                contentNameIndex.removed(site, sourcePath);
+                contentNameIndex.removed(site, targetPath);
+                contentNameIndex.added(site, movePath, false);
                 // Update the database with the commitId for the target item
-                updateDatabaseOnMove(site, fromPath, movePath);
-                updateChildrenOnMove(site, fromPath, movePath);
-                for (Map.Entry<String, String> entry : commitIds.entrySet()) {
-                    objectMetadataManager.updateCommitId(site, FILE_SEPARATOR + entry.getKey(), entry.getValue());
-                    contentRepository.insertGitLog(site, entry.getValue(), 1);
-                }
+                updateDatabaseOnMove(site, fromPath, movePath, commitIds);
                 siteService.updateLastCommitId(site, _contentRepository.getRepoLastCommitId(site));
             }
             else {
                 logger.error("Repository move failed site {0} from {1} to {2}", site, sourcePath, targetPath);
+                contentNameIndex.release(site, movePath);
                 movePath = fromPath;
             }
 
@@ -975,120 +1316,186 @@ public class ContentServiceImpl implements ContentService {
         return movePath;
     }
 
-    protected void updateDatabaseOnMove(String site, String fromPath, String movePath) throws SiteNotFoundException {
+    /**
+     * Update the database after an item, and everything under it, was moved in the repository. The paths of the
+     * whole subtree are rewritten with a single statement per table in one transaction, and the dependencies are
+     * only resolved again for the items that reference other items of the subtree.
+     */
+    protected void updateDatabaseOnMove(String site, String fromPath, String movePath,
+                                        Map<String, String> commitIds) throws ServiceLayerException {
         logger.debug("updateDatabaseOnMove FROM {0} TO {1}  ", fromPath, movePath);
 
         String user = securityService.getCurrentUser();
+        String oldRoot = StringUtils.removeEnd(fromPath, FILE_SEPARATOR + DmConstants.INDEX_FILE);
+        String newRoot = StringUtils.removeEnd(movePath, FILE_SEPARATOR + DmConstants.INDEX_FILE);
+
+        List<String> files = new ArrayList<String>();
+        List<String> folders = new ArrayList<String>();
+        if (_contentRepository.isFolder(site, newRoot)) {
+            folders.add(newRoot);
+            collectMovedItems(site, newRoot, files, folders);
+        } else {
+            files.add(newRoot);
+        }
+
+        // Find the items that need metadata or have to track their old URL, before the paths change
+        List<String> missingMetadata = new ArrayList<String>();
+        List<String> renamedPaths = new ArrayList<String>();
+        List<String> staleMetadata = new ArrayList<String>();
+        int batchSize = getMoveBatchSize();
+        for (int i = 0; i < files.size(); i = i + batchSize) {
+            List<String> batch = files.subList(i, Math.min(i + batchSize, files.size()));
+            List<String> oldBatch = new ArrayList<String>(batch.size());
+            for (String path : batch) {
+                oldBatch.add(oldRoot + path.substring(newRoot.length()));
+            }
+            for (ItemMetadata metadata : objectMetadataManager.getProperties(site, batch)) {
+                staleMetadata.add(metadata.getPath());
+            }
+            Map<String, ItemMetadata> metadataByPath = new HashMap<String, ItemMetadata>();
+            for (ItemMetadata metadata : objectMetadataManager.getProperties(site, oldBatch)) {
+                metadataByPath.put(metadata.getPath(), metadata);
+            }
+            Map<String, ItemState> stateByPath = new HashMap<String, ItemState>();
+            for (ItemState state : objectStateService.getObjectStateByPaths(site, oldBatch)) {
+                stateByPath.put(state.getPath(), state);
+            }
+            for (String path : oldBatch) {
+                // if an item was previously moved, we do not track intermediate moves because it will
+                // ultimately orphan deployed content.  Old Path is always the OLDEST DEPLOYED PATH
+                ItemMetadata metadata = metadataByPath.get(path);
+                if (metadata != null && metadata.getRenamed() > 0) {
+                    continue;
+                }
+                if (metadata == null) {
+                    missingMetadata.add(path);
+                }
+                // items without state become new when they are saved
+                ItemState state = stateByPath.get(path);
+                if (state != null && !State.isNew(State.valueOf(state.getState()))) {
+                    renamedPaths.add(path);
+                }
+            }
+        }
 
-        Map<String, String> params = new HashMap<>();
-        params.put(DmConstants.KEY_SOURCE_PATH, fromPath);
-        params.put(DmConstants.KEY_TARGET_PATH, movePath);
-        // These do not exist in 3.0, note some extensions may be using it
-        //params.put(DmConstants.KEY_SOURCE_FULL_PATH, expandRelativeSitePath(site, fromPath));
-        //params.put(DmConstants.KEY_TARGET_FULL_PATH, expandRelativeSitePath(site, movePath));
-
-        ContentItemTO renamedItem = getContentItem(site, movePath, 0);
-        String contentType = renamedItem.getContentType();
-        if (!renamedItem.isFolder()) {
-            dmContentLifeCycleService.process(site, user, movePath, contentType, DmContentLifeCycleService
-                    .ContentLifeCycleOperation.RENAME, params);
-
-            // change the path of this object in the object state database
-            objectStateService.updateObjectPath(site, fromPath, movePath);
-            objectStateService.transition(site, renamedItem, SAVE);
-            renamedItem = getContentItem(site, movePath, 0);
-        }
-        // update metadata
-        if (!objectMetadataManager.isRenamed(site, fromPath)) {
-            // if an item was previously moved, we do not track intermediate moves because it will
-            // ultimately orphan deployed content.  Old Path is always the OLDEST DEPLOYED PATH
-            ItemMetadata metadata = objectMetadataManager.getProperties(site, fromPath);
-            if (metadata == null && !renamedItem.isFolder()) {
-                if (!objectMetadataManager.metadataExist(site, fromPath)) {
-                    objectMetadataManager.insertNewObjectMetadata(site, fromPath);
+        Map<String, List<String>> pathsByCommit = new HashMap<String, List<String>>();
+        for (Map.Entry<String, String> entry : commitIds.entrySet()) {
+            pathsByCommit.computeIfAbsent(entry.getValue(), commitId -> new ArrayList<String>())
+                    .add(FILE_SEPARATOR + entry.getKey());
+        }
+
+        Set<String> brokenReferences;
+        DefaultTransactionDefinition defaultTransactionDefinition = new DefaultTransactionDefinition();
+        defaultTransactionDefinition.setName("updateDatabaseOnMove");
+        TransactionStatus txStatus = transactionManager.getTransaction(defaultTransactionDefinition);
+        try {
+            for (String path : staleMetadata) {
+                objectMetadataManager.deleteObjectMetadata(site, path);
+            }
+            for (int i = 0; i < missingMetadata.size(); i = i + batchSize) {
+                List<ItemMetadata> newMetadata = new ArrayList<ItemMetadata>();
+                for (String path : missingMetadata.subList(i, Math.min(i + batchSize, missingMetadata.size()))) {
+                    ItemMetadata metadata = new ItemMetadata();
+                    metadata.setPath(path);
+                    newMetadata.add(metadata);
                 }
-                metadata = objectMetadataManager.getProperties(site, fromPath);
+                objectMetadataManager.insertNewObjectMetadata(site, newMetadata);
             }
+            for (int i = 0; i < renamedPaths.size(); i = i + batchSize) {
+                objectMetadataManager.setRenamed(site,
+                        renamedPaths.subList(i, Math.min(i + batchSize, renamedPaths.size())));
+            }
+
+            objectMetadataManager.updateObjectPathForSubtree(site, oldRoot, newRoot);
+            objectStateService.updateObjectPathForSubtree(site, oldRoot, newRoot);
+            objectStateService.transitionBulk(site, files, SAVE, State.NEW_UNPUBLISHED_UNLOCKED);
 
-            if (!renamedItem.isNew() && !renamedItem.isFolder()) {
-                // if the item is not new, we need to track the old URL for deployment
-                logger.debug("item is not new, and has not previously been moved. Track the old URL {0}", fromPath);
-                Map<String, Object> objMetadataProps = new HashMap<String, Object>();
-                objMetadataProps.put(ItemMetadata.PROP_RENAMED, 1);
-                objMetadataProps.put(ItemMetadata.PROP_OLD_URL, fromPath);
-                objectMetadataManager.setObjectMetadata(site, fromPath, objMetadataProps);
+            for (Map.Entry<String, List<String>> commit : pathsByCommit.entrySet()) {
+                List<String> paths = commit.getValue();
+                for (int i = 0; i < paths.size(); i = i + batchSize) {
+                    objectMetadataManager.updateCommitId(site, paths.subList(i, Math.min(i + batchSize,
+                            paths.size())), commit.getKey());
+                }
             }
+
+            brokenReferences = dependencyService.moveSubtreeDependencies(site, oldRoot, newRoot);
+            transactionManager.commit(txStatus);
+        } catch (Exception e) {
+            transactionManager.rollback(txStatus);
+            throw new ServiceLayerException("Failed to update the database on move for site: " + site +
+                    " from: " + fromPath + " to: " + movePath, e);
+        }
+        for (String commitId : pathsByCommit.keySet()) {
+            contentRepository.insertGitLog(site, commitId, 1);
         }
 
-        if (!renamedItem.isFolder()) {
-            if (objectMetadataManager.metadataExist(site, movePath)) {
-                objectMetadataManager.deleteObjectMetadata(site, movePath);
-            }
-            objectMetadataManager.updateObjectPath(site, fromPath, movePath);
+        for (String path : files) {
+            Map<String, String> params = new HashMap<>();
+            params.put(DmConstants.KEY_SOURCE_PATH, oldRoot + path.substring(newRoot.length()));
+            params.put(DmConstants.KEY_TARGET_PATH, path);
+            dmContentLifeCycleService.process(site, user, path, loadContentItem(site, path).getContentType(),
+                    DmContentLifeCycleService.ContentLifeCycleOperation.RENAME, params);
         }
 
         // write activity stream
         SiteFeed siteFeed = siteService.getSite(site);
-        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-        auditLog.setOperation(OPERATION_MOVE);
-        auditLog.setSiteId(siteFeed.getId());
-        auditLog.setActorId(user);
-        auditLog.setPrimaryTargetId(site + ":" + movePath);
-        if (renamedItem.isFolder()) {
-            auditLog.setPrimaryTargetType(TARGET_TYPE_FOLDER);
-        } else {
-            auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+        Set<String> movedFiles = new HashSet<String>(files);
+        for (String folder : folders) {
+            // folders with an index file are audited as the page
+            if (!movedFiles.contains(folder + FILE_SEPARATOR + DmConstants.INDEX_FILE)) {
+                insertMoveAuditLog(site, siteFeed, user, folder, TARGET_TYPE_FOLDER);
+            }
+        }
+        for (String path : files) {
+            insertMoveAuditLog(site, siteFeed, user, path, TARGET_TYPE_CONTENT_ITEM);
         }
-        auditLog.setPrimaryTargetValue(movePath);
-        auditLog.setPrimaryTargetSubtype(getContentTypeClass(site, movePath));
-        auditServiceInternal.insertAuditLog(auditLog);
 
-        updateDependenciesOnMove(site, fromPath, movePath);
+        if (!brokenReferences.isEmpty()) {
+            dependencyService.upsertDependencies(site, new ArrayList<String>(brokenReferences));
+        }
     }
 
-    protected void updateDependenciesOnMove(String site, String fromPath, String movePath) {
-        try {
-            dependencyService.deleteItemDependencies(site, fromPath);
-        } catch (ServiceLayerException e) {
-            logger.error("Error while deleting dependencies for site " + site + " path " + fromPath, e);
-        }
-        try {
-            dependencyService.upsertDependencies(site, movePath);
-        } catch (ServiceLayerException e) {
-            logger.error("Error while updating dependencies on move content site: " + site + " path: "
-                    + movePath, e);
+    protected void collectMovedItems(String site, String folder, List<String> files, List<String> folders) {
+        RepositoryItem[] children = _contentRepository.getContentChildren(site, folder);
+        if (children != null) {
+            for (RepositoryItem child : children) {
+                String childPath = child.path + FILE_SEPARATOR + child.name;
+                if (child.isFolder) {
+                    folders.add(childPath);
+                    collectMovedItems(site, childPath, files, folders);
+                } else {
+                    files.add(childPath);
+                }
+            }
         }
     }
 
-    protected void updateChildrenOnMove(String site, String fromPath, String movePath) throws SiteNotFoundException {
-        logger.debug("updateChildrenOnMove from {0} to {1}", fromPath, movePath);
-
-        // get the list of children
-        ContentItemTO movedTO = getContentItem(site, movePath, 2);
-        List<ContentItemTO> childrenTOs = movedTO.getChildren();
-
-        for(ContentItemTO childTO : childrenTOs) {
-            // calculate the child's from path by looking at it's parent's from path and the child new path
-            // (parent move operation has already happened)
-            String childToPath = childTO.getUri();
-
-            String oldParentFolderPath = fromPath.replace("/index.xml", "");
-            String parentFolderPath = movePath.replace("/index.xml", "");
-
-            String childFromPath = childToPath.replace(parentFolderPath, oldParentFolderPath);
-
-            logger.debug("updateChildrenOnMove handling child from: {0} to: {1}  ", childFromPath, childToPath);
-
-            // update database, preview, cache etc
-            updateDatabaseOnMove(site, childFromPath, childToPath);
+    protected void insertMoveAuditLog(String site, SiteFeed siteFeed, String user, String path, String targetType) {
+        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+        auditLog.setOperation(OPERATION_MOVE);
+        auditLog.setSiteId(siteFeed.getId());
+        auditLog.setActorId(user);
+        auditLog.setPrimaryTargetId(site + ":" + path);
+        auditLog.setPrimaryTargetType(targetType);
+        auditLog.setPrimaryTargetValue(path);
+        auditLog.setPrimaryTargetSubtype(getContentTypeClass(site, path));
+        auditServiceInternal.insertAuditLog(auditLog);
+    }
 
-            // handle this child's children
-            updateChildrenOnMove(site, childFromPath, childToPath);
-        }
+    protected int getMoveBatchSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(CONTENT_MOVE_BATCH_SIZE));
     }
 
     protected Map<String, String> constructNewPathforCutCopy(String site, String fromPath, String toPath,
                                                              boolean adjustOnCollide) throws ServiceLayerException {
+        return constructNewPathforCutCopy(site, fromPath, toPath, adjustOnCollide,
+                path -> contentExists(site, path), path -> _contentRepository.isFolder(site, path));
+    }
+
+    protected Map<String, String> constructNewPathforCutCopy(String site, String fromPath, String toPath,
+                                                             boolean adjustOnCollide, Predicate<String> exists,
+                                                             Predicate<String> isFolder)
+            throws ServiceLayerException {
         Map<String, String> result = new HashMap<String, String>();
 
         // The following rules apply to content under the site folder
@@ -1121,7 +1528,7 @@ public class ContentServiceImpl implements ContentService {
         String proposedDestPath_folder = null;
         boolean targetPathExistsPriorToOp = false;
 
-        targetPathExistsPriorToOp = contentExists(site, toPath);
+        targetPathExistsPriorToOp = exists.test(toPath);
 
         if(fromFileIsIndex && newFileIsIndex) {
             // Example MOVE LOCATION, INDEX FILES
@@ -1175,8 +1582,7 @@ public class ContentServiceImpl implements ContentService {
             // newPath:  "/site/website/products/search.xml"
             if(fromFileNameOnly.equals(newFileNameOnly)) {
                 // Move location
-                if (!_contentRepository.contentExists(site, newPathOnly) ||
-                        _contentRepository.isFolder(site, newPathOnly)) {
+                if (!exists.test(newPathOnly) || isFolder.test(newPathOnly)) {
                     proposedDestPath = newPathOnly + FILE_SEPARATOR + fromFileNameOnly;
                 } else {
                     proposedDestPath = newPathOnly;
@@ -1205,7 +1611,7 @@ public class ContentServiceImpl implements ContentService {
 
         if(adjustOnCollide == true) {
             // if adjustOnCollide is true we need to check, otherwise we don't
-            contentExists = contentExists(site, proposedDestPath);
+            contentExists = exists.test(proposedDestPath);
         }
 
         if(adjustOnCollide && contentExists) {
@@ -2125,7 +2531,6 @@ public class ContentServiceImpl implements ContentService {
     @ValidateParams
     public String getNextAvailableName(@ValidateStringParam(name = "site") String site,
                                        @ValidateSecurePathParam(name = "path") String path) {
-        // TODO: SJ: Refactor to be faster, and make it work regardless (seems to fail above 10) in 3.1+
         String[] levels = path.split(FILE_SEPARATOR);
         int length = levels.length;
         if (length > 0) {
@@ -2133,40 +2538,13 @@ public class ContentServiceImpl implements ContentService {
             if (item != null) {
                 String name = ContentUtils.getPageName(path);
                 String parentPath = ContentUtils.getParentUrl(path);
-                ContentItemTO parentItem = getContentItemTree(site, parentPath, 1);
-                if (parentItem != null) {
+                if (contentExists(site, parentPath)) {
+                    boolean isFolder = item.isFolder() || item.isContainer();
                     int lastIndex = name.lastIndexOf(".");
-                    String ext = (item.isFolder()) ? "" : name.substring(lastIndex);
-                    String originalName = (item.isFolder() ||
-                            item.isContainer()) ? name : name.substring(0, lastIndex);
-                    List<ContentItemTO> children = parentItem.getChildren();
-                    // pattern matching doesn't work here
-                    // String childNamePattern = originalName + "%" + ext;
-                    int lastNumber = 0;
-                    String namePattern = originalName + "-[0-9]+" + ext;
-                    if (children != null && children.size() > 0) {
-                        // since it is already sorted, we only care about the last matching item
-                        for (ContentItemTO child : children) {
-                            if (((item.isFolder() || item.isContainer()) == (child.isFolder() ||
-                                    child.isContainer()))) {
-                                String childName = child.getName();
-                                if ((child.isFolder() || child.isContainer())) {
-                                    childName = ContentUtils.getPageName(child.getBrowserUri());
-                                }
-                                if (childName.matches(namePattern)) {
-                                    Pattern pattern = (item.isFolder() ||
-                                            item.isContainer()) ? COPY_FOLDER_PATTERN : COPY_FILE_PATTERN;
-                                    Matcher matcher = pattern.matcher(childName);
-                                    if (matcher.matches()) {
-                                        int helper = ContentFormatUtils.getIntValue(matcher.group(2));
-                                        lastNumber = (helper > lastNumber) ? helper : lastNumber;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    String nextName = originalName + "-" + ++lastNumber + ext;
-                    return nextName;
+                    String ext = (isFolder || lastIndex < 0) ? "" : name.substring(lastIndex);
+                    String originalName = (isFolder || lastIndex < 0) ? name : name.substring(0, lastIndex);
+                    // the index keeps the highest copy number of each name, the new name is reserved right away
+                    return contentNameIndex.reserveNextName(site, parentPath, originalName, ext, isFolder);
                 } else {
                     // if parent doesn't exist, it is new item so the current name is available one
                 }
@@ -2481,12 +2859,7 @@ public class ContentServiceImpl implements ContentService {
 
         if (commitIds != null) {
             // Update the database with the commitId for the target item
-            updateDatabaseOnMove(site, path, targetPath);
-            updateChildrenOnMove(site, path, targetPath);
-            for (Map.Entry<String, String> entry : commitIds.entrySet()) {
-                objectMetadataManager.updateCommitId(site, FILE_SEPARATOR + entry.getKey(), entry.getValue());
-                contentRepository.insertGitLog(site, entry.getValue(), 1);
-            }
+            updateDatabaseOnMove(site, path, targetPath, commitIds);
             siteService.updateLastCommitId(site, _contentRepository.getRepoLastCommitId(site));
 
             PreviewEventContext context = new PreviewEventContext();
@@ -2528,6 +2901,7 @@ public class ContentServiceImpl implements ContentService {
             throw new SiteNotFoundException(siteId);
         }
         boolean toRet = _contentRepository.pullFromRemote(siteId, remoteName, remoteBranch);
+        contentNameIndex.invalidate(siteId);
         SiteFeed siteFeed = siteService.getSite(siteId);
         AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
         auditLog.setOperation(OPERATION_PULL_FROM_REMOTE);
@@ -2544,6 +2918,23 @@ public class ContentServiceImpl implements ContentService {
     public ContentRepository getContentRepository() {
         return _contentRepository;
     }
+
+    public ContentNameIndex getContentNameIndex() {
+        return contentNameIndex;
+    }
+
+    public void setContentNameIndex(ContentNameIndex contentNameIndex) {
+        this.contentNameIndex = contentNameIndex;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
     public void setContentRepository(ContentRepository contentRepository) {
         this._contentRepository = contentRepository;
     }
@@ -151,31 +151,10 @@ public class ContentTypeServiceImpl implements ContentTypeService {
 
         if (CollectionUtils.isNotEmpty(allContentTypes)) {
             List<ContentTypeConfigTO> contentTypes = new ArrayList<ContentTypeConfigTO>();
-            for (ContentTypeConfigTO contentTypeConfig : allContentTypes) {
-                // check if the path matches one of includes paths
-                if (CollectionUtils.isNotEmpty(contentTypeConfig.getPathIncludes())){
-                    for (String pathIncludes : contentTypeConfig.getPathIncludes()) {
-                        if (relativePath.matches(pathIncludes)) {
-                            logger.debug(relativePath + " matches " + pathIncludes);
-                            boolean isMatch = true;
-                            if (contentTypeConfig.getPathExcludes() != null) {
-                                for (String excludePath : contentTypeConfig.getPathExcludes()) {
-                                    if (relativePath.matches(excludePath)) {
-                                        logger.debug(relativePath + " matches an exclude path: " + excludePath);
-                                        isMatch = false;
-                                        break;
-                                    }
-                                }
-                            }
-                            if (isMatch) {
-                                // if a match is found, populate the content type information
-                                addContentTypes(site, userRoles, contentTypeConfig, contentTypes);
-                            }
-                        }
-                    }
-                } else if (CollectionUtils.isEmpty(contentTypeConfig.getPathExcludes())) {
-                    addContentTypes(site, userRoles, contentTypeConfig, contentTypes);
-                }
+            for (ContentTypeConfigTO contentTypeConfig :
+                    contentTypesConfig.getContentTypesForPath(site, relativePath)) {
+                logger.debug(relativePath + " matches content type " + contentTypeConfig.getName());
+                addContentTypes(site, userRoles, contentTypeConfig, contentTypes);
             }
             return contentTypes;
         } else {
@@ -221,29 +200,7 @@ public class ContentTypeServiceImpl implements ContentTypeService {
     }
 
     protected List<ContentTypeConfigTO> getAllContentTypes(String site) {
-        String contentTypesRootPath = getConfigPath().replaceAll(StudioConstants.PATTERN_SITE, site);
-
-        RepositoryItem[] folders = contentRepository.getContentChildren(site, contentTypesRootPath);
-        List<ContentTypeConfigTO> contentTypes = new ArrayList<>();
-
-        if (folders != null) {
-            for (int i = 0; i < folders.length; i++) {
-                String configPath =
-                        folders[i].path + FILE_SEPARATOR + folders[i].name + FILE_SEPARATOR + getConfigFileName();
-                if (contentService.contentExists(site, configPath)) {
-                    ContentTypeConfigTO config = contentTypesConfig
-                            .reloadConfiguration(site,
-                                    configPath.replace(contentTypesRootPath, "")
-                                            .replace(FILE_SEPARATOR + getConfigFileName(), ""));
-                    if (config != null) {
-                        contentTypes.add(config);
-                    }
-                }
-
-                reloadContentTypeConfigForChildren(site, folders[i], contentTypes);
-            }
-        }
-        return contentTypes;
+        return contentTypesConfig.getAllContentTypes(site);
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.craftercms.studio.api.v1.constant.DmConstants;
 import org.craftercms.studio.api.v1.exception.ContentNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.script.ScriptExecutor;
 import org.craftercms.studio.api.v1.service.AbstractRegistrableService;
 import org.craftercms.studio.api.v1.service.content.ContentService;
@@ -41,6 +42,8 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_UNKNOWN;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_PROCESSOR_CONTENT_LIFE_CYCLE_SCRIPT_LOCATION;
@@ -53,6 +56,12 @@ public class DmContentLifeCycleServiceImpl extends AbstractRegistrableService im
     protected SecurityService securityService;
     protected ScriptExecutor scriptExecutor;
     protected StudioConfiguration studioConfiguration;
+    protected ContentRepository contentRepository;
+
+    /**
+     * Sources of the lifecycle scripts of each site, for the last commit that changed them
+     */
+    protected Map<String, SiteScripts> siteScripts = new ConcurrentHashMap<>();
 
     public String getScriptLocation() {
         return studioConfiguration.getProperty(CONTENT_PROCESSOR_CONTENT_LIFE_CYCLE_SCRIPT_LOCATION);
@@ -95,22 +104,79 @@ public class DmContentLifeCycleServiceImpl extends AbstractRegistrableService im
 
         // find the script ref based on content type
         String scriptPath = getScriptPath(site, contentType);
-        if (!contentService.contentExists(site, scriptPath)) {
+        String script = getScript(site, scriptPath);
+        if (script == null) {
             logger.error("No script found at " + scriptPath + ", contentType: " + contentType);
             return;
         }
-        String script = contentService.getContentAsString(site, scriptPath);
 
         if (StringUtils.isNotEmpty(script)) {
             Map<String, Object> model = buildModel(site, user, path, contentType, operation.toString(), params);
             try {
-                scriptExecutor.executeScriptString(script, model);
+                scriptExecutor.executeScript(site + ":" + scriptPath, script, model);
             } catch (Exception e) {
                 logger.error("Error while executing content lifecycle script for " + site + ":" + path, e);
             }
         }
     }
 
+    /**
+     * get the source of the script, it is only read from the repository again after a commit changes the scripts
+     *
+     * @param site
+     * @param scriptPath
+     * @return source of the script, null if it doesn't exist
+     */
+    protected String getScript(String site, String scriptPath) {
+        SiteScripts scripts = getSiteScripts(site);
+        Optional<String> script = scripts.sources.get(scriptPath);
+        if (script == null) {
+            if (contentService.contentExists(site, scriptPath)) {
+                script = Optional.of(StringUtils.defaultString(contentService.getContentAsString(site, scriptPath)));
+            } else {
+                script = Optional.empty();
+            }
+            scripts.sources.put(scriptPath, script);
+        }
+        return script.orElse(null);
+    }
+
+    /**
+     * get the scripts for the current sandbox commit of the site
+     *
+     * @param site
+     * @return scripts of the site
+     */
+    protected SiteScripts getSiteScripts(String site) {
+        String commitId = contentRepository.getRepoLastCommitId(site);
+        SiteScripts scripts = siteScripts.get(site);
+        if (scripts != null && !StringUtils.equals(scripts.commitId, commitId)) {
+            if (isScriptsChanged(site, scripts.commitId, commitId)) {
+                logger.debug("Content lifecycle scripts changed for site " + site + ", clearing script cache");
+                scriptExecutor.evictScripts(site + ":");
+                scripts = null;
+            } else {
+                scripts.commitId = commitId;
+            }
+        }
+        if (scripts == null) {
+            scripts = new SiteScripts(commitId);
+            siteScripts.put(site, scripts);
+        }
+        return scripts;
+    }
+
+    protected boolean isScriptsChanged(String site, String fromCommitId, String toCommitId) {
+        if (StringUtils.isEmpty(fromCommitId) || StringUtils.isEmpty(toCommitId) ||
+                !contentRepository.commitIdExists(site, fromCommitId)) {
+            return true;
+        }
+        // all the scripts are under the folder before the content type in the location
+        String scriptsRootPath = getScriptLocation().replaceAll(StudioConstants.PATTERN_SITE, site)
+                .split(StudioConstants.PATTERN_CONTENT_TYPE)[0];
+        return !contentRepository.getEditCommitIds(site, scriptsRootPath, fromCommitId, toCommitId).isEmpty();
+    }
+
     /**
      * get the content metadata extraction script
      *
@@ -247,5 +313,26 @@ public class DmContentLifeCycleServiceImpl extends AbstractRegistrableService im
         this.studioConfiguration = studioConfiguration;
     }
 
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    /**
+     * Sources of the scripts of a site, an empty value means there is no script at the path
+     */
+    protected static class SiteScripts {
+
+        protected volatile String commitId;
+        protected final Map<String, Optional<String>> sources = new ConcurrentHashMap<>();
+
+        protected SiteScripts(String commitId) {
+            this.commitId = commitId;
+        }
+    }
+
 
 }
@@ -20,25 +20,34 @@ import org.craftercms.commons.validation.annotations.param.ValidateDoubleParam;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
+import org.craftercms.studio.api.v1.constant.DmConstants;
 import org.craftercms.studio.api.v1.constant.DmXmlConstants;
 import org.craftercms.studio.api.v1.dal.NavigationOrderSequence;
 import org.craftercms.studio.api.v1.dal.NavigationOrderSequenceMapper;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.AbstractRegistrableService;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.content.DmPageNavigationOrderService;
-import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.dom4j.Document;
 import org.dom4j.Element;
 import org.dom4j.Node;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PAGE_NAVIGATION_ORDER_INCREMENT;
 
 public class DmPageNavigationOrderServiceImpl extends AbstractRegistrableService
@@ -48,7 +57,9 @@ public class DmPageNavigationOrderServiceImpl extends AbstractRegistrableService
 
     protected GeneralLockService generalLockService;
     protected ContentService contentService;
+    protected ContentRepository contentRepository;
     protected StudioConfiguration studioConfiguration;
+    protected PlatformTransactionManager transactionManager;
     protected NavigationOrderSequenceMapper navigationOrderSequenceMapper;
 
     @Override
@@ -68,48 +79,90 @@ public class DmPageNavigationOrderServiceImpl extends AbstractRegistrableService
     public double getNewNavOrder(@ValidateStringParam(name = "site") String site,
                                  @ValidateSecurePathParam(name = "path") String path,
                                  @ValidateDoubleParam(name = "currentMaxNavOrder") double currentMaxNavOrder) {
+        List<Double> navOrders = reserveNavOrders(site, path, 1, currentMaxNavOrder);
+        return navOrders.isEmpty() ? 1000D : navOrders.get(0);
+    }
+
+    @Override
+    @ValidateParams
+    public List<Double> getNewNavOrders(@ValidateStringParam(name = "site") String site,
+                                        @ValidateSecurePathParam(name = "path") String path, int count) {
+        return reserveNavOrders(site, path, count, -1);
+    }
 
+    /**
+     * Reserve a block of orders by incrementing the folder sequence in place. The increment and the read of the new
+     * value run in the same transaction so the row stays locked in between, and the local lock keeps two threads from
+     * seeding the same folder at the same time
+     */
+    protected List<Double> reserveNavOrders(String site, String path, int count, double currentMaxNavOrder) {
+        if (count < 1) {
+            return Collections.emptyList();
+        }
         String lockId = site + ":" + path;
-        double lastNavOrder = 1000D;
+        int increment = getPageNavigationOrderIncrement();
+        double lastNavOrder;
+        generalLockService.lock(lockId);
         try {
-            Map<String, String> params = new HashMap<String, String>();
-            params.put("site", site);
-            params.put("path", path);
-            NavigationOrderSequence navigationOrderSequence =
-                    navigationOrderSequenceMapper.getPageNavigationOrderForSiteAndPath(params);
-            if (navigationOrderSequence == null) {
-                navigationOrderSequence = new NavigationOrderSequence();
-                navigationOrderSequence.setSite(site);
-                navigationOrderSequence.setPath(path);
-                ContentItemTO itemTreeTO = contentService.getContentItemTree(site, path, 1);
-                if (itemTreeTO == null) {
-                    navigationOrderSequence.setMaxCount(0F);
+            DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
+            transactionDefinition.setName("reserveNavOrders");
+            TransactionStatus txStatus = transactionManager.getTransaction(transactionDefinition);
+            try {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put("site", site);
+                params.put("path", path);
+                params.put("increment", (double) increment * count);
+                if (navigationOrderSequenceMapper.incrementMaxCount(params) > 0) {
+                    lastNavOrder = navigationOrderSequenceMapper.getMaxCountForSiteAndPath(params);
                 } else {
-                    if (StringUtils.isEmpty(itemTreeTO.getNodeRef())) {
-                        navigationOrderSequence.setFolderId(UUID.randomUUID().toString());
-                    } else {
-                        navigationOrderSequence.setFolderId(itemTreeTO.getNodeRef());
-                    }
+                    NavigationOrderSequence navigationOrderSequence = new NavigationOrderSequence();
+                    navigationOrderSequence.setFolderId(UUID.randomUUID().toString());
+                    navigationOrderSequence.setSite(site);
+                    navigationOrderSequence.setPath(path);
+                    double firstNavOrder;
                     if (currentMaxNavOrder < 0) {
-                        navigationOrderSequence.setMaxCount(1000F * itemTreeTO.getNumOfChildren());
+                        firstNavOrder = 1000D * countChildren(site, path);
                     } else {
-                        double newMaxCount = currentMaxNavOrder + getPageNavigationOrderIncrement();
-                        navigationOrderSequence.setMaxCount(newMaxCount);
+                        firstNavOrder = currentMaxNavOrder + increment;
                     }
-
+                    lastNavOrder = firstNavOrder + (double) increment * (count - 1);
+                    navigationOrderSequence.setMaxCount(lastNavOrder);
+                    navigationOrderSequenceMapper.insert(navigationOrderSequence);
                 }
-                navigationOrderSequenceMapper.insert(navigationOrderSequence);
-            } else {
-                double newMaxCount = navigationOrderSequence.getMaxCount() + getPageNavigationOrderIncrement();
-                navigationOrderSequence.setMaxCount(newMaxCount);
-                navigationOrderSequenceMapper.update(navigationOrderSequence);
+                transactionManager.commit(txStatus);
+            } catch (Exception e) {
+                transactionManager.rollback(txStatus);
+                logger.error("Unexpected error reserving navigation orders for site " + site + " path " + path, e);
+                return Collections.emptyList();
             }
-            lastNavOrder = navigationOrderSequence.getMaxCount();
-        } catch (Exception e) {
-            logger.error("Unexpected error: ", e);
+        } finally {
+            generalLockService.unlock(lockId);
+        }
+        List<Double> navOrders = new ArrayList<Double>(count);
+        for (int i = count - 1; i >= 0; i--) {
+            navOrders.add(lastNavOrder - (double) increment * i);
         }
-        return lastNavOrder;
+        return navOrders;
+    }
 
+    /**
+     * Count the children of a folder, not including its index file, without loading the items
+     */
+    protected int countChildren(String site, String path) {
+        String folderPath = StringUtils.removeEnd(path, FILE_SEPARATOR + DmConstants.INDEX_FILE);
+        if (!contentRepository.contentExists(site, folderPath)) {
+            return 0;
+        }
+        RepositoryItem[] children = contentRepository.getContentChildren(site, folderPath);
+        int count = 0;
+        if (children != null) {
+            for (RepositoryItem child : children) {
+                if (!DmConstants.INDEX_FILE.equals(child.name)) {
+                    count++;
+                }
+            }
+        }
+        return count;
     }
 
     @Override
@@ -129,6 +182,26 @@ public class DmPageNavigationOrderServiceImpl extends AbstractRegistrableService
         return docUpdated;
     }
 
+    @Override
+    @ValidateParams
+    public int addNavOrders(@ValidateStringParam(name = "site") String site,
+                            @ValidateSecurePathParam(name = "path") String path, List<Document> documents) {
+        List<Element> navOrderElements = new ArrayList<Element>(documents.size());
+        for (Document document : documents) {
+            Node navOrderNode = document.getRootElement().selectSingleNode("//" + DmXmlConstants.ELM_ORDER_DEFAULT);
+            //skip if order value element does not exist
+            if (navOrderNode != null) {
+                navOrderElements.add((Element) navOrderNode);
+            }
+        }
+        List<Double> navOrders = getNewNavOrders(site, path, navOrderElements.size());
+        for (int i = 0; i < navOrderElements.size(); i++) {
+            double newOrder = i < navOrders.size() ? navOrders.get(i) : 1000D;
+            navOrderElements.get(i).setText(String.valueOf(newOrder));
+        }
+        return navOrderElements.size();
+    }
+
     @Override
     @ValidateParams
     public boolean updateNavOrder(@ValidateStringParam(name = "site") String site,
@@ -183,6 +256,22 @@ public class DmPageNavigationOrderServiceImpl extends AbstractRegistrableService
         this.contentService = contentService;
     }
 
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
     public StudioConfiguration getStudioConfiguration() {
         return studioConfiguration;
     }
@@ -16,12 +16,10 @@
 
 package org.craftercms.studio.impl.v1.service.content;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
-import org.craftercms.studio.api.v1.constant.DmConstants;
-import org.craftercms.studio.api.v1.dal.ItemState;
-import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
@@ -30,11 +28,12 @@ import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.content.ImportService;
 import org.craftercms.studio.api.v1.service.deployment.DmPublishService;
 import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
+import org.craftercms.studio.api.v1.service.objectstate.State;
 import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.service.workflow.context.MultiChannelPublishingContext;
-import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
@@ -43,6 +42,7 @@ import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.Node;
 
+import javax.sql.DataSource;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -50,21 +50,26 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
-import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_ASSET_CHAIN_NAME;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_ASSIGNEE;
-import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_XML_CHAIN_NAME;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BATCH_SIZE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_MAX_BACKOFF;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_MAX_CONNECTION_USAGE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_MAX_PENDING_AUDIT_LOGS;
 
 public class ImportServiceImpl implements ImportService {
 
     private final static Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
 
+    /** time in milliseconds between checks while the import waits for the database **/
+    private static final long THROTTLE_POLL_INTERVAL = 100;
+
     protected SiteService siteService;
     protected SecurityService securityService;
     protected ContentRepository contentRepository;
@@ -72,6 +77,8 @@ public class ImportServiceImpl implements ImportService {
     protected ObjectStateService objectStateService;
     protected DmPublishService dmPublishService;
     protected StudioConfiguration studioConfiguration;
+    protected AuditServiceInternal auditServiceInternal;
+    protected DataSource dataSource;
 
     /**
      * is import in progress?
@@ -86,6 +93,8 @@ public class ImportServiceImpl implements ImportService {
     private long currentDelayInterval;
     /** import delay time **/
     private long currentDelayLength;
+    /** files waiting to be written in the current batch **/
+    private List<ImportFile> pendingFiles = new ArrayList<ImportFile>();
 
     @Override
     @SuppressWarnings("unchecked")
@@ -152,6 +161,7 @@ public class ImportServiceImpl implements ImportService {
             if (delayInterval > 0) pauseEanbeld = true;
             this.currentDelayInterval = delayInterval * 1000;
             this.currentDelayLength = delayLength * 1000;
+            this.pendingFiles = new ArrayList<ImportFile>(getBatchSize());
             final Set<String> importedPaths = new HashSet<String>();
             final List<String> importedFullPaths = new ArrayList<String>();
             logger.info("[IMPORT] started importing in " + site
@@ -168,6 +178,7 @@ public class ImportServiceImpl implements ImportService {
                 this.nextStop = System.currentTimeMillis() + this.currentDelayInterval;
                 createFolders(site, importedPaths, importedFullPaths, folderNodes, fileRoot, targetRoot, "",
                         overWrite, user);
+                writePendingFiles(site, importedPaths, importedFullPaths);
                 logger.info("Starting Publish of Imported Files (Total " + importedFullPaths.size()
                         + " On chunkSize of " + chunkSize + " )");
                 publish(site, publishChannelGroup, targetRoot, importedFullPaths, chunkSize);
@@ -175,6 +186,7 @@ public class ImportServiceImpl implements ImportService {
                 this.nextStop = System.currentTimeMillis() + this.currentDelayInterval;
                 createFolders(site, importedPaths, importedFullPaths, folderNodes, fileRoot, targetRoot, "",
                         overWrite, null);
+                writePendingFiles(site, importedPaths, importedFullPaths);
             }
             inProgress = false;
         } else {
@@ -361,7 +373,7 @@ public class ImportServiceImpl implements ImportService {
     }
 
     /**
-     * write content
+     * queue content to be written, the queued files are written once a full batch is collected
      *
      * @param site
      * @param importedPaths
@@ -376,115 +388,108 @@ public class ImportServiceImpl implements ImportService {
                                              final List<String> importedFullPaths, final String fileRoot,
                                              final String targetRoot, final String parentPath, final String name,
                                              final boolean overWrite, final String user) {
-        long startTimeWrite = System.currentTimeMillis();
-        logger.debug("[IMPORT] writing file in transaction: " + parentPath + FILE_SEPARATOR + name);
-        writeContent(site, importedPaths, importedFullPaths, fileRoot, targetRoot, parentPath, name,
-                        overWrite);
-        logger.debug("[IMPORT] done writing file in transaction: " + parentPath + FILE_SEPARATOR + name
-                        + ", time: " + (System.currentTimeMillis() - startTimeWrite));
-        pause();
+        pendingFiles.add(new ImportFile(fileRoot, targetRoot, parentPath, name, overWrite));
+        if (pendingFiles.size() >= getBatchSize()) {
+            writePendingFiles(site, importedPaths, importedFullPaths);
+        }
     }
 
     /**
-     * write content
+     * write the queued files with a single commit, the database is updated once for the whole batch instead of
+     * once per file
      *
      * @param site
      * @param importedPaths
      * @param importedFullPaths
-     * @param fileRoot
-     * @param parentPath
-     * @param name
-     * @param overWrite
      */
-    protected void writeContent(String site, Set<String> importedPaths, List<String> importedFullPaths,
-                                String fileRoot, String targetRoot, String parentPath, String name, boolean overWrite) {
-        boolean isXml = true;
-        String processChain = getXmlChainName();
-        if (!name.endsWith(".xml")) {
-            isXml = false;
-            processChain = getAssetChainName();
+    protected void writePendingFiles(String site, Set<String> importedPaths, List<String> importedFullPaths) {
+        if (pendingFiles.isEmpty()) {
+            return;
         }
-        InputStream in = null;
-        String filePath = parentPath + FILE_SEPARATOR + name;
-        String fileSystemPath = fileRoot + FILE_SEPARATOR + name;
-        logger.info("[IMPORT] writeContent: fileRoot [" + fileRoot + "] fullPath [" + filePath + "] overwrite["
-                + overWrite + "] process chain [ " + processChain + "]");
+        List<ImportFile> batch = pendingFiles;
+        pendingFiles = new ArrayList<ImportFile>(getBatchSize());
         long startTimeWrite = System.currentTimeMillis();
-        logger.debug("[IMPORT] writing file: " + parentPath + FILE_SEPARATOR + name);
-
+        logger.debug("[IMPORT] writing batch of " + batch.size() + " files");
+
+        List<ImportFile> toWrite = new ArrayList<ImportFile>(batch.size());
+        List<String> existingPaths = new ArrayList<String>();
+        for (ImportFile file : batch) {
+            boolean contentExists = contentService.contentExists(site, file.getPath());
+            // write content only it is new or overwrite is set to true for existing
+            if (!contentExists || file.isOverWrite()) {
+                toWrite.add(file);
+                if (contentExists) {
+                    existingPaths.add(file.getPath());
+                }
+            } else {
+                logger.debug("[IMPORT] " + file.getPath() + " exists and set to not to overrwite. skipping this file.");
+            }
+        }
+        // new files don't have a state yet, it is created by the transition below
+        objectStateService.setSystemProcessingBulk(site, existingPaths, true);
         try {
-            File file = new File(fileSystemPath);
-            if (file.exists()) {
-                in = new FileInputStream(file);
-                String currentPath = parentPath + FILE_SEPARATOR + name;
-                boolean contentExists = contentService.contentExists(site, currentPath);
-                // create parameters
-                Map<String, String> params = createParams(site, isXml, targetRoot, parentPath, name);
-                String id = site + ":" + filePath + ":" + name;
-                // write content only it is new or overwrite is set to true for
-                // existing
-                if (!contentExists || overWrite) {
-                    String fullPath = targetRoot + filePath;
-                    objectStateService.setSystemProcessing(site, currentPath, true);
-                    // write the content
-                    contentService.processContent(id, in, isXml, params, processChain);
-                    ContentItemTO item = contentService.getContentItem(site, currentPath);
-                    // update state
-                    if (item != null) {
-                        objectStateService.transition(site, item, TransitionEvent.SAVE);
-                        objectStateService.setSystemProcessing(site, currentPath, false);
-                    } else {
-                        ItemState state = objectStateService.getObjectState(site, currentPath);
-                        if (state == null) {
-                            objectStateService.insertNewEntry(site, currentPath);
-                        }
-                    }
-
-                    importedPaths.add(filePath);
-                    importedFullPaths.add(fullPath);
-                } else {
-                    logger.debug("[IMPORT] " + filePath
-                                + " exists and set to not to overrwite. skipping this file.");
-
+            Map<String, InputStream> contents = new LinkedHashMap<String, InputStream>();
+            for (ImportFile file : toWrite) {
+                try {
+                    contents.put(file.getPath(),
+                            new FileInputStream(file.getFileRoot() + FILE_SEPARATOR + file.getName()));
+                } catch (FileNotFoundException e) {
+                    logger.warn("[IMPORT] " + file.getPath() + " does not exist.");
                 }
             }
-        } catch (FileNotFoundException e) {
-            logger.warn("[IMPORT] " + filePath + " does not exist.");
-
-        } catch (ServiceLayerException e) {
-            logger.error("[IMPORT] failed to import " + filePath, e);
+            if (!contents.isEmpty()) {
+                ImportFile first = toWrite.get(0);
+                List<String> writtenPaths = contentService.writeImportedContent(site, contents, getAssignee());
+                for (String path : writtenPaths) {
+                    importedPaths.add(path);
+                    importedFullPaths.add(first.getTargetRoot() + path);
+                }
+                objectStateService.transitionImportedBulk(site, writtenPaths, TransitionEvent.SAVE,
+                        State.NEW_UNPUBLISHED_UNLOCKED);
+            }
         } finally {
-            ContentUtils.release(in);
+            objectStateService.setSystemProcessingBulk(site, existingPaths, false);
         }
-        logger.debug("[IMPORT] done writing file: " + parentPath + FILE_SEPARATOR + name
-                + ", time: " + (System.currentTimeMillis() - startTimeWrite));
+        long writeTime = System.currentTimeMillis() - startTimeWrite;
+        logger.debug("[IMPORT] done writing batch of " + batch.size() + " files, time: " + writeTime);
+        throttle();
+        pause();
     }
 
     /**
-     * create write process parameters
-     *
-     * @param site
-     * @param isXml
-     * @param targetRoot
-     * @param parentPath
-     * @param name
-     * @return
+     * wait while the database is behind, so the import doesn't take all of it from the rest of Studio: either the
+     * audit entries of the previous batches are still queued for the background writer or most of the connection
+     * pool is in use. The repository doesn't need to be checked here, the import commits pack it themselves when
+     * too many loose objects pile up
      */
-    private Map<String, String> createParams(String site, boolean isXml, String targetRoot, String parentPath,
-                                             String name) {
-        Map<String, String> params = new HashMap<String, String>();
-        String filePath = parentPath + FILE_SEPARATOR + name;
-        String path = (isXml) ? filePath : parentPath;
-        String fullPath = targetRoot + filePath;
-        params.put(DmConstants.KEY_SITE, site);
-        params.put(DmConstants.KEY_PATH, path);
-        params.put(DmConstants.KEY_FULL_PATH, fullPath);
-        params.put(DmConstants.KEY_FILE_NAME, name);
-        params.put(DmConstants.KEY_USER, getAssignee());
-        params.put(DmConstants.KEY_CREATE_FOLDERS, "true");
-        params.put(DmConstants.KEY_UNLOCK, "true");
-        logger.debug("[IMPORT] creating/updating " + filePath);
-        return params;
+    protected void throttle() {
+        long deadline = System.currentTimeMillis() + getMaxBackoff();
+        while (isDatabaseBusy() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(THROTTLE_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("[IMPORT] error while waiting for the database.", e);
+                return;
+            }
+        }
+    }
+
+    protected boolean isDatabaseBusy() {
+        int pendingAuditLogs = auditServiceInternal.getPendingAuditLogs();
+        if (pendingAuditLogs > getMaxPendingAuditLogs()) {
+            logger.debug("[IMPORT] " + pendingAuditLogs + " audit entries pending, waiting for the database.");
+            return true;
+        }
+        if (dataSource instanceof BasicDataSource) {
+            BasicDataSource pool = (BasicDataSource) dataSource;
+            if (pool.getMaxTotal() > 0 && pool.getNumActive() >= pool.getMaxTotal() * getMaxConnectionUsage()) {
+                logger.debug("[IMPORT] " + pool.getNumActive() + " database connections in use, waiting for the " +
+                        "database.");
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -656,16 +661,76 @@ public class ImportServiceImpl implements ImportService {
         this.studioConfiguration = studioConfiguration;
     }
 
+    public void setAuditServiceInternal(AuditServiceInternal auditServiceInternal) {
+        this.auditServiceInternal = auditServiceInternal;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
     public String getAssignee() {
         return studioConfiguration.getProperty(IMPORT_ASSIGNEE);
     }
 
-    public String getXmlChainName() {
-        return studioConfiguration.getProperty(IMPORT_XML_CHAIN_NAME);
+    public int getBatchSize() {
+        return Math.max(1, Integer.parseInt(studioConfiguration.getProperty(IMPORT_BATCH_SIZE)));
     }
 
-    public String getAssetChainName() {
-        return studioConfiguration.getProperty(IMPORT_ASSET_CHAIN_NAME);
+    public long getMaxBackoff() {
+        return Long.parseLong(studioConfiguration.getProperty(IMPORT_MAX_BACKOFF));
+    }
+
+    public int getMaxPendingAuditLogs() {
+        return Integer.parseInt(studioConfiguration.getProperty(IMPORT_MAX_PENDING_AUDIT_LOGS));
+    }
+
+    public double getMaxConnectionUsage() {
+        return Double.parseDouble(studioConfiguration.getProperty(IMPORT_MAX_CONNECTION_USAGE));
+    }
+
+    /**
+     * file waiting to be imported
+     */
+    protected static class ImportFile {
+
+        private final String fileRoot;
+        private final String targetRoot;
+        private final String parentPath;
+        private final String name;
+        private final boolean overWrite;
+
+        public ImportFile(String fileRoot, String targetRoot, String parentPath, String name, boolean overWrite) {
+            this.fileRoot = fileRoot;
+            this.targetRoot = targetRoot;
+            this.parentPath = parentPath;
+            this.name = name;
+            this.overWrite = overWrite;
+        }
+
+        public String getFileRoot() {
+            return fileRoot;
+        }
+
+        public String getTargetRoot() {
+            return targetRoot;
+        }
+
+        public String getParentPath() {
+            return parentPath;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPath() {
+            return parentPath + FILE_SEPARATOR + name;
+        }
+
+        public boolean isOverWrite() {
+            return overWrite;
+        }
     }
 
     /**
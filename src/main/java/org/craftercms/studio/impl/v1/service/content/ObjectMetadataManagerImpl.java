@@ -26,9 +26,11 @@ import org.craftercms.studio.api.v1.dal.ItemMetadataMapper;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.service.content.ObjectMetadataManager;
+import org.craftercms.studio.impl.v2.utils.SqlUtils;
 import org.springframework.dao.DuplicateKeyException;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +59,20 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         }
     }
 
+    @Override
+    @ValidateParams
+    public void insertNewObjectMetadata(@ValidateStringParam(name = "site") String site,
+                                        List<ItemMetadata> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return;
+        }
+        for (ItemMetadata itemMetadata : metadata) {
+            itemMetadata.setSite(site);
+            itemMetadata.setPath(FilenameUtils.normalize(itemMetadata.getPath(), true));
+        }
+        itemMetadataMapper.insertEntries(metadata);
+    }
+
     @Override
     @ValidateParams
     public void setObjectMetadata(@ValidateStringParam(name = "site") String site,
@@ -98,6 +114,26 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         return itemMetadataMapper.getProperties(params);
     }
 
+    @Override
+    @ValidateParams
+    public List<ItemMetadata> getProperties(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("site", site);
+        params.put("paths", normalizePaths(paths));
+        return itemMetadataMapper.getPropertiesForPaths(params);
+    }
+
+    private List<String> normalizePaths(List<String> paths) {
+        List<String> cleanPaths = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            cleanPaths.add(FilenameUtils.normalize(path, true));
+        }
+        return cleanPaths;
+    }
+
     @Override
     @ValidateParams
     public boolean metadataExist(@ValidateStringParam(name = "site") String site,
@@ -214,6 +250,21 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         itemMetadataMapper.updateObjectPath(params);
     }
 
+    @Override
+    @ValidateParams
+    public void updateObjectPathForSubtree(@ValidateStringParam(name = "site") String site,
+                                           @ValidateSecurePathParam(name = "oldPath") String oldPath,
+                                           @ValidateSecurePathParam(name = "newPath") String newPath) {
+        newPath = FilenameUtils.normalize(newPath, true);
+        oldPath = FilenameUtils.normalize(oldPath, true);
+        Map<String, Object> params = new HashMap<>();
+        params.put("site", site);
+        params.put("oldPath", oldPath);
+        params.put("oldPathPattern", SqlUtils.likeDescendants(oldPath));
+        params.put("newPath", newPath);
+        itemMetadataMapper.updateSubtreePath(params);
+    }
+
     @Override
     @ValidateParams
     public void clearRenamed(@ValidateStringParam(name = "site") String site,
@@ -238,6 +289,32 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         itemMetadataMapper.updateCommitId(params);
     }
 
+    @Override
+    @ValidateParams
+    public void updateCommitId(@ValidateStringParam(name = "site") String site, List<String> paths,
+                               @ValidateStringParam(name = "commitId") String commitId) {
+        if (paths == null || paths.isEmpty()) {
+            return;
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("site", site);
+        params.put("paths", normalizePaths(paths));
+        params.put("commitId", commitId);
+        itemMetadataMapper.updateCommitIdForPaths(params);
+    }
+
+    @Override
+    @ValidateParams
+    public void setRenamed(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            return;
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("site", site);
+        params.put("paths", normalizePaths(paths));
+        itemMetadataMapper.setRenamedForPaths(params);
+    }
+
     @Override
     @ValidateParams
     public boolean movedPathExists(@ValidateStringParam(name = "site") String site,
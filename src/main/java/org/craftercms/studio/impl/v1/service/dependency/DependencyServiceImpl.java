@@ -39,6 +39,7 @@ import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.to.CalculateDependenciesEntityTO;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.DeleteDependencyConfigTO;
+import org.craftercms.studio.api.v2.service.content.internal.ItemPathServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -56,8 +57,10 @@ import java.util.StringTokenizer;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.INDEX_FILE;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.EDITED_STATES_PARAM;
+import static org.craftercms.studio.api.v1.dal.DependencyMapper.NEW_PATH_ID_PARAM;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.NEW_PATH_PARAM;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.NEW_STATES_PARAM;
+import static org.craftercms.studio.api.v1.dal.DependencyMapper.OLD_PATH_ID_PARAM;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.OLD_PATH_PARAM;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.PATHS_PARAM;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.PATH_PARAM;
@@ -83,6 +86,7 @@ public class DependencyServiceImpl implements DependencyService {
     protected ContentRepository contentRepository;
     protected ServicesConfig servicesConfig;
     protected org.craftercms.studio.api.v2.service.dependency.DependencyService dependencyService;
+    protected ItemPathServiceInternal itemPathServiceInternal;
 
     @Override
     public Set<String> upsertDependencies(String site, String path)
@@ -197,6 +201,17 @@ public class DependencyServiceImpl implements DependencyService {
     private void insertDependenciesIntoDatabase(List<DependencyEntity> dependencyEntities) {
         logger.debug("Insert list of dependency entities into database");
         if (CollectionUtils.isNotEmpty(dependencyEntities)) {
+            Set<String> paths = new HashSet<String>();
+            for (DependencyEntity dependencyEntity : dependencyEntities) {
+                paths.add(dependencyEntity.getSourcePath());
+                paths.add(dependencyEntity.getTargetPath());
+            }
+            Map<String, Long> pathIds =
+                    itemPathServiceInternal.internPaths(dependencyEntities.get(0).getSite(), paths);
+            for (DependencyEntity dependencyEntity : dependencyEntities) {
+                dependencyEntity.setSourcePathId(pathIds.get(dependencyEntity.getSourcePath()));
+                dependencyEntity.setTargetPathId(pathIds.get(dependencyEntity.getTargetPath()));
+            }
             Map<String, Object> params = new HashMap<>();
             params.put(StudioConstants.JSON_PROPERTY_DEPENDENCIES, dependencyEntities);
             dependencyMapper.insertList(params);
@@ -373,15 +388,53 @@ public class DependencyServiceImpl implements DependencyService {
             throw new ContentNotFoundException();
         }
 
-        Map<String, String> params = new HashMap<String, String>();
+        List<String> paths = new ArrayList<String>(2);
+        paths.add(oldPath);
+        paths.add(newPath);
+        Map<String, Long> pathIds = itemPathServiceInternal.internPaths(site, paths);
+        Map<String, Object> params = new HashMap<String, Object>();
         params.put(SITE_ID_PARAM, site);
         params.put(OLD_PATH_PARAM, oldPath);
+        params.put(OLD_PATH_ID_PARAM, pathIds.get(oldPath));
         params.put(NEW_PATH_PARAM, newPath);
+        params.put(NEW_PATH_ID_PARAM, pathIds.get(newPath));
         dependencyMapper.moveDependency(params);
 
         return getItemDependencies(site, newPath, 1);
     }
 
+    @Override
+    public Set<String> moveSubtreeDependencies(String site, String oldPath, String newPath)
+            throws SiteNotFoundException, ServiceLayerException {
+        if (!siteService.exists(site)) {
+            throw new SiteNotFoundException();
+        }
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_PARAM, site);
+        params.put(PATH_PARAM, oldPath);
+        List<String> sources = dependencyMapper.getSubtreeSources(params);
+        if (CollectionUtils.isEmpty(sources)) {
+            return new HashSet<String>();
+        }
+
+        // The new paths need an id before the rows can point to them
+        List<String> newSources = new ArrayList<String>(sources.size());
+        for (String source : sources) {
+            newSources.add(newPath + source.substring(oldPath.length()));
+        }
+        itemPathServiceInternal.internPaths(site, newSources);
+
+        params = new HashMap<String, Object>();
+        params.put(SITE_PARAM, site);
+        params.put(OLD_PATH_PARAM, oldPath);
+        params.put(NEW_PATH_PARAM, newPath);
+        dependencyMapper.moveSubtreeSources(params);
+
+        // References are stored as written in the content, so the ones into the subtree are now broken
+        return new HashSet<String>(dependencyMapper.getSubtreeSourcesWithSubtreeTargets(params));
+    }
+
     @Override
     public void deleteItemDependencies(String site, String path)
             throws SiteNotFoundException, ContentNotFoundException, ServiceLayerException {
@@ -402,6 +455,7 @@ public class DependencyServiceImpl implements DependencyService {
         Map<String, String> params = new HashMap<String, String>();
         params.put(SITE_PARAM, site);
         dependencyMapper.deleteDependenciesForSite(params);
+        itemPathServiceInternal.deleteSitePaths(site);
     }
 
     @Override
@@ -742,4 +796,12 @@ public class DependencyServiceImpl implements DependencyService {
     public void setDependencyService(org.craftercms.studio.api.v2.service.dependency.DependencyService dependencyService) {
         this.dependencyService = dependencyService;
     }
+
+    public ItemPathServiceInternal getItemPathServiceInternal() {
+        return itemPathServiceInternal;
+    }
+
+    public void setItemPathServiceInternal(ItemPathServiceInternal itemPathServiceInternal) {
+        this.itemPathServiceInternal = itemPathServiceInternal;
+    }
 }
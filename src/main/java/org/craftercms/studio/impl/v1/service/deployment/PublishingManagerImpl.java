@@ -19,11 +19,17 @@ package org.craftercms.studio.impl.v1.service.deployment;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
@@ -31,6 +37,7 @@ import org.craftercms.studio.api.v1.constant.DmConstants;
 import org.craftercms.studio.api.v1.dal.PublishRequest;
 import org.craftercms.studio.api.v1.dal.PublishRequestMapper;
 import org.craftercms.studio.api.v1.dal.ItemMetadata;
+import org.craftercms.studio.api.v1.dal.ItemState;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
@@ -46,22 +53,33 @@ import org.craftercms.studio.api.v1.service.deployment.DeploymentHistoryProvider
 import org.craftercms.studio.api.v1.service.deployment.DeploymentService;
 import org.craftercms.studio.api.v1.service.deployment.PublishingManager;
 import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
+import org.craftercms.studio.api.v1.service.objectstate.State;
 import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.DeploymentItemTO;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.BLOCKED;
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.COMPLETED;
 import static org.craftercms.studio.api.v1.dal.PublishRequest.State.PROCESSING;
 import static org.craftercms.studio.api.v1.dal.PublishRequest.State.READY_FOR_LIVE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ENVIRONMENT;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.EXPECTED_STATES;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.NEW_STATE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PROCESSING_STATE;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PUBLISH_REQUEST_IDS;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.READY_STATE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_INDEX_FILE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_DEPENDENCY_LOOKUP_BATCH_SIZE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE;
 
 public class PublishingManagerImpl implements PublishingManager {
 
@@ -81,6 +99,7 @@ public class PublishingManagerImpl implements PublishingManager {
     protected DependencyService dependencyService;
     protected DeploymentHistoryProvider deploymentHistoryProvider;
     protected PublishRequestMapper publishRequestMapper;
+    protected PlatformTransactionManager transactionManager;
 
     @Override
     @ValidateParams
@@ -256,10 +275,7 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsCompleted(@ValidateStringParam(name = "site") String site,
                                    @ValidateStringParam(name = "environment") String environment,
                                    List<PublishRequest> processedItems) throws DeploymentException {
-        for (PublishRequest item : processedItems) {
-            item.setState(PublishRequest.State.COMPLETED);
-            publishRequestMapper.updateItemDeploymentState(item);
-        }
+        updateItemsState(site, environment, processedItems, COMPLETED, false, PROCESSING);
     }
 
     @Override
@@ -267,10 +283,8 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsProcessing(@ValidateStringParam(name = "site") String site,
                                     @ValidateStringParam(name = "environment") String environment,
                                     List<PublishRequest> itemsToDeploy) throws DeploymentException {
-        for (PublishRequest item : itemsToDeploy) {
-            item.setState(PublishRequest.State.PROCESSING);
-            publishRequestMapper.updateItemDeploymentState(item);
-        }
+        // Claiming the items must be all or nothing, otherwise two publishers could deploy the same items
+        updateItemsState(site, environment, itemsToDeploy, PROCESSING, true, READY_FOR_LIVE);
     }
 
     @Override
@@ -278,10 +292,7 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsReady(@ValidateStringParam(name = "site") String site,
                                @ValidateStringParam(name = "environment") String environment,
                                List<PublishRequest> copyToEnvironmentItems) throws DeploymentException {
-        for (PublishRequest item : copyToEnvironmentItems) {
-            item.setState(READY_FOR_LIVE);
-            publishRequestMapper.updateItemDeploymentState(item);
-        }
+        updateItemsState(site, environment, copyToEnvironmentItems, READY_FOR_LIVE, false, PROCESSING, BLOCKED);
     }
 
     @Override
@@ -289,75 +300,191 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsBlocked(@ValidateStringParam(name = "site") String site,
                                  @ValidateStringParam(name = "environment") String environment,
                                  List<PublishRequest> copyToEnvironmentItems) throws DeploymentException {
-        for (PublishRequest item : copyToEnvironmentItems) {
-            item.setState(PublishRequest.State.BLOCKED);
-            publishRequestMapper.updateItemDeploymentState(item);
+        updateItemsState(site, environment, copyToEnvironmentItems, BLOCKED, false, PROCESSING, READY_FOR_LIVE);
+    }
+
+    /**
+     * Move the publishing requests to a new state with one UPDATE per batch of ids, all in a single transaction.
+     * Only the requests that are still in one of the expected states are updated, so requests moved by another
+     * worker in the meantime are left alone.
+     *
+     * @param site site identifier
+     * @param environment publishing environment
+     * @param items publishing requests to update
+     * @param newState state to move the requests to
+     * @param requireAll if true, fail and leave every request untouched unless all of them can be updated
+     * @param expectedStates states the requests are expected to be in
+     * @throws DeploymentException if the requests can't be updated
+     */
+    protected void updateItemsState(String site, String environment, List<PublishRequest> items, String newState,
+                                    boolean requireAll, String... expectedStates) throws DeploymentException {
+        if (CollectionUtils.isEmpty(items)) {
+            return;
+        }
+        List<Long> ids = items.stream().map(PublishRequest::getId).distinct().collect(Collectors.toList());
+
+        DefaultTransactionDefinition defaultTransactionDefinition = new DefaultTransactionDefinition();
+        defaultTransactionDefinition.setName("updatePublishRequestsState");
+        TransactionStatus txStatus = transactionManager.getTransaction(defaultTransactionDefinition);
+        int updated = 0;
+        try {
+            for (List<Long> batch : ListUtils.partition(ids, getStateUpdateBatchSize())) {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put(SITE_ID, site);
+                params.put(ENVIRONMENT, environment);
+                params.put(NEW_STATE, newState);
+                params.put(EXPECTED_STATES, Arrays.asList(expectedStates));
+                params.put(PUBLISH_REQUEST_IDS, batch);
+                updated += publishRequestMapper.updateItemsDeploymentState(params);
+            }
+        } catch (RuntimeException e) {
+            transactionManager.rollback(txStatus);
+            throw new DeploymentException("Failed to move " + ids.size() + " publishing requests to state " +
+                    newState + " for site " + site + " environment " + environment, e);
+        }
+        if (requireAll && updated < ids.size()) {
+            transactionManager.rollback(txStatus);
+            throw new DeploymentException("Only " + updated + " of " + ids.size() + " publishing requests for site " +
+                    site + " environment " + environment + " could be moved to state " + newState +
+                    ", the rest were already moved by another worker");
+        }
+        transactionManager.commit(txStatus);
+
+        if (updated < ids.size()) {
+            LOGGER.warn("{0} of {1} publishing requests for site {2} environment {3} were no longer in states {4} " +
+                    "and were not moved to state {5}", ids.size() - updated, ids.size(), site, environment,
+                    Arrays.toString(expectedStates), newState);
+        }
+        for (PublishRequest item : items) {
+            item.setState(newState);
         }
     }
 
+    protected int getStateUpdateBatchSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE));
+    }
+
+    protected int getDependencyLookupBatchSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(PUBLISHING_MANAGER_DEPENDENCY_LOOKUP_BATCH_SIZE));
+    }
+
     @Override
     public List<DeploymentItemTO> processMandatoryDependencies(PublishRequest item,
                                                                Set<String> pathsToDeploy,
                                                                Set<String> missingDependenciesPaths)
             throws DeploymentException, ServiceLayerException {
-        List<DeploymentItemTO> mandatoryDependencies = new ArrayList<DeploymentItemTO>();
-        String site = item.getSite();
-        String path = item.getPath();
+        return processMandatoryDependencies(Collections.singletonList(item), pathsToDeploy, missingDependenciesPaths);
+    }
 
-        if (StringUtils.equals(item.getAction(), PublishRequest.Action.NEW) ||
-                StringUtils.equals(item.getAction(), PublishRequest.Action.MOVE)) {
-            if (ContentUtils.matchesPatterns(path, servicesConfig.getPagePatterns(site))) {
-                String helpPath = path.replace(FILE_SEPARATOR + getIndexFile(), "");
-                int idx = helpPath.lastIndexOf(FILE_SEPARATOR);
-                String parentPath = helpPath.substring(0, idx) + FILE_SEPARATOR + getIndexFile();
-                if (objectStateService.isNew(site, parentPath) || objectMetadataManager.isRenamed(site, parentPath)) {
-                    if (!missingDependenciesPaths.contains(parentPath) && !pathsToDeploy.contains(parentPath)) {
-                        deploymentService.cancelWorkflow(site, parentPath);
-                        missingDependenciesPaths.add(parentPath);
-                        PublishRequest parentItem = createMissingItem(site, parentPath, item);
-                        DeploymentItemTO parentDeploymentItem = processItem(parentItem);
-                        mandatoryDependencies.add(parentDeploymentItem);
-                        mandatoryDependencies.addAll(
-                                processMandatoryDependencies(parentItem, pathsToDeploy, missingDependenciesPaths));
+    @Override
+    public List<DeploymentItemTO> processMandatoryDependencies(List<PublishRequest> items,
+                                                               Set<String> pathsToDeploy,
+                                                               Set<String> missingDependenciesPaths)
+            throws DeploymentException, ServiceLayerException {
+        List<DeploymentItemTO> mandatoryDependencies = new ArrayList<DeploymentItemTO>();
+        if (CollectionUtils.isEmpty(items)) {
+            return mandatoryDependencies;
+        }
+        String site = items.get(0).getSite();
+        List<String> pagePatterns = servicesConfig.getPagePatterns(site);
+        boolean withDependencies = !isEnablePublishingWithoutDependencies();
+
+        // Resolve one level at a time: the parents and dependencies of all the items in the level are looked up
+        // together, and the missing ones found become the next level
+        Map<String, PublishRequest> level = new LinkedHashMap<>();
+        for (PublishRequest item : items) {
+            if (StringUtils.equals(item.getAction(), PublishRequest.Action.NEW) ||
+                    StringUtils.equals(item.getAction(), PublishRequest.Action.MOVE)) {
+                level.putIfAbsent(item.getPath(), item);
+            }
+        }
+        while (!level.isEmpty()) {
+            // candidate path -> item that requires it, the missing item inherits its package data
+            Map<String, PublishRequest> candidates = new LinkedHashMap<>();
+            for (Map.Entry<String, PublishRequest> entry : level.entrySet()) {
+                if (ContentUtils.matchesPatterns(entry.getKey(), pagePatterns)) {
+                    candidates.putIfAbsent(getParentPath(entry.getKey()), entry.getValue());
+                }
+            }
+            if (withDependencies) {
+                // dependencies are already followed transitively, one query per package is enough
+                Map<String, List<String>> pathsByPackage = new LinkedHashMap<>();
+                Map<String, PublishRequest> packageItems = new HashMap<>();
+                for (Map.Entry<String, PublishRequest> entry : level.entrySet()) {
+                    String packageId = entry.getValue().getPackageId();
+                    pathsByPackage.computeIfAbsent(packageId, k -> new ArrayList<>()).add(entry.getKey());
+                    packageItems.putIfAbsent(packageId, entry.getValue());
+                }
+                for (Map.Entry<String, List<String>> entry : pathsByPackage.entrySet()) {
+                    for (String dependentPath : dependencyService.getPublishingDependencies(site, entry.getValue())) {
+                        candidates.putIfAbsent(dependentPath, packageItems.get(entry.getKey()));
                     }
                 }
             }
+            candidates.keySet().removeAll(level.keySet());
+            candidates.keySet().removeAll(pathsToDeploy);
+            candidates.keySet().removeAll(missingDependenciesPaths);
+            if (candidates.isEmpty()) {
+                break;
+            }
 
-            if (!isEnablePublishingWithoutDependencies()) {
-                List<String> dependentPaths = dependencyService.getPublishingDependencies(site, path);
-                for (String dependentPath : dependentPaths) {
-                    // TODO: SJ: This bypasses the Content Service, fix
-                    if (objectStateService.isNew(site, dependentPath) ||
-                            objectMetadataManager.isRenamed(site, dependentPath)) {
-                        if (!missingDependenciesPaths.contains(dependentPath) &&
-                                !pathsToDeploy.contains(dependentPath)) {
-                            deploymentService.cancelWorkflow(site, dependentPath);
-                            missingDependenciesPaths.add(dependentPath);
-                            PublishRequest dependentItem = createMissingItem(site, dependentPath, item);
-                            DeploymentItemTO dependentDeploymentItem = processItem(dependentItem);
-                            mandatoryDependencies.add(dependentDeploymentItem);
-                            mandatoryDependencies.addAll(
-                                    processMandatoryDependencies(dependentItem, pathsToDeploy, missingDependenciesPaths));
-                        }
-                    }
+            Map<String, ItemState> states = new HashMap<>();
+            Map<String, ItemMetadata> metadata = new HashMap<>();
+            for (List<String> partition : ListUtils.partition(new ArrayList<>(candidates.keySet()),
+                    getDependencyLookupBatchSize())) {
+                for (ItemState state : objectStateService.getObjectStateByPaths(site, partition)) {
+                    states.put(state.getPath(), state);
+                }
+                for (ItemMetadata itemMetadata : objectMetadataManager.getProperties(site, partition)) {
+                    metadata.put(itemMetadata.getPath(), itemMetadata);
                 }
             }
+
+            Map<String, PublishRequest> missingItems = new LinkedHashMap<>();
+            for (Map.Entry<String, PublishRequest> entry : candidates.entrySet()) {
+                String path = entry.getKey();
+                ItemState state = states.get(path);
+                boolean isNew = state != null && State.isNew(State.valueOf(state.getState()));
+                boolean isRenamed = metadata.containsKey(path) && metadata.get(path).getRenamed() > 0;
+                if (isNew || isRenamed) {
+                    missingItems.put(path, createMissingItem(site, path, entry.getValue(), isNew, metadata.get(path)));
+                }
+            }
+            if (missingItems.isEmpty()) {
+                break;
+            }
+
+            deploymentService.cancelWorkflowBulk(site, missingItems.keySet());
+            missingDependenciesPaths.addAll(missingItems.keySet());
+            for (PublishRequest missingItem : missingItems.values()) {
+                DeploymentItemTO deploymentItem = processItem(missingItem);
+                if (deploymentItem != null) {
+                    mandatoryDependencies.add(deploymentItem);
+                }
+            }
+            level = missingItems;
         }
 
         return mandatoryDependencies;
     }
 
-    private PublishRequest createMissingItem(String site, String itemPath, PublishRequest item) {
+    private String getParentPath(String path) {
+        String helpPath = path.replace(FILE_SEPARATOR + getIndexFile(), "");
+        int idx = helpPath.lastIndexOf(FILE_SEPARATOR);
+        return helpPath.substring(0, idx) + FILE_SEPARATOR + getIndexFile();
+    }
+
+    private PublishRequest createMissingItem(String site, String itemPath, PublishRequest item, boolean isNew,
+                                             ItemMetadata metadata) {
         PublishRequest missingItem = new PublishRequest();
         missingItem.setSite(site);
         missingItem.setEnvironment(item.getEnvironment());
         missingItem.setPath(itemPath);
         missingItem.setScheduledDate(item.getScheduledDate());
         missingItem.setState(item.getState());
-        if (objectStateService.isNew(site, itemPath)) {
+        if (isNew) {
             missingItem.setAction(PublishRequest.Action.NEW);
         }
-        ItemMetadata metadata = objectMetadataManager.getProperties(site, itemPath);
         if (metadata != null) {
             if (metadata.getRenamed() != 0) {
                 String oldPath = metadata.getOldUrl();
@@ -522,4 +649,12 @@ public class PublishingManagerImpl implements PublishingManager {
     public void setPublishRequestMapper(PublishRequestMapper publishRequestMapper) {
         this.publishRequestMapper = publishRequestMapper;
     }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
 }
@@ -127,7 +127,15 @@ public class PublisherTask implements Runnable {
                                         publishingManager.getItemsReadyForDeployment(site, environment);
 
                                 if (itemsToDeploy != null && itemsToDeploy.size() > 0) {
-                                    publishingManager.markItemsProcessing(site, environment, itemsToDeploy);
+                                    try {
+                                        publishingManager.markItemsProcessing(site, environment, itemsToDeploy);
+                                    } catch (DeploymentException e) {
+                                        // Nothing was claimed, leave the queue as it is for the other worker
+                                        logger.info("Unable to claim the items ready for deployment on " +
+                                                "environment " + environment + " for site " + site +
+                                                ". Publisher task will skip this cycle. " + e.getMessage());
+                                        continue;
+                                    }
                                     List<String> commitIds = itemsToDeploy.stream()
                                             .map(PublishRequest::getCommitId)
                                             .distinct().collect(Collectors.toList());
@@ -248,6 +256,13 @@ public class PublisherTask implements Runnable {
                         sbComment.append(item.getSubmissionComment()).append("\n");
                     }
                 }
+                if (isMandatoryDependenciesCheckEnabled()) {
+                    logger.debug("Processing mandatory dependencies of {0} items for site \"{1}\"",
+                            itemsToDeploy.size(), site);
+                    completeDeploymentItemList.addAll(publishingManager.processMandatoryDependencies(itemsToDeploy,
+                            processedPaths, new HashSet<String>()));
+                    logger.debug("Processing mandatory dependencies COMPLETE for site \"{0}\"", site);
+                }
                 deploy(site, environment, completeDeploymentItemList, author,
                         sbComment.toString());
                 StringBuilder sbPackIds = new StringBuilder("Package(s): ");
@@ -312,8 +327,6 @@ public class PublisherTask implements Runnable {
             List<DeploymentItemTO> completeDeploymentItemList,
             Set<String> processedPaths)
     throws ServiceLayerException, DeploymentException {
-        List<DeploymentItemTO> missingDependencies = new ArrayList<DeploymentItemTO>();
-        Set<String> missingDependenciesPaths = new HashSet<String>();
         SimpleDateFormat sdf = new SimpleDateFormat(StudioConstants.DATE_PATTERN_WORKFLOW_WITH_TZ);
         String messagePath = item.getPath();
         String statusMessage = studioConfiguration.getProperty(JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_BUSY);
@@ -333,15 +346,7 @@ public class PublisherTask implements Runnable {
             logger.debug("Processing COMPLETE [{0}] content item for site \"{1}\"",
                     item.getPath(), site);
 
-            if (isMandatoryDependenciesCheckEnabled()) {
-                logger.debug("Processing Mandatory Deps [{0}] content item for site "
-                        + "\"{1}\"", item.getPath(), site);
-                missingDependencies.addAll(publishingManager
-                        .processMandatoryDependencies(item, processedPaths, missingDependenciesPaths));
-                logger.debug("Processing Mandatory Dependencies COMPLETE [{0}]"
-                        + " content item for site \"{1}\"", item.getPath(), site);
-            }
-            deploymentItemList.addAll(missingDependencies);
+            processedPaths.add(item.getPath());
             completeDeploymentItemList.addAll(deploymentItemList);
         } catch (DeploymentException err) {
             logger.error("Error while executing deployment to environment store for site \"{0}\",", err, site);
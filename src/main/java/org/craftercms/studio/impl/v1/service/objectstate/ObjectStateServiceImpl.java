@@ -32,11 +32,14 @@ import org.craftercms.studio.api.v1.service.objectstate.State;
 import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.utils.SqlUtils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
@@ -294,6 +297,21 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         itemStateMapper.updateObjectPath(params);
     }
 
+    @Override
+    @ValidateParams
+    public void updateObjectPathForSubtree(@ValidateStringParam(name = "site") String site,
+                                           @ValidateSecurePathParam(name = "oldPath") String oldPath,
+                                           @ValidateSecurePathParam(name = "newPath") String newPath) {
+        oldPath = FilenameUtils.normalize(oldPath, true);
+        newPath = FilenameUtils.normalize(newPath, true);
+        Map<String, Object> params = new HashMap<>();
+        params.put("site", site);
+        params.put("oldPath", oldPath);
+        params.put("oldPathPattern", SqlUtils.likeDescendants(oldPath));
+        params.put("newPath", newPath);
+        itemStateMapper.updateSubtreePath(params);
+    }
+
     @Override
     @ValidateParams
     public boolean isUpdated(@ValidateStringParam(name = "site") String site,
@@ -438,6 +456,43 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         itemStateMapper.deleteObjectStateForSiteAndFolder(params);
     }
 
+    @Override
+    @ValidateParams
+    public void insertNewEntries(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        insertNewEntries(site, paths, State.NEW_UNPUBLISHED_UNLOCKED);
+    }
+
+    private void insertNewEntries(String site, List<String> paths, State newState) {
+        if (paths == null || paths.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < paths.size(); i = i + getBulkOperationBatchSize()) {
+            Set<String> missingPaths = new LinkedHashSet<>();
+            for (String path : paths.subList(i, Math.min(i + getBulkOperationBatchSize(), paths.size()))) {
+                missingPaths.add(FilenameUtils.normalize(path, true));
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("site", site);
+            params.put("paths", new ArrayList<>(missingPaths));
+            for (ItemState state : itemStateMapper.getObjectStateForSiteAndPaths(params)) {
+                missingPaths.remove(state.getPath());
+            }
+            if (!missingPaths.isEmpty()) {
+                List<ItemState> newEntries = new ArrayList<>(missingPaths.size());
+                for (String path : missingPaths) {
+                    ItemState newEntry = new ItemState();
+                    newEntry.setObjectId(UUID.randomUUID().toString());
+                    newEntry.setSite(site);
+                    newEntry.setPath(path);
+                    newEntry.setSystemProcessing(0);
+                    newEntry.setState(newState.name());
+                    newEntries.add(newEntry);
+                }
+                itemStateMapper.insertEntries(newEntries);
+            }
+        }
+    }
+
     @Override
     @ValidateParams
     public void transitionBulk(@ValidateStringParam(name = "site") String site, List<String> paths,
@@ -478,6 +533,28 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
             }
         }
     }
+
+    @Override
+    @ValidateParams
+    public void transitionImportedBulk(@ValidateStringParam(name = "site") String site, List<String> paths,
+                                       TransitionEvent event, State defaultTargetState) {
+        if (paths == null || paths.isEmpty()) {
+            return;
+        }
+        Map<State, List<String>> pathsByState = new HashMap<>();
+        for (ItemState state : getObjectStateByPaths(site, paths)) {
+            pathsByState.computeIfAbsent(State.valueOf(state.getState()), s -> new ArrayList<>())
+                    .add(state.getPath());
+        }
+        // transitionBulk moves all the given paths to the next state of a single current state
+        for (List<String> statePaths : pathsByState.values()) {
+            for (int i = 0; i < statePaths.size(); i = i + getBulkOperationBatchSize()) {
+                transitionBulk(site, statePaths.subList(i, Math.min(i + getBulkOperationBatchSize(),
+                        statePaths.size())), event, defaultTargetState);
+            }
+        }
+        insertNewEntries(site, paths, defaultTargetState);
+    }
     
     /**
      * get the object for a given set of states
@@ -497,6 +574,25 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         }
     }
 
+    /**
+     * get the object states for a given set of paths, paths without a state are not returned
+     */
+    @Override
+    @ValidateParams
+    public List<ItemState> getObjectStateByPaths(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        List<ItemState> result = new ArrayList<>();
+        if (paths == null || paths.isEmpty()) {
+            return result;
+        }
+        for (int i = 0; i < paths.size(); i = i + getBulkOperationBatchSize()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("site", site);
+            params.put("paths", paths.subList(i, Math.min(i + getBulkOperationBatchSize(), paths.size())));
+            result.addAll(itemStateMapper.getObjectStateForSiteAndPaths(params));
+        }
+        return result;
+    }
+
     @Override
     @ValidateParams
     public String setObjectState(@ValidateStringParam(name = "site") String site,
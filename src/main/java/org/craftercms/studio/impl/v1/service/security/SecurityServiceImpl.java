@@ -38,7 +38,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
+import org.craftercms.commons.validation.ValidationResult;
+import org.craftercms.commons.validation.ValidationRuntimeException;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
+import org.craftercms.commons.validation.validators.impl.SecurePathValidator;
 import org.craftercms.studio.api.v1.constant.StudioConstants;
 import org.craftercms.studio.api.v1.constant.StudioXmlConstants;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
@@ -57,6 +60,7 @@ import org.craftercms.studio.api.v1.service.content.ContentTypeService;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.service.security.UserDetailsManager;
 import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
 import org.craftercms.studio.api.v1.to.PermissionsConfigTO;
 import org.craftercms.studio.api.v2.dal.AuditLog;
@@ -70,6 +74,7 @@ import org.craftercms.studio.api.v2.service.security.internal.UserServiceInterna
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.SessionTokenUtils;
 import org.craftercms.studio.impl.v2.service.security.Authentication;
+import org.craftercms.studio.model.search.SearchPermissions;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
@@ -273,6 +278,148 @@ public class SecurityServiceImpl implements SecurityService {
         return permissions;
     }
 
+    @Override
+    @ValidateParams
+    public Map<String, Set<String>> getUserPermissions(@ValidateStringParam(name = "site") final String site,
+                                                       Collection<ContentItemTO> items,
+                                                       @ValidateStringParam(name = "user") String user,
+                                                       List<String> groups) {
+        // same validation the single item version gets from @ValidateSecurePathParam
+        SecurePathValidator pathValidator = new SecurePathValidator("path");
+        for (ContentItemTO item : items) {
+            ValidationResult result = new ValidationResult();
+            if (!pathValidator.validate(item.getUri(), result)) {
+                throw new ValidationRuntimeException(result);
+            }
+        }
+
+        Map<String, Set<String>> permissionsByPath = new HashMap<String, Set<String>>();
+        PermissionsConfigTO globalRolesConfig = loadGlobalRolesConfiguration();
+        PermissionsConfigTO globalPermissionsConfig = loadGlobalPermissionsConfiguration();
+        Set<String> globalRoles = new HashSet<String>();
+        addGlobalUserRoles(user, globalRoles, globalRolesConfig);
+        addGlobalGroupRoles(globalRoles, groups, globalRolesConfig);
+
+        PermissionsConfigTO permissionsConfig = null;
+        Set<String> roles = new HashSet<String>();
+        if (StringUtils.isNotEmpty(site)) {
+            PermissionsConfigTO rolesConfig = loadConfiguration(site, getRoleMappingsFileName());
+            permissionsConfig = loadConfiguration(site, getPermissionsFileName());
+            addUserRoles(roles, site, user);
+            addGroupRoles(roles, site, groups, rolesConfig);
+        }
+
+        // Content types are shared by many items, check each one only once
+        Map<String, Boolean> allowedContentTypes = new HashMap<String, Boolean>();
+        for (ContentItemTO item : items) {
+            String path = item.getUri();
+            Set<String> permissions = new HashSet<String>();
+            if (StringUtils.isNotEmpty(site)) {
+                permissions = populateUserPermissions(site, path, roles, permissionsConfig);
+                String contentType = item.getContentType();
+                if (path.indexOf("/site") == 0 && StringUtils.isNotEmpty(contentType)) {
+                    Boolean isAllowed = allowedContentTypes.get(contentType);
+                    if (isAllowed == null) {
+                        isAllowed = contentTypeService.isUserAllowed(roles,
+                                contentTypeService.getContentType(site, contentType));
+                        allowedContentTypes.put(contentType, isAllowed);
+                    }
+                    if (!isAllowed) {
+                        permissions.add(StudioConstants.PERMISSION_VALUE_NOT_ALLOWED);
+                        permissionsByPath.put(path, permissions);
+                        continue;
+                    }
+                } else if (path.indexOf("/site") == 0) {
+                    logger.debug("No content type specified for " + path
+                            + ". skipping user role checking on the content.");
+                }
+            }
+            permissions.addAll(populateUserGlobalPermissions(path, globalRoles, globalPermissionsConfig));
+            permissionsByPath.put(path, permissions);
+        }
+        return permissionsByPath;
+    }
+
+    @Override
+    @ValidateParams
+    public SearchPermissions getSearchPermissions(@ValidateStringParam(name = "site") final String site,
+                                                  @ValidateStringParam(name = "user") String user,
+                                                  List<String> groups) {
+        SearchPermissions searchPermissions = new SearchPermissions();
+        PermissionsConfigTO rolesConfig = loadConfiguration(site, getRoleMappingsFileName());
+        PermissionsConfigTO permissionsConfig = loadConfiguration(site, getPermissionsFileName());
+        Set<String> roles = new HashSet<String>();
+        addUserRoles(roles, site, user);
+        addGroupRoles(roles, site, groups, rolesConfig);
+        addReadPatterns(searchPermissions, site, roles, permissionsConfig);
+
+        PermissionsConfigTO globalRolesConfig = loadGlobalRolesConfiguration();
+        PermissionsConfigTO globalPermissionsConfig = loadGlobalPermissionsConfiguration();
+        Set<String> globalRoles = new HashSet<String>();
+        addGlobalUserRoles(user, globalRoles, globalRolesConfig);
+        addGlobalGroupRoles(globalRoles, groups, globalRolesConfig);
+        addReadPatterns(searchPermissions, "###GLOBAL###", globalRoles, globalPermissionsConfig);
+
+        // Same check done for each item in getUserPermissions, it takes precedence over the path rules
+        for (ContentTypeConfigTO contentType : contentTypeService.getAllContentTypes(site, false)) {
+            if (!contentTypeService.isUserAllowed(roles, contentType)) {
+                searchPermissions.addDeniedContentType(contentType.getName());
+            }
+        }
+        return searchPermissions;
+    }
+
+    /**
+     * Adds the patterns of the rules that grant the read permission to any of the roles, follows the same defaults
+     * used by {@link #populateUserPermissions(String, String, Set, PermissionsConfigTO)}
+     *
+     * @param searchPermissions permissions to update
+     * @param site site identifier used in the permissions configuration
+     * @param roles roles of the user
+     * @param permissionsConfig permissions configuration
+     */
+    @SuppressWarnings("unchecked")
+    protected void addReadPatterns(SearchPermissions searchPermissions, String site, Set<String> roles,
+                                   PermissionsConfigTO permissionsConfig) {
+        if (roles == null || roles.isEmpty()) {
+            searchPermissions.setAllowAll(true);
+            return;
+        }
+        if (permissionsConfig == null) {
+            return;
+        }
+        Map<String, Map<String, List<Node>>> permissionsMap = permissionsConfig.getPermissions();
+        Map<String, List<Node>> siteRoles = permissionsMap.get(site);
+        if (siteRoles == null || siteRoles.isEmpty()) {
+            siteRoles = permissionsMap.get("*");
+        }
+        if (siteRoles == null || siteRoles.isEmpty()) {
+            searchPermissions.setAllowAll(true);
+            return;
+        }
+        for (String role : roles) {
+            List<Node> ruleNodes = siteRoles.get(role);
+            if (ruleNodes == null || ruleNodes.isEmpty()) {
+                ruleNodes = siteRoles.get("*");
+            }
+            if (ruleNodes == null || ruleNodes.isEmpty()) {
+                searchPermissions.setAllowAll(true);
+                return;
+            }
+            for (Node ruleNode : ruleNodes) {
+                List<Node> permissionNodes =
+                        ruleNode.selectNodes(StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
+                for (Node permissionNode : permissionNodes) {
+                    if (StudioConstants.PERMISSION_VALUE_READ.equalsIgnoreCase(permissionNode.getText())) {
+                        searchPermissions.addAllowedPattern(
+                                ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
     protected void addGlobalUserRoles(String user, Set<String> roles, PermissionsConfigTO rolesConfig) {
         try {
             List<Group> groups = userServiceInternal.getUserGroups(-1, user);
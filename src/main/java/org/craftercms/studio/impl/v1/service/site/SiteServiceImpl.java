@@ -110,6 +110,7 @@ import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.service.notification.NotificationService;
 import org.craftercms.studio.api.v2.service.security.internal.GroupServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.service.site.internal.SitesServiceInternal;
 import org.craftercms.studio.api.v2.upgrade.UpgradeManager;
@@ -190,6 +191,7 @@ public class SiteServiceImpl implements SiteService {
     protected SitesServiceInternal sitesServiceInternal;
     protected AuditServiceInternal auditServiceInternal;
     protected ConfigurationService configurationService;
+    protected SiteMembershipCache siteMembershipCache;
 
     @Autowired
     protected SiteFeedMapper siteFeedMapper;
@@ -208,6 +210,7 @@ public class SiteServiceImpl implements SiteService {
         }
         String commitId = contentRepository.writeContent(site, path, content);
         contentRepository.reloadRepository(site);
+        siteMembershipCache.invalidateSite(site);
 
         PreviewEventContext context = new PreviewEventContext();
         context.setSite(site);
@@ -364,6 +367,11 @@ public class SiteServiceImpl implements SiteService {
         return toRet;
     }
 
+    @Override
+    public List<SiteFeed> getAllAvailableSiteFeeds() {
+        return siteFeedMapper.getSites();
+    }
+
 	@Override
 	public int countSites() {
 		return siteFeedMapper.countSites();
@@ -1048,6 +1056,7 @@ public class SiteServiceImpl implements SiteService {
 		    logger.debug("Deleting database records");
 		    SiteFeed siteFeed = getSite(siteId);
 			siteFeedMapper.deleteSite(siteId);
+			siteMembershipCache.invalidateSite(siteId);
 			dependencyService.deleteSiteDependencies(siteId);
 	        deploymentService.deleteDeploymentDataForSite(siteId);
 	        objectStateService.deleteObjectStatesForSite(siteId);
@@ -1147,6 +1156,7 @@ public class SiteServiceImpl implements SiteService {
 		notificationService.reloadConfiguration(site);
         securityService.reloadConfiguration(site);
         contentTypeService.reloadConfiguration(site);
+        siteMembershipCache.invalidateSite(site);
     }
 
     @Override
@@ -2008,6 +2018,14 @@ public class SiteServiceImpl implements SiteService {
         this.configurationService = configurationService;
     }
 
+    public SiteMembershipCache getSiteMembershipCache() {
+        return siteMembershipCache;
+    }
+
+    public void setSiteMembershipCache(SiteMembershipCache siteMembershipCache) {
+        this.siteMembershipCache = siteMembershipCache;
+    }
+
     public org.craftercms.studio.api.v2.repository.ContentRepository getContentRepositoryV2() {
         return contentRepositoryV2;
     }
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -455,15 +456,16 @@ public class WorkflowServiceImpl implements WorkflowService {
         // the category item to add all other items that do not belong to
         // regular categories specified in the configuration
         if (changeSet != null) {
-            // add all content items from each task if task is the review task
+            // load the items first so the permissions can be resolved in a single batch
+            Map<String, ContentItemTO> items = new LinkedHashMap<String, ContentItemTO>();
+            Map<String, ItemState> states = new HashMap<String, ItemState>();
             for (ItemState state : changeSet) {
                 try {
                     if (contentService.contentExists( state.getSite(), state.getPath())) {
                         ContentItemTO item = contentService.getContentItem(state.getSite(), state.getPath(), 0);
-                        Set<String> permissions = securityService.getUserPermissions(site, item.getUri(),
-                                securityService.getCurrentUser(), Collections.<String>emptyList());
-                        if (permissions.contains(StudioConstants.PERMISSION_VALUE_PUBLISH)) {
-                            addToQueue(site, goLiveQueue, inProcessQueue, item, state);
+                        if (item != null) {
+                            items.put(item.getUri(), item);
+                            states.put(item.getUri(), state);
                         }
                     } else {
                         _cancelWorkflow(site, state.getPath());
@@ -475,6 +477,39 @@ public class WorkflowServiceImpl implements WorkflowService {
                             + e.getMessage());
                 }
             }
+
+            if (!items.isEmpty()) {
+                String user = securityService.getCurrentUser();
+                Map<String, Set<String>> permissions = null;
+                try {
+                    permissions = securityService.getUserPermissions(site, items.values(), user,
+                            Collections.<String>emptyList());
+                } catch (Exception e) {
+                    // a single bad item fails the whole batch, resolve the permissions item by item instead
+                    logger.warn("Could not resolve permissions in batch for site " + site
+                            + ", falling back to each item " + e.getMessage());
+                }
+                for (Map.Entry<String, ContentItemTO> entry : items.entrySet()) {
+                    try {
+                        Set<String> itemPermissions;
+                        if (permissions != null) {
+                            itemPermissions = permissions.get(entry.getKey());
+                        } else {
+                            itemPermissions = securityService.getUserPermissions(site,
+                                    Collections.singletonList(entry.getValue()), user,
+                                    Collections.<String>emptyList()).get(entry.getKey());
+                        }
+                        if (itemPermissions != null &&
+                                itemPermissions.contains(StudioConstants.PERMISSION_VALUE_PUBLISH)) {
+                            addToQueue(site, goLiveQueue, inProcessQueue, entry.getValue(),
+                                    states.get(entry.getKey()));
+                        }
+                    } catch (Exception e) {
+                        logger.error("Could not warm cache for [" + site + " : " + entry.getKey() + "] "
+                                + e.getMessage());
+                    }
+                }
+            }
         }
     }
 
@@ -508,7 +543,6 @@ public class WorkflowServiceImpl implements WorkflowService {
         comparator.setSecondLevelCompareRequired(true);
         comparator.setSecondLevelSortBy(DmContentItemComparator.SORT_PATH);
         List<ContentItemTO> items = getInProgressItems(site, comparator, inProgressOnly);
-        JSONObject jsonObject = new JSONObject();
         int total = 0;
         if (items != null) {
             for (ContentItemTO item : items) {
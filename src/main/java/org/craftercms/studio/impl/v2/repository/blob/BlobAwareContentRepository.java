@@ -269,6 +269,60 @@ public class BlobAwareContentRepository implements ContentRepository, Deployment
         }
     }
 
+    @Override
+    public String writeCopiedContent(String site, String fromPath, String toPath, Map<String, InputStream> contents,
+                                     List<String> folders) {
+        logger.debug("Writing copied content from {0} to {1} in site {2}", fromPath, toPath, site);
+        try {
+            Map<String, InputStream> localContents = writeBlobs(site, contents);
+            for (String folder : folders) {
+                StudioBlobStore store = getBlobStore(site, folder);
+                if (store != null) {
+                    store.createFolder(site, normalize(FilenameUtils.getFullPathNoEndSeparator(folder)),
+                            FilenameUtils.getName(folder));
+                }
+            }
+            return localRepositoryV1.writeCopiedContent(site, fromPath, toPath, localContents, folders);
+        } catch (Exception e) {
+            logger.error("Error writing copied content from {0} to {1} in site {2}", e, fromPath, toPath, site);
+            return null;
+        }
+    }
+
+    @Override
+    public String writeImportedContent(String site, Map<String, InputStream> contents) {
+        logger.debug("Writing {0} imported files in site {1}", contents.size(), site);
+        try {
+            return localRepositoryV1.writeImportedContent(site, writeBlobs(site, contents));
+        } catch (Exception e) {
+            logger.error("Error writing imported content in site {0}", e, site);
+            return null;
+        }
+    }
+
+    /**
+     * write the files that belong to a blob store and replace them with their pointers
+     *
+     * @return the contents to write in the local repository
+     */
+    protected Map<String, InputStream> writeBlobs(String site, Map<String, InputStream> contents)
+            throws ServiceLayerException, ConfigurationException, IOException {
+        Map<String, InputStream> localContents = new LinkedHashMap<>();
+        for (Map.Entry<String, InputStream> entry : contents.entrySet()) {
+            String path = entry.getKey();
+            StudioBlobStore store = getBlobStore(site, path);
+            if (store != null) {
+                store.writeContent(site, normalize(path), entry.getValue());
+                Blob reference = store.getReference(normalize(path));
+                localContents.put(getPointerPath(path),
+                        new ByteArrayInputStream(objectMapper.writeValueAsBytes(reference)));
+            } else {
+                localContents.put(path, entry.getValue());
+            }
+        }
+        return localContents;
+    }
+
     @Override
     public RepositoryItem[] getContentChildren(String site, String path) {
         RepositoryItem[] children = localRepositoryV1.getContentChildren(site, path);
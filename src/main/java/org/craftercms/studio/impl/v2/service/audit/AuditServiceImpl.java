@@ -29,6 +29,7 @@ import org.craftercms.studio.api.v1.service.deployment.DeploymentService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
 import org.craftercms.studio.api.v2.service.audit.AuditService;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 
@@ -72,9 +73,9 @@ public class AuditServiceImpl implements AuditService {
     public List<AuditLog> getAuditLog(String siteId, String siteName, int offset, int limit, String user,
                                       List<String> operations, boolean includeParameters, ZonedDateTime dateFrom,
                                       ZonedDateTime dateTo, String target, String origin, String clusterNodeId,
-                                      String sort, String order) {
+                                      String sort, String order, AuditLogCursor cursor) {
         return auditServiceInternal.getAuditLog(siteId, siteName, offset, limit, user, operations, includeParameters,
-                dateFrom, dateTo, target, origin, clusterNodeId, sort, order);
+                dateFrom, dateTo, target, origin, clusterNodeId, sort, order, cursor);
     }
 
     @Override
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.audit.internal;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.commons.collections4.CollectionUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.dal.AuditDAO;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes audit log entries from a background thread. Entries are queued in a bounded buffer and inserted in multi-row
+ * batches, one transaction per batch. When the buffer is full, or a batch can't be written, the entries are appended
+ * to a journal file that is replayed once the buffer has room again (and on the next start if Studio stopped before
+ * that). Shutting down the writer drains the buffer and the journal, entries written after that are inserted in the
+ * caller thread. Journaled entries the database rejects are moved to a separate file instead of being retried.
+ */
+public class AuditLogWriter implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    public static final String JOURNAL_FILE = "audit-journal.json";
+    public static final String REPLAY_FILE = "audit-journal.replay.json";
+    public static final String FAILED_FILE = "audit-journal.failed.json";
+
+    private final AuditDAO auditDao;
+    private final PlatformTransactionManager transactionManager;
+    private final BlockingQueue<AuditLog> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Path journal;
+    private final Path replay;
+    private final Path failed;
+    private final ObjectMapper objectMapper;
+
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+    private final Object journalLock = new Object();
+    private volatile boolean journalPending;
+    private volatile boolean running;
+    private Thread thread;
+
+    public AuditLogWriter(AuditDAO auditDao, PlatformTransactionManager transactionManager, int queueSize,
+                          int batchSize, long flushInterval, Path journalFolder) {
+        this.auditDao = auditDao;
+        this.transactionManager = transactionManager;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.journal = journalFolder.resolve(JOURNAL_FILE);
+        this.replay = journalFolder.resolve(REPLAY_FILE);
+        this.failed = journalFolder.resolve(FAILED_FILE);
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public void start() {
+        try {
+            Files.createDirectories(journal.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the audit journal folder " + journal.getParent(), e);
+        }
+        journalPending = Files.exists(journal) || Files.exists(replay);
+        running = true;
+        thread = new Thread(this, "auditLogWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue an entry to be written by the background thread, the entry goes to the journal if the queue is full
+     *
+     * @param auditLog entry to write
+     */
+    public void write(AuditLog auditLog) {
+        runningLock.readLock().lock();
+        try {
+            if (running) {
+                if (!queue.offer(auditLog)) {
+                    appendToJournal(Collections.singletonList(auditLog));
+                }
+                return;
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+        insert(Collections.singletonList(auditLog));
+    }
+
+    @Override
+    public void run() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                AuditLog auditLog = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (auditLog != null) {
+                    batch.add(auditLog);
+                    queue.drainTo(batch, batchSize - 1);
+                    flush(batch);
+                }
+                if (journalPending && queue.isEmpty()) {
+                    replayJournal();
+                }
+            } catch (InterruptedException e) {
+                logger.debug("Audit log writer interrupted, draining the queue");
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        drain(batch);
+    }
+
+    /**
+     * Stop accepting entries in the queue and wait until all the queued and journaled entries are written
+     */
+    public void shutdown() {
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        if (thread != null) {
+            try {
+                while (thread.isAlive()) {
+                    logger.info("Waiting for the audit log writer to drain " + queue.size() + " queued entries");
+                    thread.join(TimeUnit.MINUTES.toMillis(1));
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while waiting for the audit log writer, queued entries will be journaled");
+                List<AuditLog> remaining = new ArrayList<>();
+                queue.drainTo(remaining);
+                appendToJournal(remaining);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Insert the entries in a single transaction, with one statement for all entries without parameters
+     *
+     * @param auditLogs entries to insert
+     */
+    public void insert(List<AuditLog> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
+        transactionDefinition.setName("insertAuditLogs");
+        TransactionStatus txStatus = transactionManager.getTransaction(transactionDefinition);
+        try {
+            List<AuditLog> withoutParameters = new ArrayList<>(auditLogs.size());
+            for (AuditLog auditLog : auditLogs) {
+                if (CollectionUtils.isEmpty(auditLog.getParameters())) {
+                    withoutParameters.add(auditLog);
+                } else {
+                    // the parameters need the generated id of their entry
+                    auditDao.insertAuditLog(auditLog);
+                    Map<String, Object> params = new HashMap<String, Object>();
+                    params.put("auditId", auditLog.getId());
+                    params.put("parameters", auditLog.getParameters());
+                    auditDao.insertAuditLogParams(params);
+                }
+            }
+            for (int i = 0; i < withoutParameters.size(); i += batchSize) {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put("auditLogs", withoutParameters.subList(i, Math.min(i + batchSize,
+                        withoutParameters.size())));
+                auditDao.insertAuditLogs(params);
+            }
+            transactionManager.commit(txStatus);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(txStatus);
+            throw e;
+        }
+    }
+
+    private void flush(List<AuditLog> batch) {
+        try {
+            insert(batch);
+        } catch (Exception e) {
+            logger.error("Error writing " + batch.size() + " audit log entries, they will be retried from the " +
+                         "journal", e);
+            appendToJournal(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void drain(List<AuditLog> batch) {
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, batchSize);
+            flush(batch);
+        }
+        while (journalPending && replayJournal()) {
+            logger.debug("Replaying the rest of the audit log journal");
+        }
+    }
+
+    private void appendToJournal(List<AuditLog> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        synchronized (journalLock) {
+            try {
+                writeJournal(journal, auditLogs, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                        StandardOpenOption.SYNC);
+                journalPending = true;
+            } catch (IOException e) {
+                logger.error("Error appending " + auditLogs.size() + " audit log entries to the journal " +
+                             journal + ", writing them directly", e);
+                insert(auditLogs);
+            }
+        }
+    }
+
+    private boolean replayJournal() {
+        try {
+            synchronized (journalLock) {
+                if (Files.exists(journal) && !Files.exists(replay)) {
+                    Files.move(journal, replay, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            if (Files.exists(replay)) {
+                List<AuditLog> auditLogs = readJournal(replay);
+                try {
+                    insert(auditLogs);
+                } catch (RuntimeException e) {
+                    if (!isRejected(e)) {
+                        throw e;
+                    }
+                    logger.warn("The database rejected the audit log entries from the journal " + replay +
+                                ", inserting them one by one", e);
+                    if (!insertOneByOne(auditLogs)) {
+                        return false;
+                    }
+                }
+                Files.delete(replay);
+                logger.info("Replayed " + auditLogs.size() + " audit log entries from the journal");
+            }
+            synchronized (journalLock) {
+                journalPending = Files.exists(journal);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.error("Error replaying the audit log journal " + replay + ", it will be retried", e);
+            return false;
+        }
+    }
+
+    /**
+     * Insert the entries in their own transaction each, entries the database rejects are moved to the failed file
+     * so they don't block the rest of the journal
+     *
+     * @param auditLogs entries to insert
+     * @return false if the database stopped working, the entries not inserted yet are left in the replay file
+     * @throws IOException if the replay or failed files can't be written
+     */
+    private boolean insertOneByOne(List<AuditLog> auditLogs) throws IOException {
+        for (int i = 0; i < auditLogs.size(); i++) {
+            AuditLog auditLog = auditLogs.get(i);
+            try {
+                insert(Collections.singletonList(auditLog));
+            } catch (RuntimeException e) {
+                if (!isRejected(e)) {
+                    logger.error("Error replaying the audit log journal " + replay + ", the remaining " +
+                                 (auditLogs.size() - i) + " entries will be retried", e);
+                    writeJournal(replay, auditLogs.subList(i, auditLogs.size()), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+                    return false;
+                }
+                logger.error("The database rejected the audit log entry for " + auditLog.getPrimaryTargetValue() +
+                             ", it will not be retried and has been moved to " + failed, e);
+                writeJournal(failed, Collections.singletonList(auditLog), StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if the database rejected the entries themselves (invalid or too long values), as opposed to the
+     * database not being available, in which case the same entries can be written later
+     */
+    private boolean isRejected(RuntimeException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    private List<AuditLog> readJournal(Path file) throws IOException {
+        List<AuditLog> auditLogs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    auditLogs.add(objectMapper.readValue(line, AuditLog.class));
+                }
+            }
+        }
+        return auditLogs;
+    }
+
+    private void writeJournal(Path file, List<AuditLog> auditLogs, OpenOption... options) throws IOException {
+        List<String> lines = new ArrayList<>(auditLogs.size());
+        for (AuditLog auditLog : auditLogs) {
+            lines.add(objectMapper.writeValueAsString(auditLog));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8, options);
+    }
+}
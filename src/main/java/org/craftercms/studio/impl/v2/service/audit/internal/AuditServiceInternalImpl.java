@@ -24,16 +24,23 @@ import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.service.objectstate.State;
 import org.craftercms.studio.api.v2.dal.AuditDAO;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
 import org.craftercms.studio.api.v2.dal.QueryParameterNames;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.file.Paths;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CLUSTER_MEMBER_LOCAL_ADDRESS;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_NAME;
@@ -46,6 +53,8 @@ import static org.craftercms.studio.api.v2.dal.AuditLogConstants.ORIGIN_GIT;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_CONTENT_ITEM;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ACTIONS;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_NODE_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CURSOR_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CURSOR_TIMESTAMP;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.DATE_FROM;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.DATE_TO;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.INCLUDE_PARAMETERS;
@@ -56,7 +65,6 @@ import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ORDER;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ORIGIN;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SORT;
-import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USERNAME;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CLUSTERING_NODE_REGISTRATION;
 
@@ -64,6 +72,31 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
 
     private AuditDAO auditDao;
     private StudioConfiguration studioConfiguration;
+    private PlatformTransactionManager transactionManager;
+
+    private boolean writerEnabled;
+    private int writerQueueSize;
+    private int writerBatchSize;
+    private long writerFlushInterval;
+    private String writerJournalFolder;
+    private List<String> synchronousOperations = Collections.emptyList();
+
+    private AuditLogWriter writer;
+    private volatile String clusterNodeId;
+
+    public void init() {
+        if (writerEnabled) {
+            writer = new AuditLogWriter(auditDao, transactionManager, writerQueueSize, writerBatchSize,
+                    writerFlushInterval, Paths.get(writerJournalFolder));
+            writer.start();
+        }
+    }
+
+    public void destroy() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
 
     @Override
     public List<AuditLog> getAuditLogForSite(String site, int offset, int limit, String user, List<String> actions)
@@ -99,7 +132,7 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
     public List<AuditLog> getAuditLog(String siteId, String siteName, int offset, int limit, String user,
                                       List<String> operations, boolean includeParameters, ZonedDateTime dateFrom,
                                       ZonedDateTime dateTo, String target, String origin, String clusterNodeId,
-                                      String sort, String order) {
+                                      String sort, String order, AuditLogCursor cursor) {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put(OFFSET, offset);
         params.put(LIMIT, limit);
@@ -121,9 +154,7 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         if (dateTo != null) {
             params.put(DATE_TO, dateTo);
         }
-        if (StringUtils.isNotEmpty(target)) {
-            params.put(TARGET, target);
-        }
+        AuditTargetFilter.addParameters(params, target);
         if (StringUtils.isNotEmpty(origin)) {
             if (StringUtils.equalsIgnoreCase(origin, ORIGIN_API)) {
                 params.put(ORIGIN, ORIGIN_API);
@@ -134,17 +165,10 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         if (StringUtils.isNotEmpty(clusterNodeId)) {
             params.put(CLUSTER_NODE_ID, clusterNodeId);
         }
-        if (StringUtils.isNotEmpty(sort) && StringUtils.equalsIgnoreCase(sort, "date")) {
-            params.put(SORT, "operation_timestamp");
-        }
-        if (StringUtils.isNotEmpty(order)) {
-            if (StringUtils.equalsIgnoreCase("DESC", order)) {
-                params.put(ORDER, "DESC");
-            } else {
-                params.put(ORDER, "ASC");
-            }
-        }
+        // The audit log is always sorted by date
+        params.put(ORDER, getOrder(order));
         params.put(INCLUDE_PARAMETERS, includeParameters);
+        addCursorParameters(params, cursor, StringUtils.isEmpty(sort) || StringUtils.equalsIgnoreCase(sort, "date"));
         return auditDao.getAuditLog(params);
     }
 
@@ -171,9 +195,7 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         if (dateTo != null) {
             params.put(DATE_TO, dateTo);
         }
-        if (StringUtils.isNotEmpty(target)) {
-            params.put(TARGET, target);
-        }
+        AuditTargetFilter.addParameters(params, target);
         if (StringUtils.isNotEmpty(origin)) {
             if (StringUtils.equalsIgnoreCase(origin, ORIGIN_API)) {
                 params.put(ORIGIN, ORIGIN_API);
@@ -207,16 +229,14 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         if (dateTo != null) {
             params.put(DATE_TO, dateTo);
         }
-        if (StringUtils.isNotEmpty(target)) {
-            params.put(TARGET, target);
-        }
+        AuditTargetFilter.addParameters(params, target);
         return auditDao.getAuditDashboardTotal(params);
     }
 
     @Override
     public List<AuditLog> getAuditDashboard(String siteId, int offset, int limit, String user, List<String> operations,
                                             ZonedDateTime dateFrom, ZonedDateTime dateTo, String target, String sort,
-                                            String order) {
+                                            String order, AuditLogCursor cursor) {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put(OFFSET, offset);
         params.put(LIMIT, limit);
@@ -235,9 +255,7 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         if (dateTo != null) {
             params.put(DATE_TO, dateTo);
         }
-        if (StringUtils.isNotEmpty(target)) {
-            params.put(TARGET, target);
-        }
+        AuditTargetFilter.addParameters(params, target);
         if (StringUtils.isNotEmpty(sort)) {
             String sortParam = "";
             switch (sort) {
@@ -251,7 +269,7 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
                     sortParam = "operation";
                     break;
                 case "operationTimestamp":
-                    sortParam = "operation_timestamp";
+                    // Sorted by date by default, with the id breaking ties
                     break;
                 case "target":
                     sortParam = "primary_target_value";
@@ -263,16 +281,35 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
                 params.put(SORT, sortParam);
             }
         }
-        if (StringUtils.isNotEmpty(order)) {
-            if (StringUtils.equalsIgnoreCase("DESC", order)) {
-                params.put(ORDER, "DESC");
-            } else {
-                params.put(ORDER, "ASC");
-            }
+        if (StringUtils.isNotEmpty(order) || !params.containsKey(SORT)) {
+            params.put(ORDER, getOrder(order));
         }
+        addCursorParameters(params, cursor,
+                StringUtils.isEmpty(sort) || StringUtils.equals(sort, "operationTimestamp"));
         return auditDao.getAuditDashboard(params);
     }
 
+    private String getOrder(String order) {
+        return StringUtils.isEmpty(order) || StringUtils.equalsIgnoreCase("DESC", order) ? "DESC" : "ASC";
+    }
+
+    /**
+     * Switch the query to keyset pagination: rows are ordered by (operation_timestamp, id) and the page starts
+     * right after the cursor, so the cost of a page doesn't depend on how deep it is. Cursors follow that order,
+     * so they can't be used when the page is sorted by anything else.
+     */
+    private void addCursorParameters(Map<String, Object> params, AuditLogCursor cursor, boolean sortedByDate) {
+        if (cursor == null) {
+            return;
+        }
+        if (!sortedByDate) {
+            throw new IllegalArgumentException("Audit log cursors can only be used when sorting by date");
+        }
+        params.remove(OFFSET);
+        params.put(CURSOR_TIMESTAMP, cursor.getOperationTimestamp());
+        params.put(CURSOR_ID, cursor.getId());
+    }
+
     @Override
     public AuditLog getAuditLogEntry(long auditLogId) {
         Map<String, Object> params = new HashMap<String, Object>();
@@ -282,6 +319,30 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
 
     @Override
     public boolean insertAuditLog(AuditLog auditLog) {
+        return insertAuditLog(auditLog, synchronousOperations.contains(auditLog.getOperation()));
+    }
+
+    @Override
+    public boolean insertAuditLog(AuditLog auditLog, boolean synchronous) {
+        if (!synchronous && writer != null) {
+            // keep the time of the operation, the entry can be written a while later
+            if (auditLog.getOperationTimestamp() == null) {
+                auditLog.setOperationTimestamp(ZonedDateTime.now());
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                // the writer uses its own transactions, only queue the entry once the operation is committed
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                    @Override
+                    public void afterCommit() {
+                        writer.write(auditLog);
+                    }
+                });
+            } else {
+                writer.write(auditLog);
+            }
+            return true;
+        }
         int result = auditDao.insertAuditLog(auditLog);
         if (CollectionUtils.isNotEmpty(auditLog.getParameters())) {
             Map<String, Object> params = new HashMap<String, Object>();
@@ -292,21 +353,35 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         return result > 0;
     }
 
+    @Override
+    public int getPendingAuditLogs() {
+        return writer != null ? writer.getQueueSize() : 0;
+    }
+
     @Override
     public AuditLog createAuditLogEntry() {
         AuditLog auditLog = new AuditLog();
-        String clusterNodeId = StringUtils.EMPTY;
-        HierarchicalConfiguration<ImmutableNode> clusterNodeData =
-                studioConfiguration.getSubConfig(CLUSTERING_NODE_REGISTRATION);
-        if (clusterNodeData != null && !clusterNodeData.isEmpty()) {
-            clusterNodeId = clusterNodeData.getString(CLUSTER_MEMBER_LOCAL_ADDRESS);
-        }
         auditLog.setOrganizationId(1);
         auditLog.setOrigin(ORIGIN_API);
-        auditLog.setClusterNodeId(clusterNodeId);
+        auditLog.setClusterNodeId(getClusterNodeId());
         return auditLog;
     }
 
+    protected String getClusterNodeId() {
+        // the node registration doesn't change while Studio is running
+        String nodeId = clusterNodeId;
+        if (nodeId == null) {
+            nodeId = StringUtils.EMPTY;
+            HierarchicalConfiguration<ImmutableNode> clusterNodeData =
+                    studioConfiguration.getSubConfig(CLUSTERING_NODE_REGISTRATION);
+            if (clusterNodeData != null && !clusterNodeData.isEmpty()) {
+                nodeId = clusterNodeData.getString(CLUSTER_MEMBER_LOCAL_ADDRESS);
+            }
+            clusterNodeId = nodeId;
+        }
+        return nodeId;
+    }
+
     public List<AuditLog> selectUserFeedEntries(String user, String siteId, int offset,
                                             int limit, String contentType, boolean hideLiveItems) {
         HashMap<String,Object> params = new HashMap<String,Object>();
@@ -346,4 +421,67 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
         this.studioConfiguration = studioConfiguration;
     }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    public boolean isWriterEnabled() {
+        return writerEnabled;
+    }
+
+    public void setWriterEnabled(boolean writerEnabled) {
+        this.writerEnabled = writerEnabled;
+    }
+
+    public int getWriterQueueSize() {
+        return writerQueueSize;
+    }
+
+    public void setWriterQueueSize(int writerQueueSize) {
+        this.writerQueueSize = writerQueueSize;
+    }
+
+    public int getWriterBatchSize() {
+        return writerBatchSize;
+    }
+
+    public void setWriterBatchSize(int writerBatchSize) {
+        this.writerBatchSize = writerBatchSize;
+    }
+
+    public long getWriterFlushInterval() {
+        return writerFlushInterval;
+    }
+
+    public void setWriterFlushInterval(long writerFlushInterval) {
+        this.writerFlushInterval = writerFlushInterval;
+    }
+
+    public String getWriterJournalFolder() {
+        return writerJournalFolder;
+    }
+
+    public void setWriterJournalFolder(String writerJournalFolder) {
+        this.writerJournalFolder = writerJournalFolder;
+    }
+
+    public List<String> getSynchronousOperations() {
+        return synchronousOperations;
+    }
+
+    public void setSynchronousOperations(List<String> synchronousOperations) {
+        if (synchronousOperations == null) {
+            this.synchronousOperations = Collections.emptyList();
+        } else {
+            this.synchronousOperations = synchronousOperations.stream()
+                    .map(StringUtils::trim)
+                    .filter(StringUtils::isNotEmpty)
+                    .collect(Collectors.toList());
+        }
+    }
 }
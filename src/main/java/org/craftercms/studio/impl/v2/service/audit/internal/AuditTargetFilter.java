@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.audit.internal;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET_PREFIX;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET_SUBSTRING;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET_VALUE;
+import static org.craftercms.studio.impl.v2.utils.SqlUtils.escapeLike;
+
+/**
+ * Translates the audit target filter into the cheapest SQL predicate with the same meaning as the RLIKE it
+ * replaces:
+ * <ul>
+ *     <li>{@code ^value$} is matched by equality</li>
+ *     <li>{@code ^value} and {@code ^value.*} are matched by prefix</li>
+ *     <li>{@code value} and {@code value.*} are matched anywhere in the target</li>
+ *     <li>any other regular expression falls back to RLIKE</li>
+ * </ul>
+ * A dot is taken literally since targets are mostly paths ({@code /site/website/index.xml}). Equality and prefix
+ * predicates can use the audit target indexes, substring and RLIKE predicates can't.
+ */
+public final class AuditTargetFilter {
+
+    private static final String REGEX_METACHARACTERS = "\\^$|?*+()[]{}";
+
+    private AuditTargetFilter() { }
+
+    /**
+     * Add the query parameters for the given target filter
+     *
+     * @param params query parameters
+     * @param target target filter received from the client
+     */
+    public static void addParameters(Map<String, Object> params, String target) {
+        if (StringUtils.isEmpty(target)) {
+            return;
+        }
+        boolean anchoredStart = StringUtils.startsWith(target, "^");
+        boolean anchoredEnd = false;
+        String value = StringUtils.removeStart(target, "^");
+        if (StringUtils.endsWith(value, ".*")) {
+            value = StringUtils.removeEnd(value, ".*");
+        } else if (StringUtils.endsWith(value, "$") && !StringUtils.endsWith(value, "\\$")) {
+            value = StringUtils.removeEnd(value, "$");
+            anchoredEnd = true;
+        }
+
+        if (StringUtils.isEmpty(value) || StringUtils.containsAny(value, REGEX_METACHARACTERS)) {
+            params.put(TARGET, target);
+        } else if (anchoredStart && anchoredEnd) {
+            params.put(TARGET_VALUE, value);
+        } else if (anchoredEnd) {
+            // Only anchored at the end, this is a suffix match which can't use the index
+            params.put(TARGET, target);
+        } else if (anchoredStart) {
+            params.put(TARGET_PREFIX, escapeLike(value) + "%");
+        } else {
+            params.put(TARGET_SUBSTRING, escapeLike(value));
+        }
+    }
+}
@@ -19,14 +19,18 @@ package org.craftercms.studio.impl.v2.service.cmis;
 import org.apache.chemistry.opencmis.client.api.CmisObject;
 import org.apache.chemistry.opencmis.client.api.Folder;
 import org.apache.chemistry.opencmis.client.api.ItemIterable;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.api.QueryResult;
 import org.apache.chemistry.opencmis.client.api.Repository;
 import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.client.api.SessionFactory;
+import org.apache.chemistry.opencmis.client.bindings.spi.StandardAuthenticationProvider;
+import org.apache.chemistry.opencmis.client.runtime.OperationContextImpl;
 import org.apache.chemistry.opencmis.client.runtime.SessionFactoryImpl;
 import org.apache.chemistry.opencmis.commons.SessionParameter;
 import org.apache.chemistry.opencmis.commons.data.ContentStream;
 import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisUnauthorizedException;
@@ -43,6 +47,7 @@ import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.StudioPathNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.to.CmisContentItemTO;
 import org.craftercms.studio.api.v2.dal.CmisContentItem;
@@ -56,8 +61,8 @@ import org.dom4j.Node;
 
 import javax.activation.MimetypesFileTypeMap;
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.InputStream;
@@ -67,17 +72,30 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static org.apache.chemistry.opencmis.commons.PropertyIds.BASE_TYPE_ID;
+import static org.apache.chemistry.opencmis.commons.PropertyIds.CONTENT_STREAM_LENGTH;
+import static org.apache.chemistry.opencmis.commons.PropertyIds.CONTENT_STREAM_MIME_TYPE;
 import static org.apache.chemistry.opencmis.commons.PropertyIds.NAME;
 import static org.apache.chemistry.opencmis.commons.PropertyIds.OBJECT_ID;
 import static org.apache.chemistry.opencmis.commons.PropertyIds.OBJECT_TYPE_ID;
+import static org.apache.chemistry.opencmis.commons.PropertyIds.PATH;
 import static org.apache.chemistry.opencmis.commons.SessionParameter.ATOMPUB_URL;
+import static org.apache.chemistry.opencmis.commons.SessionParameter.AUTHENTICATION_PROVIDER_CLASS;
 import static org.apache.chemistry.opencmis.commons.SessionParameter.BINDING_TYPE;
+import static org.apache.chemistry.opencmis.commons.SessionParameter.CACHE_SIZE_OBJECTS;
+import static org.apache.chemistry.opencmis.commons.SessionParameter.CACHE_SIZE_PATHS;
+import static org.apache.chemistry.opencmis.commons.SessionParameter.CACHE_TTL_OBJECTS;
+import static org.apache.chemistry.opencmis.commons.SessionParameter.CACHE_TTL_PATHS;
 import static org.apache.chemistry.opencmis.commons.SessionParameter.COOKIES;
 import static org.apache.chemistry.opencmis.commons.SessionParameter.PASSWORD;
 import static org.apache.chemistry.opencmis.commons.SessionParameter.USER;
@@ -93,8 +111,7 @@ public class CmisServiceImpl implements CmisService {
 
     private static final Logger logger = LoggerFactory.getLogger(CmisServiceImpl.class);
 
-    private static final String REPOSITORY_CONFIG_XPATH = "/cmis/repositories/repository[id='{cmisrepoid}']";
-    private static final String CMIS_REPO_ID_VARIABLE = "{cmisrepoid}";
+    private static final String REPOSITORIES_CONFIG_XPATH = "/cmis/repositories/repository";
 
     // xml properties
     private static final String ID_PROPERTY = "id";
@@ -114,8 +131,28 @@ public class CmisServiceImpl implements CmisService {
     private static final String CMIS_SEARCH_QUERY_SEARCH_TERM_VARIABLE = "{searchTerm}";
     private static final String ITEM_ID = "{item_id}";
 
+    // only the properties used to build the listed items are requested
+    private static final String[] LIST_PROPERTIES = { OBJECT_ID, NAME, BASE_TYPE_ID, OBJECT_TYPE_ID,
+            CONTENT_STREAM_MIME_TYPE, CONTENT_STREAM_LENGTH, PATH };
+
     protected StudioConfiguration studioConfiguration;
     protected ContentService contentService;
+    protected ContentRepository contentRepository;
+    protected SessionFactory sessionFactory = SessionFactoryImpl.newInstance();
+    protected int sessionCacheSize = 500;
+    protected long sessionCacheTtl = 300000;
+    protected int listPageSize = 100;
+
+    /**
+     * Parsed data sources configuration of each site
+     */
+    protected Map<String, SiteRepositories> siteRepositories = new ConcurrentHashMap<>();
+
+    /**
+     * Open sessions by site and repository, OpenCMIS sessions are thread safe so each one is shared by all requests
+     */
+    protected Map<String, CachedSession> sessions = new ConcurrentHashMap<>();
+    protected Map<String, Object> sessionLocks = new ConcurrentHashMap<>();
 
     @Override
     @HasPermission(type = DefaultPermission.class, action = "list_cmis")
@@ -125,72 +162,157 @@ public class CmisServiceImpl implements CmisService {
         List<CmisContentItem> items = new ArrayList<CmisContentItem>();
         DataSourceRepository repositoryConfig = getConfiguration(siteId, cmisRepo);
         if (repositoryConfig != null) {
-            Session session = createCMISSession(repositoryConfig);
+            Session session = getSession(siteId, repositoryConfig);
             if (session != null) {
-                String contentPath = Paths.get(repositoryConfig.getBasePath(), path).toString();
-                CmisObject cmisObject = session.getObjectByPath(contentPath);
-                if (cmisObject != null) {
-                    if (CMIS_FOLDER.equals(cmisObject.getBaseTypeId())) {
-                        Folder folder = (Folder)cmisObject;
-                        Iterable<CmisObject> iterable = folder.getChildren();
-                        Iterator<CmisObject> iterator = iterable.iterator();
-                        while (iterator.hasNext()) {
-                            CmisContentItem item = new CmisContentItem();
-                            CmisObject cmisItem = iterator.next();
-                            item.setItemName(cmisItem.getName());
-                            if (CMIS_DOCUMENT.equals(cmisItem.getBaseTypeId())) {
-                                org.apache.chemistry.opencmis.client.api.Document cmisDoc =
-                                        (org.apache.chemistry.opencmis.client.api.Document)cmisItem;
-                                item.setItemPath(cmisDoc.getPaths().get(0));
-                                item.setMimeType(cmisDoc.getContentStreamMimeType());
-                                String contentId = cmisDoc.getId();
-                                StringTokenizer st = new StringTokenizer(contentId, ";");
-                                if (st.hasMoreTokens()) {
-                                    item.setItemId(st.nextToken());
+                try {
+                    String contentPath = Paths.get(repositoryConfig.getBasePath(), path).toString();
+                    CmisObject cmisObject = getObjectByPath(siteId, cmisRepo, session, contentPath);
+                    if (cmisObject != null) {
+                        if (CMIS_FOLDER.equals(cmisObject.getBaseTypeId())) {
+                            Folder folder = (Folder)cmisObject;
+                            ItemIterable<CmisObject> children = folder.getChildren(getListOperationContext());
+                            ItemIterable<CmisObject> page;
+                            long skip = 0;
+                            int pageItems;
+                            do {
+                                page = children.skipTo(skip).getPage();
+                                pageItems = 0;
+                                for (CmisObject cmisItem : page) {
+                                    pageItems++;
+                                    CmisContentItem item = getContentItem(folder, cmisItem);
+                                    if (item != null) {
+                                        items.add(item);
+                                    }
                                 }
-                                item.setSize(cmisDoc.getContentStreamLength());
-                                items.add(item);
-                            } else if (CMIS_FOLDER.equals(cmisItem.getBaseTypeId())) {
-                                Folder cmisFolder = (Folder)cmisItem;
-                                item.setItemId(cmisFolder.getId());
-                                item.setItemPath(cmisFolder.getPath());
-                                item.setMimeType(MIME_TYPE_FOLDER);
-                                item.setSize(-1);
-                                items.add(item);
-                            }
+                                skip += pageItems;
+                            } while (pageItems > 0 && page.getHasMoreItems());
                         }
                     }
+                } catch (CmisConnectionException | CmisUnauthorizedException e) {
+                    invalidateSession(siteId, cmisRepo);
+                    throw e;
                 }
             }
         }
         return items;
     }
 
+    private OperationContext getListOperationContext() {
+        OperationContext context = new OperationContextImpl();
+        context.setFilter(new HashSet<>(Arrays.asList(LIST_PROPERTIES)));
+        context.setIncludeAcls(false);
+        context.setIncludeAllowableActions(false);
+        context.setIncludePolicies(false);
+        context.setIncludeRelationships(IncludeRelationships.NONE);
+        context.setRenditionFilterString("cmis:none");
+        context.setIncludePathSegments(false);
+        // children are not looked up again, keep the session cache for the paths
+        context.setCacheEnabled(false);
+        context.setMaxItemsPerPage(listPageSize);
+        return context;
+    }
+
+    private CmisContentItem getContentItem(Folder folder, CmisObject cmisItem) {
+        CmisContentItem item = new CmisContentItem();
+        item.setItemName(cmisItem.getName());
+        if (CMIS_DOCUMENT.equals(cmisItem.getBaseTypeId())) {
+            org.apache.chemistry.opencmis.client.api.Document cmisDoc =
+                    (org.apache.chemistry.opencmis.client.api.Document)cmisItem;
+            // the document is listed from this folder, asking for its paths would cost a round trip per document
+            item.setItemPath(Paths.get(folder.getPath(), cmisDoc.getName()).toString());
+            item.setMimeType(cmisDoc.getContentStreamMimeType());
+            String contentId = cmisDoc.getId();
+            StringTokenizer st = new StringTokenizer(contentId, ";");
+            if (st.hasMoreTokens()) {
+                item.setItemId(st.nextToken());
+            }
+            item.setSize(cmisDoc.getContentStreamLength());
+            return item;
+        } else if (CMIS_FOLDER.equals(cmisItem.getBaseTypeId())) {
+            Folder cmisFolder = (Folder)cmisItem;
+            item.setItemId(cmisFolder.getId());
+            item.setItemPath(cmisFolder.getPath());
+            item.setMimeType(MIME_TYPE_FOLDER);
+            item.setSize(-1);
+            return item;
+        }
+        return null;
+    }
+
     private DataSourceRepository getConfiguration(String site, String cmisRepo) throws CmisRepositoryNotFoundException {
+        SiteRepositories repositories = getRepositories(site);
+        if (repositories == null) {
+            return null;
+        }
+        DataSourceRepository repositoryConfig = repositories.configs.get(cmisRepo);
+        if (repositoryConfig == null) {
+            throw new CmisRepositoryNotFoundException();
+        }
+        return repositoryConfig;
+    }
+
+    /**
+     * Get the data sources configuration for the current sandbox commit of the site, the configuration is only
+     * parsed again when a commit changed it
+     *
+     * @param site site id
+     * @return repositories of the site, null if the configuration could not be read
+     */
+    protected SiteRepositories getRepositories(String site) {
+        String commitId = contentRepository.getRepoLastCommitId(site);
+        SiteRepositories repositories = siteRepositories.get(site);
+        if (repositories != null && !StringUtils.equals(repositories.commitId, commitId)) {
+            if (isConfigurationChanged(site, repositories.commitId, commitId)) {
+                logger.debug("Data sources configuration changed for site " + site);
+                repositories = null;
+            } else {
+                repositories.commitId = commitId;
+            }
+        }
+        if (repositories == null) {
+            repositories = loadRepositories(site, commitId);
+            if (repositories != null) {
+                siteRepositories.put(site, repositories);
+            }
+        }
+        return repositories;
+    }
+
+    protected boolean isConfigurationChanged(String site, String fromCommitId, String toCommitId) {
+        if (StringUtils.isEmpty(fromCommitId) || StringUtils.isEmpty(toCommitId) ||
+                !contentRepository.commitIdExists(site, fromCommitId)) {
+            return true;
+        }
+        return !contentRepository.getEditCommitIds(site, getConfigLocation(), fromCommitId, toCommitId).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private SiteRepositories loadRepositories(String site, String commitId) {
         String configPath = Paths.get(getConfigLocation()).toString();
-        Document document =  null;
-        DataSourceRepository repositoryConfig = null;
+        SiteRepositories repositories = new SiteRepositories(commitId);
         try {
-            document = contentService.getContentAsDocument(site, configPath);
-            Node node = document.selectSingleNode(REPOSITORY_CONFIG_XPATH.replace(CMIS_REPO_ID_VARIABLE, cmisRepo));
-            if (node != null) {
-                repositoryConfig = new DataSourceRepository();
-                repositoryConfig.setId(getPropertyValue(node, ID_PROPERTY));
-                repositoryConfig.setType(getPropertyValue(node, TYPE_PROPERTY));
-                repositoryConfig.setUrl(getPropertyValue(node, URL_PROPERTY));
-                repositoryConfig.setUsername(getPropertyValue(node, USERNAME_PROPERTY));
-                repositoryConfig.setPassword(getPropertyValue(node, PASSWORD_PROPERTY));
-                repositoryConfig.setBasePath(getPropertyValue(node, BASE_PATH_PROPERTY));
-                repositoryConfig.setDownloadUrlRegex(getPropertyValue(node, DOWNLOAD_URL_REGEX_PROPERTY));
-                repositoryConfig.setUseSsl(Boolean.parseBoolean(getPropertyValue(node, USE_SSL_PROPERTY)));
-            } else {
-                throw new CmisRepositoryNotFoundException();
+            Document document = contentService.getContentAsDocument(site, configPath);
+            if (document != null) {
+                List<Node> nodes = document.selectNodes(REPOSITORIES_CONFIG_XPATH);
+                for (Node node : nodes) {
+                    DataSourceRepository repositoryConfig = new DataSourceRepository();
+                    repositoryConfig.setId(getPropertyValue(node, ID_PROPERTY));
+                    repositoryConfig.setType(getPropertyValue(node, TYPE_PROPERTY));
+                    repositoryConfig.setUrl(getPropertyValue(node, URL_PROPERTY));
+                    repositoryConfig.setUsername(getPropertyValue(node, USERNAME_PROPERTY));
+                    repositoryConfig.setPassword(getPropertyValue(node, PASSWORD_PROPERTY));
+                    repositoryConfig.setBasePath(getPropertyValue(node, BASE_PATH_PROPERTY));
+                    repositoryConfig.setDownloadUrlRegex(getPropertyValue(node, DOWNLOAD_URL_REGEX_PROPERTY));
+                    repositoryConfig.setUseSsl(Boolean.parseBoolean(getPropertyValue(node, USE_SSL_PROPERTY)));
+                    // the first repository with an id wins, like the lookup by id did
+                    repositories.configs.putIfAbsent(repositoryConfig.getId(), repositoryConfig);
+                }
             }
         } catch (DocumentException e) {
-            logger.error("Error while getting configuration for site: " + site + " cmis: " + cmisRepo +
-                    " (config path: " + configPath + ")");
+            logger.error("Error while getting configuration for site: " + site + " (config path: " + configPath + ")");
+            return null;
         }
-        return repositoryConfig;
+        return repositories;
     }
 
     private String getPropertyValue(Node repositoryNode, String property) {
@@ -201,24 +323,44 @@ public class CmisServiceImpl implements CmisService {
         return StringUtils.EMPTY;
     }
 
-    private Session createCMISSession(DataSourceRepository config)
+    /**
+     * Get the open session for the repository, a new one is created only the first time or when the connection
+     * settings of the repository changed
+     *
+     * @param site site id
+     * @param config repository configuration
+     * @return CMIS session
+     */
+    protected Session getSession(String site, DataSourceRepository config)
             throws CmisUnavailableException, CmisTimeoutException {
-
-        if (config.isUseSsl()) {
-            SSLContext sc = null;
-            try {
-                sc = getSSLContext();
-                // Ignore differences between given hostname and certificate hostname
-                HostnameVerifier hv = (hostname, session) -> true;
-                HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-                HttpsURLConnection.setDefaultHostnameVerifier(hv);
-            } catch (KeyManagementException | NoSuchAlgorithmException  e) {
-                logger.error("Error initializing SSL context", e);
+        String key = getSessionKey(site, config.getId());
+        CachedSession cached = sessions.get(key);
+        if (cached == null || !cached.isFor(config)) {
+            synchronized (sessionLocks.computeIfAbsent(key, k -> new Object())) {
+                cached = sessions.get(key);
+                if (cached == null || !cached.isFor(config)) {
+                    logger.debug("Create new CMIS session for site " + site + " repository " + config.getId());
+                    cached = new CachedSession(config, createCMISSession(config));
+                    sessions.put(key, cached);
+                }
             }
         }
+        return cached.session;
+    }
+
+    protected void invalidateSession(String site, String cmisRepo) {
+        logger.debug("Discard CMIS session for site " + site + " repository " + cmisRepo);
+        sessions.remove(getSessionKey(site, cmisRepo));
+    }
+
+    private String getSessionKey(String site, String cmisRepo) {
+        return site + ":" + cmisRepo;
+    }
+
+    private Session createCMISSession(DataSourceRepository config)
+            throws CmisUnavailableException, CmisTimeoutException {
 
-        // Create a SessionFactory and set up the SessionParameter map
-        SessionFactory sessionFactory = SessionFactoryImpl.newInstance();
+        // Set up the SessionParameter map
         Map<String, String> parameter = new HashMap<String, String>();
         parameter.put(USER, config.getUsername());
         parameter.put(PASSWORD, config.getPassword());
@@ -230,15 +372,25 @@ public class CmisServiceImpl implements CmisService {
         parameter.put(BINDING_TYPE, ATOMPUB.value());
         parameter.put(COOKIES, "true");
 
-        // find all the repositories at this URL - there should only be one.
-        List<Repository> repositories = new ArrayList<Repository>();
-        repositories = sessionFactory.getRepositories(parameter);
+        // the session lives as long as the configuration, keep its cache bounded
+        parameter.put(CACHE_SIZE_OBJECTS, Integer.toString(sessionCacheSize));
+        parameter.put(CACHE_TTL_OBJECTS, Long.toString(sessionCacheTtl));
+        parameter.put(CACHE_SIZE_PATHS, Integer.toString(sessionCacheSize));
+        parameter.put(CACHE_TTL_PATHS, Long.toString(sessionCacheTtl));
+
+        if (config.isUseSsl()) {
+            // the certificate checks are relaxed only for the connections of this session
+            parameter.put(AUTHENTICATION_PROVIDER_CLASS, TrustAllAuthenticationProvider.class.getName());
+        }
 
-        // create session with the first (and only) repository
-        Repository repository = repositories.get(0);
-        parameter.put(SessionParameter.REPOSITORY_ID, repository.getId());
         Session session = null;
         try {
+            // find all the repositories at this URL - there should only be one.
+            List<Repository> repositories = sessionFactory.getRepositories(parameter);
+
+            // create session with the first (and only) repository
+            Repository repository = repositories.get(0);
+            parameter.put(SessionParameter.REPOSITORY_ID, repository.getId());
             session = sessionFactory.createSession(parameter);
         } catch (CmisConnectionException e) {
             throw new CmisTimeoutException(e);
@@ -249,7 +401,7 @@ public class CmisServiceImpl implements CmisService {
         return session;
     }
 
-    private SSLContext getSSLContext() throws KeyManagementException, NoSuchAlgorithmException {
+    private static SSLContext getSSLContext() throws KeyManagementException, NoSuchAlgorithmException {
         // Create a trust manager that does not validate certificate chains
         TrustManager[] trustAllCerts = new TrustManager[] {
                 new X509TrustManager() {
@@ -280,10 +432,10 @@ public class CmisServiceImpl implements CmisService {
         List<CmisContentItem> toRet = new ArrayList<CmisContentItem>();
         DataSourceRepository repositoryConfig = getConfiguration(siteId, cmisRepo);
         if (repositoryConfig != null) {
-            Session session = createCMISSession(repositoryConfig);
+            Session session = getSession(siteId, repositoryConfig);
             if (session != null) {
                 String contentPath = Paths.get(repositoryConfig.getBasePath(), path).toString();
-                CmisObject cmisObject = session.getObjectByPath(contentPath);
+                CmisObject cmisObject = getObjectByPath(siteId, cmisRepo, session, contentPath);
                 if (cmisObject != null) {
                     if (CMIS_FOLDER.equals(cmisObject.getBaseTypeId())) {
                         String queryString = CMIS_SEARCH_QUERY.replace(CMIS_SEARCH_QUERY_FOLDER_ID_VARIABLE,
@@ -327,12 +479,11 @@ public class CmisServiceImpl implements CmisService {
         List<CmisContentItemTO> toRet = new ArrayList<CmisContentItemTO>();
         DataSourceRepository repositoryConfig = getConfiguration(siteId, cmisRepoId);
         if (repositoryConfig != null) {
-            logger.debug("Create new CMIS session");
-            Session session = createCMISSession(repositoryConfig);
+            Session session = getSession(siteId, repositoryConfig);
             if (session != null) {
                 String contentPath = Paths.get(repositoryConfig.getBasePath(), cmisPath).toString();
                 logger.debug("Find object for CMIS path: " + contentPath);
-                CmisObject cmisObject = session.getObjectByPath(contentPath);
+                CmisObject cmisObject = getObjectByPath(siteId, cmisRepoId, session, contentPath);
                 if (cmisObject != null) {
                     if (BaseTypeId.CMIS_FOLDER.equals(cmisObject.getBaseTypeId())) {
                         throw new CmisPathNotFoundException();
@@ -364,12 +515,11 @@ public class CmisServiceImpl implements CmisService {
         DataSourceRepository repositoryConfig = getConfiguration(siteId, cmisRepoId);
         CmisUploadItem cmisUploadItem = new CmisUploadItem();
         if (repositoryConfig != null) {
-            logger.debug("Create new CMIS session");
-            Session session = createCMISSession(repositoryConfig);
+            Session session = getSession(siteId, repositoryConfig);
             if (session != null) {
                 String contentPath = Paths.get(repositoryConfig.getBasePath(), cmisPath).toString();
                 logger.debug("Find object for CMIS path: " + contentPath);
-                CmisObject cmisObject = session.getObjectByPath(contentPath);
+                CmisObject cmisObject = getObjectByPath(siteId, cmisRepoId, session, contentPath);
                 if (cmisObject != null) {
                     if (BaseTypeId.CMIS_FOLDER.equals(cmisObject.getBaseTypeId())) {
                         CmisObject docObject = null;
@@ -413,7 +563,8 @@ public class CmisServiceImpl implements CmisService {
                                         st.nextToken()));
                             }
                         }
-                        session.clear();
+                        // the session is shared, only the folder that changed is dropped from its cache
+                        session.removeObjectFromCache(folder.getId());
                     } else if (CMIS_DOCUMENT.equals(cmisObject.getBaseTypeId())) {
                         throw new CmisPathNotFoundException();
                     }
@@ -427,6 +578,18 @@ public class CmisServiceImpl implements CmisService {
         return cmisUploadItem;
     }
 
+    /**
+     * Find an object, the session is discarded if the repository can't be reached with it anymore
+     */
+    private CmisObject getObjectByPath(String site, String cmisRepo, Session session, String path) {
+        try {
+            return session.getObjectByPath(path);
+        } catch (CmisConnectionException | CmisUnauthorizedException e) {
+            invalidateSession(site, cmisRepo);
+            throw e;
+        }
+    }
+
     private String getConfigLocation() {
         return studioConfiguration.getProperty(CONFIGURATION_SITE_DATA_SOURCES_CONFIG_LOCATION);
     }
@@ -446,4 +609,91 @@ public class CmisServiceImpl implements CmisService {
     public void setContentService(ContentService contentService) {
         this.contentService = contentService;
     }
+
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public void setSessionCacheTtl(long sessionCacheTtl) {
+        this.sessionCacheTtl = sessionCacheTtl;
+    }
+
+    public void setListPageSize(int listPageSize) {
+        this.listPageSize = listPageSize;
+    }
+
+    /**
+     * Repositories of a site for a commit of its data sources configuration
+     */
+    protected static class SiteRepositories {
+
+        protected volatile String commitId;
+        protected final Map<String, DataSourceRepository> configs = new HashMap<>();
+
+        protected SiteRepositories(String commitId) {
+            this.commitId = commitId;
+        }
+    }
+
+    /**
+     * Session with the connection settings it was created for
+     */
+    protected static class CachedSession {
+
+        protected final DataSourceRepository config;
+        protected final Session session;
+
+        protected CachedSession(DataSourceRepository config, Session session) {
+            this.config = config;
+            this.session = session;
+        }
+
+        protected boolean isFor(DataSourceRepository other) {
+            return config == other || (Objects.equals(config.getUrl(), other.getUrl()) &&
+                    Objects.equals(config.getUsername(), other.getUsername()) &&
+                    Objects.equals(config.getPassword(), other.getPassword()) &&
+                    config.isUseSsl() == other.isUseSsl());
+        }
+    }
+
+    /**
+     * Authentication provider for the repositories that use SSL, it trusts any certificate and host name only for
+     * the connections of the sessions created with it
+     */
+    public static class TrustAllAuthenticationProvider extends StandardAuthenticationProvider {
+
+        private static final long serialVersionUID = 2381582963874413290L;
+
+        private static volatile SSLSocketFactory socketFactory;
+
+        @Override
+        public SSLSocketFactory getSSLSocketFactory() {
+            if (socketFactory == null) {
+                try {
+                    socketFactory = getSSLContext().getSocketFactory();
+                } catch (KeyManagementException | NoSuchAlgorithmException e) {
+                    logger.error("Error initializing SSL context", e);
+                }
+            }
+            return socketFactory;
+        }
+
+        @Override
+        public HostnameVerifier getHostnameVerifier() {
+            // Ignore differences between given hostname and certificate hostname
+            return (hostname, session) -> true;
+        }
+    }
 }
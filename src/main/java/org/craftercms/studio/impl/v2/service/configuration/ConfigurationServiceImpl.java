@@ -43,6 +43,7 @@ import org.craftercms.studio.api.v2.dal.ContentItemVersion;
 import org.craftercms.studio.api.v2.exception.ConfigurationException;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.model.rest.ConfigurationHistory;
 import org.dom4j.Document;
@@ -106,6 +107,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
     private ServicesConfig servicesConfig;
     private ObjectStateService objectStateService;
     private EventService eventService;
+    private SiteMembershipCache siteMembershipCache;
 
     @Override
     @SuppressWarnings("unchecked")
@@ -231,6 +233,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
                                    String path, String environment, InputStream content)
             throws ServiceLayerException {
         writeEnvironmentConfiguration(siteId, module, path, environment, content);
+        siteMembershipCache.invalidateSite(siteId);
     }
 
     @Override
@@ -423,4 +426,8 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         this.eventService = eventService;
     }
 
+    public void setSiteMembershipCache(final SiteMembershipCache siteMembershipCache) {
+        this.siteMembershipCache = siteMembershipCache;
+    }
+
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.content.internal;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v2.dal.ItemPath;
+import org.craftercms.studio.api.v2.dal.ItemPathDAO;
+import org.craftercms.studio.api.v2.service.content.internal.ItemPathServiceInternal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v2.dal.ItemPathDAO.ANCESTOR_ID;
+import static org.craftercms.studio.api.v2.dal.ItemPathDAO.DESCENDANT_ID;
+import static org.craftercms.studio.api.v2.dal.ItemPathDAO.DISTANCE;
+
+public class ItemPathServiceInternalImpl implements ItemPathServiceInternal {
+
+    private ItemPathDAO itemPathDao;
+    private int batchSize = 500;
+
+    @Override
+    public Map<String, Long> internPaths(String site, Collection<String> paths) {
+        Map<String, Long> ids = new HashMap<String, Long>();
+        if (CollectionUtils.isEmpty(paths)) {
+            return ids;
+        }
+
+        // Every ancestor has to be in the dictionary for the closure to be complete
+        Set<String> allPaths = new HashSet<String>();
+        for (String path : paths) {
+            String current = path;
+            while (current != null && allPaths.add(current)) {
+                current = getParentPath(current);
+            }
+        }
+
+        for (List<String> batch : ListUtils.partition(new ArrayList<String>(allPaths), batchSize)) {
+            for (ItemPath itemPath : itemPathDao.getPaths(site, batch)) {
+                ids.put(itemPath.getPath(), itemPath.getId());
+            }
+        }
+
+        // Insert the missing paths level by level, so the parent ids are always known
+        TreeMap<Integer, List<String>> missingByDepth = new TreeMap<Integer, List<String>>();
+        for (String path : allPaths) {
+            if (!ids.containsKey(path)) {
+                missingByDepth.computeIfAbsent(getDepth(path), d -> new ArrayList<String>()).add(path);
+            }
+        }
+        for (Map.Entry<Integer, List<String>> level : missingByDepth.entrySet()) {
+            for (List<String> batch : ListUtils.partition(level.getValue(), batchSize)) {
+                List<ItemPath> newPaths = new ArrayList<ItemPath>();
+                for (String path : batch) {
+                    String parentPath = getParentPath(path);
+                    newPaths.add(new ItemPath(site, path, parentPath == null ? null : ids.get(parentPath),
+                            level.getKey()));
+                }
+                itemPathDao.insertPaths(site, newPaths);
+                for (ItemPath itemPath : itemPathDao.getPaths(site, batch)) {
+                    ids.put(itemPath.getPath(), itemPath.getId());
+                }
+                insertClosure(batch, ids);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The closure is built from the ancestor chain of each path instead of the parent's closure rows, so it doesn't
+     * depend on the closure of paths being interned concurrently by other threads.
+     */
+    private void insertClosure(List<String> paths, Map<String, Long> ids) {
+        List<Map<String, Long>> rows = new ArrayList<Map<String, Long>>();
+        for (String path : paths) {
+            Long descendantId = ids.get(path);
+            long distance = 0;
+            String ancestor = path;
+            while (ancestor != null) {
+                Map<String, Long> row = new HashMap<String, Long>();
+                row.put(ANCESTOR_ID, ids.get(ancestor));
+                row.put(DESCENDANT_ID, descendantId);
+                row.put(DISTANCE, distance++);
+                rows.add(row);
+                ancestor = getParentPath(ancestor);
+            }
+        }
+        for (List<Map<String, Long>> batch : ListUtils.partition(rows, batchSize)) {
+            itemPathDao.insertClosure(batch);
+        }
+    }
+
+    private String getParentPath(String path) {
+        if (StringUtils.isEmpty(path) || StringUtils.equals(path, FILE_SEPARATOR)) {
+            return null;
+        }
+        int index = StringUtils.lastIndexOf(path, FILE_SEPARATOR);
+        if (index < 0) {
+            return null;
+        } else if (index == 0) {
+            return FILE_SEPARATOR;
+        } else {
+            return path.substring(0, index);
+        }
+    }
+
+    private int getDepth(String path) {
+        int depth = 0;
+        String parent = getParentPath(path);
+        while (parent != null) {
+            depth++;
+            parent = getParentPath(parent);
+        }
+        return depth;
+    }
+
+    @Override
+    public void deleteSitePaths(String site) {
+        itemPathDao.deleteClosureForSite(site);
+        itemPathDao.deletePathsForSite(site);
+    }
+
+    public ItemPathDAO getItemPathDao() {
+        return itemPathDao;
+    }
+
+    public void setItemPathDao(ItemPathDAO itemPathDao) {
+        this.itemPathDao = itemPathDao;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -20,6 +20,7 @@ import org.craftercms.commons.security.permissions.annotations.ProtectedResource
 import org.craftercms.studio.api.v1.dal.ItemMetadata;
 import org.craftercms.studio.api.v1.service.content.ObjectMetadataManager;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
 import org.craftercms.studio.api.v2.dal.PublishingHistoryItem;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.dashboard.DashboardService;
@@ -49,9 +50,10 @@ public class DashboardServiceImpl implements DashboardService {
     @Override
     public List<AuditLog> getAuditDashboard(@ProtectedResourceId(SITE_ID_RESOURCE_ID) String siteId, int offset,
                                             int limit, String user, List<String> operations, ZonedDateTime dateFrom,
-                                            ZonedDateTime dateTo, String target, String sort, String order) {
+                                            ZonedDateTime dateTo, String target, String sort, String order,
+                                            AuditLogCursor cursor) {
         return auditServiceInternal.getAuditDashboard(siteId, offset, limit, user, operations, dateFrom, dateTo, target,
-                sort, order);
+                sort, order, cursor);
     }
 
     @Override
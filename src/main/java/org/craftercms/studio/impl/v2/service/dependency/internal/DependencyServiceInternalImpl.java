@@ -234,7 +234,16 @@ public class DependencyServiceInternalImpl implements DependencyServiceInternal
         if (CollectionUtils.isEmpty(paths)) {
             return new ArrayList<String>();
         }
-        return dependencyDao.getDependentItems(siteId, paths);
+        // Subtrees are resolved through the path dictionary, which stores folders without the trailing separator
+        List<String> subtreePaths = new ArrayList<String>(paths.size());
+        for (String path : paths) {
+            if (StringUtils.length(path) > 1) {
+                subtreePaths.add(StringUtils.removeEnd(path, FILE_SEPARATOR));
+            } else {
+                subtreePaths.add(path);
+            }
+        }
+        return dependencyDao.getDependentItems(siteId, subtreePaths);
     }
 
     @Override
@@ -18,17 +18,28 @@ package org.craftercms.studio.impl.v2.service.search;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.craftercms.search.elasticsearch.ElasticsearchWrapper;
 import org.craftercms.search.elasticsearch.impl.AbstractElasticsearchWrapper;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.impl.v2.service.search.internal.PathQueryCompiler;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 /**
  * Implementation of {@link ElasticsearchWrapper} specific for authoring indexes
@@ -36,6 +47,13 @@ import org.elasticsearch.index.query.QueryBuilders;
  */
 public class PermissionAwareSearchService extends AbstractElasticsearchWrapper {
 
+    private static final Logger logger = LoggerFactory.getLogger(PermissionAwareSearchService.class);
+
+    /**
+     * Time in milliseconds before checking again for a field that was missing in an index
+     */
+    public static final long MISSING_FIELD_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
     /**
      * The suffix to append to the site name
      */
@@ -46,6 +64,16 @@ public class PermissionAwareSearchService extends AbstractElasticsearchWrapper {
      */
     protected String pathFieldName;
 
+    /**
+     * The fields known to be indexed, as index:field
+     */
+    protected Set<String> indexedFields = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The time of the last check for the fields missing in an index, as index:field
+     */
+    protected Map<String, Long> missingFields = new ConcurrentHashMap<>();
+
     public PermissionAwareSearchService(RestHighLevelClient client, String indexSuffix, String pathFieldName) {
         super(client);
         this.indexSuffix = indexSuffix;
@@ -86,6 +114,53 @@ public class PermissionAwareSearchService extends AbstractElasticsearchWrapper {
         return client.search(request, options);
     }
 
+    /**
+     * Checks if the authoring index of the given site has values for a field, indexes created before a subfield was
+     * added to the mapping will not have it until the site is reindexed
+     * @param siteId the site id
+     * @param fieldName the name of the field
+     * @return true if the field has been indexed
+     */
+    public boolean isFieldIndexed(String siteId, String fieldName) {
+        String index = siteId + indexSuffix;
+        String key = index + ":" + fieldName;
+        if (indexedFields.contains(key)) {
+            return true;
+        }
+        Long lastCheck = missingFields.get(key);
+        long now = System.currentTimeMillis();
+        if (lastCheck != null && now - lastCheck < MISSING_FIELD_CHECK_INTERVAL) {
+            return false;
+        }
+        SearchRequest request = new SearchRequest(index)
+            .source(new SearchSourceBuilder()
+                .query(QueryBuilders.existsQuery(fieldName))
+                .size(0)
+                .terminateAfter(1));
+        try {
+            if (client.search(request, RequestOptions.DEFAULT).getHits().getTotalHits() > 0) {
+                indexedFields.add(key);
+                missingFields.remove(key);
+                return true;
+            }
+        } catch (IOException | ElasticsearchException e) {
+            logger.debug("Error checking field {0} in index {1}", fieldName, index, e);
+        }
+        missingFields.put(key, now);
+        return false;
+    }
+
+    /**
+     * Creates or updates an index template, it will be used for all indexes created after this call
+     * @param name the name of the template
+     * @param source the template definition in JSON format
+     * @throws IOException if there is an error connecting to Elasticsearch
+     */
+    public void putIndexTemplate(String name, String source) throws IOException {
+        client.indices().putTemplate(new PutIndexTemplateRequest(name).source(source, XContentType.JSON),
+            RequestOptions.DEFAULT);
+    }
+
     protected void updateFilters(SearchRequest request, List<String> allowedPaths) {
         QueryBuilder query = request.source().query();
         BoolQueryBuilder boolQuery;
@@ -95,8 +170,11 @@ public class PermissionAwareSearchService extends AbstractElasticsearchWrapper {
             boolQuery = QueryBuilders.boolQuery().must(query);
         }
 
-        //TODO: Check if allowedPaths will be regexes already
-        allowedPaths.forEach(path -> boolQuery.filter(QueryBuilders.regexpQuery(pathFieldName, path + ".*")));
+        // a single filter matching any of the paths, literal paths become prefix queries
+        PathQueryCompiler compiler = new PathQueryCompiler(pathFieldName, null, null);
+        BoolQueryBuilder pathsQuery = QueryBuilders.boolQuery().minimumShouldMatch(1);
+        allowedPaths.forEach(path -> pathsQuery.should(compiler.scope(path + ".*", false)));
+        boolQuery.filter(pathsQuery);
 
         request.source().query(boolQuery);
     }
@@ -16,9 +16,6 @@
 
 package org.craftercms.studio.impl.v2.service.search;
 
-import java.util.Collections;
-import java.util.List;
-
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.security.AuthenticationException;
@@ -26,6 +23,7 @@ import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v2.service.search.SearchService;
 import org.craftercms.studio.api.v2.service.search.internal.SearchServiceInternal;
 import org.craftercms.studio.model.search.SearchParams;
+import org.craftercms.studio.model.search.SearchPermissions;
 import org.craftercms.studio.model.search.SearchResult;
 import org.springframework.beans.factory.annotation.Required;
 
@@ -63,9 +61,8 @@ public class SearchServiceImpl implements SearchService {
         throws AuthenticationException, ServiceLayerException {
         String user = securityService.getCurrentUser();
         if(StringUtils.isNotEmpty(user)) {
-            // TODO: Get allowed paths from the security service
-            List<String> allowedPaths = Collections.emptyList();
-            return searchServiceInternal.search(siteId, allowedPaths, params);
+            SearchPermissions permissions = securityService.getSearchPermissions(siteId, user, null);
+            return searchServiceInternal.search(siteId, permissions, params);
         } else {
             throw new AuthenticationException("User is not authenticated");
         }
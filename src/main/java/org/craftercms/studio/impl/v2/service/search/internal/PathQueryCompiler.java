@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.search.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.model.search.SearchPermissions;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * Builds the queries used to match paths, using the dedicated subfields of the path field when they are available in
+ * the index instead of regular expressions that need to visit every term of the field:
+ * <ul>
+ *     <li>Keywords are matched as a phrase of consecutive trigrams of the path</li>
+ *     <li>Folder scopes are matched against the path hierarchy tokens</li>
+ *     <li>Other literal scopes are matched with term or prefix queries on the path field</li>
+ *     <li>Read permissions are reduced to a compact set of folders and prefixes</li>
+ * </ul>
+ */
+public class PathQueryCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PathQueryCompiler.class);
+
+    /**
+     * Size of the grams indexed in the n-gram subfield
+     */
+    public static final int NGRAM_SIZE = 3;
+
+    /**
+     * Characters with a special meaning in Lucene regular expressions
+     */
+    protected static final String REGEXP_METACHARACTERS = ".?+*|{}[]()\"\\#@&<>~";
+
+    /**
+     * Characters with a special meaning in Java regular expressions, used in the permission mappings
+     */
+    protected static final String PATTERN_METACHARACTERS = ".[]{}()*+?^$|\\";
+
+    /**
+     * Constructs of Java regular expressions that Lucene does not support or interprets differently
+     */
+    protected static final Pattern UNSUPPORTED_REGEXP = Pattern.compile("\\\\[a-zA-Z0-9]|\\(\\?|(?<!\\[)\\^|[$#@&<>~\"]");
+
+    protected static final String ANY_SUFFIX = ".*";
+
+    /**
+     * Name of the field for paths
+     */
+    protected String pathFieldName;
+
+    /**
+     * Full name of the subfield with the path hierarchy tokens
+     */
+    protected String hierarchyFieldName;
+
+    /**
+     * Full name of the subfield with the path trigrams
+     */
+    protected String ngramFieldName;
+
+    public PathQueryCompiler(String pathFieldName, String hierarchySubfield, String ngramSubfield) {
+        this.pathFieldName = pathFieldName;
+        this.hierarchyFieldName = getSubfieldName(pathFieldName, hierarchySubfield);
+        this.ngramFieldName = getSubfieldName(pathFieldName, ngramSubfield);
+    }
+
+    public String getPathFieldName() {
+        return pathFieldName;
+    }
+
+    public String getHierarchyFieldName() {
+        return hierarchyFieldName;
+    }
+
+    public String getNgramFieldName() {
+        return ngramFieldName;
+    }
+
+    /**
+     * Builds the query to find a keyword anywhere in the path
+     * @param keyword the keyword, without any special characters
+     * @param ngramIndexed indicates if the n-gram subfield is available in the index
+     * @return the query
+     */
+    public QueryBuilder keyword(String keyword, boolean ngramIndexed) {
+        if (ngramIndexed && ngramFieldName != null && keyword.length() >= NGRAM_SIZE) {
+            // the grams have consecutive positions, a phrase only matches them in the order of the keyword
+            return QueryBuilders.matchPhraseQuery(ngramFieldName, keyword);
+        }
+        return QueryBuilders.wildcardQuery(pathFieldName, "*" + keyword + "*");
+    }
+
+    /**
+     * Builds the query to filter the paths matching the given regular expression
+     * @param path the regular expression
+     * @param hierarchyIndexed indicates if the path hierarchy subfield is available in the index
+     * @return the query
+     */
+    public QueryBuilder scope(String path, boolean hierarchyIndexed) {
+        if (path.endsWith(ANY_SUFFIX)) {
+            String prefix = getLiteral(path.substring(0, path.length() - ANY_SUFFIX.length()));
+            if (prefix != null) {
+                if (hierarchyIndexed && hierarchyFieldName != null && prefix.length() > 1 && prefix.endsWith("/")) {
+                    return QueryBuilders.termQuery(hierarchyFieldName, prefix.substring(0, prefix.length() - 1));
+                }
+                return QueryBuilders.prefixQuery(pathFieldName, prefix);
+            }
+        } else {
+            String literal = getLiteral(path);
+            if (literal != null) {
+                return QueryBuilders.termQuery(pathFieldName, literal);
+            }
+        }
+        return QueryBuilders.regexpQuery(pathFieldName, path);
+    }
+
+    /**
+     * Builds the filter for the items a user can read. Patterns nested in an allowed folder are dropped and all
+     * the remaining folders are matched with a single terms query on the path hierarchy subfield
+     * @param permissions the read permissions of the user
+     * @param contentTypeFieldName the name of the field for content types
+     * @param hierarchyIndexed indicates if the path hierarchy subfield is available in the index
+     * @return the filter, null if the user can read every item
+     */
+    public QueryBuilder permissions(SearchPermissions permissions, String contentTypeFieldName,
+                                    boolean hierarchyIndexed) {
+        BoolQueryBuilder filter = QueryBuilders.boolQuery();
+        if (!permissions.isAllowAll()) {
+            TreeSet<String> prefixes = new TreeSet<>();
+            TreeSet<String> paths = new TreeSet<>();
+            Set<String> regexps = new LinkedHashSet<>();
+            for (String pattern : permissions.getAllowedPatterns()) {
+                for (String alternative : splitAlternatives(pattern)) {
+                    addAllowedPattern(alternative, prefixes, paths, regexps);
+                }
+            }
+            List<String> allowedPrefixes = compact(prefixes);
+            if (!allowedPrefixes.contains(StringUtils.EMPTY) && !allowedPrefixes.contains("/")) {
+                paths.removeIf(path -> allowedPrefixes.stream().anyMatch(path::startsWith));
+                filter.filter(allowedPaths(allowedPrefixes, paths, regexps, hierarchyIndexed));
+            }
+        }
+        if (StringUtils.isNotEmpty(contentTypeFieldName) &&
+                CollectionUtils.isNotEmpty(permissions.getDeniedContentTypes())) {
+            filter.mustNot(QueryBuilders.termsQuery(contentTypeFieldName, permissions.getDeniedContentTypes()));
+        }
+        return filter.hasClauses()? filter : null;
+    }
+
+    protected QueryBuilder allowedPaths(List<String> prefixes, Set<String> paths, Set<String> regexps,
+                                        boolean hierarchyIndexed) {
+        if (prefixes.isEmpty() && paths.isEmpty() && regexps.isEmpty()) {
+            return QueryBuilders.boolQuery().mustNot(QueryBuilders.matchAllQuery());
+        }
+        BoolQueryBuilder allowed = QueryBuilders.boolQuery().minimumShouldMatch(1);
+        List<String> folders = new ArrayList<>();
+        for (String prefix : prefixes) {
+            if (hierarchyIndexed && hierarchyFieldName != null && prefix.length() > 1 && prefix.endsWith("/")) {
+                folders.add(prefix.substring(0, prefix.length() - 1));
+            } else {
+                allowed.should(QueryBuilders.prefixQuery(pathFieldName, prefix));
+            }
+        }
+        if (!folders.isEmpty()) {
+            allowed.should(QueryBuilders.termsQuery(hierarchyFieldName, folders));
+        }
+        if (!paths.isEmpty()) {
+            allowed.should(QueryBuilders.termsQuery(pathFieldName, paths));
+        }
+        regexps.forEach(regexp -> allowed.should(QueryBuilders.regexpQuery(pathFieldName, regexp)));
+        return allowed;
+    }
+
+    /**
+     * Classifies a pattern from the permission mappings as a prefix, a literal path or a regular expression
+     */
+    protected void addAllowedPattern(String pattern, Set<String> prefixes, Set<String> paths, Set<String> regexps) {
+        String regexp = StringUtils.removeEnd(StringUtils.removeStart(pattern, "^"), "$");
+        String prefix = getLiteralPrefix(regexp);
+        if (!prefix.isEmpty() && !prefix.startsWith("/")) {
+            // rules for things other than paths, like ~DASHBOARD~
+            return;
+        }
+        if (regexp.endsWith(ANY_SUFFIX)) {
+            String literal = getLiteral(regexp.substring(0, regexp.length() - ANY_SUFFIX.length()),
+                PATTERN_METACHARACTERS);
+            if (literal != null) {
+                prefixes.add(literal);
+                return;
+            }
+        }
+        String literal = getLiteral(regexp, PATTERN_METACHARACTERS);
+        if (literal != null) {
+            paths.add(literal);
+        } else if (!UNSUPPORTED_REGEXP.matcher(regexp).find()) {
+            regexps.add(regexp);
+        } else {
+            logger.debug("Pattern {0} is not supported by Elasticsearch, using prefix {1} instead", pattern, prefix);
+            prefixes.add(prefix);
+        }
+    }
+
+    /**
+     * Removes the prefixes already covered by a shorter one
+     * @param prefixes the sorted prefixes
+     * @return the remaining prefixes
+     */
+    protected static List<String> compact(TreeSet<String> prefixes) {
+        List<String> compacted = new ArrayList<>();
+        String last = null;
+        for (String prefix : prefixes) {
+            // in sorted order every prefix covered by another one comes right after it
+            if (last == null || !prefix.startsWith(last)) {
+                compacted.add(prefix);
+                last = prefix;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Splits a regular expression by the alternatives at the top level
+     * @param regexp the regular expression
+     * @return the alternatives
+     */
+    protected static List<String> splitAlternatives(String regexp) {
+        List<String> alternatives = new ArrayList<>();
+        int depth = 0;
+        boolean inClass = false;
+        int start = 0;
+        for (int i = 0; i < regexp.length(); i++) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                alternatives.add(regexp.substring(start, i));
+                start = i + 1;
+            }
+        }
+        alternatives.add(regexp.substring(start));
+        return alternatives;
+    }
+
+    /**
+     * Gets the literal text every match of a Java regular expression starts with
+     * @param regexp the regular expression, without alternatives at the top level
+     * @return the literal prefix, empty if there is none
+     */
+    protected static String getLiteralPrefix(String regexp) {
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                if (next >= regexp.length() || Character.isLetterOrDigit(regexp.charAt(next))) {
+                    break;
+                }
+                c = regexp.charAt(next++);
+            } else if (PATTERN_METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            }
+            // a quantifier makes the previous character optional or repeatable
+            if (next < regexp.length() && "*?{".indexOf(regexp.charAt(next)) >= 0) {
+                break;
+            }
+            prefix.append(c);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Unescapes the given regular expression if it only matches literal text
+     * @param regexp the regular expression
+     * @return the literal text, null if the expression has any operator
+     */
+    protected static String getLiteral(String regexp) {
+        return getLiteral(regexp, REGEXP_METACHARACTERS);
+    }
+
+    /**
+     * Unescapes the given regular expression if it only matches literal text
+     * @param regexp the regular expression
+     * @param metacharacters the characters with a special meaning in the syntax of the expression
+     * @return the literal text, null if the expression has any operator
+     */
+    protected static String getLiteral(String regexp, String metacharacters) {
+        StringBuilder literal = new StringBuilder(regexp.length());
+        for (int i = 0; i < regexp.length(); i++) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                if (++i == regexp.length() || Character.isLetterOrDigit(regexp.charAt(i))) {
+                    return null;
+                }
+                c = regexp.charAt(i);
+            } else if (metacharacters.indexOf(c) >= 0) {
+                return null;
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    protected static String getSubfieldName(String fieldName, String subfield) {
+        return StringUtils.isEmpty(subfield)? null : fieldName + "." + subfield;
+    }
+
+}
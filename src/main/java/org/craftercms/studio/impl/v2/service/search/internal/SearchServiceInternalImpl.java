@@ -17,16 +17,22 @@
 package org.craftercms.studio.impl.v2.service.search.internal;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,9 +40,13 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.text.StrSubstitutor;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
 import org.craftercms.studio.api.v1.to.FacetRangeTO;
 import org.craftercms.studio.api.v1.to.FacetTO;
@@ -47,11 +57,13 @@ import org.craftercms.studio.model.search.SearchFacet;
 import org.craftercms.studio.model.search.SearchFacetRange;
 import org.craftercms.studio.model.search.SearchResultItem;
 import org.craftercms.studio.model.search.SearchParams;
+import org.craftercms.studio.model.search.SearchPermissions;
 import org.craftercms.studio.model.search.SearchResult;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.index.search.MatchQuery;
@@ -66,6 +78,7 @@ import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
 import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
 import org.elasticsearch.search.sort.SortOrder;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.core.io.ClassPathResource;
 
 /**
  * Default implementation of {@link SearchServiceInternal}
@@ -73,6 +86,8 @@ import org.springframework.beans.factory.annotation.Required;
  */
 public class SearchServiceInternalImpl implements SearchServiceInternal {
 
+    private static final Logger logger = LoggerFactory.getLogger(SearchServiceInternalImpl.class);
+
     public static final String CONFIG_KEY_FACETS = "studio.search.facets";
     public static final String CONFIG_KEY_TYPES = "studio.search.types";
 
@@ -94,11 +109,29 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
 
     public static final String DEFAULT_MIME_TYPE = "application/xml";
 
+    public static final String INDEX_TEMPLATE_NAME = "studio-authoring-paths";
+    public static final String INDEX_TEMPLATE_LOCATION = "crafter/studio/search/authoring-index-template.json";
+
     /**
      * Name of the field for paths
      */
     protected String pathFieldName;
 
+    /**
+     * Name of the subfield of the path field with the path hierarchy tokens, empty to disable it
+     */
+    protected String pathHierarchySubfield;
+
+    /**
+     * Name of the subfield of the path field with the path trigrams, empty to disable it
+     */
+    protected String pathNgramSubfield;
+
+    /**
+     * Suffix of the authoring indexes
+     */
+    protected String indexSuffix;
+
     /**
      * Name of the field for internal name
      */
@@ -124,6 +157,11 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
      */
     protected String mimeTypeName;
 
+    /**
+     * Name of the field for content type
+     */
+    protected String contentTypeFieldName;
+
     /**
      * List of fields to include during searching
      */
@@ -174,11 +212,33 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
      */
     protected Map<String, HierarchicalConfiguration<ImmutableNode>> types;
 
+    /**
+     * Type mappings with their patterns already compiled
+     */
+    protected List<TypeMapping> typeMappings;
+
+    /**
+     * Builds the queries for paths
+     */
+    protected PathQueryCompiler pathQueryCompiler;
+
     @Required
     public void setPathFieldName(final String pathFieldName) {
         this.pathFieldName = pathFieldName;
     }
 
+    public void setPathHierarchySubfield(final String pathHierarchySubfield) {
+        this.pathHierarchySubfield = pathHierarchySubfield;
+    }
+
+    public void setPathNgramSubfield(final String pathNgramSubfield) {
+        this.pathNgramSubfield = pathNgramSubfield;
+    }
+
+    public void setIndexSuffix(final String indexSuffix) {
+        this.indexSuffix = indexSuffix;
+    }
+
     @Required
     public void setInternalNameFieldName(final String internalNameFieldName) {
         this.internalNameFieldName = internalNameFieldName;
@@ -204,6 +264,10 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
         this.mimeTypeName = mimeTypeName;
     }
 
+    public void setContentTypeFieldName(final String contentTypeFieldName) {
+        this.contentTypeFieldName = contentTypeFieldName;
+    }
+
     @Required
     public void setDefaultType(final String defaultType) {
         this.defaultType = defaultType;
@@ -245,11 +309,36 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
     }
 
     /**
-     * Loads facets & type mapping from the global configuration
+     * Loads facets & type mapping from the global configuration and updates the template for authoring indexes
      */
     public void init() {
         loadTypesFromGlobalConfiguration();
         loadFacetsFromGlobalConfiguration();
+        pathQueryCompiler = new PathQueryCompiler(pathFieldName, pathHierarchySubfield, pathNgramSubfield);
+        updateIndexTemplate();
+    }
+
+    /**
+     * Creates or updates the template that adds the path subfields to new authoring indexes, existing indexes
+     * will use them once the site is reindexed
+     */
+    protected void updateIndexTemplate() {
+        if (StringUtils.isAnyEmpty(indexSuffix, pathHierarchySubfield, pathNgramSubfield)) {
+            return;
+        }
+        Map<String, Object> values = new HashMap<>();
+        values.put("indexSuffix", indexSuffix);
+        values.put("pathField", pathFieldName);
+        values.put("hierarchySubfield", pathHierarchySubfield);
+        values.put("ngramSubfield", pathNgramSubfield);
+        values.put("ngramSize", PathQueryCompiler.NGRAM_SIZE);
+        try (InputStream in = new ClassPathResource(INDEX_TEMPLATE_LOCATION).getInputStream()) {
+            String template = StrSubstitutor.replace(IOUtils.toString(in, StandardCharsets.UTF_8), values);
+            elasticsearchService.putIndexTemplate(INDEX_TEMPLATE_NAME, template);
+        } catch (Exception e) {
+            logger.warn("Error updating the template for authoring indexes, path searches will not use the " +
+                "optimized fields for new sites", e);
+        }
     }
 
     /**
@@ -307,6 +396,16 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
 
         typesConfig.forEach(type -> types.put(type.getString(CONFIG_KEY_TYPE_NAME), type));
 
+        typeMappings = new ArrayList<>(types.size());
+        types.values().forEach(type -> {
+            String name = type.getString(CONFIG_KEY_TYPE_NAME);
+            try {
+                typeMappings.add(new TypeMapping(name, type.getString(CONFIG_KEY_TYPE_FIELD),
+                    Pattern.compile(type.getString(CONFIG_KEY_TYPE_MATCHES))));
+            } catch (PatternSyntaxException e) {
+                logger.error("Invalid pattern for search type {0}", e, name);
+            }
+        });
     }
 
     /**
@@ -403,6 +502,30 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
     @Override
     public SearchResult search(final String siteId, final List<String> allowedPaths, final SearchParams params)
         throws ServiceLayerException {
+        return search(siteId, allowedPaths, null, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResult search(final String siteId, final SearchPermissions permissions, final SearchParams params)
+        throws ServiceLayerException {
+        return search(siteId, Collections.emptyList(), permissions, params);
+    }
+
+    /**
+     * Performs a search operation for a given site
+     * @param siteId the site id
+     * @param allowedPaths list of paths that should be included in the results
+     * @param permissions the read permissions of the user, can be null
+     * @param params the search parameters
+     * @return the search results
+     * @throws ServiceLayerException if there is any error executing the search in Elasticsearch
+     */
+    protected SearchResult search(final String siteId, final List<String> allowedPaths,
+                                  final SearchPermissions permissions, final SearchParams params)
+        throws ServiceLayerException {
 
         Map<String, FacetTO> siteFacets = servicesConfig.getFacets(siteId);
         BoolQueryBuilder query = QueryBuilders.boolQuery();
@@ -417,16 +540,17 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
                 .replaceAll("[^\\p{IsAlphabetic}\\p{Digit}\\s]", StringUtils.EMPTY)
                 .trim();
             BoolQueryBuilder keywordsQuery = QueryBuilders.boolQuery();
-            String[] keywords = rawKeywords.split(" ");
+            String[] keywords = StringUtils.split(rawKeywords);
             if (ArrayUtils.isNotEmpty(keywords)) {
                 keywordsQuery.should(
                     QueryBuilders.multiMatchQuery(rawKeywords, searchFields)
                         .type(MatchQuery.Type.PHRASE_PREFIX)
                 );
 
+                boolean ngramIndexed = isFieldIndexed(siteId, pathQueryCompiler.getNgramFieldName());
                 for (String keyword : keywords) {
                     keywordsQuery
-                        .should(QueryBuilders.regexpQuery(pathFieldName, ".*" + keyword + ".*"))
+                        .should(pathQueryCompiler.keyword(keyword, ngramIndexed))
                         .should(QueryBuilders.multiMatchQuery(keyword, searchFields));
                 }
             }
@@ -435,13 +559,22 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
         }
 
         if (StringUtils.isNotEmpty(params.getPath())) {
-            query.filter(QueryBuilders.regexpQuery(pathFieldName, params.getPath()));
+            query.filter(pathQueryCompiler.scope(params.getPath(),
+                isFieldIndexed(siteId, pathQueryCompiler.getHierarchyFieldName())));
         }
 
         if(MapUtils.isNotEmpty(params.getFilters())) {
             updateFilters(query, params, siteFacets);
         }
 
+        if (permissions != null) {
+            QueryBuilder permissionsFilter = pathQueryCompiler.permissions(permissions, contentTypeFieldName,
+                isFieldIndexed(siteId, pathQueryCompiler.getHierarchyFieldName()));
+            if (permissionsFilter != null) {
+                query.filter(permissionsFilter);
+            }
+        }
+
         SearchSourceBuilder builder = new SearchSourceBuilder()
             .query(query)
             .from(params.getOffset())
@@ -467,6 +600,16 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
         }
     }
 
+    /**
+     * Checks if the authoring index of the site has values for the given field
+     * @param siteId the site id
+     * @param fieldName the name of the field, can be null
+     * @return true if the field can be used in queries
+     */
+    protected boolean isFieldIndexed(String siteId, String fieldName) {
+        return fieldName != null && elasticsearchService.isFieldIndexed(siteId, fieldName);
+    }
+
     /**
      * Adds the aggregations needed to the given builder
      * @param builder the search source builder
@@ -598,14 +741,13 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
      * @return the item type
      */
     protected String getItemType(Map<String, Object> source) {
-        if(MapUtils.isNotEmpty(types)) {
-            for (HierarchicalConfiguration<ImmutableNode> typeConfig : types.values()) {
-                String fieldName = typeConfig.getString(CONFIG_KEY_TYPE_FIELD);
-                if(source.containsKey(fieldName)) {
-                    String fieldValue = source.get(fieldName).toString();
-                    if (StringUtils.isNotEmpty(fieldValue) &&
-                            fieldValue.matches(typeConfig.getString(CONFIG_KEY_TYPE_MATCHES))) {
-                        return typeConfig.getString(CONFIG_KEY_TYPE_NAME);
+        if(CollectionUtils.isNotEmpty(typeMappings)) {
+            for (TypeMapping typeMapping : typeMappings) {
+                Object value = source.get(typeMapping.field);
+                if(value != null) {
+                    String fieldValue = value.toString();
+                    if (StringUtils.isNotEmpty(fieldValue) && typeMapping.pattern.matcher(fieldValue).matches()) {
+                        return typeMapping.name;
                     }
                 }
             }
@@ -644,4 +786,21 @@ public class SearchServiceInternalImpl implements SearchServiceInternal {
         }
     }
 
+    /**
+     * A type from the global configuration with its pattern compiled
+     */
+    protected static class TypeMapping {
+
+        protected final String name;
+        protected final String field;
+        protected final Pattern pattern;
+
+        protected TypeMapping(String name, String field, Pattern pattern) {
+            this.name = name;
+            this.field = field;
+            this.pattern = pattern;
+        }
+
+    }
+
 }
@@ -30,8 +30,10 @@ import org.craftercms.studio.api.v2.dal.UserDAO;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.security.AuthenticationChain;
 import org.craftercms.studio.api.v2.service.security.AuthenticationProvider;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.springframework.beans.factory.DisposableBean;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -57,17 +59,42 @@ public class AuthenticationChainImpl implements AuthenticationChain {
     private GroupDAO groupDao;
     private AuditServiceInternal auditServiceInternal;
     private SiteService siteService;
+    private SiteMembershipCache siteMembershipCache;
 
     public void init() {
         List<HierarchicalConfiguration<ImmutableNode>> chainConfig =
             studioConfiguration.getSubConfigs(CONFIGURATION_AUTHENTICATION_CHAIN_CONFIG);
-        authenticationChain = new ArrayList<AuthenticationProvider>();
+        List<AuthenticationProvider> chain = new ArrayList<AuthenticationProvider>();
         chainConfig.forEach(providerConfig -> {
             AuthenticationProvider provider = AuthenticationProviderFactory.getAuthenticationProvider(providerConfig);
             if (provider != null && provider.isEnabled()) {
-                authenticationChain.add(provider);
+                chain.add(provider);
             }
         });
+        List<AuthenticationProvider> previousChain = authenticationChain;
+        authenticationChain = chain;
+        destroyProviders(previousChain);
+    }
+
+    /**
+     * Release the resources held by the providers of the chain, like the LDAP connection pools
+     */
+    public void destroy() {
+        destroyProviders(authenticationChain);
+    }
+
+    private void destroyProviders(List<AuthenticationProvider> providers) {
+        if (providers != null) {
+            providers.forEach(provider -> {
+                if (provider instanceof DisposableBean) {
+                    try {
+                        ((DisposableBean) provider).destroy();
+                    } catch (Exception e) {
+                        logger.error("Failed to destroy authentication provider " + provider.getClass().getName(), e);
+                    }
+                }
+            });
+        }
     }
 
     @Override
@@ -172,4 +199,12 @@ public class AuthenticationChainImpl implements AuthenticationChain {
     public void setSiteService(SiteService siteService) {
         this.siteService = siteService;
     }
+
+    public SiteMembershipCache getSiteMembershipCache() {
+        return siteMembershipCache;
+    }
+
+    public void setSiteMembershipCache(SiteMembershipCache siteMembershipCache) {
+        this.siteMembershipCache = siteMembershipCache;
+    }
 }
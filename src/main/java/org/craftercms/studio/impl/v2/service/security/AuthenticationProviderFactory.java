@@ -29,10 +29,13 @@ import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICAT
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_LDAP_ATTRIBUTE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_MATCH_INDEX_LDAP_ATTRIBUTE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_REGEX_LDAP_ATTRIBUTE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_IDENTITY_CACHE_TIME_TO_LIVE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LAST_NAME_HEADER;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LAST_NAME_LDAP_ATTRIBUTE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LDAP_BASE_CONTEXT;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LDAP_PASSWORD;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LDAP_POOL_MAX_ACTIVE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LDAP_POOL_TEST_ON_BORROW;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LDAP_URL;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LDAP_USERNAME;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUTHENTICATION_CHAIN_PROVIDER_LOGOUT_ENABLED;
@@ -92,6 +95,10 @@ public class AuthenticationProviderFactory {
         provider.setGroupNameLdapAttributeRegex(providerConfig.getString(AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_REGEX_LDAP_ATTRIBUTE));
         provider.setGroupNameLdapAttributeMatchIndex(
                 Integer.parseInt(providerConfig.getString(AUTHENTICATION_CHAIN_PROVIDER_GROUP_NAME_MATCH_INDEX_LDAP_ATTRIBUTE)));
+        provider.setPoolMaxActive(providerConfig.getInt(AUTHENTICATION_CHAIN_PROVIDER_LDAP_POOL_MAX_ACTIVE,
+                LdapAuthenticationProvider.DEFAULT_POOL_MAX_ACTIVE));
+        provider.setPoolTestOnBorrow(providerConfig.getBoolean(AUTHENTICATION_CHAIN_PROVIDER_LDAP_POOL_TEST_ON_BORROW,
+                true));
         return provider;
     }
 
@@ -108,6 +115,8 @@ public class AuthenticationProviderFactory {
         provider.setGroupsHeader(providerConfig.getString(AUTHENTICATION_CHAIN_PROVIDER_GROUPS_HEADER));
         provider.setLogoutEnabled(providerConfig.getBoolean(AUTHENTICATION_CHAIN_PROVIDER_LOGOUT_ENABLED));
         provider.setLogoutUrl(providerConfig.getString(AUTHENTICATION_CHAIN_PROVIDER_LOGOUT_URL));
+        provider.setIdentityCacheTimeToLive(providerConfig.getInt(AUTHENTICATION_CHAIN_PROVIDER_IDENTITY_CACHE_TIME_TO_LIVE,
+                HeadersAuthenticationProvider.DEFAULT_IDENTITY_CACHE_TIME_TO_LIVE));
         return provider;
     }
 }
@@ -16,11 +16,11 @@
 
 package org.craftercms.studio.impl.v2.service.security;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
-import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.exception.security.AuthenticationSystemException;
 import org.craftercms.studio.api.v1.exception.security.UserAlreadyExistsException;
 import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
@@ -30,7 +30,6 @@ import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v2.dal.AuditLog;
 import org.craftercms.studio.api.v2.dal.GroupDAO;
 import org.craftercms.studio.api.v2.dal.Group;
-import org.craftercms.studio.api.v2.dal.UserDAO;
 import org.craftercms.studio.api.v2.dal.UserGroup;
 import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
@@ -43,10 +42,16 @@ import org.craftercms.studio.model.AuthenticationType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.DEFAULT_ORGANIZATION_ID;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_ADD_MEMBERS;
@@ -54,18 +59,29 @@ import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREAT
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_UPDATE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_USER;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_DESCRIPTION;
-import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_ID;
-import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_NAME;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_NAMES;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ORG_ID;
-import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USERNAME;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USER_ID;
-import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USER_IDS;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_SYSTEM_SITE;
 
+/**
+ * Authenticates users with the headers set by an SSO proxy. The user details and groups are written to the database
+ * only when the headers change: the verified headers are fingerprinted and kept for a short time, so the requests
+ * that follow with the same headers don't touch the database.
+ */
 public class HeadersAuthenticationProvider extends BaseAuthenticationProvider {
 
     private final static Logger logger = LoggerFactory.getLogger(HeadersAuthenticationProvider.class);
 
+    public static final int DEFAULT_IDENTITY_CACHE_TIME_TO_LIVE = 300;
+
+    private static final String GROUP_DESCRIPTION_PREFIX = "Externally managed group - ";
+
+    /**
+     * Length of the group_name column
+     */
+    private static final int GROUP_NAME_MAX_LENGTH = 32;
+
     private String secureKeyHeader;
     private String secureKeyHeaderValue;
     private String usernameHeader;
@@ -75,6 +91,9 @@ public class HeadersAuthenticationProvider extends BaseAuthenticationProvider {
     private String groupsHeader;
     private boolean logoutEnabled;
     private String logoutUrl;
+    private int identityCacheTimeToLive = DEFAULT_IDENTITY_CACHE_TIME_TO_LIVE;
+
+    private final Map<String, VerifiedIdentity> verifiedIdentities = new ConcurrentHashMap<>();
 
     @Override
     public boolean doAuthenticate(HttpServletRequest request, HttpServletResponse response,
@@ -92,74 +111,18 @@ public class HeadersAuthenticationProvider extends BaseAuthenticationProvider {
                     String firstName = request.getHeader(firstNameHeader);
                     String lastName = request.getHeader(lastNameHeader);
                     String email = request.getHeader(emailHeader);
-                    String groups = request.getHeader(groupsHeader);
+                    List<String> groupNames = getGroupNames(request.getHeader(groupsHeader));
 
-                    try {
-                        UserServiceInternal userServiceInternal = authenticationChain.getUserServiceInternal();
-                        AuditServiceInternal auditServiceInternal = authenticationChain.getAuditServiceInternal();
-                        StudioConfiguration studioConfiguration = authenticationChain.getStudioConfiguration();
-                        SiteService siteService = authenticationChain.getSiteService();
-                        SiteFeed siteFeed =
-                                siteService.getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE));
-                        if (userServiceInternal.userExists(-1, usernameHeaderValue)) {
-                            User user = userServiceInternal.getUserByIdOrUsername(-1, usernameHeaderValue);
-                            user.setFirstName(firstName);
-                            user.setLastName(lastName);
-                            user.setEmail(email);
-                            if (StringUtils.isNoneEmpty(firstName, lastName, email)) {
-                                logger.debug("If user already exists in studio DB, update details.");
-                                try {
-                                    userServiceInternal.updateUser(user);
-                                    AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                                    auditLog.setOperation(OPERATION_UPDATE);
-                                    auditLog.setActorId(usernameHeaderValue);
-                                    auditLog.setSiteId(siteFeed.getId());
-                                    auditLog.setPrimaryTargetId(usernameHeaderValue);
-                                    auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
-                                    auditLog.setPrimaryTargetValue(user.getUsername());
-                                    auditServiceInternal.insertAuditLog(auditLog);
-
-                                } catch (Exception e) {
-                                    logger.debug("Error updating user " + usernameHeaderValue +
-                                                 " with data from authentication headers", e);
-
-                                    throw new AuthenticationSystemException(
-                                            "Error updating user " + usernameHeaderValue + " with data from " +
-                                            "external authentication provider", e);
-                                }
-                            }
-                        } else {
-                            logger.debug("User does not exist in studio db. Adding user " + usernameHeader);
-                            try {
-                                User user = new User();
-                                user.setUsername(usernameHeaderValue);
-                                user.setPassword(UUID.randomUUID().toString());
-                                user.setFirstName(firstName);
-                                user.setLastName(lastName);
-                                user.setEmail(email);
-                                user.setExternallyManaged(true);
-                                user.setEnabled(true);
-                                userServiceInternal.createUser(user);
-                                AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                                auditLog.setOperation(OPERATION_CREATE);
-                                auditLog.setSiteId(siteFeed.getId());
-                                auditLog.setActorId(usernameHeaderValue);
-                                auditLog.setPrimaryTargetId(usernameHeaderValue);
-                                auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
-                                auditLog.setPrimaryTargetValue(user.getUsername());
-                                auditServiceInternal.insertAuditLog(auditLog);
-                            } catch (UserAlreadyExistsException | ServiceLayerException e) {
-                                logger.debug("Error adding user " + usernameHeaderValue + " from authentication " +
-                                             "headers", e);
-
-                                throw new AuthenticationSystemException(
-                                        "Error adding user " + usernameHeaderValue + " from external " +
-                                        "authentication provider", e);
-                            }
+                    String fingerprint = getFingerprint(usernameHeaderValue, firstName, lastName, email, groupNames);
+                    if (isVerified(usernameHeaderValue, fingerprint)) {
+                        logger.debug("Authentication headers for user " + usernameHeaderValue + " didn't change, " +
+                                     "skipping database update.");
+                    } else {
+                        syncUser(usernameHeaderValue, firstName, lastName, email, groupNames, authenticationChain);
+                        if (identityCacheTimeToLive > 0) {
+                            verifiedIdentities.put(usernameHeaderValue, new VerifiedIdentity(fingerprint,
+                                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(identityCacheTimeToLive)));
                         }
-                    } catch (ServiceLayerException e) {
-                        logger.debug("Unknown service error", e);
-                        throw  new AuthenticationSystemException("Unknown service error" , e);
                     }
 
                     User user = new User();
@@ -168,25 +131,14 @@ public class HeadersAuthenticationProvider extends BaseAuthenticationProvider {
                     user.setLastName(lastName);
                     user.setEmail(email);
                     user.setGroups(new ArrayList<UserGroup>());
-
-                    logger.debug("Update user groups in database.");
-                    if (StringUtils.isNoneEmpty(groups)) {
-                        String[] groupsArray = groups.split(",");
-                        for (int i = 0; i < groupsArray.length; i++) {
-                            Group g = new Group();
-                            try {
-                                g.setGroupName(StringUtils.trim(groupsArray[i]));
-                                g.setGroupDescription("Externally managed group");
-                                g.setOrganization(null);
-                                UserGroup ug = new UserGroup();
-                                ug.setGroup(g);
-                                user.getGroups().add(ug);
-                                upsertUserGroup(g.getGroupName(), usernameHeaderValue, authenticationChain);
-                            } catch (Exception e) {
-                                logger.debug("Error updating user group " + g.getGroupName() +
-                                        " with data from authentication headers", e);
-                            }
-                        }
+                    for (String groupName : groupNames) {
+                        Group g = new Group();
+                        g.setGroupName(groupName);
+                        g.setGroupDescription("Externally managed group");
+                        g.setOrganization(null);
+                        UserGroup ug = new UserGroup();
+                        ug.setGroup(g);
+                        user.getGroups().add(ug);
                     }
 
                     String token = createToken(user, authenticationChain);
@@ -211,55 +163,182 @@ public class HeadersAuthenticationProvider extends BaseAuthenticationProvider {
         }
     }
 
-    protected boolean upsertUserGroup(String groupName, String username, AuthenticationChain authenticationChain)
-            throws SiteNotFoundException {
-        GroupDAO groupDao = authenticationChain.getGroupDao();
-        UserDAO userDao = authenticationChain.getUserDao();
+    /**
+     * Forget the verified headers of all users, the next request of each user updates the database again
+     */
+    public void clearVerifiedIdentities() {
+        verifiedIdentities.clear();
+    }
+
+    protected void syncUser(String username, String firstName, String lastName, String email,
+                            List<String> groupNames, AuthenticationChain authenticationChain)
+            throws AuthenticationSystemException {
+        UserServiceInternal userServiceInternal = authenticationChain.getUserServiceInternal();
         AuditServiceInternal auditServiceInternal = authenticationChain.getAuditServiceInternal();
-        SiteService siteService = authenticationChain.getSiteService();
         StudioConfiguration studioConfiguration = authenticationChain.getStudioConfiguration();
-        SiteFeed siteFeed = siteService.getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE));
+        SiteService siteService = authenticationChain.getSiteService();
+        User user;
+        SiteFeed siteFeed;
+        try {
+            siteFeed = siteService.getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE));
+            user = getExistingUser(userServiceInternal, username);
+            if (user != null) {
+                if (StringUtils.isNoneEmpty(firstName, lastName, email) &&
+                        !(StringUtils.equals(firstName, user.getFirstName()) &&
+                          StringUtils.equals(lastName, user.getLastName()) &&
+                          StringUtils.equals(email, user.getEmail()))) {
+                    logger.debug("If user already exists in studio DB, update details.");
+                    user.setFirstName(firstName);
+                    user.setLastName(lastName);
+                    user.setEmail(email);
+                    try {
+                        userServiceInternal.updateUser(user);
+                        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                        auditLog.setOperation(OPERATION_UPDATE);
+                        auditLog.setActorId(username);
+                        auditLog.setSiteId(siteFeed.getId());
+                        auditLog.setPrimaryTargetId(username);
+                        auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
+                        auditLog.setPrimaryTargetValue(user.getUsername());
+                        auditServiceInternal.insertAuditLog(auditLog);
+
+                    } catch (Exception e) {
+                        logger.debug("Error updating user " + username +
+                                     " with data from authentication headers", e);
+
+                        throw new AuthenticationSystemException(
+                                "Error updating user " + username + " with data from " +
+                                "external authentication provider", e);
+                    }
+                }
+            } else {
+                logger.debug("User does not exist in studio db. Adding user " + username);
+                try {
+                    user = new User();
+                    user.setUsername(username);
+                    user.setPassword(UUID.randomUUID().toString());
+                    user.setFirstName(firstName);
+                    user.setLastName(lastName);
+                    user.setEmail(email);
+                    user.setExternallyManaged(true);
+                    user.setEnabled(true);
+                    user = userServiceInternal.createUser(user);
+                    AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                    auditLog.setOperation(OPERATION_CREATE);
+                    auditLog.setSiteId(siteFeed.getId());
+                    auditLog.setActorId(username);
+                    auditLog.setPrimaryTargetId(username);
+                    auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
+                    auditLog.setPrimaryTargetValue(user.getUsername());
+                    auditServiceInternal.insertAuditLog(auditLog);
+                } catch (UserAlreadyExistsException | ServiceLayerException e) {
+                    logger.debug("Error adding user " + username + " from authentication headers", e);
+
+                    throw new AuthenticationSystemException(
+                            "Error adding user " + username + " from external authentication provider", e);
+                }
+            }
+        } catch (ServiceLayerException e) {
+            logger.debug("Unknown service error", e);
+            throw  new AuthenticationSystemException("Unknown service error" , e);
+        }
+
+        logger.debug("Update user groups in database.");
         try {
-            Map<String, Object> params = new HashMap<>();
-            params.put(ORG_ID, DEFAULT_ORGANIZATION_ID);
-            params.put(GROUP_NAME, groupName);
-            params.put(GROUP_DESCRIPTION, "Externally managed group - " + groupName);
-            groupDao.createGroup(params);
+            syncUserGroups(user, groupNames, siteFeed, authenticationChain);
         } catch (Exception e) {
-            logger.debug("Error creating group", e);
+            logger.debug("Error updating user groups " + groupNames + " with data from authentication headers", e);
         }
+    }
 
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put(GROUP_NAME, groupName);
-        Group group = groupDao.getGroupByName(params);
-        if (group != null) {
-            List<String> usernames = new ArrayList<String>();
-            params = new HashMap<>();
-            params.put(USER_ID, -1);
-            params.put(USERNAME, username);
-            User user = userDao.getUserByIdOrUsername(params);
-            List<Long> users = new ArrayList<Long>();
-            users.add(user.getId());
-
-            params = new HashMap<>();
-            params.put(USER_IDS, users);
-            params.put(GROUP_ID, group.getId());
-
-            try {
-                groupDao.addGroupMembers(params);
-                AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                auditLog.setOperation(OPERATION_ADD_MEMBERS);
-                auditLog.setSiteId(siteFeed.getId());
-                auditLog.setActorId(username);
-                auditLog.setPrimaryTargetId(group.getGroupName() + ":" + user.getUsername());
-                auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
-                auditLog.setPrimaryTargetValue(user.getUsername());
-                auditServiceInternal.insertAuditLog(auditLog);
-            } catch (Exception e) {
-                logger.debug("Unknown database error", e);
-            }
+    /**
+     * Add the user to the groups it is not a member of yet, creating the missing groups, with one statement each
+     */
+    protected void syncUserGroups(User user, List<String> groupNames, SiteFeed siteFeed,
+                                  AuthenticationChain authenticationChain)
+            throws UserNotFoundException, ServiceLayerException {
+        if (groupNames.isEmpty()) {
+            return;
+        }
+        UserServiceInternal userServiceInternal = authenticationChain.getUserServiceInternal();
+        Set<String> currentGroups = userServiceInternal.getUserGroups(user.getId(), user.getUsername()).stream()
+                .map(Group::getGroupName)
+                .collect(Collectors.toSet());
+        List<String> missingGroups = groupNames.stream()
+                .filter(groupName -> !currentGroups.contains(groupName))
+                .filter(groupName -> {
+                    if (groupName.length() > GROUP_NAME_MAX_LENGTH) {
+                        logger.warn("Group " + groupName + " from authentication headers is longer than " +
+                                    GROUP_NAME_MAX_LENGTH + " characters, user " + user.getUsername() +
+                                    " will not be added to it");
+                        return false;
+                    }
+                    return true;
+                })
+                .collect(Collectors.toList());
+        if (missingGroups.isEmpty()) {
+            return;
+        }
+
+        GroupDAO groupDao = authenticationChain.getGroupDao();
+        Map<String, Object> params = new HashMap<>();
+        params.put(ORG_ID, DEFAULT_ORGANIZATION_ID);
+        params.put(GROUP_NAMES, missingGroups);
+        params.put(GROUP_DESCRIPTION, GROUP_DESCRIPTION_PREFIX);
+        groupDao.createGroups(params);
+
+        params = new HashMap<>();
+        params.put(USER_ID, user.getId());
+        params.put(GROUP_NAMES, missingGroups);
+        if (groupDao.addUserToGroups(params) > 0) {
+            authenticationChain.getSiteMembershipCache().invalidateMembership();
+        }
+
+        AuditServiceInternal auditServiceInternal = authenticationChain.getAuditServiceInternal();
+        for (String groupName : missingGroups) {
+            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+            auditLog.setOperation(OPERATION_ADD_MEMBERS);
+            auditLog.setSiteId(siteFeed.getId());
+            auditLog.setActorId(user.getUsername());
+            auditLog.setPrimaryTargetId(groupName + ":" + user.getUsername());
+            auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
+            auditLog.setPrimaryTargetValue(user.getUsername());
+            auditServiceInternal.insertAuditLog(auditLog);
         }
-        return true;
+    }
+
+    private User getExistingUser(UserServiceInternal userServiceInternal, String username)
+            throws ServiceLayerException {
+        try {
+            return userServiceInternal.getUserByIdOrUsername(-1, username);
+        } catch (UserNotFoundException e) {
+            return null;
+        }
+    }
+
+    private List<String> getGroupNames(String groups) {
+        if (StringUtils.isEmpty(groups)) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(groups.split(","))
+                .map(StringUtils::trim)
+                .filter(StringUtils::isNotEmpty)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private String getFingerprint(String username, String firstName, String lastName, String email,
+                                  List<String> groupNames) {
+        List<String> sortedGroups = new ArrayList<>(groupNames);
+        Collections.sort(sortedGroups);
+        return DigestUtils.sha256Hex(StringUtils.join(Arrays.asList(username, firstName, lastName, email,
+                StringUtils.join(sortedGroups, ',')), '\n'));
+    }
+
+    private boolean isVerified(String username, String fingerprint) {
+        VerifiedIdentity identity = verifiedIdentities.get(username);
+        return identity != null && identity.expiresAt > System.currentTimeMillis() &&
+               identity.fingerprint.equals(fingerprint);
     }
 
     public String getSecureKeyHeader() {
@@ -333,4 +412,23 @@ public class HeadersAuthenticationProvider extends BaseAuthenticationProvider {
     public void setLogoutUrl(String logoutUrl) {
         this.logoutUrl = logoutUrl;
     }
+
+    public int getIdentityCacheTimeToLive() {
+        return identityCacheTimeToLive;
+    }
+
+    public void setIdentityCacheTimeToLive(int identityCacheTimeToLive) {
+        this.identityCacheTimeToLive = identityCacheTimeToLive;
+    }
+
+    private static class VerifiedIdentity {
+
+        private final String fingerprint;
+        private final long expiresAt;
+
+        private VerifiedIdentity(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
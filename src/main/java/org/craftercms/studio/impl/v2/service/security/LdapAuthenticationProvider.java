@@ -16,6 +16,7 @@
 
 package org.craftercms.studio.impl.v2.service.security;
 
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
@@ -38,27 +39,36 @@ import org.craftercms.studio.api.v2.service.security.BaseAuthenticationProvider;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.model.AuthenticationType;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.ldap.AuthenticationException;
 import org.springframework.ldap.CommunicationException;
 import org.springframework.ldap.core.AuthenticatedLdapEntryContextMapper;
+import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.core.DirContextOperations;
 import org.springframework.ldap.core.LdapTemplate;
 import org.springframework.ldap.core.support.DefaultDirObjectFactory;
 import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.ldap.pool2.factory.PooledContextSource;
+import org.springframework.ldap.pool2.validation.DefaultDirContextValidator;
 import org.springframework.ldap.query.LdapQuery;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -77,10 +87,17 @@ import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USER_IDS;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_SYSTEM_SITE;
 import static org.springframework.ldap.query.LdapQueryBuilder.query;
 
-public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
+/**
+ * Authenticates users against an LDAP directory and synchronizes their details and groups into the database.
+ * The connections used to look up users come from a pool that lives as long as the provider, only the bind with
+ * the user credentials opens a new connection. The pool is closed by {@link #destroy()}.
+ */
+public class LdapAuthenticationProvider extends BaseAuthenticationProvider implements DisposableBean {
 
     private final static Logger logger = LoggerFactory.getLogger(LdapAuthenticationProvider.class);
 
+    public static final int DEFAULT_POOL_MAX_ACTIVE = 8;
+
     private String ldapUrl;
     private String ldapPassword;
     private String ldapUsername;
@@ -91,22 +108,22 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
     private String lastNameLdapAttribute;
     private String groupNameLdapAttribute;
     private String groupNameLdapAttributeRegex;
+    private Pattern groupNameLdapAttributePattern;
     private int groupNameLdapAttributeMatchIndex;
     private String emailLdapAttribute;
 
+    private int poolMaxActive = DEFAULT_POOL_MAX_ACTIVE;
+    private boolean poolTestOnBorrow = true;
+
+    private volatile LdapTemplate ldapTemplate;
+    private PooledContextSource pooledContextSource;
+
     @Override
     public boolean doAuthenticate(HttpServletRequest request, HttpServletResponse response,
                                   AuthenticationChain authenticationChain, String username, String password)
             throws AuthenticationSystemException, BadCredentialsException {
 
-        LdapContextSource lcs = new LdapContextSource();
-        lcs.setUrl(ldapUrl);
-        lcs.setUserDn(ldapUsername);
-        lcs.setPassword(ldapPassword);
-        lcs.setBase(ldapBaseContext);
-        lcs.setDirObjectFactory(DefaultDirObjectFactory.class);
-        lcs.afterPropertiesSet();
-        LdapTemplate ldapTemplate = new LdapTemplate(lcs);
+        LdapTemplate ldapTemplate = getLdapTemplate();
 
         // Mapper for user data if user is successfully authenticated
         AuthenticatedLdapEntryContextMapper<User> mapper = (dirContext, ldapEntryIdentification) -> {
@@ -181,30 +198,34 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
         }
 
         if (user != null) {
-            // When user authenticated against LDAP, upsert user data into studio database
+            // When user authenticated against LDAP, sync the user data into studio database
             UserServiceInternal userServiceInternal = authenticationChain.getUserServiceInternal();
             AuditServiceInternal auditServiceInternal = authenticationChain.getAuditServiceInternal();
             StudioConfiguration studioConfiguration = authenticationChain.getStudioConfiguration();
             SiteService siteService = authenticationChain.getSiteService();
+            Set<String> currentGroups = Collections.emptySet();
             try {
                 SiteFeed siteFeed = siteService.getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE));
-                if (userServiceInternal.userExists(-1, username)) {
-                    try {
-                        userServiceInternal.updateUser(user);
-                    } catch (UserNotFoundException e) {
-                        // Shouldn't happen
-                        throw new IllegalStateException(e);
-                    }
-
-                    AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                    auditLog.setOperation(OPERATION_UPDATE);
-                    auditLog.setSiteId(siteFeed.getId());
-                    auditLog.setActorId(user.getUsername());
-                    auditLog.setPrimaryTargetId(user.getUsername());
-                    auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
-                    auditLog.setPrimaryTargetValue(user.getUsername());
-                    auditServiceInternal.insertAuditLog(auditLog);
+                User existingUser = getExistingUser(userServiceInternal, username);
+                if (existingUser != null) {
+                    currentGroups = getGroupNames(userServiceInternal, existingUser);
+                    if (!hasSameDetails(existingUser, user)) {
+                        try {
+                            userServiceInternal.updateUser(user);
+                        } catch (UserNotFoundException e) {
+                            // Shouldn't happen
+                            throw new IllegalStateException(e);
+                        }
 
+                        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                        auditLog.setOperation(OPERATION_UPDATE);
+                        auditLog.setSiteId(siteFeed.getId());
+                        auditLog.setActorId(user.getUsername());
+                        auditLog.setPrimaryTargetId(user.getUsername());
+                        auditLog.setPrimaryTargetType(TARGET_TYPE_USER);
+                        auditLog.setPrimaryTargetValue(user.getUsername());
+                        auditServiceInternal.insertAuditLog(auditLog);
+                    }
                 } else {
                     try {
                         userServiceInternal.createUser(user);
@@ -229,8 +250,14 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
                 throw  new AuthenticationSystemException("Unknown service error" , e);
             }
 
-            for (UserGroup userGroup : user.getGroups()) {
-                upsertUserGroup(userGroup.getGroup().getGroupName(), user.getUsername(), authenticationChain);
+            // Only the groups the user is not a member of yet need to be written
+            if (CollectionUtils.isNotEmpty(user.getGroups())) {
+                for (UserGroup userGroup : user.getGroups()) {
+                    String groupName = userGroup.getGroup().getGroupName();
+                    if (!currentGroups.contains(groupName)) {
+                        upsertUserGroup(groupName, user.getUsername(), authenticationChain);
+                    }
+                }
             }
 
             String token = createToken(user, authenticationChain);
@@ -244,6 +271,101 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
         }
     }
 
+    /**
+     * Get the LDAP template, the first call creates the pooled context source shared by all the logins
+     *
+     * @return LDAP template
+     */
+    protected LdapTemplate getLdapTemplate() {
+        LdapTemplate template = ldapTemplate;
+        if (template == null) {
+            synchronized (this) {
+                template = ldapTemplate;
+                if (template == null) {
+                    template = new LdapTemplate(createContextSource());
+                    ldapTemplate = template;
+                }
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Close the pooled connections, a login after this call creates a new pool
+     */
+    @Override
+    public void destroy() {
+        PooledContextSource pool;
+        synchronized (this) {
+            pool = pooledContextSource;
+            pooledContextSource = null;
+            ldapTemplate = null;
+        }
+        if (pool != null) {
+            try {
+                pool.destroy();
+            } catch (Exception e) {
+                logger.error("Failed to close the LDAP connection pool for " + ldapUrl, e);
+            }
+        }
+    }
+
+    synchronized PooledContextSource getPooledContextSource() {
+        return pooledContextSource;
+    }
+
+    private ContextSource createContextSource() {
+        LdapContextSource lcs = new LdapContextSource();
+        lcs.setUrl(ldapUrl);
+        lcs.setUserDn(ldapUsername);
+        lcs.setPassword(ldapPassword);
+        lcs.setBase(ldapBaseContext);
+        lcs.setDirObjectFactory(DefaultDirObjectFactory.class);
+        lcs.setPooled(false);
+        lcs.afterPropertiesSet();
+
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMaxTotalPerKey(poolMaxActive);
+        poolConfig.setMaxIdlePerKey(poolMaxActive);
+        poolConfig.setTestOnBorrow(poolTestOnBorrow);
+        poolConfig.setTestWhileIdle(poolTestOnBorrow);
+
+        pooledContextSource = new PooledContextSource(poolConfig);
+        pooledContextSource.setContextSource(lcs);
+        pooledContextSource.setDirContextValidator(new DefaultDirContextValidator());
+
+        return new AuthenticationContextSource(pooledContextSource, lcs);
+    }
+
+    private User getExistingUser(UserServiceInternal userServiceInternal, String username)
+            throws ServiceLayerException {
+        try {
+            return userServiceInternal.getUserByIdOrUsername(-1, username);
+        } catch (UserNotFoundException e) {
+            return null;
+        }
+    }
+
+    private Set<String> getGroupNames(UserServiceInternal userServiceInternal, User user)
+            throws ServiceLayerException {
+        try {
+            return userServiceInternal.getUserGroups(user.getId(), user.getUsername()).stream()
+                    .map(Group::getGroupName)
+                    .collect(Collectors.toSet());
+        } catch (UserNotFoundException e) {
+            return Collections.emptySet();
+        }
+    }
+
+    private boolean hasSameDetails(User existingUser, User user) {
+        return StringUtils.equals(StringUtils.defaultString(existingUser.getEmail()),
+                                  StringUtils.defaultString(user.getEmail())) &&
+               StringUtils.equals(StringUtils.defaultString(existingUser.getFirstName()),
+                                  StringUtils.defaultString(user.getFirstName())) &&
+               StringUtils.equals(StringUtils.defaultString(existingUser.getLastName()),
+                                  StringUtils.defaultString(user.getLastName()));
+    }
+
     private void extractGroupsFromAttribute(User user, String groupNameAttribName, Attribute groupNameAttrib)
             throws NamingException {
         if (groupNameAttrib != null && groupNameAttrib.size() > 0) {
@@ -263,8 +385,7 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
     }
 
     private String extractGroupNameFromAttributeValue(String groupAttributeValue) {
-        Pattern pattern = Pattern.compile(groupNameLdapAttributeRegex);
-        Matcher matcher = pattern.matcher(groupAttributeValue);
+        Matcher matcher = groupNameLdapAttributePattern.matcher(groupAttributeValue);
         if (matcher.matches()) {
             return matcher.group(groupNameLdapAttributeMatchIndex);
         }
@@ -316,7 +437,9 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
             params.put(USER_IDS, users);
             params.put(GROUP_ID, group.getId());
             try {
-                groupDao.addGroupMembers(params);
+                if (groupDao.addGroupMembers(params) > 0) {
+                    authenticationChain.getSiteMembershipCache().invalidateMembership();
+                }
                 SiteFeed siteFeed =
                         siteService.getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE));
                 AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
@@ -404,6 +527,8 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
 
     public void setGroupNameLdapAttributeRegex(String groupNameLdapAttributeRegex) {
         this.groupNameLdapAttributeRegex = groupNameLdapAttributeRegex;
+        this.groupNameLdapAttributePattern =
+                groupNameLdapAttributeRegex != null ? Pattern.compile(groupNameLdapAttributeRegex) : null;
     }
 
     public int getGroupNameLdapAttributeMatchIndex() {
@@ -421,4 +546,50 @@ public class LdapAuthenticationProvider extends BaseAuthenticationProvider {
     public void setEmailLdapAttribute(String emailLdapAttribute) {
         this.emailLdapAttribute = emailLdapAttribute;
     }
+
+    public int getPoolMaxActive() {
+        return poolMaxActive;
+    }
+
+    public void setPoolMaxActive(int poolMaxActive) {
+        this.poolMaxActive = poolMaxActive;
+    }
+
+    public boolean isPoolTestOnBorrow() {
+        return poolTestOnBorrow;
+    }
+
+    public void setPoolTestOnBorrow(boolean poolTestOnBorrow) {
+        this.poolTestOnBorrow = poolTestOnBorrow;
+    }
+
+    /**
+     * Looks up users with pooled connections and binds with the user credentials on a new connection, the pool
+     * doesn't support binding as a different principal
+     */
+    private static class AuthenticationContextSource implements ContextSource {
+
+        private final ContextSource pooledContextSource;
+        private final ContextSource contextSource;
+
+        private AuthenticationContextSource(ContextSource pooledContextSource, ContextSource contextSource) {
+            this.pooledContextSource = pooledContextSource;
+            this.contextSource = contextSource;
+        }
+
+        @Override
+        public DirContext getReadOnlyContext() {
+            return pooledContextSource.getReadOnlyContext();
+        }
+
+        @Override
+        public DirContext getReadWriteContext() {
+            return pooledContextSource.getReadWriteContext();
+        }
+
+        @Override
+        public DirContext getContext(String principal, String credentials) {
+            return contextSource.getContext(principal, credentials);
+        }
+    }
 }
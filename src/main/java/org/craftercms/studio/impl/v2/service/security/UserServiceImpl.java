@@ -33,7 +33,6 @@ import org.craftercms.commons.security.permissions.DefaultPermission;
 import org.craftercms.commons.security.permissions.annotations.HasPermission;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
-import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.exception.security.AuthenticationException;
 import org.craftercms.studio.api.v1.exception.security.GroupNotFoundException;
 import org.craftercms.studio.api.v1.exception.security.PasswordDoesNotMatchException;
@@ -53,6 +52,7 @@ import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.service.security.UserService;
 import org.craftercms.studio.api.v2.service.security.internal.GroupServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.service.system.InstanceService;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
@@ -73,7 +73,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -118,6 +117,7 @@ public class UserServiceImpl implements UserService {
     private JavaMailSender emailService;
     private JavaMailSender emailServiceNoAuth;
     private InstanceService instanceService;
+    private SiteMembershipCache siteMembershipCache;
 
     @Override
     @HasPermission(type = DefaultPermission.class, action = "read_users")
@@ -288,53 +288,51 @@ public class UserServiceImpl implements UserService {
     @HasPermission(type = DefaultPermission.class, action = "read_users")
     public List<Site> getUserSites(long userId, String username) throws ServiceLayerException, UserNotFoundException {
         List<Site> sites = new ArrayList<>();
-        Set<String> allSites = siteService.getAllAvailableSites();
-        List<Group> userGroups = userServiceInternal.getUserGroups(userId, username);
-        boolean isSysAdmin = userGroups.stream().anyMatch(group -> group.getGroupName().equals(SYSTEM_ADMIN_GROUP));
+        Set<String> userGroups = siteMembershipCache.getUserGroups(userId, username);
+        boolean isSysAdmin = userGroups.contains(SYSTEM_ADMIN_GROUP);
 
         // Iterate all sites. If the user has any of the site groups, it has access to the site
-        for (String siteId : allSites) {
-            List<String> siteGroups = groupServiceInternal.getSiteGroups(siteId);
-            if (isSysAdmin || userGroups.stream().anyMatch(userGroup -> siteGroups.contains(userGroup.getGroupName()))) {
-                try {
-                    SiteFeed siteFeed = siteService.getSite(siteId);
-                    Site site = new Site();
-                    site.setSiteId(siteFeed.getSiteId());
-                    site.setDesc(siteFeed.getDescription());
-
-                    sites.add(site);
-                } catch (SiteNotFoundException e) {
-                    logger.error("Site not found: {0}", e, siteId);
-                }
+        for (SiteFeed siteFeed : siteService.getAllAvailableSiteFeeds()) {
+            if (isSysAdmin || isSiteMember(userGroups, siteFeed.getSiteId())) {
+                Site site = new Site();
+                site.setSiteId(siteFeed.getSiteId());
+                site.setDesc(siteFeed.getDescription());
+
+                sites.add(site);
             }
         }
 
         return sites;
     }
 
+    protected boolean isSiteMember(Set<String> userGroups, String siteId) {
+        try {
+            Set<String> siteGroups = siteMembershipCache.getRoleMappings(siteId).keySet();
+            return !Collections.disjoint(userGroups, siteGroups);
+        } catch (ServiceLayerException e) {
+            logger.error("Error getting groups for site {0}", e, siteId);
+            return false;
+        }
+    }
+
     @Override
     @HasPermission(type = DefaultPermission.class, action = "read_users")
     public List<String> getUserSiteRoles(long userId, String username, String site)
             throws ServiceLayerException, UserNotFoundException {
-        List<Group> groups = userServiceInternal.getUserGroups(userId, username);
+        Set<String> groups = siteMembershipCache.getUserGroups(userId, username);
 
         if (CollectionUtils.isNotEmpty(groups)) {
-            Map<String, List<String>> roleMappings = configurationService.geRoleMappings(site);
+            Map<String, List<String>> roleMappings = siteMembershipCache.getRoleMappings(site);
             Set<String> userRoles = new LinkedHashSet<>();
 
             if (MapUtils.isNotEmpty(roleMappings)) {
-                for (Group group : groups) {
-                    String groupName = group.getGroupName();
-                    if (groupName.equals(SYSTEM_ADMIN_GROUP)) {
-                        // If sysadmin, return all roles
-                        Collection<List<String>> roleSets = roleMappings.values();
-
-                        for (List<String> roleSet : roleSets) {
-                            userRoles.addAll(roleSet);
-                        }
-
-                        break;
-                    } else {
+                if (groups.contains(SYSTEM_ADMIN_GROUP)) {
+                    // If sysadmin, return all roles
+                    for (List<String> roleSet : roleMappings.values()) {
+                        userRoles.addAll(roleSet);
+                    }
+                } else {
+                    for (String groupName : groups) {
                         List<String> roles = roleMappings.get(groupName);
                         if (CollectionUtils.isNotEmpty(roles)) {
                             userRoles.addAll(roles);
@@ -710,4 +708,12 @@ public class UserServiceImpl implements UserService {
     public void setInstanceService(InstanceService instanceService) {
         this.instanceService = instanceService;
     }
+
+    public SiteMembershipCache getSiteMembershipCache() {
+        return siteMembershipCache;
+    }
+
+    public void setSiteMembershipCache(SiteMembershipCache siteMembershipCache) {
+        this.siteMembershipCache = siteMembershipCache;
+    }
 }
@@ -34,6 +34,7 @@ import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.exception.ConfigurationException;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.service.security.internal.GroupServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_DESCRIPTION;
@@ -52,6 +53,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
     private GroupDAO groupDao;
     private UserServiceInternal userServiceInternal;
     private ConfigurationService configurationService;
+    private SiteMembershipCache siteMembershipCache;
 
     @Override
     public Group getGroup(long groupId) throws GroupNotFoundException, ServiceLayerException {
@@ -192,6 +194,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             groupDao.updateGroup(params);
+            siteMembershipCache.invalidateMembership();
 
             return group;
         } catch (Exception e) {
@@ -212,6 +215,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             groupDao.deleteGroups(params);
+            siteMembershipCache.invalidateMembership();
         } catch (Exception e) {
             throw new ServiceLayerException("Unknown database error", e);
         }
@@ -266,6 +270,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             groupDao.addGroupMembers(params);
+            siteMembershipCache.invalidateMembership();
 
             return users;
         } catch (Exception e) {
@@ -288,6 +293,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             groupDao.removeGroupMembers(params);
+            siteMembershipCache.invalidateMembership();
         } catch (Exception e) {
             throw new ServiceLayerException("Unknown database error", e);
         }
@@ -332,4 +338,12 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
         this.configurationService = configurationService;
     }
 
+    public SiteMembershipCache getSiteMembershipCache() {
+        return siteMembershipCache;
+    }
+
+    public void setSiteMembershipCache(SiteMembershipCache siteMembershipCache) {
+        this.siteMembershipCache = siteMembershipCache;
+    }
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v2.service.security.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+import org.craftercms.studio.api.v2.dal.Group;
+import org.craftercms.studio.api.v2.exception.ConfigurationException;
+import org.craftercms.studio.api.v2.service.config.ConfigurationService;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+
+/**
+ * Keeps the groups of each user and the role mappings of each site. Entries are versioned: group and membership
+ * changes invalidate the groups of all users at once, and configuration changes invalidate the role mappings of their
+ * site. An entry loaded while an invalidation happens keeps the old version, so it is never served. Changes made by
+ * other cluster nodes or pulled from a remote repository are picked up when the entries expire.
+ */
+public class SiteMembershipCacheImpl implements SiteMembershipCache {
+
+    private UserServiceInternal userServiceInternal;
+    private ConfigurationService configurationService;
+
+    /**
+     * Maximum time an entry is used, in milliseconds
+     */
+    private long timeToLive = TimeUnit.MINUTES.toMillis(5);
+
+    private final AtomicLong membershipVersion = new AtomicLong();
+    private final Map<String, Long> siteVersions = new ConcurrentHashMap<>();
+    private final Map<String, Entry<Set<String>>> userGroups = new ConcurrentHashMap<>();
+    private final Map<String, Entry<Map<String, List<String>>>> roleMappings = new ConcurrentHashMap<>();
+
+    @Override
+    public Set<String> getUserGroups(long userId, String username)
+            throws UserNotFoundException, ServiceLayerException {
+        String key = StringUtils.isNotEmpty(username) ? username : "#" + userId;
+        long version = membershipVersion.get();
+        Entry<Set<String>> entry = userGroups.get(key);
+        if (entry == null || !entry.isValid(version)) {
+            Set<String> groupNames = new LinkedHashSet<>();
+            for (Group group : userServiceInternal.getUserGroups(userId, username)) {
+                groupNames.add(group.getGroupName());
+            }
+            entry = new Entry<>(version, timeToLive, Collections.unmodifiableSet(groupNames));
+            userGroups.put(key, entry);
+        }
+        return entry.value;
+    }
+
+    @Override
+    public Map<String, List<String>> getRoleMappings(String siteId) throws ServiceLayerException {
+        long version = siteVersions.getOrDefault(siteId, 0L);
+        Entry<Map<String, List<String>>> entry = roleMappings.get(siteId);
+        if (entry == null || !entry.isValid(version)) {
+            try {
+                entry = new Entry<>(version, timeToLive,
+                        Collections.unmodifiableMap(configurationService.geRoleMappings(siteId)));
+            } catch (ConfigurationException e) {
+                throw new ServiceLayerException("Unable to get role mappings config for site '" + siteId + "'", e);
+            }
+            roleMappings.put(siteId, entry);
+        }
+        return entry.value;
+    }
+
+    @Override
+    public void invalidateMembership() {
+        membershipVersion.incrementAndGet();
+    }
+
+    @Override
+    public void invalidateSite(String siteId) {
+        siteVersions.merge(siteId, 1L, Long::sum);
+    }
+
+    public UserServiceInternal getUserServiceInternal() {
+        return userServiceInternal;
+    }
+
+    public void setUserServiceInternal(UserServiceInternal userServiceInternal) {
+        this.userServiceInternal = userServiceInternal;
+    }
+
+    public ConfigurationService getConfigurationService() {
+        return configurationService;
+    }
+
+    public void setConfigurationService(ConfigurationService configurationService) {
+        this.configurationService = configurationService;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = TimeUnit.SECONDS.toMillis(timeToLive);
+    }
+
+    private static class Entry<T> {
+
+        private final long version;
+        private final long expiration;
+        private final T value;
+
+        private Entry(long version, long timeToLive, T value) {
+            this.version = version;
+            this.expiration = System.currentTimeMillis() + timeToLive;
+            this.value = value;
+        }
+
+        private boolean isValid(long currentVersion) {
+            return version == currentVersion && System.currentTimeMillis() < expiration;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.craftercms.studio.api.v2.dal.UserDAO;
 import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.exception.PasswordRequirementsFailedException;
 import org.craftercms.studio.api.v2.service.security.internal.GroupServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 
@@ -64,6 +65,7 @@ public class UserServiceInternalImpl implements UserServiceInternal {
     private UserDAO userDao;
     private GroupServiceInternal groupServiceInternal;
     private StudioConfiguration studioConfiguration;
+    private SiteMembershipCache siteMembershipCache;
 
     @Override
     public User getUserByIdOrUsername(long userId, String username) throws ServiceLayerException,
@@ -234,6 +236,7 @@ public class UserServiceInternalImpl implements UserServiceInternal {
 
         try {
             userDao.deleteUsers(params);
+            siteMembershipCache.invalidateMembership();
         } catch (Exception e) {
             throw new ServiceLayerException("Unknown database error", e);
         }
@@ -388,4 +391,12 @@ public class UserServiceInternalImpl implements UserServiceInternal {
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
         this.studioConfiguration = studioConfiguration;
     }
+
+    public SiteMembershipCache getSiteMembershipCache() {
+        return siteMembershipCache;
+    }
+
+    public void setSiteMembershipCache(SiteMembershipCache siteMembershipCache) {
+        this.siteMembershipCache = siteMembershipCache;
+    }
 }
@@ -16,11 +16,23 @@
 
 package org.craftercms.studio.impl.v2.service.webdav;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FilenameUtils;
@@ -38,11 +50,16 @@ import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.webdav.WebDavItem;
 import org.craftercms.studio.api.v2.service.webdav.WebDavService;
 import org.craftercms.studio.impl.v1.util.config.profiles.SiteAwareConfigProfileLoader;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.MimeType;
 import org.springframework.web.util.UriUtils;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
 
+import static org.apache.http.HttpStatus.SC_METHOD_NOT_ALLOWED;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
 import static org.craftercms.commons.file.stores.WebDavUtils.createClient;
 import static org.springframework.util.MimeTypeUtils.ALL_VALUE;
 
@@ -57,6 +74,13 @@ public class WebDavServiceImpl implements WebDavService {
 
     public static final String FILTER_ALL_ITEMS = "item";
 
+    private static final String UPLOAD_THREAD_PREFIX = "webdav-upload-";
+
+    /**
+     * Maximum number of folders remembered as existing, expired entries are dropped when it is reached.
+     */
+    private static final int MAX_KNOWN_FOLDERS = 10000;
+
     protected String urlPattern;
 
     /**
@@ -69,6 +93,26 @@ public class WebDavServiceImpl implements WebDavService {
      */
     protected Charset charset = Charset.defaultCharset();
 
+    /**
+     * Time in milliseconds a remote folder is assumed to exist after it was found or created.
+     */
+    protected long folderCacheTtl = 60000;
+
+    /**
+     * Maximum number of files of a multiple upload sent at the same time.
+     */
+    protected int uploadConcurrency = 4;
+
+    /**
+     * Idle clients by site and profile, the clients are reused to keep their connections to the server open.
+     */
+    protected Map<String, ClientPool> clientPools = new ConcurrentHashMap<>();
+
+    /**
+     * Expiration time of the remote folders known to exist, by folder URL.
+     */
+    protected Map<String, Long> knownFolders = new ConcurrentHashMap<>();
+
     public WebDavServiceImpl(final String urlPattern, final SiteAwareConfigProfileLoader<WebDavProfile> profileLoader) {
         this.urlPattern = urlPattern;
         this.profileLoader = profileLoader;
@@ -82,6 +126,37 @@ public class WebDavServiceImpl implements WebDavService {
         }
     }
 
+    /**
+     * Returns the pool of clients for the given profile, it is only created the first time or when the connection
+     * settings of the profile change.
+     * @param siteId the id of the site
+     * @param profileId the id of the profile
+     * @param profile the profile
+     * @return the pool of clients
+     */
+    protected ClientPool getClientPool(String siteId, String profileId, WebDavProfile profile) {
+        String key = siteId + ":" + profileId;
+        ClientPool pool = clientPools.get(key);
+        if (pool == null || !pool.isFor(profile)) {
+            pool = clientPools.compute(key, (k, current) -> {
+                if (current != null && current.isFor(profile)) {
+                    return current;
+                }
+                if (current != null) {
+                    current.close();
+                }
+                logger.debug("Creating WebDAV client pool for profile {0} of site {1}", profileId, siteId);
+                return new ClientPool(profile, uploadConcurrency);
+            });
+        }
+        return pool;
+    }
+
+    public void destroy() {
+        clientPools.values().forEach(ClientPool::close);
+        clientPools.clear();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -96,7 +171,8 @@ public class WebDavServiceImpl implements WebDavService {
         WebDavProfile profile = getProfile(siteId, profileId);
         String listPath = StringUtils.appendIfMissing(profile.getBaseUrl(),"/");
         MimeType filterType;
-        Sardine sardine = createClient(profile);
+        ClientPool pool = getClientPool(siteId, profileId, profile);
+        Sardine sardine = pool.borrow();
         try {
             if(StringUtils.isEmpty(type) || type.equals(FILTER_ALL_ITEMS)) {
                 filterType = MimeType.valueOf(ALL_VALUE);
@@ -113,12 +189,18 @@ public class WebDavServiceImpl implements WebDavService {
                 }
             }
 
-            if (!sardine.exists(listPath)) {
-                logger.debug("Folder {0} doesn't exist", listPath);
-                return Collections.emptyList();
-            }
             logger.debug("Listing resources at {0}", listPath);
-            List<DavResource> resources = sardine.list(listPath, 1, true);
+            List<DavResource> resources;
+            try {
+                resources = sardine.list(listPath, 1, true);
+            } catch (SardineException e) {
+                if (e.getStatusCode() == SC_NOT_FOUND) {
+                    logger.debug("Folder {0} doesn't exist", listPath);
+                    return Collections.emptyList();
+                }
+                throw e;
+            }
+            addKnownFolder(listPath);
             logger.debug("Found {0} resources at {0}", resources.size(), listPath);
             return resources.stream()
                 .skip(1) // to avoid repeating the folder being listed
@@ -127,6 +209,8 @@ public class WebDavServiceImpl implements WebDavService {
                 .collect(Collectors.toList());
         } catch (Exception e) {
             throw new WebDavException("Error listing resources", e);
+        } finally {
+            pool.release(sardine);
         }
     }
 
@@ -172,40 +256,256 @@ public class WebDavServiceImpl implements WebDavService {
                              final InputStream content)
         throws WebDavException {
         WebDavProfile profile = getProfile(siteId, profileId);
-        String uploadUrl = StringUtils.appendIfMissing(profile.getBaseUrl(), "/");
+        ClientPool pool = getClientPool(siteId, profileId, profile);
+        Sardine sardine = pool.borrow();
         try {
-            Sardine sardine = createClient(profile);
+            String uploadUrl = createFolders(sardine, profile, path);
+            return put(sardine, profileId, path, uploadUrl, filename, content);
+        } catch (Exception e ) {
+            throw new WebDavException("Error uploading file", e);
+        } finally {
+            pool.release(sardine);
+        }
+    }
 
-            if(StringUtils.isNotEmpty(path)) {
-                String[] folders = StringUtils.split(path, "/");
-
-                for(String folder : folders) {
-                    uploadUrl += StringUtils.appendIfMissing(folder, "/");
-
-                    logger.debug("Checking folder {0}", uploadUrl);
-                    if(!sardine.exists(uploadUrl)) {
-                        logger.debug("Creating folder {0}", uploadUrl);
-                        sardine.createDirectory(uploadUrl);
-                        logger.debug("Folder {0} created", uploadUrl);
-                    } else {
-                        logger.debug("Folder {0} already exists", uploadUrl);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @ValidateParams
+    @HasPermission(type = DefaultPermission.class, action = "webdav_write")
+    public List<WebDavItem> upload(@ValidateStringParam(name = "siteId") @ProtectedResourceId("siteId")
+                                   final String siteId,
+                                   @ValidateStringParam(name = "profileId") final String profileId,
+                                   @ValidateStringParam(name = "path") final String path,
+                                   final Map<String, ? extends InputStreamSource> files)
+        throws WebDavException {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        WebDavProfile profile = getProfile(siteId, profileId);
+        ClientPool pool = getClientPool(siteId, profileId, profile);
+        String uploadUrl;
+        Sardine sardine = pool.borrow();
+        try {
+            uploadUrl = createFolders(sardine, profile, path);
+        } catch (Exception e) {
+            throw new WebDavException("Error creating folder " + path, e);
+        } finally {
+            pool.release(sardine);
+        }
+
+        int threads = Math.max(1, Math.min(uploadConcurrency, files.size()));
+        logger.debug("Uploading {0} files to {1} using {2} threads", files.size(), uploadUrl, threads);
+        ExecutorService executor =
+            Executors.newFixedThreadPool(threads, new CustomizableThreadFactory(UPLOAD_THREAD_PREFIX));
+        List<Future<WebDavItem>> results = new ArrayList<>(files.size());
+        try {
+            // clients are not shared between threads, each upload uses its own
+            files.forEach((filename, source) -> results.add(executor.submit(() -> {
+                Sardine client = pool.borrow();
+                try (InputStream content = source.getInputStream()) {
+                    return put(client, profileId, path, uploadUrl, filename, content);
+                } finally {
+                    pool.release(client);
+                }
+            })));
+        } finally {
+            executor.shutdown();
+        }
+
+        List<WebDavItem> items = new ArrayList<>(results.size());
+        try {
+            for (Future<WebDavItem> result : results) {
+                items.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            cancelUploads(executor);
+            throw new WebDavException("Error uploading file", e);
+        } catch (InterruptedException e) {
+            cancelUploads(executor);
+            Thread.currentThread().interrupt();
+            throw new WebDavException("Interrupted while uploading files", e);
+        }
+        return items;
+    }
+
+    /**
+     * Cancels the uploads not started yet and waits for the running ones to finish, so the sources are not read
+     * anymore once the upload returns
+     * @param executor the executor running the uploads
+     */
+    protected void cancelUploads(ExecutorService executor) {
+        executor.shutdownNow();
+        boolean interrupted = false;
+        boolean terminated = false;
+        while (!terminated) {
+            try {
+                terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+                if (!terminated) {
+                    logger.debug("Waiting for running uploads to finish");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Makes sure all the folders of the given path exist in the server, creating only the missing ones. Folders
+     * found or created recently are not checked again.
+     * @param sardine the client
+     * @param profile the profile
+     * @param path the relative path of the folder
+     * @return the URL of the folder
+     * @throws IOException if there is an error checking or creating the folders
+     */
+    protected String createFolders(Sardine sardine, WebDavProfile profile, String path) throws IOException {
+        String uploadUrl = StringUtils.appendIfMissing(profile.getBaseUrl(), "/");
+        List<String> folderUrls = new ArrayList<>();
+        if(StringUtils.isNotEmpty(path)) {
+            for(String folder : StringUtils.split(path, "/")) {
+                uploadUrl += StringUtils.appendIfMissing(folder, "/");
+                folderUrls.add(uploadUrl);
+            }
+        }
+        if (folderUrls.isEmpty() || isKnownFolder(uploadUrl)) {
+            return uploadUrl;
+        }
+
+        // most uploads go to folders that already exist, checking the deepest one is enough for those
+        logger.debug("Checking folder {0}", uploadUrl);
+        if (sardine.exists(uploadUrl)) {
+            logger.debug("Folder {0} already exists", uploadUrl);
+            folderUrls.forEach(this::addKnownFolder);
+            return uploadUrl;
+        }
+
+        boolean missing = false;
+        for (int i = 0; i < folderUrls.size(); i++) {
+            String folderUrl = folderUrls.get(i);
+            // once a folder is missing none of its children can exist, the last one was already checked
+            if (!missing && i < folderUrls.size() - 1) {
+                if (isKnownFolder(folderUrl)) {
+                    continue;
+                }
+                logger.debug("Checking folder {0}", folderUrl);
+                missing = !sardine.exists(folderUrl);
+            } else {
+                missing = true;
+            }
+            if (missing) {
+                logger.debug("Creating folder {0}", folderUrl);
+                try {
+                    sardine.createDirectory(folderUrl);
+                    logger.debug("Folder {0} created", folderUrl);
+                } catch (SardineException e) {
+                    // the folder was created by a concurrent upload
+                    if (e.getStatusCode() != SC_METHOD_NOT_ALLOWED) {
+                        throw e;
                     }
+                    logger.debug("Folder {0} already exists", folderUrl);
                 }
+            } else {
+                logger.debug("Folder {0} already exists", folderUrl);
             }
+            addKnownFolder(folderUrl);
+        }
+        return uploadUrl;
+    }
 
-            uploadUrl =  StringUtils.appendIfMissing(uploadUrl, "/");
-            String fileUrl = uploadUrl + UriUtils.encode(filename, charset.name());
+    protected WebDavItem put(Sardine sardine, String profileId, String path, String uploadUrl, String filename,
+                             InputStream content) throws IOException {
+        String fileUrl = uploadUrl + UriUtils.encode(filename, charset.name());
 
-            logger.debug("Starting upload of file {0}", filename);
-            logger.debug("Uploading file to {0}", fileUrl);
+        logger.debug("Starting upload of file {0}", filename);
+        logger.debug("Uploading file to {0}", fileUrl);
 
-            sardine.put(fileUrl, content);
-            logger.debug("Upload complete for file {0}", fileUrl);
+        sardine.put(fileUrl, content);
+        logger.debug("Upload complete for file {0}", fileUrl);
 
-            return new WebDavItem(filename, String.format(urlPattern, profileId, path, filename), false);
-        } catch (Exception e ) {
-            throw new WebDavException("Error uploading file", e);
+        return new WebDavItem(filename, String.format(urlPattern, profileId, path, filename), false);
+    }
+
+    protected boolean isKnownFolder(String folderUrl) {
+        Long expiration = knownFolders.get(folderUrl);
+        return expiration != null && expiration > System.currentTimeMillis();
+    }
+
+    protected void addKnownFolder(String folderUrl) {
+        long now = System.currentTimeMillis();
+        if (knownFolders.size() >= MAX_KNOWN_FOLDERS) {
+            knownFolders.values().removeIf(expiration -> expiration <= now);
+            if (knownFolders.size() >= MAX_KNOWN_FOLDERS) {
+                knownFolders.clear();
+            }
+        }
+        knownFolders.put(folderUrl, now + folderCacheTtl);
+    }
+
+    public void setFolderCacheTtl(long folderCacheTtl) {
+        this.folderCacheTtl = folderCacheTtl;
+    }
+
+    public void setUploadConcurrency(int uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    /**
+     * Idle clients for the connection settings of a profile. A {@link Sardine} client shares its request context
+     * between calls, so it is only used by one thread at a time and returned to the pool afterwards.
+     */
+    protected static class ClientPool {
+
+        protected final WebDavProfile profile;
+        protected final int maxIdle;
+        protected final Deque<Sardine> idle = new ConcurrentLinkedDeque<>();
+        protected volatile boolean closed;
+
+        protected ClientPool(WebDavProfile profile, int maxIdle) {
+            this.profile = profile;
+            this.maxIdle = maxIdle;
+        }
+
+        protected boolean isFor(WebDavProfile other) {
+            return Objects.equals(profile.getBaseUrl(), other.getBaseUrl()) &&
+                Objects.equals(profile.getUsername(), other.getUsername()) &&
+                Objects.equals(profile.getPassword(), other.getPassword());
+        }
+
+        protected Sardine borrow() {
+            Sardine sardine = idle.pollFirst();
+            return sardine != null? sardine : createClient(profile);
+        }
+
+        protected void release(Sardine sardine) {
+            // the size is only an approximation, a few more idle clients are harmless
+            if (!closed && idle.size() < maxIdle) {
+                idle.offerFirst(sardine);
+            } else {
+                shutdown(sardine);
+            }
         }
+
+        protected void close() {
+            closed = true;
+            Sardine sardine;
+            while ((sardine = idle.pollFirst()) != null) {
+                shutdown(sardine);
+            }
+        }
+
+        private static void shutdown(Sardine sardine) {
+            try {
+                sardine.shutdown();
+            } catch (IOException e) {
+                logger.debug("Error closing WebDAV client", e);
+            }
+        }
+
     }
 
 }
@@ -23,6 +23,11 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.sql.DataSource;
 
 import org.apache.commons.configuration2.HierarchicalConfiguration;
@@ -47,6 +52,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import static java.nio.file.Paths.get;
 import static org.craftercms.studio.api.v2.upgrade.UpgradeConstants.CONFIG_KEY_CONFIGURATIONS;
@@ -74,6 +80,8 @@ public class DefaultUpgradeManagerImpl implements UpgradeManager, ApplicationCon
 
     public static final String CONFIG_PIPELINE_SUFFIX = ".pipeline";
 
+    public static final String SITE_UPGRADE_THREAD_PREFIX = "site-upgrade-";
+
     /**
      * The git path of the version file.
      */
@@ -92,6 +100,11 @@ public class DefaultUpgradeManagerImpl implements UpgradeManager, ApplicationCon
     protected ContentRepository contentRepository;
     protected StudioConfiguration studioConfiguration;
 
+    /**
+     * Number of sites upgraded in parallel.
+     */
+    protected int sitePoolSize = 1;
+
     public static String getCurrentFile() {
         return currentFile.get();
     }
@@ -201,10 +214,43 @@ public class DefaultUpgradeManagerImpl implements UpgradeManager, ApplicationCon
             sites = jdbcTemplate.queryForList(SQL_QUERY_SITES, String.class);
         }
 
-        for(String site : sites) {
-            if (checkIfSiteRepoExists(site)) {
-                upgradeSite(site);
+        List<String> existingSites = sites.stream().filter(this::checkIfSiteRepoExists).collect(Collectors.toList());
+        if (existingSites.isEmpty()) {
+            return;
+        }
+
+        // Each site keeps its own version, so a site interrupted by a restart continues from its last step.
+        // Sites don't share repositories, so they can be upgraded in parallel once the system pipeline is done
+        int poolSize = Math.max(1, Math.min(sitePoolSize, existingSites.size()));
+        logger.info("Checking upgrades for {0} sites using {1} threads", existingSites.size(), poolSize);
+        ExecutorService executor =
+                Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory(SITE_UPGRADE_THREAD_PREFIX));
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            for (String site : existingSites) {
+                executor.execute(() -> {
+                    try {
+                        upgradeSite(site);
+                    } catch (Exception e) {
+                        logger.error("Unexpected error during upgrade for site " + site, e);
+                    } finally {
+                        logger.info("Finished upgrades for site {0} ({1} of {2})", site,
+                                completed.incrementAndGet(), existingSites.size());
+                    }
+                });
             }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for site upgrades, {0} of {1} finished", completed.get(),
+                        existingSites.size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new UpgradeException("Interrupted while upgrading sites", e);
         }
     }
 
@@ -345,4 +391,8 @@ public class DefaultUpgradeManagerImpl implements UpgradeManager, ApplicationCon
         this.studioConfiguration = studioConfiguration;
     }
 
+    public void setSitePoolSize(final int sitePoolSize) {
+        this.sitePoolSize = sitePoolSize;
+    }
+
 }
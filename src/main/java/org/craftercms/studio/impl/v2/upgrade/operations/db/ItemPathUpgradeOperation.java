@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.upgrade.operations.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.exception.UpgradeException;
+import org.craftercms.studio.api.v2.service.content.internal.ItemPathServiceInternal;
+import org.craftercms.studio.impl.v2.upgrade.operations.AbstractUpgradeOperation;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * Implementation of {@link org.craftercms.studio.api.v2.upgrade.UpgradeOperation} that populates the path
+ * dictionary with the paths already referenced by the dependency table and links the existing rows to it.
+ *
+ * @since 3.1.8
+ */
+public class ItemPathUpgradeOperation extends AbstractUpgradeOperation {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItemPathUpgradeOperation.class);
+
+    private static final String SQL_SELECT_SITES = "SELECT DISTINCT site FROM dependency";
+
+    private static final String SQL_SELECT_PATHS = "SELECT source_path FROM dependency WHERE site = ? " +
+            "UNION SELECT target_path FROM dependency WHERE site = ?";
+
+    private static final String SQL_UPDATE_SOURCE_IDS = "UPDATE dependency d INNER JOIN item_path p " +
+            "ON p.site = d.site AND p.path_hash = MD5(d.source_path) SET d.source_path_id = p.id WHERE d.site = ?";
+
+    private static final String SQL_UPDATE_TARGET_IDS = "UPDATE dependency d INNER JOIN item_path p " +
+            "ON p.site = d.site AND p.path_hash = MD5(d.target_path) SET d.target_path_id = p.id WHERE d.site = ?";
+
+    protected ItemPathServiceInternal itemPathServiceInternal;
+
+    protected int batchSize = 1000;
+
+    @Required
+    public void setItemPathServiceInternal(final ItemPathServiceInternal itemPathServiceInternal) {
+        this.itemPathServiceInternal = itemPathServiceInternal;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void execute(final String site) throws UpgradeException {
+        try (Connection connection = getConnection()) {
+            for (String siteId : getSites(connection)) {
+                logger.info("Populating the path dictionary for site {0}", siteId);
+                internPaths(connection, siteId);
+                updateIds(connection, SQL_UPDATE_SOURCE_IDS, siteId);
+                updateIds(connection, SQL_UPDATE_TARGET_IDS, siteId);
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw new UpgradeException("Error populating the path dictionary", e);
+        }
+    }
+
+    protected List<String> getSites(Connection connection) throws SQLException {
+        List<String> sites = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_SITES);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                sites.add(resultSet.getString(1));
+            }
+        }
+        return sites;
+    }
+
+    protected void internPaths(Connection connection, String siteId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_PATHS)) {
+            statement.setString(1, siteId);
+            statement.setString(2, siteId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (resultSet.next()) {
+                    batch.add(resultSet.getString(1));
+                    if (batch.size() == batchSize) {
+                        itemPathServiceInternal.internPaths(siteId, batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    itemPathServiceInternal.internPaths(siteId, batch);
+                }
+            }
+        }
+    }
+
+    protected void updateIds(Connection connection, String sql, String siteId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, siteId);
+            statement.executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v2.utils;
+
+/**
+ * Utility class with methods for building SQL query parameters.
+ */
+public class SqlUtils {
+
+    /**
+     * Escape character used by the {@code LIKE ... ESCAPE} clauses of the mappers
+     */
+    public static final char LIKE_ESCAPE = '\\';
+
+    private SqlUtils() {
+    }
+
+    /**
+     * Escapes the {@code LIKE} wildcards of the {@code value} so it is matched literally.
+     *
+     * @param value the value to escape
+     *
+     * @return the escaped value
+     */
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Returns a {@code LIKE} pattern matching every path under the {@code folder}, but not the folder itself.
+     *
+     * @param folder the folder path, without trailing slash
+     *
+     * @return the pattern
+     */
+    public static String likeDescendants(String folder) {
+        return escapeLike(folder) + "/%";
+    }
+
+}
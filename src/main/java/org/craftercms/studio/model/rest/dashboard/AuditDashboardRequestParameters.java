@@ -26,6 +26,7 @@ public class AuditDashboardRequestParameters {
     private String order;
     private int offset = 0;
     private int limit = 10;
+    private String cursor;
     AuditDashboardFilters filters;
 
     public String getSiteId() {
@@ -68,6 +69,14 @@ public class AuditDashboardRequestParameters {
         this.limit = limit;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public AuditDashboardFilters getFilters() {
         return filters;
     }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.model.search;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Holds the read permissions of a user in a site, used to filter the results of a search operation
+ */
+public class SearchPermissions {
+
+    /**
+     * Indicates if the user can read every path
+     */
+    protected boolean allowAll;
+
+    /**
+     * Regular expressions of the paths the user can read
+     */
+    protected Set<String> allowedPatterns = new LinkedHashSet<>();
+
+    /**
+     * Content types the user can not read even if the path is allowed
+     */
+    protected Set<String> deniedContentTypes = new LinkedHashSet<>();
+
+    public boolean isAllowAll() {
+        return allowAll;
+    }
+
+    public void setAllowAll(final boolean allowAll) {
+        this.allowAll = allowAll;
+    }
+
+    public Set<String> getAllowedPatterns() {
+        return allowedPatterns;
+    }
+
+    public void addAllowedPattern(final String pattern) {
+        allowedPatterns.add(pattern);
+    }
+
+    public Set<String> getDeniedContentTypes() {
+        return deniedContentTypes;
+    }
+
+    public void addDeniedContentType(final String contentType) {
+        deniedContentTypes.add(contentType);
+    }
+
+}
@@ -105,7 +105,7 @@ CREATE TABLE _meta (
   PRIMARY KEY (`version`)
 ) ;
 
-INSERT INTO _meta (version, studio_id) VALUES ('3.1.8.1', UUID()) ;
+INSERT INTO _meta (version, studio_id) VALUES ('3.1.8.5', UUID()) ;
 
 CREATE TABLE IF NOT EXISTS `audit` (
   `id`                        BIGINT(20)    NOT NULL AUTO_INCREMENT,
@@ -125,7 +125,10 @@ CREATE TABLE IF NOT EXISTS `audit` (
   KEY `audit_actor_idx` (`actor_id`),
   KEY `audit_site_idx` (`site_id`),
   KEY `audit_operation_idx` (`operation`),
-  KEY `audit_origin_idx` (`origin`)
+  KEY `audit_origin_idx` (`origin`),
+  KEY `audit_site_timestamp_idx` (`site_id`, `operation_timestamp`, `id`),
+  KEY `audit_timestamp_idx` (`operation_timestamp`, `id`),
+  KEY `audit_site_target_idx` (`site_id`, `primary_target_value`(255))
 )
   ENGINE = InnoDB
   DEFAULT CHARSET = utf8
@@ -153,9 +156,39 @@ CREATE TABLE IF NOT EXISTS `dependency` (
   `source_path` TEXT        NOT NULL,
   `target_path` TEXT        NOT NULL,
   `type`        VARCHAR(50) NOT NULL,
+  `source_path_id` BIGINT(20) NULL,
+  `target_path_id` BIGINT(20) NULL,
   PRIMARY KEY (`id`),
   KEY `dependency_site_idx` (`site`),
-  KEY `dependency_sourcepath_idx` (`source_path`(1000))
+  KEY `dependency_sourcepath_idx` (`source_path`(1000)),
+  KEY `dependency_source_path_id_idx` (`source_path_id`),
+  KEY `dependency_target_path_id_idx` (`target_path_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `item_path` (
+  `id`        BIGINT(20)  NOT NULL AUTO_INCREMENT,
+  `site`      VARCHAR(50) NOT NULL,
+  `path`      TEXT        NOT NULL,
+  `path_hash` CHAR(32)    NOT NULL,
+  `parent_id` BIGINT(20)  NULL,
+  `depth`     INT         NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE `uq_ip_site_path_hash` (`site`, `path_hash`),
+  KEY `item_path_parent_idx` (`parent_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `item_path_closure` (
+  `ancestor_id`   BIGINT(20) NOT NULL,
+  `descendant_id` BIGINT(20) NOT NULL,
+  `distance`      INT        NOT NULL,
+  PRIMARY KEY (`ancestor_id`, `descendant_id`),
+  KEY `item_path_closure_descendant_idx` (`descendant_id`)
 )
   ENGINE = InnoDB
   DEFAULT CHARSET = utf8
@@ -169,6 +202,7 @@ CREATE TABLE IF NOT EXISTS `item_state` (
   `system_processing` BIT(1)        NOT NULL,
   PRIMARY KEY (`object_id`),
   KEY `item_state_object_idx` (`object_id`),
+  KEY `item_state_site_state_idx` (`site`, `state`),
   UNIQUE `uq_is_site_path` (`site`, `path`(900))
 )
   ENGINE = InnoDB
@@ -181,7 +215,8 @@ CREATE TABLE IF NOT EXISTS `navigation_order_sequence` (
   `path`      TEXT         NOT NULL,
   `max_count` FLOAT        NOT NULL,
   PRIMARY KEY (`folder_id`),
-  KEY `navigationorder_folder_idx` (`folder_id`)
+  KEY `navigationorder_folder_idx` (`folder_id`),
+  KEY `navigationorder_site_path_idx` (`site`, `path`(255))
 )
   ENGINE = InnoDB
   DEFAULT CHARSET = utf8
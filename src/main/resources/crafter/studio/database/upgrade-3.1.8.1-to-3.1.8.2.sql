@@ -0,0 +1,7 @@
+ALTER TABLE `audit` ADD INDEX `audit_site_timestamp_idx` (`site_id`, `operation_timestamp`, `id`) ;
+
+ALTER TABLE `audit` ADD INDEX `audit_timestamp_idx` (`operation_timestamp`, `id`) ;
+
+ALTER TABLE `audit` ADD INDEX `audit_site_target_idx` (`site_id`, `primary_target_value`(255)) ;
+
+UPDATE _meta SET version = '3.1.8.2' ;
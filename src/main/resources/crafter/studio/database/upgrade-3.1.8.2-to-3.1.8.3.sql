@@ -0,0 +1,33 @@
+CREATE TABLE IF NOT EXISTS `item_path` (
+  `id`        BIGINT(20)  NOT NULL AUTO_INCREMENT,
+  `site`      VARCHAR(50) NOT NULL,
+  `path`      TEXT        NOT NULL,
+  `path_hash` CHAR(32)    NOT NULL,
+  `parent_id` BIGINT(20)  NULL,
+  `depth`     INT         NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE `uq_ip_site_path_hash` (`site`, `path_hash`),
+  KEY `item_path_parent_idx` (`parent_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `item_path_closure` (
+  `ancestor_id`   BIGINT(20) NOT NULL,
+  `descendant_id` BIGINT(20) NOT NULL,
+  `distance`      INT        NOT NULL,
+  PRIMARY KEY (`ancestor_id`, `descendant_id`),
+  KEY `item_path_closure_descendant_idx` (`descendant_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+ALTER TABLE `dependency` ADD COLUMN `source_path_id` BIGINT(20) NULL ;
+
+ALTER TABLE `dependency` ADD COLUMN `target_path_id` BIGINT(20) NULL ;
+
+ALTER TABLE `dependency` ADD INDEX `dependency_source_path_id_idx` (`source_path_id`) ;
+
+ALTER TABLE `dependency` ADD INDEX `dependency_target_path_id_idx` (`target_path_id`) ;
@@ -0,0 +1,3 @@
+ALTER TABLE `item_state` ADD INDEX `item_state_site_state_idx` (`site`, `state`) ;
+
+UPDATE _meta SET version = '3.1.8.4' ;
@@ -0,0 +1,3 @@
+ALTER TABLE `navigation_order_sequence` ADD INDEX `navigationorder_site_path_idx` (`site`, `path`(255)) ;
+
+UPDATE _meta SET version = '3.1.8.5' ;
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.craftercms.studio.impl.v1.repository.git.GitRepositoryMaintenance.ACTION_PRUNE;
+import static org.craftercms.studio.impl.v1.repository.git.GitRepositoryMaintenance.ACTION_REPACK;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class GitRepositoryMaintenanceTest {
+
+    private static final int BUSY_OBJECTS = 100000;
+    private static final int IDLE_OBJECTS = 10;
+
+    private File baseDir;
+    private GitRepositoryMaintenance maintenance;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("repository-maintenance").toFile();
+        // same defaults as studio-config.yaml
+        maintenance = new GitRepositoryMaintenance(6700, 50, 100, 336);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void testIdleRepositoryIsSkipped() throws Exception {
+        try (Repository busy = createRepository("busy", BUSY_OBJECTS, true);
+             Repository idle = createRepository("idle", IDLE_OBJECTS, true)) {
+            GitRepositoryMaintenance.Report idleReport = maintenance.maintain("idle", idle);
+            GitRepositoryMaintenance.Report busyReport = maintenance.maintain("busy", busy);
+
+            assertTrue(idleReport.isSkipped());
+            assertEquals(idleReport.getAfter().numberOfLooseObjects, IDLE_OBJECTS + 2L);
+            assertEquals(idleReport.getAfter().numberOfPackFiles, 0L);
+
+            assertEquals(busyReport.getActions(), Arrays.asList(ACTION_REPACK));
+            assertTrue(busyReport.getBefore().numberOfLooseObjects > BUSY_OBJECTS);
+            assertEquals(busyReport.getAfter().numberOfLooseObjects, 0L);
+            assertEquals(busyReport.getAfter().numberOfPackFiles, 1L);
+            assertEquals(busyReport.getAfter().numberOfPackedObjects, BUSY_OBJECTS + 2L);
+
+            // once maintained the repository is idle too
+            assertTrue(maintenance.maintain("busy", busy).isSkipped());
+        }
+    }
+
+    @Test
+    public void testRecentUnreachableObjectsAreKept() throws Exception {
+        try (Repository repository = createRepository("unreachable", BUSY_OBJECTS, false)) {
+            GitRepositoryMaintenance.Report report = maintenance.maintain("unreachable", repository);
+
+            assertEquals(report.getActions(), Arrays.asList(ACTION_REPACK, ACTION_PRUNE));
+            assertEquals(report.getAfter().numberOfLooseObjects, report.getBefore().numberOfLooseObjects);
+        }
+    }
+
+    /**
+     * Creates a repository with the given number of loose blobs, optionally referenced from a single commit
+     */
+    private Repository createRepository(String name, int objects, boolean reachable) throws IOException {
+        Repository repository = FileRepositoryBuilder.create(new File(baseDir, name + "/.git"));
+        repository.create();
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            TreeFormatter tree = new TreeFormatter();
+            for (int i = 0; i < objects; i++) {
+                ObjectId blob = inserter.insert(Constants.OBJ_BLOB,
+                        ("<page><id>" + i + "</id></page>").getBytes(StandardCharsets.UTF_8));
+                tree.append(String.format("%06d.xml", i), FileMode.REGULAR_FILE, blob);
+            }
+            ObjectId treeId = inserter.insert(tree);
+            if (reachable) {
+                PersonIdent author = new PersonIdent("test", "test@example.com");
+                CommitBuilder commit = new CommitBuilder();
+                commit.setTreeId(treeId);
+                commit.setAuthor(author);
+                commit.setCommitter(author);
+                commit.setMessage("Synthetic content");
+                ObjectId commitId = inserter.insert(commit);
+                inserter.flush();
+                RefUpdate update = repository.updateRef(Constants.HEAD);
+                update.setNewObjectId(commitId);
+                update.forceUpdate();
+            }
+            inserter.flush();
+        }
+        return repository;
+    }
+}
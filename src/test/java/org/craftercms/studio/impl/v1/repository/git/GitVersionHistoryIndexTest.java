@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class GitVersionHistoryIndexTest {
+
+    private File baseDir;
+    private List<Git> repositories;
+    private GitVersionHistoryIndex index;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("version-history-index").toFile();
+        repositories = new ArrayList<>();
+        index = new GitVersionHistoryIndex(false, 2, Runnable::run);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        for (Git git : repositories) {
+            git.close();
+        }
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void testHistoryIsNewestFirst() throws Exception {
+        Git git = createRepository("site");
+        ObjectId first = commit(git, "index.xml", "first");
+        commit(git, "other.xml", "other");
+        ObjectId second = commit(git, "index.xml", "second");
+
+        assertEquals(getHistory("site", git, "index.xml"), Arrays.asList(second, first));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRepositoryIsEvicted() throws Exception {
+        Git first = createRepository("first");
+        Git second = createRepository("second");
+        Git third = createRepository("third");
+        ObjectId firstCommit = commit(first, "index.xml", "first");
+        commit(second, "index.xml", "second");
+        commit(third, "index.xml", "third");
+
+        getHistory("first", first, "index.xml");
+        getHistory("second", second, "index.xml");
+        // the first repository becomes the most recently used one
+        getHistory("first", first, "index.xml");
+        getHistory("third", third, "index.xml");
+
+        assertTrue(index.isIndexed("first"));
+        assertFalse(index.isIndexed("second"));
+        assertTrue(index.isIndexed("third"));
+
+        // an evicted repository is indexed again when its history is requested
+        getHistory("second", second, "index.xml");
+        assertTrue(index.isIndexed("second"));
+        assertFalse(index.isIndexed("first"));
+        assertEquals(getHistory("first", first, "index.xml"), Arrays.asList(firstCommit));
+    }
+
+    @Test
+    public void testHistoryIsNotServedUntilTheIndexIsBuilt() throws Exception {
+        List<Runnable> builds = new ArrayList<>();
+        index = new GitVersionHistoryIndex(false, 2, builds::add);
+        Git git = createRepository("site");
+        ObjectId first = commit(git, "index.xml", "first");
+
+        assertNull(getHistory("site", git, "index.xml"));
+        // requests made while the build is pending don't schedule another one
+        assertNull(getHistory("site", git, "index.xml"));
+        assertEquals(builds.size(), 1);
+
+        builds.remove(0).run();
+        assertEquals(getHistory("site", git, "index.xml"), Arrays.asList(first));
+    }
+
+    @Test
+    public void testNewCommitsAreIndexedIncrementally() throws Exception {
+        List<Runnable> builds = new ArrayList<>();
+        index = new GitVersionHistoryIndex(false, 2, builds::add);
+        Git git = createRepository("site");
+        ObjectId first = commit(git, "index.xml", "first");
+        getHistory("site", git, "index.xml");
+        builds.remove(0).run();
+
+        ObjectId second = commit(git, "index.xml", "second");
+        commit(git, "other.xml", "other");
+        ObjectId third = commit(git, "index.xml", "third");
+
+        assertEquals(getHistory("site", git, "index.xml"), Arrays.asList(third, second, first));
+        assertEquals(getHistory("site", git, "missing.xml"), Collections.emptyList());
+        assertTrue(builds.isEmpty());
+    }
+
+    private List<ObjectId> getHistory(String key, Git git, String path) throws IOException {
+        Repository repository = git.getRepository();
+        return index.getHistory(key, repository, repository.resolve("HEAD"), path);
+    }
+
+    private Git createRepository(String name) throws Exception {
+        Git git = Git.init().setDirectory(new File(baseDir, name)).call();
+        repositories.add(git);
+        return git;
+    }
+
+    private ObjectId commit(Git git, String path, String content) throws Exception {
+        File file = new File(git.getRepository().getWorkTree(), path);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        git.add().addFilepattern(path).call();
+        return git.commit().setMessage("Update " + path).setAuthor("test", "test@example.com").call().getId();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.script;
+
+import groovy.lang.GroovyClassLoader;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.script.ScriptException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class GroovyScriptExecutorTest {
+
+    private static final String KEY = "test:/config/studio/content-types/page/entry/controller.groovy";
+    private static final String SCRIPT = "result.append(path)";
+
+    private GroovyScriptExecutor executor;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new GroovyScriptExecutor();
+        executor.setScriptsClassPath(Collections.emptyList());
+    }
+
+    @Test
+    public void testScriptIsCompiledOnce() throws Exception {
+        StringBuilder first = new StringBuilder();
+        executor.executeScript(KEY, SCRIPT, model("/site/website/index.xml", first));
+        Class<?> compiled = executor.getScriptClass(KEY, SCRIPT);
+
+        StringBuilder second = new StringBuilder();
+        executor.executeScript(KEY, SCRIPT, model("/site/website/about/index.xml", second));
+
+        // every execution has its own bindings
+        assertEquals(first.toString(), "/site/website/index.xml");
+        assertEquals(second.toString(), "/site/website/about/index.xml");
+        assertSame(executor.getScriptClass(KEY, SCRIPT), compiled);
+    }
+
+    @Test
+    public void testChangedScriptIsCompiledAgain() throws Exception {
+        Class<?> compiled = executor.getScriptClass(KEY, SCRIPT);
+
+        StringBuilder result = new StringBuilder();
+        executor.executeScript(KEY, "result.append(path.toUpperCase())", model("/site/website/index.xml", result));
+
+        assertEquals(result.toString(), "/SITE/WEBSITE/INDEX.XML");
+        assertNotSame(executor.getScriptClass(KEY, "result.append(path.toUpperCase())"), compiled);
+        assertEquals(executor.compiledScripts.size(), 1);
+    }
+
+    @Test
+    public void testEvictScripts() throws Exception {
+        executor.getScriptClass(KEY, SCRIPT);
+        executor.getScriptClass("other:/config/studio/content-types/page/entry/controller.groovy", SCRIPT);
+
+        executor.evictScripts("test:");
+
+        assertEquals(executor.compiledScripts.keySet(),
+                Collections.singleton("other:/config/studio/content-types/page/entry/controller.groovy"));
+    }
+
+    @Test
+    public void testReplacedScriptClassesAreReleased() throws Exception {
+        Class<?> compiled = executor.getScriptClass(KEY, SCRIPT);
+        GroovyClassLoader scriptClassLoader = executor.compiledScripts.get(KEY).classLoader;
+        assertTrue(Arrays.asList(scriptClassLoader.getLoadedClasses()).contains(compiled));
+
+        executor.getScriptClass(KEY, "result.append(path.toUpperCase())");
+
+        assertEquals(scriptClassLoader.getLoadedClasses().length, 0);
+        assertNotSame(executor.compiledScripts.get(KEY).classLoader, scriptClassLoader);
+        assertFalse(Arrays.asList(executor.getClassLoader().getLoadedClasses()).contains(compiled));
+    }
+
+    @Test
+    public void testEvictedScriptClassesAreReleased() throws Exception {
+        executor.getScriptClass(KEY, "[1, 2].each { result.append(it) }");
+        GroovyClassLoader scriptClassLoader = executor.compiledScripts.get(KEY).classLoader;
+        // the script and its closure
+        assertEquals(scriptClassLoader.getLoadedClasses().length, 2);
+
+        executor.evictScripts("test:");
+
+        assertEquals(scriptClassLoader.getLoadedClasses().length, 0);
+        assertEquals(executor.getClassLoader().getLoadedClasses().length, 0);
+    }
+
+    @Test
+    public void testErrorsAreScriptExceptions() {
+        try {
+            executor.executeScript(KEY, "result.append(", model("/site/website/index.xml", new StringBuilder()));
+            fail("The compilation error should be thrown");
+        } catch (ScriptException e) {
+            assertTrue(executor.compiledScripts.isEmpty());
+        }
+        try {
+            executor.executeScript(KEY, "throw new IllegalStateException()", new HashMap<>());
+            fail("The script error should be thrown");
+        } catch (ScriptException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private Map<String, Object> model(String path, StringBuilder result) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("path", path);
+        model.put("result", result);
+        return model;
+    }
+}
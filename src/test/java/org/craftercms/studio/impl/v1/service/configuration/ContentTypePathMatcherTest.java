@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.configuration;
+
+import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ContentTypePathMatcherTest {
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals(ContentTypePathMatcher.getLiteralPrefix("^/site/website/.*"), "/site/website/");
+        assertEquals(ContentTypePathMatcher.getLiteralPrefix("/site/components/headers?/.*"),
+                "/site/components/header");
+        assertEquals(ContentTypePathMatcher.getLiteralPrefix("^/static\\-assets/.*"), "/static-assets/");
+        assertEquals(ContentTypePathMatcher.getLiteralPrefix("^/site/(website|components)/.*"), "");
+        assertEquals(ContentTypePathMatcher.getLiteralPrefix("/site/website/.*|/site/components/.*"), "");
+        assertEquals(ContentTypePathMatcher.getLiteralPrefix(".*"), "");
+    }
+
+    @Test
+    public void testGetContentTypes() {
+        ContentTypeConfigTO page = contentType("/page/article", Arrays.asList("^/site/website/.*"),
+                Arrays.asList("^/site/website/index\\.xml"));
+        ContentTypeConfigTO component = contentType("/component/header", Arrays.asList("^/site/components/.*"),
+                Collections.emptyList());
+        ContentTypeConfigTO any = contentType("/component/any", Arrays.asList(".*", "^/site/.*"),
+                Collections.emptyList());
+        ContentTypePathMatcher matcher = new ContentTypePathMatcher(Arrays.asList(page, component, any));
+
+        assertEquals(matcher.getContentTypes("/site/website/articles/a/index.xml"), Arrays.asList(page, any));
+        assertEquals(matcher.getContentTypes("/site/website/index.xml"), Arrays.asList(any));
+        assertEquals(matcher.getContentTypes("/site/components/header.xml"), Arrays.asList(component, any));
+        assertEquals(matcher.getContentTypes("/site/website"), Arrays.asList(any));
+    }
+
+    @Test
+    public void testInvalidPatternIsIgnored() {
+        ContentTypeConfigTO invalid = contentType("/page/invalid", Arrays.asList("^/site/[website"),
+                Collections.emptyList());
+        assertTrue(new ContentTypePathMatcher(Arrays.asList(invalid)).getContentTypes("/site/website").isEmpty());
+    }
+
+    private ContentTypeConfigTO contentType(String name, List<String> includes, List<String> excludes) {
+        ContentTypeConfigTO contentType = new ContentTypeConfigTO();
+        contentType.setName(name);
+        contentType.setPathIncludes(new ArrayList<>(includes));
+        contentType.setPathExcludes(new ArrayList<>(excludes));
+        return contentType;
+    }
+}
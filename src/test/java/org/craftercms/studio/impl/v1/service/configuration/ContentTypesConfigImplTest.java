@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.configuration;
+
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
+import org.craftercms.studio.api.v1.to.DeleteDependencyConfigTO;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_FILE_NAME;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class ContentTypesConfigImplTest {
+
+    private static final String SITE = "test";
+    private static final String ROOT_PATH = "/config/studio/content-types";
+    private static final String CONTENT_TYPE = "/page/article";
+
+    private ContentTypesConfigImpl contentTypesConfig;
+    private AtomicInteger loads;
+
+    @BeforeMethod
+    public void setUp() {
+        loads = new AtomicInteger();
+
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_BASE_PATH)).thenReturn(ROOT_PATH);
+        when(studioConfiguration.getProperty(CONFIGURATION_SITE_CONTENT_TYPES_CONFIG_FILE_NAME))
+                .thenReturn("config.xml");
+
+        RepositoryItem folder = new RepositoryItem();
+        folder.path = ROOT_PATH + "/page";
+        folder.name = "article";
+        folder.isFolder = true;
+        ContentRepository contentRepository = mock(ContentRepository.class);
+        when(contentRepository.getRepoLastCommitId(SITE)).thenReturn("commit1");
+        when(contentRepository.getContentChildren(SITE, ROOT_PATH)).thenReturn(new RepositoryItem[] { folder });
+
+        ContentService contentService = mock(ContentService.class);
+        when(contentService.contentExists(SITE, ROOT_PATH + CONTENT_TYPE + "/config.xml")).thenReturn(true);
+
+        contentTypesConfig = new ContentTypesConfigImpl() {
+
+            @Override
+            public ContentTypeConfigTO loadConfiguration(String site, String contentType) {
+                loads.incrementAndGet();
+                ContentTypeConfigTO config = new ContentTypeConfigTO();
+                config.setName(contentType);
+                config.setAllowedRoles(new HashSet<>(Arrays.asList("author")));
+                config.setPathIncludes(new ArrayList<>(Arrays.asList("^/site/website/.*")));
+                config.setDeleteDependencies(new ArrayList<>(Arrays.asList(
+                        new DeleteDependencyConfigTO("/static-assets/.*", false))));
+                return config;
+            }
+        };
+        contentTypesConfig.setStudioConfiguration(studioConfiguration);
+        contentTypesConfig.setContentRepository(contentRepository);
+        contentTypesConfig.setContentService(contentService);
+    }
+
+    @Test
+    public void testReturnedConfigsAreReadOnly() {
+        ContentTypeConfigTO config = contentTypesConfig.getContentTypeConfig(SITE, CONTENT_TYPE);
+        assertUnsupported(() -> config.setLabel("Changed"));
+        assertUnsupported(() -> config.getAllowedRoles().add("admin"));
+        assertUnsupported(() -> config.getPathIncludes().clear());
+        assertUnsupported(() -> config.getDeleteDependencyPattern().get(0).setRemoveEmptyFolder(true));
+
+        ContentTypeConfigTO cached = contentTypesConfig.getContentTypeConfig(SITE, CONTENT_TYPE);
+        assertSame(cached, config);
+        assertEquals(cached.getAllowedRoles(), new HashSet<>(Arrays.asList("author")));
+        assertEquals(cached.getPathIncludes(), Arrays.asList("^/site/website/.*"));
+        assertEquals(cached.getDeleteDependencyPattern().get(0).isRemoveEmptyFolder(), false);
+        assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void testReturnedListsAreReadOnly() {
+        List<ContentTypeConfigTO> contentTypes = contentTypesConfig.getAllContentTypes(SITE);
+        assertEquals(contentTypes.size(), 1);
+        assertUnsupported(contentTypes::clear);
+
+        List<ContentTypeConfigTO> forPath = contentTypesConfig.getContentTypesForPath(SITE, "/site/website/index.xml");
+        assertEquals(forPath.size(), 1);
+        assertEquals(forPath.get(0).getName(), CONTENT_TYPE);
+        assertUnsupported(forPath::clear);
+
+        assertSame(contentTypesConfig.getAllContentTypes(SITE), contentTypes);
+        assertSame(forPath.get(0), contentTypes.get(0));
+        assertEquals(loads.get(), 1);
+    }
+
+    private void assertUnsupported(Runnable change) {
+        try {
+            change.run();
+            fail("The change should not be allowed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
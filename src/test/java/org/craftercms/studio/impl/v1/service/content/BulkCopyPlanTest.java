@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BulkCopyPlanTest {
+
+    private static final Set<String> REPOSITORY_FOLDERS = new HashSet<>(Arrays.asList("/site", "/site/website"));
+    private static final Set<String> REPOSITORY_FILES = new HashSet<>(Arrays.asList("/site/website/index.xml"));
+
+    private BulkCopyPlan newPlan() {
+        return new BulkCopyPlan(path -> REPOSITORY_FOLDERS.contains(path) || REPOSITORY_FILES.contains(path),
+                REPOSITORY_FOLDERS::contains);
+    }
+
+    @Test
+    public void testMissingFoldersArePlanned() {
+        BulkCopyPlan plan = newPlan();
+        plan.addDocument("/site/website/a/b/index.xml", DocumentHelper.createDocument(), "/page/article");
+        plan.addDocument("/site/website/a/c/index.xml", DocumentHelper.createDocument(), "/page/article");
+
+        assertEquals(plan.getFolders(), Arrays.asList("/site/website/a", "/site/website/a/b", "/site/website/a/c"));
+        assertEquals(plan.getFiles(), Arrays.asList("/site/website/a/b/index.xml", "/site/website/a/c/index.xml"));
+        assertEquals(plan.getContentType("/site/website/a/b/index.xml"), "/page/article");
+    }
+
+    @Test
+    public void testDocumentsAreGroupedByFolder() {
+        BulkCopyPlan plan = newPlan();
+        Document first = DocumentHelper.createDocument();
+        Document second = DocumentHelper.createDocument();
+        Document other = DocumentHelper.createDocument();
+        plan.addDocument("/site/website/a/first.xml", first, "/component/article");
+        plan.addDocument("/site/website/b/index.xml", other, "/page/article");
+        plan.addDocument("/site/website/a/second.xml", second, "/component/article");
+
+        Map<String, List<Document>> documentsByFolder = plan.getDocumentsByFolder();
+        assertEquals(documentsByFolder.keySet(), new HashSet<>(Arrays.asList("/site/website/a", "/site/website/b")));
+        assertEquals(documentsByFolder.get("/site/website/a"), Arrays.asList(first, second));
+        assertEquals(documentsByFolder.get("/site/website/b"), Arrays.asList(other));
+    }
+
+    @Test
+    public void testPlannedPathsExist() {
+        BulkCopyPlan plan = newPlan();
+        plan.addAsset("/site/website/a/logo.png", "/static-assets/logo.png", "asset");
+
+        assertTrue(plan.exists("/site/website/a/logo.png"));
+        assertTrue(plan.isFolder("/site/website/a"));
+        assertFalse(plan.isFolder("/site/website/a/logo.png"));
+        assertTrue(plan.isFolder("/site/website"));
+        assertFalse(plan.exists("/site/website/b"));
+        assertEquals(plan.getAssets().get("/site/website/a/logo.png"), "/static-assets/logo.png");
+    }
+}
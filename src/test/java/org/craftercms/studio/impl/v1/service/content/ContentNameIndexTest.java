@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_NAME_INDEX_MAX_FOLDERS;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_NAME_INDEX_RESERVATION_TIMEOUT;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class ContentNameIndexTest {
+
+    private static final String SITE = "test";
+    private static final String FOLDER = "/site/website/articles";
+    private static final int SIBLINGS = 10000;
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 100;
+
+    private StudioConfiguration studioConfiguration;
+    private ContentRepository contentRepository;
+    private ContentNameIndex index;
+
+    @BeforeMethod
+    public void setUp() {
+        List<RepositoryItem> children = new ArrayList<>();
+        children.add(item("index.xml", false));
+        children.add(item("article", true));
+        children.add(item("article-1", true));
+        children.add(item("article-7", true));
+        children.add(item("article-7-2", true));
+        children.add(item("logo.png", false));
+        children.add(item("logo-3.png", false));
+        children.add(item("logo-12.jpg", false));
+        for (int i = 0; i < SIBLINGS; i++) {
+            children.add(item("page-" + i, true));
+        }
+
+        studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONTENT_NAME_INDEX_MAX_FOLDERS)).thenReturn("10");
+        when(studioConfiguration.getProperty(CONTENT_NAME_INDEX_RESERVATION_TIMEOUT)).thenReturn("600");
+        contentRepository = mock(ContentRepository.class);
+        when(contentRepository.getContentChildren(eq(SITE), anyString())).thenReturn(new RepositoryItem[0]);
+        when(contentRepository.getContentChildren(SITE, FOLDER)).thenReturn(children.toArray(new RepositoryItem[0]));
+
+        index = new ContentNameIndex();
+        index.setContentRepository(contentRepository);
+        index.setStudioConfiguration(studioConfiguration);
+    }
+
+    @Test
+    public void testNextNameUsesHighestSuffix() {
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article-7", "", true), "article-7-3");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "logo", ".png", false), "logo-4.png");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "logo", ".jpg", false), "logo-13.jpg");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "page", "", true), "page-10000");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "index", ".xml", false), "index-1.xml");
+        // names are reserved as soon as they are returned
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-9");
+        verify(contentRepository, times(1)).getContentChildren(SITE, FOLDER);
+    }
+
+    @Test
+    public void testIndexFollowsChanges() {
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        index.added(SITE, FOLDER + "/article-20/index.xml", false);
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-21");
+
+        index.removed(SITE, FOLDER + "/article-20");
+        // article-8 and article-21 are still reserved after the folder is listed again
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-22");
+        verify(contentRepository, times(2)).getContentChildren(SITE, FOLDER);
+    }
+
+    @Test
+    public void testReleasedNamesAreHandedOutAgain() {
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-9");
+        index.release(SITE, FOLDER + "/article-9/index.xml");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-9");
+
+        // a released name that is not the last one leaves a gap
+        index.release(SITE, FOLDER + "/article-8");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-10");
+    }
+
+    @Test
+    public void testEvictionKeepsReservedFolders() {
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        evictFolder();
+
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-9");
+        verify(contentRepository, times(1)).getContentChildren(SITE, FOLDER);
+    }
+
+    @Test
+    public void testWrittenFoldersCanBeEvicted() {
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        index.added(SITE, FOLDER + "/article-8/index.xml", false);
+        evictFolder();
+
+        index.reserveNextName(SITE, FOLDER, "article", "", true);
+        verify(contentRepository, times(2)).getContentChildren(SITE, FOLDER);
+    }
+
+    @Test
+    public void testExpiredReservationsAreDropped() {
+        when(studioConfiguration.getProperty(CONTENT_NAME_INDEX_RESERVATION_TIMEOUT)).thenReturn("0");
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        evictFolder();
+
+        // the name was never written so it's handed out again once the folder is listed again
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-8");
+        verify(contentRepository, times(2)).getContentChildren(SITE, FOLDER);
+    }
+
+    @Test
+    public void testExistingNamesAreSkipped() {
+        when(contentRepository.contentExists(eq(SITE), anyString())).thenReturn(false);
+        when(contentRepository.contentExists(SITE, FOLDER + "/article-8")).thenReturn(true);
+        assertEquals(index.reserveNextName(SITE, FOLDER, "article", "", true), "article-9");
+    }
+
+    @Test
+    public void testConcurrentNamesAreUnique() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    names.add(index.reserveNextName(SITE, FOLDER, "page", "", true));
+                }
+            }));
+        }
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(names.size(), THREADS * ITERATIONS);
+        verify(contentRepository, times(1)).getContentChildren(SITE, FOLDER);
+    }
+
+    /**
+     * Use enough other folders to make the test folder the least recently used one of a full index
+     */
+    private void evictFolder() {
+        for (int i = 0; i < 10; i++) {
+            index.reserveNextName(SITE, "/site/website/other-" + i, "article", "", true);
+            index.release(SITE, "/site/website/other-" + i + "/article-1");
+        }
+    }
+
+    private RepositoryItem item(String name, boolean isFolder) {
+        RepositoryItem item = new RepositoryItem();
+        item.path = FOLDER;
+        item.name = name;
+        item.isFolder = isFolder;
+        return item;
+    }
+}
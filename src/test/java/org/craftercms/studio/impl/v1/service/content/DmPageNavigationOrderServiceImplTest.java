@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.craftercms.studio.api.v1.constant.DmXmlConstants;
+import org.craftercms.studio.api.v1.dal.NavigationOrderSequenceMapper;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.service.GeneralLockServiceImpl;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PAGE_NAVIGATION_ORDER_INCREMENT;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Reserves navigation orders against the sequence table of an embedded MariaDB
+ */
+public class DmPageNavigationOrderServiceImplTest {
+
+    private static final String SITE = "test";
+    private static final String FOLDER = "/site/website/articles";
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 25;
+
+    private EmbeddedStudioDatabase database;
+    private DmPageNavigationOrderServiceImpl service;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        database = new EmbeddedStudioDatabase();
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(PAGE_NAVIGATION_ORDER_INCREMENT)).thenReturn("1000");
+        ContentRepository contentRepository = mock(ContentRepository.class);
+        when(contentRepository.contentExists(SITE, FOLDER)).thenReturn(true);
+        when(contentRepository.getContentChildren(SITE, FOLDER)).thenReturn(new RepositoryItem[] {
+                item("index.xml"), item("first"), item("second")
+        });
+
+        service = new DmPageNavigationOrderServiceImpl();
+        service.setStudioConfiguration(studioConfiguration);
+        service.setContentRepository(contentRepository);
+        service.setTransactionManager(database.getTransactionManager());
+        service.setGeneralLockService(new GeneralLockServiceImpl());
+        service.setNavigationOrderSequenceMapper(database.getMapper(NavigationOrderSequenceMapper.class));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testFirstOrderIsSeededFromChildren() {
+        assertEquals(service.getNewNavOrder(SITE, FOLDER), 2000D);
+        assertEquals(service.getNewNavOrder(SITE, FOLDER), 3000D);
+        assertEquals(service.getNewNavOrders(SITE, FOLDER, 3), Arrays.asList(4000D, 5000D, 6000D));
+    }
+
+    @Test
+    public void testCopiedDocumentsReserveOneBlock() throws Exception {
+        String folder = "/site/website/copied";
+        Document first = document(true);
+        Document second = document(true);
+        Document withoutOrder = document(false);
+        Document third = document(true);
+        service.getNewNavOrder(SITE, folder);
+
+        database.resetStatements();
+        int updated = service.addNavOrders(SITE, folder, Arrays.asList(first, second, withoutOrder, third));
+
+        assertEquals(updated, 3);
+        assertEquals(navOrder(first), "1000.0");
+        assertEquals(navOrder(second), "2000.0");
+        assertNull(withoutOrder.getRootElement().element(DmXmlConstants.ELM_ORDER_DEFAULT));
+        assertEquals(navOrder(third), "3000.0");
+        // a single increment and read of the sequence, whatever the number of documents
+        assertEquals(database.getStatements(), 2);
+        assertEquals(database.queryForLong("SELECT max_count FROM navigation_order_sequence WHERE site = ? AND " +
+                "path = ?", SITE, folder), 3000L);
+    }
+
+    @Test
+    public void testConcurrentOrdersAreUnique() throws Exception {
+        String folder = "/site/website/concurrent";
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Set<Double> orders = ConcurrentHashMap.newKeySet();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int blockSize = (i % 4) + 1;
+            results.add(executor.submit(() -> {
+                int reserved = 0;
+                for (int j = 0; j < ITERATIONS; j++) {
+                    List<Double> block = blockSize == 1 ?
+                            Arrays.asList(service.getNewNavOrder(SITE, folder)) :
+                            service.getNewNavOrders(SITE, folder, blockSize);
+                    orders.addAll(block);
+                    reserved += block.size();
+                }
+                return reserved;
+            }));
+        }
+        int total = 0;
+        try {
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(orders.size(), total);
+        assertTrue(orders.stream().allMatch(order -> order % 1000 == 0));
+        assertEquals(database.queryForLong("SELECT count(1) FROM navigation_order_sequence WHERE site = ? AND " +
+                "path = ?", SITE, folder), 1L);
+    }
+
+    private Document document(boolean withOrder) {
+        Document document = DocumentHelper.createDocument();
+        Element root = document.addElement("page");
+        if (withOrder) {
+            root.addElement(DmXmlConstants.ELM_ORDER_DEFAULT);
+        }
+        return document;
+    }
+
+    private String navOrder(Document document) {
+        return document.getRootElement().elementText(DmXmlConstants.ELM_ORDER_DEFAULT);
+    }
+
+    private RepositoryItem item(String name) {
+        RepositoryItem item = new RepositoryItem();
+        item.path = FOLDER;
+        item.name = name;
+        return item;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_MAX_BACKOFF;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_MAX_CONNECTION_USAGE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_MAX_PENDING_AUDIT_LOGS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks the signals the import is throttled by
+ */
+public class ImportServiceImplTest {
+
+    private ImportServiceImpl importService;
+    private AuditServiceInternal auditServiceInternal;
+    private BasicDataSource dataSource;
+
+    @BeforeMethod
+    public void setUp() {
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(IMPORT_MAX_BACKOFF)).thenReturn("200");
+        when(studioConfiguration.getProperty(IMPORT_MAX_PENDING_AUDIT_LOGS)).thenReturn("1000");
+        when(studioConfiguration.getProperty(IMPORT_MAX_CONNECTION_USAGE)).thenReturn("0.8");
+        auditServiceInternal = mock(AuditServiceInternal.class);
+        dataSource = mock(BasicDataSource.class);
+        when(dataSource.getMaxTotal()).thenReturn(10);
+
+        importService = new ImportServiceImpl();
+        importService.setStudioConfiguration(studioConfiguration);
+        importService.setAuditServiceInternal(auditServiceInternal);
+        importService.setDataSource(dataSource);
+    }
+
+    @Test
+    public void testIdleDatabaseIsNotBusy() {
+        when(auditServiceInternal.getPendingAuditLogs()).thenReturn(10);
+        when(dataSource.getNumActive()).thenReturn(2);
+
+        assertFalse(importService.isDatabaseBusy());
+    }
+
+    @Test
+    public void testPendingAuditLogsMakeTheDatabaseBusy() {
+        when(auditServiceInternal.getPendingAuditLogs()).thenReturn(5000);
+        when(dataSource.getNumActive()).thenReturn(2);
+
+        assertTrue(importService.isDatabaseBusy());
+    }
+
+    @Test
+    public void testConnectionPoolUsageMakesTheDatabaseBusy() {
+        when(auditServiceInternal.getPendingAuditLogs()).thenReturn(0);
+        when(dataSource.getNumActive()).thenReturn(8);
+
+        assertTrue(importService.isDatabaseBusy());
+    }
+
+    @Test
+    public void testThrottleWaitsAtMostTheMaximumBackoff() {
+        when(auditServiceInternal.getPendingAuditLogs()).thenReturn(5000);
+
+        long start = System.currentTimeMillis();
+        importService.throttle();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed >= 200 && elapsed < 2000, "Waited " + elapsed + " ms");
+    }
+}
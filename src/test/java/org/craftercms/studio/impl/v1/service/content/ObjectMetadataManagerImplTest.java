@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.craftercms.studio.api.v1.dal.ItemMetadataMapper;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Runs the item metadata path updates against an embedded MariaDB
+ */
+public class ObjectMetadataManagerImplTest {
+
+    private static final String SITE = "test";
+
+    private EmbeddedStudioDatabase database;
+    private ObjectMetadataManagerImpl objectMetadataManager;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        database = new EmbeddedStudioDatabase();
+        objectMetadataManager = new ObjectMetadataManagerImpl();
+        objectMetadataManager.setItemMetadataMapper(database.getMapper(ItemMetadataMapper.class));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testSubtreeMoveIgnoresSimilarSiblings() throws Exception {
+        insertMetadata("/site/website/a_b/index.xml");
+        insertMetadata("/site/website/a_b/child/index.xml");
+        insertMetadata("/site/website/a-b/index.xml");
+        insertMetadata("/site/website/a-b/child/index.xml");
+        insertMetadata("/site/website/a%b/index.xml");
+
+        objectMetadataManager.updateObjectPathForSubtree(SITE, "/site/website/a_b", "/site/website/moved");
+
+        assertEquals(countMetadata("/site/website/moved/index.xml"), 1);
+        assertEquals(countMetadata("/site/website/moved/child/index.xml"), 1);
+        assertEquals(countMetadata("/site/website/a-b/index.xml"), 1);
+        assertEquals(countMetadata("/site/website/a-b/child/index.xml"), 1);
+        assertEquals(countMetadata("/site/website/a%b/index.xml"), 1);
+        assertEquals(countMetadata("/site/website/a_b/index.xml"), 0);
+    }
+
+    private void insertMetadata(String path) throws SQLException {
+        database.update("INSERT INTO item_metadata (site, path) VALUES (?, ?)", SITE, path);
+    }
+
+    private long countMetadata(String path) throws SQLException {
+        return database.queryForLong("SELECT count(1) FROM item_metadata WHERE site = ? AND path = ?", SITE, path);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.deployment;
+
+import org.craftercms.studio.api.v1.dal.ItemMetadata;
+import org.craftercms.studio.api.v1.dal.ItemState;
+import org.craftercms.studio.api.v1.dal.PublishRequest;
+import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v1.service.content.ObjectMetadataManager;
+import org.craftercms.studio.api.v1.service.dependency.DependencyService;
+import org.craftercms.studio.api.v1.service.deployment.DeploymentService;
+import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
+import org.craftercms.studio.api.v1.service.objectstate.State;
+import org.craftercms.studio.api.v1.to.DeploymentItemTO;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_DEPENDENCY_LOOKUP_BATCH_SIZE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_INDEX_FILE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Resolves the mandatory dependencies of a 2,000 item package with deep parent and dependency chains, counting the
+ * lookups sent to the dependency, state and metadata services
+ */
+public class PublishingManagerImplDependenciesTest {
+
+    private static final String SITE = "test";
+    private static final int SECTIONS = 100;
+    private static final int PAGES_PER_SECTION = 20;
+    private static final int FOLDER_DEPTH = 8;
+    private static final int CHAIN_LENGTH = 20;
+
+    private final Map<String, List<String>> dependencies = new HashMap<>();
+    private final Set<String> newPaths = new HashSet<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger dependencyLookups = new AtomicInteger();
+    private List<PublishRequest> items;
+    private DeploymentService deploymentService;
+    private PublishingManagerImpl publishingManager;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        items = new ArrayList<>();
+        newPaths.add("/site/website/index.xml");
+        for (int section = 0; section < SECTIONS; section++) {
+            String folder = "/site/website/section" + section;
+            newPaths.add(folder + "/index.xml");
+            for (int depth = 1; depth <= FOLDER_DEPTH; depth++) {
+                folder = folder + "/level" + depth;
+                newPaths.add(folder + "/index.xml");
+            }
+            for (int i = 0; i < CHAIN_LENGTH; i++) {
+                String component = "/site/components/chain" + section + "/component" + i + ".xml";
+                newPaths.add(component);
+                if (i < CHAIN_LENGTH - 1) {
+                    dependencies.put(component, Collections.singletonList(
+                            "/site/components/chain" + section + "/component" + (i + 1) + ".xml"));
+                }
+            }
+            for (int page = 0; page < PAGES_PER_SECTION; page++) {
+                String path = folder + "/page" + page + "/index.xml";
+                newPaths.add(path);
+                dependencies.put(path,
+                        Collections.singletonList("/site/components/chain" + section + "/component0.xml"));
+                items.add(request(path));
+            }
+        }
+
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(PUBLISHING_MANAGER_INDEX_FILE)).thenReturn("index.xml");
+        when(studioConfiguration.getProperty(PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED))
+                .thenReturn("false");
+        when(studioConfiguration.getProperty(PUBLISHING_MANAGER_DEPENDENCY_LOOKUP_BATCH_SIZE)).thenReturn("1000");
+        ServicesConfig servicesConfig = mock(ServicesConfig.class);
+        when(servicesConfig.getPagePatterns(SITE)).thenReturn(Arrays.asList("^/site/website/.*\\.xml$"));
+
+        DependencyService dependencyService = mock(DependencyService.class);
+        when(dependencyService.getPublishingDependencies(eq(SITE), anyListOf(String.class))).thenAnswer(invocation -> {
+            dependencyLookups.incrementAndGet();
+            return getClosure((List<String>) invocation.getArguments()[1]);
+        });
+        ObjectStateService objectStateService = mock(ObjectStateService.class);
+        when(objectStateService.getObjectStateByPaths(eq(SITE), anyListOf(String.class))).thenAnswer(invocation -> {
+            lookups.incrementAndGet();
+            List<ItemState> states = new ArrayList<>();
+            for (String path : (List<String>) invocation.getArguments()[1]) {
+                if (newPaths.contains(path)) {
+                    ItemState state = new ItemState();
+                    state.setPath(path);
+                    state.setState(State.NEW_UNPUBLISHED_UNLOCKED.name());
+                    states.add(state);
+                }
+            }
+            return states;
+        });
+        ObjectMetadataManager objectMetadataManager = mock(ObjectMetadataManager.class);
+        when(objectMetadataManager.getProperties(eq(SITE), anyListOf(String.class))).thenAnswer(invocation -> {
+            lookups.incrementAndGet();
+            return new ArrayList<ItemMetadata>();
+        });
+        deploymentService = mock(DeploymentService.class);
+
+        // processing an item is out of the scope of the resolution
+        publishingManager = new PublishingManagerImpl() {
+            @Override
+            public DeploymentItemTO processItem(PublishRequest item) {
+                DeploymentItemTO deploymentItem = new DeploymentItemTO();
+                deploymentItem.setSite(item.getSite());
+                deploymentItem.setPath(item.getPath());
+                return deploymentItem;
+            }
+        };
+        publishingManager.setStudioConfiguration(studioConfiguration);
+        publishingManager.setServicesConfig(servicesConfig);
+        publishingManager.setDependencyService(dependencyService);
+        publishingManager.setObjectStateService(objectStateService);
+        publishingManager.setObjectMetadataManager(objectMetadataManager);
+        publishingManager.setDeploymentService(deploymentService);
+        publishingManager.setContentService(mock(ContentService.class));
+    }
+
+    @Test
+    public void testPackageWithDeepChains() throws Exception {
+        Set<String> pathsToDeploy = new HashSet<>();
+        for (PublishRequest item : items) {
+            pathsToDeploy.add(item.getPath());
+        }
+        Set<String> missingDependenciesPaths = new HashSet<>();
+
+        List<DeploymentItemTO> mandatoryDependencies =
+                publishingManager.processMandatoryDependencies(items, pathsToDeploy, missingDependenciesPaths);
+
+        // every new folder index plus every component of every chain, each one only once
+        int expected = 1 + SECTIONS * (FOLDER_DEPTH + 1) + SECTIONS * CHAIN_LENGTH;
+        Set<String> paths = new LinkedHashSet<>();
+        for (DeploymentItemTO deploymentItem : mandatoryDependencies) {
+            paths.add(deploymentItem.getPath());
+        }
+        assertEquals(mandatoryDependencies.size(), expected);
+        assertEquals(paths.size(), expected);
+        assertEquals(missingDependenciesPaths, paths);
+        assertTrue(Collections.disjoint(paths, pathsToDeploy));
+
+        // one lookup per level of the parent hierarchy instead of several per item
+        int levels = FOLDER_DEPTH + 3;
+        assertTrue(dependencyLookups.get() <= levels, "Dependency lookups: " + dependencyLookups.get());
+        assertTrue(lookups.get() <= 2 * 3 * levels, "State and metadata lookups: " + lookups.get());
+        verify(deploymentService, never()).cancelWorkflow(anyString(), anyString());
+        verify(deploymentService, atMost(levels)).cancelWorkflowBulk(eq(SITE), anySetOf(String.class));
+    }
+
+    private List<String> getClosure(List<String> paths) {
+        Set<String> closure = new LinkedHashSet<>();
+        List<String> pending = new ArrayList<>(paths);
+        while (!pending.isEmpty()) {
+            String path = pending.remove(pending.size() - 1);
+            for (String dependency : dependencies.getOrDefault(path, Collections.<String>emptyList())) {
+                if (closure.add(dependency)) {
+                    pending.add(dependency);
+                }
+            }
+        }
+        return new ArrayList<>(closure);
+    }
+
+    private PublishRequest request(String path) {
+        PublishRequest request = new PublishRequest();
+        request.setSite(SITE);
+        request.setEnvironment("live");
+        request.setPath(path);
+        request.setAction(PublishRequest.Action.NEW);
+        request.setState(PublishRequest.State.PROCESSING);
+        request.setUser("admin");
+        request.setPackageId("package");
+        return request;
+    }
+}
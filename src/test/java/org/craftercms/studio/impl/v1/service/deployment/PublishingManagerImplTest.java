@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.deployment;
+
+import org.craftercms.studio.api.v1.dal.PublishRequest;
+import org.craftercms.studio.api.v1.dal.PublishRequestMapper;
+import org.craftercms.studio.api.v1.service.deployment.DeploymentException;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.COMPLETED;
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.PROCESSING;
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.READY_FOR_LIVE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+/**
+ * Runs the publishing request state transitions against an embedded MariaDB, counting the statements sent to the
+ * database
+ */
+public class PublishingManagerImplTest {
+
+    private static final String ENVIRONMENT = "live";
+    private static final int PACKAGE_SIZE = 10000;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_REQUEST =
+            "INSERT INTO publish_request (site, environment, path, username, scheduleddate, state, action, " +
+            "package_id) VALUES (?, ?, ?, 'admin', '2000-01-01 00:00:00', ?, 'NEW', ?)";
+
+    private EmbeddedStudioDatabase database;
+    private PublishingManagerImpl publishingManager;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        database = new EmbeddedStudioDatabase();
+
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE))
+                .thenReturn(Integer.toString(BATCH_SIZE));
+
+        publishingManager = new PublishingManagerImpl();
+        publishingManager.setStudioConfiguration(studioConfiguration);
+        publishingManager.setPublishRequestMapper(database.getMapper(PublishRequestMapper.class));
+        publishingManager.setTransactionManager(database.getTransactionManager());
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testLargePackageTransitions() throws Exception {
+        String site = "package";
+        insertRequests(site, PACKAGE_SIZE);
+        List<PublishRequest> items = publishingManager.getItemsReadyForDeployment(site, ENVIRONMENT);
+        assertEquals(items.size(), PACKAGE_SIZE);
+
+        database.resetStatements();
+        publishingManager.markItemsProcessing(site, ENVIRONMENT, items);
+        assertEquals(database.getStatements(), PACKAGE_SIZE / BATCH_SIZE);
+        assertEquals(countRequests(site, PROCESSING), PACKAGE_SIZE);
+
+        database.resetStatements();
+        publishingManager.markItemsCompleted(site, ENVIRONMENT, items);
+        assertEquals(database.getStatements(), PACKAGE_SIZE / BATCH_SIZE);
+        assertEquals(countRequests(site, COMPLETED), PACKAGE_SIZE);
+        assertEquals(items.get(0).getState(), COMPLETED);
+    }
+
+    @Test
+    public void testClaimIsAllOrNothing() throws Exception {
+        String site = "claim";
+        insertRequests(site, 10);
+        List<PublishRequest> items = publishingManager.getItemsReadyForDeployment(site, ENVIRONMENT);
+
+        // Another worker claims part of the queue first
+        publishingManager.markItemsProcessing(site, ENVIRONMENT, items.subList(0, 3));
+        try {
+            publishingManager.markItemsProcessing(site, ENVIRONMENT, items);
+            fail("Items claimed by another worker must not be claimed again");
+        } catch (DeploymentException e) {
+            // expected
+        }
+        assertEquals(countRequests(site, PROCESSING), 3);
+        assertEquals(countRequests(site, READY_FOR_LIVE), 7);
+
+        // Completing only touches the requests that are still being processed
+        publishingManager.markItemsCompleted(site, ENVIRONMENT, items);
+        assertEquals(countRequests(site, COMPLETED), 3);
+        assertEquals(countRequests(site, READY_FOR_LIVE), 7);
+    }
+
+    private void insertRequests(String site, int count) throws SQLException {
+        try (Connection connection = database.getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_REQUEST)) {
+            for (int i = 0; i < count; i++) {
+                statement.setString(1, site);
+                statement.setString(2, ENVIRONMENT);
+                statement.setString(3, "/site/website/page-" + i + "/index.xml");
+                statement.setString(4, READY_FOR_LIVE);
+                statement.setString(5, site + "-package");
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private long countRequests(String site, String state) throws SQLException {
+        return database.queryForLong("SELECT count(1) FROM publish_request WHERE site = ? AND state = ?",
+                site, state);
+    }
+}
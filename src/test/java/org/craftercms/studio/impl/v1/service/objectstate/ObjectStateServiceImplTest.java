@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.service.objectstate;
+
+import org.craftercms.studio.api.v1.dal.ItemStateMapper;
+import org.craftercms.studio.api.v1.service.ServicesManager;
+import org.craftercms.studio.api.v1.service.objectstate.State;
+import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Runs the item state path updates and bulk transitions against an embedded MariaDB
+ */
+public class ObjectStateServiceImplTest {
+
+    private static final String SITE = "test";
+
+    private EmbeddedStudioDatabase database;
+    private ObjectStateServiceImpl objectStateService;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        database = new EmbeddedStudioDatabase();
+        objectStateService = new ObjectStateServiceImpl();
+        objectStateService.setItemStateMapper(database.getMapper(ItemStateMapper.class));
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE)).thenReturn("2");
+        objectStateService.setStudioConfiguration(studioConfiguration);
+        objectStateService.setServicesManager(mock(ServicesManager.class));
+        objectStateService.register();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testSubtreeMoveIgnoresSimilarSiblings() throws Exception {
+        insertState("/site/website/a_b");
+        insertState("/site/website/a_b/index.xml");
+        insertState("/site/website/a_b/child/index.xml");
+        insertState("/site/website/a-b/index.xml");
+        insertState("/site/website/a-b/child/index.xml");
+        insertState("/site/website/a_bc/index.xml");
+
+        objectStateService.updateObjectPathForSubtree(SITE, "/site/website/a_b", "/site/website/moved");
+
+        assertEquals(countStates("/site/website/moved"), 1);
+        assertEquals(countStates("/site/website/moved/index.xml"), 1);
+        assertEquals(countStates("/site/website/moved/child/index.xml"), 1);
+        assertEquals(countStates("/site/website/a-b/index.xml"), 1);
+        assertEquals(countStates("/site/website/a-b/child/index.xml"), 1);
+        assertEquals(countStates("/site/website/a_bc/index.xml"), 1);
+        assertEquals(database.queryForLong("SELECT count(1) FROM item_state WHERE site = ? AND path LIKE ?",
+                SITE, "/site/website/a\\_b%"), 1);
+    }
+
+    @Test
+    public void testTransitionBulkDoesNotInsertMissingStates() throws Exception {
+        insertState("/site/website/bulk/existing.xml");
+
+        objectStateService.transitionBulk(SITE, Arrays.asList("/site/website/bulk/existing.xml",
+                "/site/website/bulk/missing.xml"), TransitionEvent.SAVE, State.NEW_UNPUBLISHED_UNLOCKED);
+
+        assertEquals(countStates("/site/website/bulk/existing.xml", State.EXISTING_EDITED_UNLOCKED), 1);
+        assertEquals(countStates("/site/website/bulk/missing.xml"), 0);
+    }
+
+    @Test
+    public void testTransitionImportedBulkMovesEachPathFromItsOwnState() throws Exception {
+        insertState("/site/website/import/existing.xml");
+        insertState("/site/website/import/new.xml", State.NEW_UNPUBLISHED_UNLOCKED);
+
+        objectStateService.transitionImportedBulk(SITE, Arrays.asList("/site/website/import/existing.xml",
+                "/site/website/import/new.xml", "/site/website/import/missing.xml"), TransitionEvent.SAVE,
+                State.NEW_UNPUBLISHED_UNLOCKED);
+
+        assertEquals(countStates("/site/website/import/existing.xml", State.EXISTING_EDITED_UNLOCKED), 1);
+        assertEquals(countStates("/site/website/import/new.xml", State.NEW_UNPUBLISHED_UNLOCKED), 1);
+        assertEquals(countStates("/site/website/import/missing.xml", State.NEW_UNPUBLISHED_UNLOCKED), 1);
+    }
+
+    @Test
+    public void testImportedStatesAreNotDuplicated() throws Exception {
+        objectStateService.transitionImportedBulk(SITE, Arrays.asList("/site/website/twice/a.xml",
+                "/site/website/twice/b.xml"), TransitionEvent.SAVE, State.NEW_UNPUBLISHED_UNLOCKED);
+        objectStateService.transitionImportedBulk(SITE, Arrays.asList("/site/website/twice/a.xml",
+                "/site/website/twice/b.xml", "/site/website/twice/c.xml"), TransitionEvent.SAVE,
+                State.NEW_UNPUBLISHED_UNLOCKED);
+
+        assertEquals(countStates("/site/website/twice/a.xml"), 1);
+        assertEquals(countStates("/site/website/twice/b.xml"), 1);
+        assertEquals(countStates("/site/website/twice/c.xml"), 1);
+    }
+
+    private void insertState(String path) throws SQLException {
+        insertState(path, State.EXISTING_UNEDITED_UNLOCKED);
+    }
+
+    private void insertState(String path, State state) throws SQLException {
+        database.update("INSERT INTO item_state (object_id, site, path, state, system_processing) " +
+                "VALUES (?, ?, ?, ?, 0)", UUID.randomUUID().toString(), SITE, path, state.name());
+    }
+
+    private long countStates(String path) throws SQLException {
+        return database.queryForLong("SELECT count(1) FROM item_state WHERE site = ? AND path = ?", SITE, path);
+    }
+
+    private long countStates(String path, State state) throws SQLException {
+        return database.queryForLong("SELECT count(1) FROM item_state WHERE site = ? AND path = ? AND state = ?",
+                SITE, path, state.name());
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.craftercms.commons.validation.ValidationRuntimeException;
+import org.craftercms.studio.api.v1.constant.StudioConstants;
+import org.craftercms.studio.api.v1.service.content.ContentTypeService;
+import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
+import org.craftercms.studio.api.v1.to.PermissionsConfigTO;
+import org.craftercms.studio.model.search.SearchPermissions;
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SecurityServiceImplTest {
+
+    private static final String SITE = "test";
+    private static final String GLOBAL = "###GLOBAL###";
+
+    private static final String PERMISSIONS = "<permissions>" +
+        "<role name=\"author\">" +
+        rule("/site/.*", "Read") +
+        rule("/site/website/.*", "Read", "Write") +
+        rule("/site/website/secret/.*", "Write") +
+        rule("~DASHBOARD~", "Publish") +
+        "</role>" +
+        "<role name=\"reviewer\">" +
+        rule("/static-assets|/static-assets/.*", "Read") +
+        "</role>" +
+        "</permissions>";
+
+    private static final String GLOBAL_PERMISSIONS = "<permissions>" +
+        "<role name=\"system_admin\">" +
+        rule("/.*", "Publish") +
+        "</role>" +
+        "</permissions>";
+
+    private ContentTypeService contentTypeService;
+    private TestSecurityService securityService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ContentTypeConfigTO article = contentType("/page/article");
+        ContentTypeConfigTO restricted = contentType("/page/restricted", "publisher");
+        contentTypeService = mock(ContentTypeService.class);
+        when(contentTypeService.getAllContentTypes(eq(SITE), anyBoolean()))
+            .thenReturn(Arrays.asList(article, restricted));
+        when(contentTypeService.getContentType(SITE, "/page/article")).thenReturn(article);
+        when(contentTypeService.getContentType(SITE, "/page/restricted")).thenReturn(restricted);
+        when(contentTypeService.isUserAllowed(new HashSet<>(Arrays.asList("author")), article)).thenReturn(true);
+        when(contentTypeService.isUserAllowed(new HashSet<>(Arrays.asList("author")), restricted))
+            .thenReturn(false);
+
+        securityService = new TestSecurityService();
+        securityService.setContentTypeService(contentTypeService);
+    }
+
+    @Test
+    public void testNestedRules() {
+        securityService.siteRoles = Collections.singleton("author");
+        securityService.globalRoles = Collections.singleton("system_admin");
+
+        SearchPermissions permissions = securityService.getSearchPermissions(SITE, "jane", null);
+
+        assertFalse(permissions.isAllowAll());
+        // rules without the read permission are ignored, the nested rule is kept for the query compiler
+        assertEquals(permissions.getAllowedPatterns(),
+            new LinkedHashSet<>(Arrays.asList("/site/.*", "/site/website/.*")));
+        assertEquals(permissions.getDeniedContentTypes(), Collections.singleton("/page/restricted"));
+    }
+
+    @Test
+    public void testDefaultReadWithoutGlobalRoles() {
+        securityService.siteRoles = Collections.singleton("author");
+        securityService.globalRoles = Collections.emptySet();
+
+        SearchPermissions permissions = securityService.getSearchPermissions(SITE, "jane", null);
+
+        assertTrue(permissions.isAllowAll());
+        assertEquals(permissions.getDeniedContentTypes(), Collections.singleton("/page/restricted"));
+    }
+
+    @Test
+    public void testBatchedPermissionsUseTheLoadedContentTypes() throws Exception {
+        securityService.siteRoles = Collections.singleton("author");
+        securityService.globalRoles = Collections.emptySet();
+
+        Map<String, Set<String>> permissions = securityService.getUserPermissions(SITE, Arrays.asList(
+            item("/site/website/index.xml", "/page/article"),
+            item("/site/website/about/index.xml", "/page/article"),
+            item("/site/website/private/index.xml", "/page/restricted"),
+            item("/static-assets/logo.png", null)), "jane", null);
+
+        assertTrue(permissions.get("/site/website/index.xml").contains("write"));
+        assertTrue(permissions.get("/site/website/about/index.xml").contains("write"));
+        assertTrue(permissions.get("/site/website/private/index.xml")
+            .contains(StudioConstants.PERMISSION_VALUE_NOT_ALLOWED));
+        assertFalse(permissions.get("/static-assets/logo.png")
+            .contains(StudioConstants.PERMISSION_VALUE_NOT_ALLOWED));
+        // each content type is checked once and the items are not loaded again
+        verify(contentTypeService, times(1)).getContentType(SITE, "/page/article");
+        verify(contentTypeService, never()).getContentTypeForContent(anyString(), anyString());
+    }
+
+    @Test
+    public void testBatchedPermissionsValidateEachPath() {
+        securityService.siteRoles = Collections.singleton("author");
+        securityService.globalRoles = Collections.emptySet();
+
+        try {
+            securityService.getUserPermissions(SITE, Arrays.asList(item("/site/website/index.xml", "/page/article"),
+                item("/site/website/../../../etc/passwd", null)), "jane", null);
+            fail("The path should be rejected");
+        } catch (ValidationRuntimeException e) {
+            // expected
+        }
+    }
+
+    private static ContentItemTO item(String uri, String contentType) {
+        ContentItemTO item = new ContentItemTO();
+        item.setUri(uri);
+        item.setContentType(contentType);
+        return item;
+    }
+
+    private static String rule(String regex, String... permissions) {
+        StringBuilder rule = new StringBuilder("<rule regex=\"" + regex + "\"><allowed-permissions>");
+        for (String permission : permissions) {
+            rule.append("<permission>").append(permission).append("</permission>");
+        }
+        return rule.append("</allowed-permissions></rule>").toString();
+    }
+
+    private static ContentTypeConfigTO contentType(String name, String... allowedRoles) {
+        ContentTypeConfigTO contentType = new ContentTypeConfigTO();
+        contentType.setName(name);
+        contentType.setAllowedRoles(new HashSet<>(Arrays.asList(allowedRoles)));
+        return contentType;
+    }
+
+    /**
+     * Uses fixed roles and permission mappings instead of the site and global configuration
+     */
+    private static class TestSecurityService extends SecurityServiceImpl {
+
+        private Set<String> siteRoles;
+        private Set<String> globalRoles;
+
+        @Override
+        public String getRoleMappingsFileName() {
+            return "role-mappings-config.xml";
+        }
+
+        @Override
+        public String getPermissionsFileName() {
+            return "permission-mappings-config.xml";
+        }
+
+        @Override
+        protected PermissionsConfigTO loadConfiguration(String site, String filename) {
+            return filename.equals(getPermissionsFileName())? permissions(site, PERMISSIONS) : roles();
+        }
+
+        @Override
+        protected PermissionsConfigTO loadGlobalPermissionsConfiguration() {
+            return permissions(GLOBAL, GLOBAL_PERMISSIONS);
+        }
+
+        @Override
+        protected PermissionsConfigTO loadGlobalRolesConfiguration() {
+            return roles();
+        }
+
+        @Override
+        protected void addUserRoles(Set<String> roles, String site, String user) {
+            roles.addAll(siteRoles);
+        }
+
+        @Override
+        protected void addGlobalUserRoles(String user, Set<String> roles, PermissionsConfigTO rolesConfig) {
+            roles.addAll(globalRoles);
+        }
+
+        private PermissionsConfigTO roles() {
+            PermissionsConfigTO config = new PermissionsConfigTO();
+            config.setRoles(new HashMap<>());
+            return config;
+        }
+
+        private PermissionsConfigTO permissions(String site, String xml) {
+            PermissionsConfigTO config = new PermissionsConfigTO();
+            try {
+                loadPermissions(site, DocumentHelper.parseText(xml).getRootElement(), config);
+            } catch (DocumentException e) {
+                throw new IllegalStateException(e);
+            }
+            return config;
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v1.service.workflow;
+
+import org.craftercms.studio.api.v1.constant.StudioConstants;
+import org.craftercms.studio.api.v1.dal.ItemState;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
+import org.craftercms.studio.api.v1.service.objectstate.State;
+import org.craftercms.studio.api.v1.service.security.SecurityService;
+import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.craftercms.studio.api.v1.to.GoLiveQueue;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Checks how the go live queue is filled from the submitted items
+ */
+public class WorkflowServiceImplTest {
+
+    private static final String SITE = "test";
+    private static final String USER = "admin";
+    private static final String INVALID_PATH = "/site/website/../invalid/index.xml";
+
+    private WorkflowServiceImpl workflowService;
+    private ObjectStateService objectStateService;
+    private ContentService contentService;
+    private SecurityService securityService;
+
+    @BeforeMethod
+    public void setUp() {
+        objectStateService = mock(ObjectStateService.class);
+        contentService = mock(ContentService.class);
+        securityService = mock(SecurityService.class);
+        when(securityService.getCurrentUser()).thenReturn(USER);
+
+        workflowService = new WorkflowServiceImpl();
+        workflowService.setObjectStateService(objectStateService);
+        workflowService.setContentService(contentService);
+        workflowService.setSecurityService(securityService);
+    }
+
+    @Test
+    public void testInvalidItemDoesNotFailTheQueue() throws Exception {
+        List<String> paths = Arrays.asList("/site/website/a/index.xml", INVALID_PATH, "/site/website/b/index.xml");
+        List<ItemState> states = new ArrayList<ItemState>();
+        for (String path : paths) {
+            states.add(submitted(path));
+        }
+        when(objectStateService.getSubmittedItems(SITE)).thenReturn(states);
+
+        // like the real validation, any collection holding the invalid path is rejected as a whole
+        when(securityService.getUserPermissions(eq(SITE), anyCollection(), eq(USER), anyListOf(String.class)))
+                .thenAnswer(new Answer<Map<String, Set<String>>>() {
+                    @Override
+                    public Map<String, Set<String>> answer(InvocationOnMock invocation) {
+                        @SuppressWarnings("unchecked")
+                        Collection<ContentItemTO> items = (Collection<ContentItemTO>) invocation.getArguments()[1];
+                        Map<String, Set<String>> permissions = new HashMap<String, Set<String>>();
+                        for (ContentItemTO item : items) {
+                            if (INVALID_PATH.equals(item.getUri())) {
+                                throw new IllegalArgumentException("Invalid path " + item.getUri());
+                            }
+                            permissions.put(item.getUri(),
+                                    Collections.singleton(StudioConstants.PERMISSION_VALUE_PUBLISH));
+                        }
+                        return permissions;
+                    }
+                });
+
+        GoLiveQueue queue = new GoLiveQueue();
+        workflowService.fillQueue(SITE, queue, null);
+
+        List<String> queued = new ArrayList<String>();
+        for (ContentItemTO item : queue.getQueue()) {
+            queued.add(item.getUri());
+        }
+        Collections.sort(queued);
+        assertEquals(queued, Arrays.asList("/site/website/a/index.xml", "/site/website/b/index.xml"));
+    }
+
+    private ItemState submitted(String path) throws Exception {
+        ItemState state = new ItemState();
+        state.setObjectId(path);
+        state.setSite(SITE);
+        state.setPath(path);
+        state.setState(State.NEW_SUBMITTED_WITH_WF_UNSCHEDULED.name());
+
+        ContentItemTO item = new ContentItemTO();
+        item.setUri(path);
+        item.setPath(path);
+        when(contentService.contentExists(SITE, path)).thenReturn(true);
+        when(contentService.getContentItem(SITE, path, 0)).thenReturn(item);
+        return state;
+    }
+}
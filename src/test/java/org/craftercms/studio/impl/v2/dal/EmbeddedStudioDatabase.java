@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v2.dal;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.io.IOUtils;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded MariaDB with the Studio schema created from {@code createDDL.sql}, the same way
+ * {@link DataSourceInitializerImpl} creates it, for tests that need to run the real mapper queries
+ */
+public class EmbeddedStudioDatabase implements AutoCloseable {
+
+    public static final String SCHEMA = "crafter";
+
+    private static final String CREATE_DDL_SCRIPT = "crafter/studio/database/createDDL.sql";
+    private static final String MYBATIS_CONFIG = "crafter/studio/database/mybatis-config.xml";
+    private static final String CRAFTER_SCHEMA_NAME = "@crafter_schema_name";
+    private static final String DELIMITER = " ;";
+
+    private final DB db;
+    private final BasicDataSource dataSource;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final AtomicInteger statements = new AtomicInteger();
+
+    public EmbeddedStudioDatabase() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+        db.createDB(SCHEMA);
+
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.mariadb.jdbc.Driver");
+        dataSource.setUrl("jdbc:mariadb://127.0.0.1:" + db.getConfiguration().getPort() + "/" + SCHEMA);
+        dataSource.setUsername("root");
+        createTables();
+
+        SqlSessionFactoryBean sqlSessionFactoryBean = new SqlSessionFactoryBean();
+        sqlSessionFactoryBean.setDataSource(dataSource);
+        sqlSessionFactoryBean.setConfigLocation(new ClassPathResource(MYBATIS_CONFIG));
+        sqlSessionFactory = sqlSessionFactoryBean.getObject();
+    }
+
+    /**
+     * Get a mapper whose calls are counted by {@link #getStatements()}
+     *
+     * @param type mapper interface, its XML mapping is loaded from the classpath
+     * @param <T> mapper type
+     * @return mapper bound to the embedded database
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getMapper(Class<T> type) {
+        if (!sqlSessionFactory.getConfiguration().hasMapper(type)) {
+            sqlSessionFactory.getConfiguration().addMapper(type);
+        }
+        T mapper = new SqlSessionTemplate(sqlSessionFactory).getMapper(type);
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    statements.incrementAndGet();
+                    try {
+                        return method.invoke(mapper, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return new DataSourceTransactionManager(dataSource);
+    }
+
+    public BasicDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Number of mapper calls since the last {@link #resetStatements()}
+     */
+    public int getStatements() {
+        return statements.get();
+    }
+
+    public void resetStatements() {
+        statements.set(0);
+    }
+
+    /**
+     * Run an update statement directly through JDBC, it is not counted as a mapper call
+     *
+     * @param sql statement
+     * @param params statement parameters
+     * @return number of updated rows
+     * @throws SQLException if the statement fails
+     */
+    public int update(String sql, Object... params) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Run a query returning a single number directly through JDBC, it is not counted as a mapper call
+     *
+     * @param sql query
+     * @param params query parameters
+     * @return value of the first column of the first row
+     * @throws SQLException if the query fails
+     */
+    public long queryForLong(String sql, Object... params) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            dataSource.close();
+        } finally {
+            db.stop();
+        }
+    }
+
+    private void createTables() throws Exception {
+        String script;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(CREATE_DDL_SCRIPT)) {
+            script = IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptRunner scriptRunner = new ScriptRunner(connection);
+            scriptRunner.setDelimiter(DELIMITER);
+            scriptRunner.setStopOnError(true);
+            scriptRunner.setLogWriter(null);
+            scriptRunner.runScript(new StringReader(script.replaceAll(CRAFTER_SCHEMA_NAME, SCHEMA)));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.audit.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v2.dal.AuditDAO;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogParameter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class AuditLogWriterTest {
+
+    private Path journalFolder;
+    private AtomicInteger inserted;
+    private AtomicInteger statements;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        journalFolder = Files.createTempDirectory("audit-journal");
+        inserted = new AtomicInteger();
+        statements = new AtomicInteger();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(journalFolder.toFile());
+    }
+
+    @Test
+    public void testEntriesAreWrittenInBatches() {
+        AuditDAO auditDao = countingAuditDao(null);
+        AuditLogWriter writer = writer(auditDao, 10000);
+        writer.start();
+        for (int i = 0; i < 1000; i++) {
+            writer.write(entry(i));
+        }
+        AuditLog withParameters = entry(1000);
+        withParameters.setParameters(Collections.singletonList(new AuditLogParameter()));
+        writer.write(withParameters);
+        writer.shutdown();
+
+        assertEquals(inserted.get(), 1001);
+        assertTrue(statements.get() < 100, "Expected multi-row inserts but got " + statements.get() + " statements");
+        assertEquals(withParameters.getId(), 42L);
+    }
+
+    @Test
+    public void testFullQueueSpillsToJournal() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AuditDAO auditDao = countingAuditDao(() -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        });
+        AuditLogWriter writer = writer(auditDao, 1);
+        writer.start();
+        writer.write(entry(0));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            writer.write(entry(i));
+        }
+        assertTrue(Files.exists(journalFolder.resolve(AuditLogWriter.JOURNAL_FILE)));
+
+        release.countDown();
+        writer.shutdown();
+
+        assertEquals(inserted.get(), 10);
+        assertFalse(Files.exists(journalFolder.resolve(AuditLogWriter.JOURNAL_FILE)));
+        assertFalse(Files.exists(journalFolder.resolve(AuditLogWriter.REPLAY_FILE)));
+    }
+
+    @Test
+    public void testFailedBatchIsReplayedOnStart() {
+        AuditDAO failingDao = countingAuditDao(() -> {
+            throw new IllegalStateException("Database is down");
+        });
+        AuditLogWriter writer = writer(failingDao, 100);
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            writer.write(entry(i));
+        }
+        writer.shutdown();
+        assertTrue(Files.exists(journalFolder.resolve(AuditLogWriter.JOURNAL_FILE)) ||
+                   Files.exists(journalFolder.resolve(AuditLogWriter.REPLAY_FILE)));
+
+        inserted.set(0);
+        writer = writer(countingAuditDao(null), 100);
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(inserted.get(), 10);
+        assertFalse(Files.exists(journalFolder.resolve(AuditLogWriter.REPLAY_FILE)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRejectedEntryDoesNotBlockTheJournal() throws Exception {
+        AuditLogWriter writer = writer(countingAuditDao(() -> {
+            throw new IllegalStateException("Database is down");
+        }), 100);
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            writer.write(entry(i));
+        }
+        writer.shutdown();
+
+        // The database rejects one of the entries every time, like a value too long for its column
+        inserted.set(0);
+        AuditDAO auditDao = mock(AuditDAO.class);
+        doAnswer(invocation -> {
+            List<AuditLog> auditLogs = (List<AuditLog>) ((Map<String, Object>) invocation.getArguments()[0])
+                    .get("auditLogs");
+            if (auditLogs.stream().anyMatch(auditLog -> auditLog.getPrimaryTargetValue().contains("page-3/"))) {
+                throw new DataIntegrityViolationException("Data too long for column 'primary_target_value'");
+            }
+            inserted.addAndGet(auditLogs.size());
+            return null;
+        }).when(auditDao).insertAuditLogs(anyMap());
+        writer = writer(auditDao, 100);
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(inserted.get(), 9);
+        assertFalse(Files.exists(journalFolder.resolve(AuditLogWriter.JOURNAL_FILE)));
+        assertFalse(Files.exists(journalFolder.resolve(AuditLogWriter.REPLAY_FILE)));
+        List<String> failed = Files.readAllLines(journalFolder.resolve(AuditLogWriter.FAILED_FILE));
+        assertEquals(failed.size(), 1);
+        assertTrue(failed.get(0).contains("page-3/"));
+    }
+
+    private AuditLogWriter writer(AuditDAO auditDao, int queueSize) {
+        return new AuditLogWriter(auditDao, mock(PlatformTransactionManager.class), queueSize, 100, 10,
+                journalFolder);
+    }
+
+    @SuppressWarnings("unchecked")
+    private AuditDAO countingAuditDao(Interceptor interceptor) {
+        AuditDAO auditDao = mock(AuditDAO.class);
+        doAnswer(invocation -> {
+            if (interceptor != null) {
+                interceptor.intercept();
+            }
+            Map<String, Object> params = (Map<String, Object>) invocation.getArguments()[0];
+            inserted.addAndGet(((List<AuditLog>) params.get("auditLogs")).size());
+            statements.incrementAndGet();
+            return null;
+        }).when(auditDao).insertAuditLogs(anyMap());
+        when(auditDao.insertAuditLog(any(AuditLog.class))).thenAnswer(invocation -> {
+            ((AuditLog) invocation.getArguments()[0]).setId(42L);
+            inserted.incrementAndGet();
+            statements.incrementAndGet();
+            return 1;
+        });
+        return auditDao;
+    }
+
+    private AuditLog entry(int index) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setOrganizationId(1);
+        auditLog.setOperation(OPERATION_CREATE);
+        auditLog.setOperationTimestamp(ZonedDateTime.now());
+        auditLog.setActorId("admin");
+        auditLog.setPrimaryTargetValue("/site/website/page-" + index + "/index.xml");
+        return auditLog;
+    }
+
+    private interface Interceptor {
+
+        void intercept() throws Exception;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v2.service.audit.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v2.dal.AuditDAO;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.xml.DefaultBeanDefinitionDocumentReader;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.expression.StandardBeanExpressionResolver;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.AUDIT_WRITER_SYNCHRONOUS_OPERATIONS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Runs the audit log queries against an embedded MariaDB
+ */
+public class AuditServiceInternalImplTest {
+
+    private static final int PAGES = 20;
+    private static final int ASSETS = 5;
+    private static final int PAGE_SIZE = 7;
+    private static final String SERVICES_CONTEXT = "crafter/studio/studio-services-context.xml";
+
+    private static final String INSERT_AUDIT =
+            "INSERT INTO audit (organization_id, site_id, operation, operation_timestamp, origin, " +
+            "primary_target_id, primary_target_type, primary_target_value, actor_id) " +
+            "VALUES (1, ?, 'UPDATE', ?, 'API', ?, 'content item', ?, 'admin')";
+
+    private EmbeddedStudioDatabase database;
+    private AuditServiceInternalImpl auditService;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        database = new EmbeddedStudioDatabase();
+        long siteId = database.queryForLong("SELECT id FROM site WHERE site_id = 'studio_root'");
+        LocalDateTime timestamp = LocalDateTime.of(2020, 1, 1, 0, 0);
+        try (Connection connection = database.getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_AUDIT)) {
+            for (int i = 0; i < PAGES + ASSETS; i++) {
+                String path = i < PAGES ? "/site/website/page-" + i + "/index.xml" :
+                        "/static-assets/image_" + i + ".png";
+                statement.setLong(1, siteId);
+                // Entries share timestamps so the id has to break the ties
+                statement.setTimestamp(2, Timestamp.valueOf(timestamp.plusSeconds(i / 3)));
+                statement.setString(3, path);
+                statement.setString(4, path);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        auditService = new AuditServiceInternalImpl();
+        auditService.setAuditDao(database.getMapper(AuditDAO.class));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testTargetFilters() {
+        assertEquals(getAuditLog("index.xml").size(), PAGES);
+        assertEquals(getAuditLog("page-1/").size(), 1);
+        assertEquals(getAuditLog("^/static-assets/").size(), ASSETS);
+        assertEquals(getAuditLog("^page-1").size(), 0);
+        assertEquals(getAuditLog("^/site/website/page-1/index.xml$").size(), 1);
+        assertEquals(getAuditLog("image_2[0-2]").size(), 3);
+        assertEquals(auditService.getAuditLogTotal(null, null, null, null, false, null, null, "website", null, null),
+                PAGES);
+    }
+
+    @Test
+    public void testCursorPagesFollowTheFirstPageOrder() {
+        for (String order : new String[] { null, "ASC", "DESC" }) {
+            List<AuditLog> expected = getAuditLog(null);
+            Comparator<AuditLog> comparator = Comparator.comparing((AuditLog auditLog) ->
+                    auditLog.getOperationTimestamp().toInstant()).thenComparing(AuditLog::getId);
+            expected.sort("ASC".equals(order) ? comparator : comparator.reversed());
+
+            List<AuditLog> pages = new ArrayList<>();
+            List<AuditLog> page = auditService.getAuditLog(null, null, 0, PAGE_SIZE, null, null, false, null, null,
+                    null, null, null, null, order, null);
+            while (!page.isEmpty()) {
+                pages.addAll(page);
+                page = auditService.getAuditLog(null, null, 0, PAGE_SIZE, null, null, false, null, null, null, null,
+                        null, "date", order, AuditLogCursor.after(page.get(page.size() - 1)));
+            }
+            assertEquals(ids(pages), ids(expected), "Order " + order);
+        }
+    }
+
+    @Test
+    public void testCursorRequiresDateSort() {
+        AuditLog last = getAuditLog(null).get(0);
+        try {
+            auditService.getAuditLog(null, null, 0, PAGE_SIZE, null, null, false, null, null, null, null, null,
+                    "actor", null, AuditLogCursor.after(last));
+            fail("Cursors must be rejected when not sorting by date");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("date"));
+        }
+        try {
+            auditService.getAuditDashboard(null, 0, PAGE_SIZE, null, null, null, null, null, "site", "ASC",
+                    AuditLogCursor.after(last));
+            fail("Cursors must be rejected when not sorting by date");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("date"));
+        }
+    }
+
+    @Test
+    public void testAsynchronousEntriesAreOnlyWrittenAfterCommit() throws Exception {
+        long siteId = database.queryForLong("SELECT id FROM site WHERE site_id = 'studio_root'");
+        Path journalFolder = Files.createTempDirectory("audit-journal");
+        AuditServiceInternalImpl asyncService = new AuditServiceInternalImpl();
+        asyncService.setAuditDao(database.getMapper(AuditDAO.class));
+        asyncService.setTransactionManager(database.getTransactionManager());
+        asyncService.setStudioConfiguration(mock(StudioConfiguration.class));
+        asyncService.setWriterEnabled(true);
+        asyncService.setWriterQueueSize(10);
+        asyncService.setWriterBatchSize(10);
+        asyncService.setWriterFlushInterval(10);
+        asyncService.setWriterJournalFolder(journalFolder.toString());
+        asyncService.init();
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(database.getTransactionManager());
+            transactionTemplate.execute(status -> {
+                asyncService.insertAuditLog(transactionEntry(asyncService, siteId, "committed"), false);
+                return null;
+            });
+            transactionTemplate.execute(status -> {
+                asyncService.insertAuditLog(transactionEntry(asyncService, siteId, "rolled-back"), false);
+                status.setRollbackOnly();
+                return null;
+            });
+            // drains the queue
+            asyncService.destroy();
+
+            assertEquals(database.queryForLong("SELECT COUNT(*) FROM audit WHERE primary_target_value = ?",
+                    "/transaction/committed"), 1);
+            assertEquals(database.queryForLong("SELECT COUNT(*) FROM audit WHERE primary_target_value = ?",
+                    "/transaction/rolled-back"), 0);
+        } finally {
+            asyncService.destroy();
+            database.update("DELETE FROM audit WHERE primary_target_value LIKE '/transaction/%'");
+            FileUtils.deleteDirectory(journalFolder.toFile());
+        }
+    }
+
+    @Test
+    public void testSynchronousOperationsAreWiredFromTheConfiguration() {
+        // Load the bean definition from the real context, without the imported contexts
+        DefaultListableBeanFactory contextFactory = new DefaultListableBeanFactory();
+        XmlBeanDefinitionReader reader = new XmlBeanDefinitionReader(contextFactory);
+        reader.setDocumentReaderClass(NoImportsDocumentReader.class);
+        reader.loadBeanDefinitions(new ClassPathResource(SERVICES_CONTEXT));
+        PropertyValue synchronousOperations = contextFactory.getBeanDefinition("auditServiceInternal")
+                .getPropertyValues().getPropertyValue("synchronousOperations");
+
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(AUDIT_WRITER_SYNCHRONOUS_OPERATIONS))
+                .thenReturn("LOGIN,LOGIN_FAILED, ADD_MEMBERS");
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.setBeanExpressionResolver(new StandardBeanExpressionResolver());
+        beanFactory.registerSingleton("studioConfiguration", studioConfiguration);
+        GenericBeanDefinition definition = new GenericBeanDefinition();
+        definition.setBeanClass(AuditServiceInternalImpl.class);
+        definition.getPropertyValues().addPropertyValue(synchronousOperations);
+        beanFactory.registerBeanDefinition("auditServiceInternal", definition);
+
+        assertEquals(beanFactory.getBean(AuditServiceInternalImpl.class).getSynchronousOperations(),
+                Arrays.asList("LOGIN", "LOGIN_FAILED", "ADD_MEMBERS"));
+    }
+
+    private List<AuditLog> getAuditLog(String target) {
+        return auditService.getAuditLog(null, null, 0, PAGES + ASSETS, null, null, false, null, null, target, null,
+                null, null, null, null);
+    }
+
+    private AuditLog transactionEntry(AuditServiceInternalImpl service, long siteId, String name) {
+        AuditLog auditLog = service.createAuditLogEntry();
+        auditLog.setSiteId(siteId);
+        auditLog.setOperation("UPDATE");
+        auditLog.setActorId("admin");
+        auditLog.setPrimaryTargetId("/transaction/" + name);
+        auditLog.setPrimaryTargetType("content item");
+        auditLog.setPrimaryTargetValue("/transaction/" + name);
+        return auditLog;
+    }
+
+    private List<Long> ids(List<AuditLog> auditLogs) {
+        return auditLogs.stream().map(AuditLog::getId).collect(Collectors.toList());
+    }
+
+    public static class NoImportsDocumentReader extends DefaultBeanDefinitionDocumentReader {
+
+        @Override
+        protected void importBeanDefinitionResource(Element element) {
+            // only the beans of the context itself are needed
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.audit.internal;
+
+import org.craftercms.studio.api.v2.dal.AuditLogCursor;
+import org.testng.annotations.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET_PREFIX;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET_SUBSTRING;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.TARGET_VALUE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class AuditTargetFilterTest {
+
+    @Test
+    public void testPlainValueIsSubstring() {
+        Map<String, Object> params = filter("index.xml");
+        assertEquals(params.size(), 1);
+        assertEquals(params.get(TARGET_SUBSTRING), "index.xml");
+        assertEquals(filter("/site/website.*").get(TARGET_SUBSTRING), "/site/website");
+    }
+
+    @Test
+    public void testAnchoredStartIsPrefix() {
+        assertEquals(filter("^/site/website/").get(TARGET_PREFIX), "/site/website/%");
+        assertEquals(filter("^/site/website.*").get(TARGET_PREFIX), "/site/website%");
+    }
+
+    @Test
+    public void testAnchoredValueIsEquality() {
+        Map<String, Object> params = filter("^admin$");
+        assertEquals(params.size(), 1);
+        assertEquals(params.get(TARGET_VALUE), "admin");
+    }
+
+    @Test
+    public void testLikeWildcardsAreEscaped() {
+        assertEquals(filter("^my_site%").get(TARGET_PREFIX), "my\\_site\\%%");
+        assertEquals(filter("my_site%").get(TARGET_SUBSTRING), "my\\_site\\%");
+    }
+
+    @Test
+    public void testRegexFallsBack() {
+        Map<String, Object> params = filter("(foo|bar)\\.xml");
+        assertEquals(params.size(), 1);
+        assertEquals(params.get(TARGET), "(foo|bar)\\.xml");
+        assertEquals(filter("index.xml$").get(TARGET), "index.xml$");
+        assertEquals(filter("^/site/website*").get(TARGET), "^/site/website*");
+    }
+
+    @Test
+    public void testEmptyTarget() {
+        assertTrue(filter("").isEmpty());
+        assertTrue(filter(null).isEmpty());
+    }
+
+    @Test
+    public void testCursorRoundTrip() {
+        ZonedDateTime timestamp = ZonedDateTime.of(2020, 5, 12, 10, 30, 15, 0, ZoneOffset.UTC);
+        AuditLogCursor cursor = AuditLogCursor.decode(new AuditLogCursor(timestamp, 1234567L).encode());
+        assertEquals(cursor.getOperationTimestamp().toInstant(), timestamp.toInstant());
+        assertEquals(cursor.getId(), 1234567L);
+        assertNull(AuditLogCursor.decode(""));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCursor() {
+        AuditLogCursor.decode("not a cursor");
+    }
+
+    private Map<String, Object> filter(String target) {
+        Map<String, Object> params = new HashMap<>();
+        AuditTargetFilter.addParameters(params, target);
+        return params;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.cmis;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.ItemIterable;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.Repository;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.client.api.SessionFactory;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v2.dal.CmisContentItem;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.dom4j.DocumentHelper;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.chemistry.opencmis.commons.SessionParameter.AUTHENTICATION_PROVIDER_CLASS;
+import static org.apache.chemistry.opencmis.commons.SessionParameter.CACHE_SIZE_OBJECTS;
+import static org.apache.chemistry.opencmis.commons.enums.BaseTypeId.CMIS_DOCUMENT;
+import static org.apache.chemistry.opencmis.commons.enums.BaseTypeId.CMIS_FOLDER;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_DATA_SOURCES_CONFIG_LOCATION;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class CmisServiceImplTest {
+
+    private static final String SITE = "test";
+    private static final String REPO = "alfresco";
+    private static final String CONFIG_PATH = "/config/studio/data-sources/cmis-config.xml";
+    private static final String BASE_PATH = "/Sites/test";
+    private static final int CHILDREN = 250;
+    private static final int PAGE_SIZE = 100;
+
+    private CmisServiceImpl service;
+    private ContentService contentService;
+    private ContentRepository contentRepository;
+    private SessionFactory sessionFactory;
+    private Session session;
+    private List<CmisObject> children;
+    private String url;
+    private AtomicInteger requests;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        url = "http://localhost:8080/cmis/atom";
+        requests = new AtomicInteger();
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONFIGURATION_SITE_DATA_SOURCES_CONFIG_LOCATION)).thenReturn(CONFIG_PATH);
+        contentService = mock(ContentService.class);
+        when(contentService.getContentAsDocument(SITE, CONFIG_PATH)).thenAnswer(invocation -> config(false));
+        contentRepository = mock(ContentRepository.class);
+        when(contentRepository.getRepoLastCommitId(SITE)).thenReturn("commit1");
+
+        children = new ArrayList<>();
+        for (int i = 0; i < CHILDREN; i++) {
+            children.add(i % 10 == 0 ? folder(BASE_PATH + "/docs/folder" + i) : document("doc" + i));
+        }
+        Folder folder = folder(BASE_PATH + "/docs");
+        ItemIterable<CmisObject> iterable = children(0);
+        when(folder.getChildren(any(OperationContext.class))).thenReturn(iterable);
+        session = mock(Session.class);
+        when(session.getObjectByPath(BASE_PATH + "/docs")).thenAnswer(invocation -> roundTrip(folder));
+
+        Repository repository = mock(Repository.class);
+        when(repository.getId()).thenReturn("-default-");
+        sessionFactory = mock(SessionFactory.class);
+        when(sessionFactory.getRepositories(anyMapOf(String.class, String.class)))
+                .thenAnswer(invocation -> roundTrip(Collections.singletonList(repository)));
+        when(sessionFactory.createSession(anyMapOf(String.class, String.class)))
+                .thenAnswer(invocation -> roundTrip(session));
+
+        service = new CmisServiceImpl();
+        service.setStudioConfiguration(studioConfiguration);
+        service.setContentService(contentService);
+        service.setContentRepository(contentRepository);
+        service.setSessionFactory(sessionFactory);
+        service.setListPageSize(PAGE_SIZE);
+    }
+
+    @Test
+    public void testListReusesSession() throws Exception {
+        List<CmisContentItem> cold = service.list(SITE, REPO, "/docs");
+        // repositories, session, folder and the 3 pages of children
+        assertEquals(requests.getAndSet(0), 6);
+
+        List<CmisContentItem> warm = service.list(SITE, REPO, "/docs");
+        // only the folder and the 3 pages of children
+        assertEquals(requests.get(), 4);
+
+        assertEquals(cold.size(), CHILDREN);
+        assertEquals(warm.size(), CHILDREN);
+        verify(contentService, times(1)).getContentAsDocument(SITE, CONFIG_PATH);
+        verify(sessionFactory, times(1)).getRepositories(anyMapOf(String.class, String.class));
+        verify(sessionFactory, times(1)).createSession(anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void testListPagesChildren() throws Exception {
+        List<CmisContentItem> items = service.list(SITE, REPO, "/docs");
+
+        assertEquals(items.size(), CHILDREN);
+        assertEquals(items.get(1).getItemPath(), BASE_PATH + "/docs/doc1");
+        assertEquals(items.get(1).getItemId(), "doc1");
+        assertEquals(items.get(10).getMimeType(), "folder");
+        for (CmisObject child : children) {
+            if (child instanceof Document) {
+                verify((Document) child, never()).getPaths();
+            }
+        }
+    }
+
+    @Test
+    public void testSessionIsRecreatedWhenConfigChanges() throws Exception {
+        service.list(SITE, REPO, "/docs");
+
+        // a commit that doesn't touch the configuration keeps the session
+        when(contentRepository.getRepoLastCommitId(SITE)).thenReturn("commit2");
+        when(contentRepository.commitIdExists(SITE, "commit1")).thenReturn(true);
+        when(contentRepository.getEditCommitIds(SITE, CONFIG_PATH, "commit1", "commit2"))
+                .thenReturn(Collections.emptyList());
+        service.list(SITE, REPO, "/docs");
+        verify(contentService, times(1)).getContentAsDocument(SITE, CONFIG_PATH);
+        verify(sessionFactory, times(1)).createSession(anyMapOf(String.class, String.class));
+
+        url = "http://cmis.example.com/cmis/atom";
+        when(contentRepository.getRepoLastCommitId(SITE)).thenReturn("commit3");
+        when(contentRepository.commitIdExists(SITE, "commit2")).thenReturn(true);
+        when(contentRepository.getEditCommitIds(SITE, CONFIG_PATH, "commit2", "commit3"))
+                .thenReturn(Collections.singletonList("commit3"));
+        service.list(SITE, REPO, "/docs");
+        verify(contentService, times(2)).getContentAsDocument(SITE, CONFIG_PATH);
+        verify(sessionFactory, times(2)).createSession(anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void testSessionIsDiscardedOnConnectionError() throws Exception {
+        service.list(SITE, REPO, "/docs");
+        when(session.getObjectByPath(BASE_PATH + "/docs")).thenThrow(new CmisConnectionException("down"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.list(SITE, REPO, "/docs");
+                fail("The connection error should be thrown");
+            } catch (CmisConnectionException e) {
+                // expected, the next call opens a new session
+            }
+        }
+        verify(sessionFactory, times(2)).createSession(anyMapOf(String.class, String.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSslIsScopedToSession() throws Exception {
+        when(contentService.getContentAsDocument(SITE, CONFIG_PATH)).thenAnswer(invocation -> config(true));
+        SSLSocketFactory defaultSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+
+        service.list(SITE, REPO, "/docs");
+
+        ArgumentCaptor<Map> parameters = ArgumentCaptor.forClass(Map.class);
+        verify(sessionFactory).createSession(parameters.capture());
+        assertEquals(parameters.getValue().get(AUTHENTICATION_PROVIDER_CLASS),
+                CmisServiceImpl.TrustAllAuthenticationProvider.class.getName());
+        assertEquals(parameters.getValue().get(CACHE_SIZE_OBJECTS), "500");
+        assertSame(HttpsURLConnection.getDefaultSSLSocketFactory(), defaultSocketFactory);
+        assertTrue(new CmisServiceImpl.TrustAllAuthenticationProvider().getHostnameVerifier().verify("any", null));
+    }
+
+    private org.dom4j.Document config(boolean useSsl) throws Exception {
+        return DocumentHelper.parseText("<cmis><repositories>" +
+                "<repository><id>other</id><url>http://other</url></repository>" +
+                "<repository><id>" + REPO + "</id><type>alfresco</type><url>" + url + "</url>" +
+                "<username>admin</username><password>admin</password><base-path>" + BASE_PATH + "</base-path>" +
+                "<download-url-regex>/download/{item_id}</download-url-regex><use-ssl>" + useSsl + "</use-ssl>" +
+                "</repository></repositories></cmis>");
+    }
+
+    /**
+     * Stand-in for a page of children as returned by the AtomPub binding, fetching it costs a request
+     */
+    @SuppressWarnings("unchecked")
+    private ItemIterable<CmisObject> children(long skip) {
+        ItemIterable<CmisObject> page = mock(ItemIterable.class);
+        List<CmisObject> items = children.subList((int) Math.min(skip, CHILDREN),
+                (int) Math.min(skip + PAGE_SIZE, CHILDREN));
+        when(page.skipTo(anyLong())).thenAnswer(invocation -> children((Long) invocation.getArguments()[0]));
+        when(page.getPage()).thenAnswer(invocation -> roundTrip(page));
+        when(page.iterator()).thenAnswer(invocation -> items.iterator());
+        when(page.getHasMoreItems()).thenReturn(skip + PAGE_SIZE < CHILDREN);
+        return page;
+    }
+
+    private Folder folder(String path) {
+        Folder folder = mock(Folder.class);
+        when(folder.getBaseTypeId()).thenReturn(CMIS_FOLDER);
+        when(folder.getId()).thenReturn(path);
+        when(folder.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        when(folder.getPath()).thenReturn(path);
+        return folder;
+    }
+
+    private Document document(String name) {
+        Document document = mock(Document.class);
+        when(document.getBaseTypeId()).thenReturn(CMIS_DOCUMENT);
+        when(document.getId()).thenReturn(name + ";1.0");
+        when(document.getName()).thenReturn(name);
+        when(document.getContentStreamMimeType()).thenReturn("application/pdf");
+        when(document.getContentStreamLength()).thenReturn(1024L);
+        return document;
+    }
+
+    private <T> T roundTrip(T result) {
+        requests.incrementAndGet();
+        return result;
+    }
+}
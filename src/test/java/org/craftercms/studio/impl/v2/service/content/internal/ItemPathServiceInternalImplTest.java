@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v2.service.content.internal;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v2.dal.ItemPathDAO;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+/**
+ * Runs the path dictionary queries against an embedded MariaDB
+ */
+public class ItemPathServiceInternalImplTest {
+
+    private static final String SITE = "test";
+
+    private EmbeddedStudioDatabase database;
+    private ItemPathServiceInternalImpl itemPathService;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        database = new EmbeddedStudioDatabase();
+        itemPathService = new ItemPathServiceInternalImpl();
+        itemPathService.setItemPathDao(database.getMapper(ItemPathDAO.class));
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @BeforeMethod
+    public void deletePaths() {
+        itemPathService.deleteSitePaths(SITE);
+    }
+
+    @Test
+    public void testLongPathsAreNotTruncated() throws Exception {
+        String path = "/site/website/" + StringUtils.repeat("a", 3000) + "/index.xml";
+        long id = itemPathService.internPaths(SITE, Collections.singletonList(path)).get(path);
+
+        assertEquals(database.queryForLong("SELECT CHAR_LENGTH(path) FROM item_path WHERE id = ?", id),
+                path.length());
+        assertEquals(itemPathService.internPaths(SITE, Collections.singletonList(path)).get(path).longValue(), id);
+    }
+
+    @Test
+    public void testInterningTwiceKeepsTheEntries() throws Exception {
+        String path = "/site/website/section/page/index.xml";
+        itemPathService.internPaths(SITE, Collections.singletonList(path));
+        long paths = database.queryForLong("SELECT COUNT(*) FROM item_path WHERE site = ?", SITE);
+        long closure = database.queryForLong("SELECT COUNT(*) FROM item_path_closure");
+
+        itemPathService.internPaths(SITE, Arrays.asList(path, "/site/website/section"));
+
+        assertEquals(paths, 6);
+        assertEquals(closure, 21);
+        assertEquals(database.queryForLong("SELECT COUNT(*) FROM item_path WHERE site = ?", SITE), paths);
+        assertEquals(database.queryForLong("SELECT COUNT(*) FROM item_path_closure"), closure);
+    }
+
+    @Test
+    public void testPathsAreCaseSensitive() {
+        String upper = "/site/website/About/index.xml";
+        String lower = "/site/website/about/index.xml";
+        Map<String, Long> ids = itemPathService.internPaths(SITE, Arrays.asList(upper, lower));
+
+        assertNotEquals(ids.get(upper), ids.get(lower));
+        assertEquals(ids.get("/site/website"), itemPathService.internPaths(SITE,
+                Collections.singletonList("/site/website")).get("/site/website"));
+    }
+}
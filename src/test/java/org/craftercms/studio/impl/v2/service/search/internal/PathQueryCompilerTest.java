@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.search.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.craftercms.studio.model.search.SearchPermissions;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class PathQueryCompilerTest {
+
+    private final PathQueryCompiler compiler = new PathQueryCompiler("localId", "hierarchy", "ngram");
+
+    @Test
+    public void testKeyword() {
+        assertEquals(compiler.keyword("article", true), QueryBuilders.matchPhraseQuery("localId.ngram", "article"));
+        assertEquals(compiler.keyword("article", false), QueryBuilders.wildcardQuery("localId", "*article*"));
+        assertEquals(compiler.keyword("ab", true), QueryBuilders.wildcardQuery("localId", "*ab*"));
+    }
+
+    @Test
+    public void testScope() {
+        assertEquals(compiler.scope("/site/website/.*", true),
+            QueryBuilders.termQuery("localId.hierarchy", "/site/website"));
+        assertEquals(compiler.scope("/site/website/.*", false),
+            QueryBuilders.prefixQuery("localId", "/site/website/"));
+        assertEquals(compiler.scope("/site/website/article.*", true),
+            QueryBuilders.prefixQuery("localId", "/site/website/article"));
+        assertEquals(compiler.scope("/static-assets/images/logo\\.png", true),
+            QueryBuilders.termQuery("localId", "/static-assets/images/logo.png"));
+        assertEquals(compiler.scope("/site/(website|components)/.*", true),
+            QueryBuilders.regexpQuery("localId", "/site/(website|components)/.*"));
+        assertEquals(compiler.scope(".*", true), QueryBuilders.prefixQuery("localId", ""));
+    }
+
+    @Test
+    public void testDisabledSubfields() {
+        PathQueryCompiler disabled = new PathQueryCompiler("localId", "", null);
+        assertNull(disabled.getHierarchyFieldName());
+        assertNull(disabled.getNgramFieldName());
+        assertEquals(disabled.keyword("article", true), QueryBuilders.wildcardQuery("localId", "*article*"));
+        assertEquals(disabled.scope("/site/website/.*", true), QueryBuilders.prefixQuery("localId", "/site/website/"));
+    }
+
+    @Test
+    public void testNestedPermissions() {
+        SearchPermissions permissions = permissions("/site/.*", "/site/website/.*", "/site/website/secret/.*",
+            "/static-assets|/static-assets/.*", "/static-assets/images/logo\\.png", "/templates/web/article\\.ftl",
+            "~DASHBOARD~");
+        permissions.addDeniedContentType("/page/restricted");
+
+        assertEquals(compiler.permissions(permissions, "content-type", true), QueryBuilders.boolQuery()
+            .filter(QueryBuilders.boolQuery()
+                .minimumShouldMatch(1)
+                .should(QueryBuilders.termsQuery("localId.hierarchy", Arrays.asList("/site", "/static-assets")))
+                .should(QueryBuilders.termsQuery("localId",
+                    Arrays.asList("/static-assets", "/templates/web/article.ftl"))))
+            .mustNot(QueryBuilders.termsQuery("content-type", Collections.singletonList("/page/restricted"))));
+
+        assertEquals(compiler.permissions(permissions, "content-type", false), QueryBuilders.boolQuery()
+            .filter(QueryBuilders.boolQuery()
+                .minimumShouldMatch(1)
+                .should(QueryBuilders.prefixQuery("localId", "/site/"))
+                .should(QueryBuilders.prefixQuery("localId", "/static-assets/"))
+                .should(QueryBuilders.termsQuery("localId",
+                    Arrays.asList("/static-assets", "/templates/web/article.ftl"))))
+            .mustNot(QueryBuilders.termsQuery("content-type", Collections.singletonList("/page/restricted"))));
+    }
+
+    @Test
+    public void testPermissionPatterns() {
+        assertEquals(compiler.permissions(permissions("/site/website/[^/]+\\.xml", "/site/(?!secret/).*"), null,
+            true), QueryBuilders.boolQuery()
+            .filter(QueryBuilders.boolQuery()
+                .minimumShouldMatch(1)
+                .should(QueryBuilders.termsQuery("localId.hierarchy", Collections.singletonList("/site")))
+                .should(QueryBuilders.regexpQuery("localId", "/site/website/[^/]+\\.xml"))));
+    }
+
+    @Test
+    public void testAllowAllPermissions() {
+        SearchPermissions permissions = new SearchPermissions();
+        permissions.setAllowAll(true);
+        assertNull(compiler.permissions(permissions, "content-type", true));
+        assertNull(compiler.permissions(permissions("/.*", "/site/.*"), "content-type", true));
+
+        permissions.addDeniedContentType("/page/restricted");
+        assertEquals(compiler.permissions(permissions, "content-type", true), QueryBuilders.boolQuery()
+            .mustNot(QueryBuilders.termsQuery("content-type", Collections.singletonList("/page/restricted"))));
+    }
+
+    @Test
+    public void testNoReadPermissions() {
+        assertEquals(compiler.permissions(permissions("~DASHBOARD~"), "content-type", true), QueryBuilders.boolQuery()
+            .filter(QueryBuilders.boolQuery().mustNot(QueryBuilders.matchAllQuery())));
+        assertTrue(compiler.permissions(new SearchPermissions(), "content-type", true).toString()
+            .contains("match_all"));
+    }
+
+    private SearchPermissions permissions(String... patterns) {
+        SearchPermissions permissions = new SearchPermissions();
+        Arrays.stream(patterns).forEach(permissions::addAllowedPattern);
+        return permissions;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.search.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.configuration2.BaseHierarchicalConfiguration;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.search.PermissionAwareSearchService;
+import org.craftercms.studio.model.search.SearchParams;
+import org.elasticsearch.action.search.SearchRequest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.craftercms.studio.impl.v2.service.search.internal.SearchServiceInternalImpl.CONFIG_KEY_FACETS;
+import static org.craftercms.studio.impl.v2.service.search.internal.SearchServiceInternalImpl.CONFIG_KEY_TYPES;
+import static org.craftercms.studio.impl.v2.service.search.internal.SearchServiceInternalImpl.INDEX_TEMPLATE_NAME;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SearchServiceInternalImplTest {
+
+    private static final String SITE = "test";
+
+    private PermissionAwareSearchService elasticsearchService;
+    private SearchServiceInternalImpl searchService;
+
+    @BeforeMethod
+    public void setUp() {
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getSubConfigs(CONFIG_KEY_TYPES)).thenReturn(Arrays.asList(
+            type("Image", "contentType", "^image/.*$"),
+            type("Page", "content-type", "^/page/.*$")));
+        when(studioConfiguration.getSubConfigs(CONFIG_KEY_FACETS)).thenReturn(Collections.emptyList());
+
+        elasticsearchService = mock(PermissionAwareSearchService.class);
+
+        searchService = new SearchServiceInternalImpl();
+        searchService.setPathFieldName("localId");
+        searchService.setPathHierarchySubfield("hierarchy");
+        searchService.setPathNgramSubfield("ngram");
+        searchService.setIndexSuffix("-authoring");
+        searchService.setSearchFields(new String[] { "internal-name", "content" });
+        searchService.setHighlightFields(new String[0]);
+        searchService.setDefaultType("Other");
+        searchService.setElasticsearchService(elasticsearchService);
+        searchService.setStudioConfiguration(studioConfiguration);
+        searchService.setServicesConfig(mock(ServicesConfig.class));
+        searchService.init();
+    }
+
+    @Test
+    public void testIndexTemplate() throws Exception {
+        verify(elasticsearchService).putIndexTemplate(eq(INDEX_TEMPLATE_NAME), anyString());
+    }
+
+    @Test
+    public void testQueryUsesSubfields() throws Exception {
+        when(elasticsearchService.isFieldIndexed(SITE, "localId.ngram")).thenReturn(true);
+        when(elasticsearchService.isFieldIndexed(SITE, "localId.hierarchy")).thenReturn(true);
+
+        String query = search("home  article", "/site/website/.*");
+
+        assertFalse(query.contains("regexp"), query);
+        assertFalse(query.contains("wildcard"), query);
+        assertTrue(query.contains("\"localId.ngram\""), query);
+        assertTrue(query.contains("\"localId.hierarchy\""), query);
+    }
+
+    @Test
+    public void testQueryWithoutSubfields() throws Exception {
+        String query = search("article", "/site/website/.*");
+
+        assertFalse(query.contains("regexp"), query);
+        assertTrue(query.contains("\"wildcard\""), query);
+        assertTrue(query.contains("\"prefix\""), query);
+    }
+
+    @Test
+    public void testItemType() {
+        assertEquals(searchService.getItemType(source("contentType", "image/png")), "Image");
+        assertEquals(searchService.getItemType(source("content-type", "/page/article")), "Page");
+        assertEquals(searchService.getItemType(source("contentType", "application/pdf")), "Other");
+        assertEquals(searchService.getItemType(Collections.emptyMap()), "Other");
+    }
+
+    private String search(String keywords, String path) throws Exception {
+        AtomicReference<SearchRequest> request = new AtomicReference<>();
+        when(elasticsearchService.search(eq(SITE), anyListOf(String.class), any(SearchRequest.class)))
+            .thenAnswer(invocation -> {
+                request.set((SearchRequest) invocation.getArguments()[2]);
+                throw new IllegalStateException("Search not available");
+            });
+
+        SearchParams params = new SearchParams();
+        params.setKeywords(keywords);
+        params.setPath(path);
+        try {
+            searchService.search(SITE, Collections.emptyList(), params);
+            fail();
+        } catch (ServiceLayerException e) {
+            // the request is only captured
+        }
+        return request.get().source().query().toString();
+    }
+
+    private HierarchicalConfiguration<ImmutableNode> type(String name, String field, String matches) {
+        BaseHierarchicalConfiguration config = new BaseHierarchicalConfiguration();
+        config.addProperty("name", name);
+        config.addProperty("field", field);
+        config.addProperty("matches", matches);
+        return config;
+    }
+
+    private Map<String, Object> source(String field, Object value) {
+        Map<String, Object> source = new HashMap<>();
+        source.put(field, value);
+        return source;
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.craftercms.studio.impl.v2.service.security;
+
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.studio.api.v1.dal.SiteFeed;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.Group;
+import org.craftercms.studio.api.v2.dal.GroupDAO;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.service.security.AuthenticationChain;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_NAMES;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_SYSTEM_SITE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SECURITY_SESSION_TIMEOUT;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class HeadersAuthenticationProviderTest {
+
+    private static final String SECURE_KEY_HEADER = "secure_key";
+    private static final String SECURE_KEY = "secret";
+    private static final String USERNAME = "sso-user";
+    private static final long USER_ID = 10;
+
+    private HeadersAuthenticationProvider provider;
+    private AuthenticationChain authenticationChain;
+    private UserServiceInternal userServiceInternal;
+    private GroupDAO groupDao;
+    private List<Group> currentGroups;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        currentGroups = new ArrayList<>();
+        User user = new User();
+        user.setId(USER_ID);
+        user.setUsername(USERNAME);
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setEmail(USERNAME + "@example.com");
+
+        userServiceInternal = mock(UserServiceInternal.class);
+        when(userServiceInternal.getUserByIdOrUsername(anyLong(), eq(USERNAME))).thenReturn(user);
+        when(userServiceInternal.getUserGroups(anyLong(), anyString())).thenReturn(currentGroups);
+        groupDao = mock(GroupDAO.class);
+        when(groupDao.addUserToGroups(anyMap())).thenReturn(1);
+
+        AuditServiceInternal auditServiceInternal = mock(AuditServiceInternal.class);
+        when(auditServiceInternal.createAuditLogEntry()).thenReturn(new AuditLog());
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE)).thenReturn("studio_root");
+        when(studioConfiguration.getProperty(SECURITY_SESSION_TIMEOUT, Integer.class)).thenReturn(60);
+        SiteService siteService = mock(SiteService.class);
+        when(siteService.getSite("studio_root")).thenReturn(new SiteFeed());
+
+        authenticationChain = mock(AuthenticationChain.class);
+        when(authenticationChain.getUserServiceInternal()).thenReturn(userServiceInternal);
+        when(authenticationChain.getGroupDao()).thenReturn(groupDao);
+        when(authenticationChain.getAuditServiceInternal()).thenReturn(auditServiceInternal);
+        when(authenticationChain.getStudioConfiguration()).thenReturn(studioConfiguration);
+        when(authenticationChain.getSiteService()).thenReturn(siteService);
+        when(authenticationChain.getSiteMembershipCache()).thenReturn(mock(SiteMembershipCache.class));
+
+        provider = new HeadersAuthenticationProvider();
+        provider.setEnabled(true);
+        provider.setSecureKeyHeader(SECURE_KEY_HEADER);
+        provider.setSecureKeyHeaderValue(SECURE_KEY);
+        provider.setUsernameHeader("username");
+        provider.setFirstNameHeader("firstname");
+        provider.setLastNameHeader("lastname");
+        provider.setEmailHeader("email");
+        provider.setGroupsHeader("groups");
+    }
+
+    @Test
+    public void testUnchangedHeadersSkipTheDatabase() throws Exception {
+        assertTrue(authenticate("editors, authors"));
+        // same groups in a different order
+        assertTrue(authenticate("authors,editors"));
+
+        verify(userServiceInternal, times(1)).getUserByIdOrUsername(anyLong(), eq(USERNAME));
+        verify(groupDao, times(1)).createGroups(anyMap());
+        verify(groupDao, times(1)).addUserToGroups(anyMap());
+    }
+
+    @Test
+    public void testChangedHeadersAreSyncedAgain() throws Exception {
+        authenticate("editors");
+        authenticate("editors,authors");
+
+        verify(userServiceInternal, times(2)).getUserByIdOrUsername(anyLong(), eq(USERNAME));
+        verify(groupDao, times(2)).createGroups(anyMap());
+    }
+
+    @Test
+    public void testOnlyMissingGroupsAreWritten() throws Exception {
+        currentGroups.add(group("editors"));
+
+        authenticate("editors,authors,reviewers");
+
+        assertEquals(getWrittenGroups(), Arrays.asList("authors", "reviewers"));
+    }
+
+    @Test
+    public void testCurrentGroupsAreNotWritten() throws Exception {
+        currentGroups.add(group("editors"));
+
+        authenticate("editors");
+
+        verify(groupDao, never()).createGroups(anyMap());
+        verify(groupDao, never()).addUserToGroups(anyMap());
+    }
+
+    @Test
+    public void testLongGroupNamesAreSkipped() throws Exception {
+        authenticate("authors,a-group-name-longer-than-the-column");
+
+        assertEquals(getWrittenGroups(), Arrays.asList("authors"));
+    }
+
+    private boolean authenticate(String groups) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/studio/api/2/users/me");
+        request.addHeader(SECURE_KEY_HEADER, SECURE_KEY);
+        request.addHeader("username", USERNAME);
+        request.addHeader("firstname", "First");
+        request.addHeader("lastname", "Last");
+        request.addHeader("email", USERNAME + "@example.com");
+        request.addHeader("groups", groups);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContext.setCurrent(new RequestContext(request, response, request.getServletContext()));
+        try {
+            return provider.doAuthenticate(request, response, authenticationChain, USERNAME, null);
+        } finally {
+            RequestContext.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> getWrittenGroups() {
+        ArgumentCaptor<Map> createParams = ArgumentCaptor.forClass(Map.class);
+        verify(groupDao).createGroups(createParams.capture());
+        ArgumentCaptor<Map> addParams = ArgumentCaptor.forClass(Map.class);
+        verify(groupDao).addUserToGroups(addParams.capture());
+        assertEquals(addParams.getValue().get(GROUP_NAMES), createParams.getValue().get(GROUP_NAMES));
+        return (List<String>) createParams.getValue().get(GROUP_NAMES);
+    }
+
+    private Group group(String name) {
+        Group group = new Group();
+        group.setGroupName(name);
+        return group;
+    }
+}
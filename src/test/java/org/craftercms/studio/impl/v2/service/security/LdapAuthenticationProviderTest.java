@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.security;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import org.craftercms.studio.api.v1.dal.SiteFeed;
+import org.craftercms.studio.api.v1.exception.security.BadCredentialsException;
+import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.Group;
+import org.craftercms.studio.api.v2.dal.GroupDAO;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.dal.UserDAO;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.service.security.AuthenticationChain;
+import org.craftercms.studio.api.v2.service.security.internal.SiteMembershipCache;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.springframework.ldap.pool2.factory.PooledContextSource;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.GROUP_NAME;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USERNAME;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.USER_IDS;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_SYSTEM_SITE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SECURITY_SESSION_TIMEOUT;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class LdapAuthenticationProviderTest {
+
+    private static final String BASE_DN = "dc=example,dc=com";
+    private static final String MANAGER_DN = "cn=Manager," + BASE_DN;
+    private static final String MANAGER_PASSWORD = "secret";
+    private static final String PASSWORD = "password";
+    private static final int USERS = 20;
+    private static final int GROUPS_PER_USER = 50;
+    private static final int THREADS = 8;
+    private static final int LOGINS_PER_THREAD = 50;
+
+    private InMemoryDirectoryServer server;
+    private LdapAuthenticationProvider provider;
+    private AuthenticationChain authenticationChain;
+
+    private Map<String, User> users;
+    private Map<Long, Set<String>> memberships;
+    private AtomicLong ids;
+    private AtomicInteger userUpdates;
+    private AtomicInteger memberWrites;
+    private AtomicInteger auditEntries;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials(MANAGER_DN, MANAGER_PASSWORD);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        // custom group attribute, skip schema checks
+        config.setSchema(null);
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: " + BASE_DN, "objectClass: top", "objectClass: domain", "dc: example");
+        server.add("dn: ou=people," + BASE_DN, "objectClass: top", "objectClass: organizationalUnit", "ou: people");
+        for (int i = 0; i < USERS; i++) {
+            Entry entry = new Entry("uid=" + username(i) + ",ou=people," + BASE_DN);
+            entry.addAttribute("objectClass", "top", "person", "inetOrgPerson");
+            entry.addAttribute("uid", username(i));
+            entry.addAttribute("userPassword", PASSWORD);
+            entry.addAttribute("cn", "First " + i);
+            entry.addAttribute("sn", "Last " + i);
+            entry.addAttribute("mail", username(i) + "@example.com");
+            String[] groups = new String[GROUPS_PER_USER];
+            for (int j = 0; j < GROUPS_PER_USER; j++) {
+                groups[j] = "cn=group-" + j + ",ou=groups," + BASE_DN;
+            }
+            entry.addAttribute("crafterGroup", groups);
+            server.add(entry);
+        }
+        server.startListening();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.shutDown(true);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        provider.destroy();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        users = new ConcurrentHashMap<>();
+        memberships = new ConcurrentHashMap<>();
+        ids = new AtomicLong();
+        userUpdates = new AtomicInteger();
+        memberWrites = new AtomicInteger();
+        auditEntries = new AtomicInteger();
+
+        provider = new LdapAuthenticationProvider();
+        provider.setEnabled(true);
+        provider.setLdapUrl("ldap://localhost:" + server.getListenPort());
+        provider.setLdapUsername(MANAGER_DN);
+        provider.setLdapPassword(MANAGER_PASSWORD);
+        provider.setLdapBaseContext(BASE_DN);
+        provider.setUsernameLdapAttribute("uid");
+        provider.setFirstNameLdapAttribute("cn");
+        provider.setLastNameLdapAttribute("sn");
+        provider.setEmailLdapAttribute("mail");
+        provider.setGroupNameLdapAttribute("crafterGroup");
+        provider.setGroupNameLdapAttributeRegex("cn=([^,]+),.*");
+        provider.setGroupNameLdapAttributeMatchIndex(1);
+        provider.setPoolMaxActive(THREADS);
+
+        authenticationChain = mock(AuthenticationChain.class);
+        when(authenticationChain.getUserServiceInternal()).thenReturn(createUserServiceInternal());
+        when(authenticationChain.getUserDao()).thenReturn(createUserDao());
+        when(authenticationChain.getGroupDao()).thenReturn(createGroupDao());
+        when(authenticationChain.getSiteMembershipCache()).thenReturn(mock(SiteMembershipCache.class));
+
+        AuditServiceInternal auditServiceInternal = mock(AuditServiceInternal.class);
+        when(auditServiceInternal.createAuditLogEntry()).thenAnswer(invocation -> new AuditLog());
+        when(auditServiceInternal.insertAuditLog(any(AuditLog.class))).thenAnswer(invocation -> {
+            auditEntries.incrementAndGet();
+            return true;
+        });
+        when(authenticationChain.getAuditServiceInternal()).thenReturn(auditServiceInternal);
+
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE)).thenReturn("studio_root");
+        when(studioConfiguration.getProperty(SECURITY_SESSION_TIMEOUT, Integer.class)).thenReturn(60);
+        when(authenticationChain.getStudioConfiguration()).thenReturn(studioConfiguration);
+
+        SiteFeed siteFeed = new SiteFeed();
+        siteFeed.setId(1);
+        SiteService siteService = mock(SiteService.class);
+        when(siteService.getSite("studio_root")).thenReturn(siteFeed);
+        when(authenticationChain.getSiteService()).thenReturn(siteService);
+    }
+
+    @Test
+    public void testFirstLoginImportsUserAndGroups() throws Exception {
+        assertTrue(login(0));
+
+        User user = users.get(username(0));
+        assertEquals(user.getEmail(), username(0) + "@example.com");
+        assertEquals(memberships.get(user.getId()).size(), GROUPS_PER_USER);
+        assertTrue(memberships.get(user.getId()).contains("group-0"));
+        // user creation and one entry per group
+        assertEquals(auditEntries.get(), 1 + GROUPS_PER_USER);
+    }
+
+    @Test
+    public void testUnchangedLoginWritesNothing() throws Exception {
+        login(0);
+        int audits = auditEntries.get();
+        int writes = memberWrites.get();
+
+        assertTrue(login(0));
+        assertEquals(userUpdates.get(), 0);
+        assertEquals(memberWrites.get(), writes);
+        assertEquals(auditEntries.get(), audits);
+    }
+
+    @Test
+    public void testChangedDetailsAreUpdated() throws Exception {
+        login(1);
+        server.modify("uid=" + username(1) + ",ou=people," + BASE_DN,
+                new Modification(ModificationType.REPLACE, "mail", "changed@example.com"));
+        try {
+            login(1);
+        } finally {
+            server.modify("uid=" + username(1) + ",ou=people," + BASE_DN,
+                    new Modification(ModificationType.REPLACE, "mail", username(1) + "@example.com"));
+        }
+        assertEquals(userUpdates.get(), 1);
+    }
+
+    @Test(expectedExceptions = BadCredentialsException.class)
+    public void testBadPassword() throws Exception {
+        provider.doAuthenticate(null, null, authenticationChain, username(0), "wrong");
+    }
+
+    @Test
+    public void testLoginThroughput() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            login(i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int offset = i;
+            results.add(executor.submit(() -> {
+                int authenticated = 0;
+                for (int j = 0; j < LOGINS_PER_THREAD; j++) {
+                    if (login((offset + j) % USERS)) {
+                        authenticated++;
+                    }
+                }
+                return authenticated;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(total, THREADS * LOGINS_PER_THREAD);
+        assertEquals(userUpdates.get(), 0);
+    }
+
+    @Test
+    public void testDestroyClosesThePool() throws Exception {
+        assertTrue(login(0));
+        PooledContextSource pool = provider.getPooledContextSource();
+        assertNotNull(pool);
+        assertTrue(pool.getNumIdle() > 0);
+
+        provider.destroy();
+
+        assertNull(provider.getPooledContextSource());
+        assertEquals(pool.getNumIdle(), 0);
+        assertEquals(pool.getNumActive(), 0);
+
+        // a login after the destroy opens a new pool
+        assertTrue(login(1));
+        assertNotNull(provider.getPooledContextSource());
+        assertNotSame(provider.getPooledContextSource(), pool);
+    }
+
+    private boolean login(int index) throws Exception {
+        return provider.doAuthenticate(null, null, authenticationChain, username(index), PASSWORD);
+    }
+
+    private String username(int index) {
+        return "user-" + index;
+    }
+
+    private UserServiceInternal createUserServiceInternal() throws Exception {
+        UserServiceInternal userServiceInternal = mock(UserServiceInternal.class);
+        when(userServiceInternal.getUserByIdOrUsername(anyLong(), anyString())).thenAnswer(invocation -> {
+            String username = (String) invocation.getArguments()[1];
+            User user = users.get(username);
+            if (user == null) {
+                throw new UserNotFoundException();
+            }
+            return copy(user);
+        });
+        when(userServiceInternal.createUser(any(User.class))).thenAnswer(invocation -> {
+            User user = copy((User) invocation.getArguments()[0]);
+            user.setId(ids.incrementAndGet());
+            users.put(user.getUsername(), user);
+            return user;
+        });
+        doAnswer(invocation -> {
+            User user = (User) invocation.getArguments()[0];
+            User existing = users.get(user.getUsername());
+            existing.setEmail(user.getEmail());
+            existing.setFirstName(user.getFirstName());
+            existing.setLastName(user.getLastName());
+            userUpdates.incrementAndGet();
+            return null;
+        }).when(userServiceInternal).updateUser(any(User.class));
+        when(userServiceInternal.getUserGroups(anyLong(), anyString())).thenAnswer(invocation -> {
+            long userId = (Long) invocation.getArguments()[0];
+            return memberships.getOrDefault(userId, ConcurrentHashMap.newKeySet()).stream()
+                    .map(this::group)
+                    .collect(Collectors.toList());
+        });
+        return userServiceInternal;
+    }
+
+    private UserDAO createUserDao() {
+        UserDAO userDao = mock(UserDAO.class);
+        when(userDao.getUserByIdOrUsername(anyMap())).thenAnswer(invocation ->
+                users.get(((Map) invocation.getArguments()[0]).get(USERNAME)));
+        return userDao;
+    }
+
+    @SuppressWarnings("unchecked")
+    private GroupDAO createGroupDao() {
+        GroupDAO groupDao = mock(GroupDAO.class);
+        when(groupDao.getGroupByName(anyMap())).thenAnswer(invocation ->
+                group((String) ((Map) invocation.getArguments()[0]).get(GROUP_NAME)));
+        when(groupDao.addGroupMembers(anyMap())).thenAnswer(invocation -> {
+            Map params = (Map) invocation.getArguments()[0];
+            String groupName = "group-" + params.get(GROUP_ID);
+            int added = 0;
+            for (Long userId : (List<Long>) params.get(USER_IDS)) {
+                if (memberships.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(groupName)) {
+                    added++;
+                }
+            }
+            memberWrites.addAndGet(added);
+            return added;
+        });
+        return groupDao;
+    }
+
+    private Group group(String groupName) {
+        Group group = new Group();
+        group.setId(Long.parseLong(groupName.substring("group-".length())));
+        group.setGroupName(groupName);
+        return group;
+    }
+
+    private User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setEmail(user.getEmail());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        return copy;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.webdav;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.craftercms.commons.config.profiles.webdav.WebDavProfile;
+import org.craftercms.studio.api.v1.exception.WebDavException;
+import org.craftercms.studio.api.v1.webdav.WebDavItem;
+import org.craftercms.studio.impl.v1.util.config.profiles.SiteAwareConfigProfileLoader;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class WebDavServiceImplTest {
+
+    private static final String SITE = "test";
+    private static final String PROFILE = "webdav";
+    private static final String URL_PATTERN = "/remote-assets/webdav/%s/%s/%s";
+    private static final String ROOT = "/dav/";
+    private static final int UPLOAD_CONCURRENCY = 4;
+    private static final int BATCH_SIZE = 20;
+
+    private WebDavServiceImpl service;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+
+    // state of the embedded server
+    private Set<String> folders;
+    private Map<String, byte[]> files;
+    private Map<String, AtomicInteger> requests;
+    private Set<Integer> connections;
+
+    @SuppressWarnings("unchecked")
+    @BeforeMethod
+    public void setUp() throws Exception {
+        folders = ConcurrentHashMap.newKeySet();
+        folders.add(ROOT);
+        files = new ConcurrentHashMap<>();
+        requests = new ConcurrentHashMap<>();
+        connections = ConcurrentHashMap.newKeySet();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        serverExecutor = Executors.newFixedThreadPool(UPLOAD_CONCURRENCY * 2);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        WebDavProfile profile = new WebDavProfile();
+        profile.setBaseUrl("http://localhost:" + server.getAddress().getPort() + ROOT);
+        profile.setUsername("admin");
+        profile.setPassword("admin");
+        SiteAwareConfigProfileLoader<WebDavProfile> profileLoader = mock(SiteAwareConfigProfileLoader.class);
+        when(profileLoader.loadProfile(SITE, PROFILE)).thenReturn(profile);
+
+        service = new WebDavServiceImpl(URL_PATTERN, profileLoader);
+        service.setUploadConcurrency(UPLOAD_CONCURRENCY);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        service.destroy();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testUploadCreatesOnlyMissingFolders() throws Exception {
+        folders.add(ROOT + "assets/");
+
+        WebDavItem item = service.upload(SITE, PROFILE, "assets/images/2020", "logo.png", content("logo"));
+
+        assertEquals(item.getUrl(), "/remote-assets/webdav/webdav/assets/images/2020/logo.png");
+        assertTrue(folders.contains(ROOT + "assets/images/2020/"));
+        assertEquals(count("HEAD"), 3);
+        assertEquals(count("MKCOL"), 2);
+        assertEquals(count("PUT"), 1);
+
+        // the folders are known now, only the file is sent
+        service.upload(SITE, PROFILE, "assets/images/2020", "banner.png", content("banner"));
+
+        assertEquals(count("HEAD"), 3);
+        assertEquals(count("MKCOL"), 2);
+        assertEquals(count("PUT"), 2);
+        assertEquals(connections.size(), 1);
+    }
+
+    @Test
+    public void testUploadIntoExistingFolder() throws Exception {
+        folders.add(ROOT + "a/");
+        folders.add(ROOT + "a/b/");
+        folders.add(ROOT + "a/b/c/");
+
+        service.upload(SITE, PROFILE, "/a/b/c/", "file.pdf", content("file"));
+
+        assertEquals(count("HEAD"), 1);
+        assertEquals(count("MKCOL"), 0);
+        assertEquals(count("PUT"), 1);
+        assertEquals(new String(files.get(ROOT + "a/b/c/file.pdf"), StandardCharsets.UTF_8), "file");
+    }
+
+    @Test
+    public void testUploadMultipleFiles() throws Exception {
+        Map<String, InputStreamSource> batch = new LinkedHashMap<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.put("file" + i + ".png", new ByteArrayResource(("file" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<WebDavItem> items = service.upload(SITE, PROFILE, "batch/images", batch);
+
+        assertEquals(items.size(), BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertEquals(items.get(i).getName(), "file" + i + ".png");
+            assertEquals(new String(files.get(ROOT + "batch/images/file" + i + ".png"), StandardCharsets.UTF_8),
+                "file" + i);
+        }
+        assertEquals(count("HEAD"), 2);
+        assertEquals(count("MKCOL"), 2);
+        assertEquals(count("PUT"), BATCH_SIZE);
+        assertTrue(connections.size() <= UPLOAD_CONCURRENCY);
+    }
+
+    @Test
+    public void testFailedUploadWaitsForRunningUploads() throws Exception {
+        AtomicInteger openSources = new AtomicInteger();
+        Map<String, InputStreamSource> batch = new LinkedHashMap<>();
+        batch.put("broken.png", () -> {
+            throw new IOException("Broken file");
+        });
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.put("slow" + i + ".png", () -> new SlowInputStream(openSources));
+        }
+
+        try {
+            service.upload(SITE, PROFILE, "failed", batch);
+            fail("The upload should have failed");
+        } catch (WebDavException e) {
+            // expected
+        }
+        assertEquals(openSources.get(), 0);
+    }
+
+    @Test
+    public void testList() throws Exception {
+        folders.add(ROOT + "docs/");
+        folders.add(ROOT + "docs/archive/");
+        files.put(ROOT + "docs/report.pdf", "report".getBytes(StandardCharsets.UTF_8));
+
+        List<WebDavItem> items = service.list(SITE, PROFILE, "docs", "application/pdf");
+
+        assertEquals(items.size(), 2);
+        assertEquals(count("PROPFIND"), 1);
+        assertEquals(count("HEAD"), 0);
+
+        assertTrue(service.list(SITE, PROFILE, "missing", null).isEmpty());
+        assertEquals(count("PROPFIND"), 2);
+    }
+
+    /**
+     * Content that takes a while to read and ignores interruptions, like a slow network or disk
+     */
+    private static class SlowInputStream extends InputStream {
+
+        private final AtomicInteger openSources;
+        private final InputStream content = new ByteArrayInputStream("slow".getBytes(StandardCharsets.UTF_8));
+        private boolean waited;
+        private boolean closed;
+
+        private SlowInputStream(AtomicInteger openSources) {
+            this.openSources = openSources;
+            openSources.incrementAndGet();
+        }
+
+        @Override
+        public int read() {
+            if (!waited) {
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < until) {
+                    // busy wait, an interruption doesn't stop a blocked read
+                }
+                waited = true;
+            }
+            return content.read();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                openSources.decrementAndGet();
+            }
+        }
+    }
+
+    private InputStream content(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int count(String method) {
+        AtomicInteger count = requests.get(method);
+        return count != null? count.get() : 0;
+    }
+
+    /**
+     * Minimal WebDAV server, enough for the requests sent by the Sardine client.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        requests.computeIfAbsent(method, m -> new AtomicInteger()).incrementAndGet();
+        connections.add(exchange.getRemoteAddress().getPort());
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = IOUtils.toByteArray(in);
+        }
+        switch (method) {
+            case "HEAD":
+                send(exchange, folders.contains(path) || files.containsKey(path)? 200 : 404, null);
+                break;
+            case "MKCOL":
+                if (folders.contains(path)) {
+                    send(exchange, 405, null);
+                } else if (!folders.contains(getParent(path))) {
+                    send(exchange, 409, null);
+                } else {
+                    folders.add(path);
+                    send(exchange, 201, null);
+                }
+                break;
+            case "PUT":
+                if (folders.contains(getParent(path))) {
+                    files.put(path, body);
+                    send(exchange, 201, null);
+                } else {
+                    send(exchange, 409, null);
+                }
+                break;
+            case "PROPFIND":
+                if (folders.contains(path)) {
+                    exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=utf-8");
+                    send(exchange, 207, getMultistatus(path));
+                } else {
+                    send(exchange, 404, null);
+                }
+                break;
+            default:
+                send(exchange, 405, null);
+        }
+    }
+
+    private String getMultistatus(String folder) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>")
+            .append("<D:multistatus xmlns:D=\"DAV:\">");
+        appendResponse(xml, folder, true);
+        folders.stream()
+            .filter(path -> !path.equals(folder) && getParent(path).equals(folder))
+            .forEach(path -> appendResponse(xml, path, true));
+        files.keySet().stream()
+            .filter(path -> getParent(path).equals(folder))
+            .forEach(path -> appendResponse(xml, path, false));
+        return xml.append("</D:multistatus>").toString();
+    }
+
+    private void appendResponse(StringBuilder xml, String path, boolean folder) {
+        xml.append("<D:response><D:href>").append(path).append("</D:href><D:propstat><D:prop>");
+        if (folder) {
+            xml.append("<D:resourcetype><D:collection/></D:resourcetype>");
+        } else {
+            xml.append("<D:resourcetype/><D:getcontenttype>application/pdf</D:getcontenttype>")
+                .append("<D:getcontentlength>").append(files.get(path).length).append("</D:getcontentlength>");
+        }
+        xml.append("</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>");
+    }
+
+    private String getParent(String path) {
+        String parent = path.endsWith("/")? path.substring(0, path.length() - 1) : path;
+        return parent.substring(0, parent.lastIndexOf('/') + 1);
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.upgrade;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v2.upgrade.VersionProvider;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryHelper;
+import org.craftercms.studio.impl.v2.dal.EmbeddedStudioDatabase;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.GLOBAL_REPO_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHED_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SANDBOX_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SITES_REPOS_PATH;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class DefaultUpgradeManagerImplTest {
+
+    private static final int SITES = 6;
+
+    private File baseDir;
+    private EmbeddedStudioDatabase database;
+    private GitContentRepositoryHelper helper;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        baseDir = Files.createTempDirectory("site-upgrades").toFile();
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(REPO_BASE_PATH)).thenReturn(baseDir.getAbsolutePath());
+        when(studioConfiguration.getProperty(SITES_REPOS_PATH)).thenReturn("sites");
+        when(studioConfiguration.getProperty(SANDBOX_PATH)).thenReturn("sandbox");
+        when(studioConfiguration.getProperty(PUBLISHED_PATH)).thenReturn("published");
+        when(studioConfiguration.getProperty(GLOBAL_REPO_PATH)).thenReturn("global");
+        helper = new GitContentRepositoryHelper(studioConfiguration, null, null, null);
+
+        database = new EmbeddedStudioDatabase();
+        init(helper.buildRepoPath(GitRepositories.GLOBAL).toFile());
+        for (int i = 0; i < SITES; i++) {
+            String site = site(i);
+            init(helper.buildRepoPath(GitRepositories.SANDBOX, site).toFile());
+            init(helper.buildRepoPath(GitRepositories.PUBLISHED, site).toFile());
+            database.update("INSERT INTO site (site_uuid, site_id, name) VALUES (?, ?, ?)", site, site, site);
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (database != null) {
+            database.close();
+        }
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void testSitesAreUpgradedOnceInParallel() throws Exception {
+        Map<String, AtomicInteger> upgrades = new ConcurrentHashMap<>();
+        Set<Repository> globalRepositories = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+        Map<String, Repository> sandboxes = new ConcurrentHashMap<>();
+        CountDownLatch started = new CountDownLatch(SITES);
+
+        DefaultUpgradeManagerImpl upgradeManager = new DefaultUpgradeManagerImpl() {
+
+            @Override
+            public void upgradeSite(String site) {
+                upgrades.computeIfAbsent(site, key -> new AtomicInteger()).incrementAndGet();
+                started.countDown();
+                try {
+                    // open the repositories from all the sites at the same time
+                    assertTrue(started.await(1, TimeUnit.MINUTES));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                globalRepositories.add(helper.getRepository(site, GitRepositories.GLOBAL));
+                sandboxes.put(site, helper.getRepository(site, GitRepositories.SANDBOX));
+                assertNotNull(helper.getRepository(site, GitRepositories.PUBLISHED));
+            }
+        };
+        ContentRepository contentRepository = mock(ContentRepository.class);
+        when(contentRepository.getRepoFirstCommitId(anyString())).thenReturn("first");
+        VersionProvider dbVersionProvider = mock(VersionProvider.class);
+        when(dbVersionProvider.getCurrentVersion()).thenReturn("3.1.0.5");
+        upgradeManager.setDataSource(database.getDataSource());
+        upgradeManager.setContentRepository(contentRepository);
+        upgradeManager.setDbVersionProvider(dbVersionProvider);
+        upgradeManager.setSitePoolSize(SITES);
+
+        upgradeManager.upgradeExistingSites();
+
+        assertEquals(upgrades.size(), SITES);
+        for (int i = 0; i < SITES; i++) {
+            assertEquals(upgrades.get(site(i)).get(), 1, site(i));
+            assertSame(helper.getRepository(site(i), GitRepositories.SANDBOX), sandboxes.get(site(i)));
+        }
+        assertEquals(globalRepositories.size(), 1);
+        assertSame(helper.getRepository(null, GitRepositories.GLOBAL), globalRepositories.iterator().next());
+    }
+
+    private void init(File directory) throws Exception {
+        Git.init().setDirectory(directory).call().close();
+    }
+
+    private String site(int index) {
+        return "site-" + index;
+    }
+}